@@ -0,0 +1,94 @@
+package com.lee.password.keeper.benchmark;
+
+import java.io.File;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.impl.crypto.RSACryptoDriver;
+import com.lee.password.keeper.impl.store.BinaryStoreDriver;
+
+/**
+ * commit {@code inserts} queued passwords of the website at head/middle/tail of the store file,
+ * every invocation commits to a fresh copy of the populated store file.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 20)
+@Fork(1)
+public class CommitBenchmark {
+
+	@Param({ "10000" })
+	public int entries;
+
+	@Param({ "1", "100", "1000" })
+	public int inserts;
+
+	@Param({ "head", "middle", "tail" })
+	public String position;
+
+	/** default: in place commit, group: group commit with rollback journal, rewrite: rewrite the whole file **/
+	@Param({ "default", "group", "rewrite" })
+	public String mode;
+
+	private StoreFixture fixture;
+	private Properties options;
+	private long websiteId;
+	private File workDir;
+	private StoreDriver storeDriver;
+
+	@Setup(Level.Trial)
+	public void setupTrial() {
+		fixture = new StoreFixture("commit", 1024).populate(entries);
+		int websites = fixture.websiteIds.size();
+		if("head".equals(position)) {
+			websiteId = fixture.websiteIds.get(0);
+		}else if("middle".equals(position)) {
+			websiteId = fixture.websiteIds.get(websites / 2);
+		}else {
+			websiteId = fixture.websiteIds.get(websites - 1);
+		}
+		options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_GROUP_COMMIT, String.valueOf("group".equals(mode)));
+		options.setProperty(BinaryStoreDriver.OPT_REWRITE_THRESHOLD, "rewrite".equals(mode) ? "1" : "0");
+		workDir = new File(fixture.baseDir, "work");
+	}
+
+	@Setup(Level.Invocation)
+	public void queueInserts() {
+		StoreFixture.deleteRecursively(workDir);
+		fixture.copyStoreTo(workDir);
+		storeDriver = fixture.open(workDir, new RSACryptoDriver(), options);
+		for(int i=0; i<inserts; i++) {
+			Password password = new Password(websiteId, "queued" + i + "@example.com");
+			password.password("queued-password-" + i);
+			StoreFixture.check(storeDriver.insertPassword(password, fixture.publicKey), "insert password");
+		}
+	}
+
+	@Benchmark
+	public Throwable commit() { return StoreFixture.check(storeDriver.commit(), "commit"); }
+
+	@TearDown(Level.Invocation)
+	public void closeStore() { storeDriver.close(); }
+
+	@TearDown(Level.Trial)
+	public void tearDown() { fixture.destroy(); }
+}
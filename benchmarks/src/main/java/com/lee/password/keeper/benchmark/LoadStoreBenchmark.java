@@ -0,0 +1,60 @@
+package com.lee.password.keeper.benchmark;
+
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.impl.store.BinaryStoreDriver;
+
+/** open (load) and close a populated store file **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadStoreBenchmark {
+
+	@Param({ "1000", "10000", "100000" })
+	public int entries;
+
+	@Param({ "false", "true" })
+	public boolean isMappedLoad;
+
+	private StoreFixture fixture;
+	private Properties options;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new StoreFixture("load", 1024).populate(entries);
+		options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_MAPPED_LOAD, String.valueOf(isMappedLoad));
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() { fixture.destroy(); }
+
+	@Benchmark
+	public int loadStore() {
+		StoreDriver storeDriver = fixture.open(options);
+		try {
+			return storeDriver.passwordCount().result;
+		}finally {
+			storeDriver.close();
+		}
+	}
+}
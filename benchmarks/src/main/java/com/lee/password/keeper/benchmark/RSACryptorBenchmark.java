@@ -0,0 +1,72 @@
+package com.lee.password.keeper.benchmark;
+
+import java.security.KeyPair;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.Cipher;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lee.password.keeper.impl.crypto.rsa.RSACryptor;
+import com.lee.password.keeper.impl.crypto.rsa.RSAKeyGenerator;
+
+/**
+ * raw RSA encryption/decryption of a password sized block per key size,
+ * with parsed keys and a reused cipher, and with the encoded keys parsed on every call.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RSACryptorBenchmark {
+
+	@Param({ "1024", "2048", "4096" })
+	public int keySize;
+
+	private PublicKey publicKey;
+	private PrivateKey privateKey;
+	private byte[] encodedPublicKey;
+	private byte[] encodedPrivateKey;
+	private Cipher cipher;
+	private byte[] data;
+	private byte[] secret;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		KeyPair keyPair = RSAKeyGenerator.generateKeyPair(keySize);
+		publicKey = keyPair.getPublic();
+		privateKey = keyPair.getPrivate();
+		encodedPublicKey = publicKey.getEncoded();
+		encodedPrivateKey = privateKey.getEncoded();
+		cipher = RSACryptor.newCipher();
+		data = "a-typical-password-of-32-bytes!!".getBytes();
+		secret = RSACryptor.encrypt(data, publicKey, cipher);
+	}
+
+	@Benchmark
+	public byte[] encrypt() { return RSACryptor.encrypt(data, publicKey, cipher); }
+
+	@Benchmark
+	public byte[] decrypt() { return RSACryptor.decrypt(secret, privateKey, cipher); }
+
+	@Benchmark
+	public byte[] encryptWithEncodedKey() { return RSACryptor.encrypt(data, encodedPublicKey); }
+
+	@Benchmark
+	public byte[] decryptWithEncodedKey() { return RSACryptor.decrypt(secret, encodedPrivateKey); }
+}
@@ -0,0 +1,77 @@
+package com.lee.password.keeper.benchmark;
+
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.impl.crypto.RSACryptoDriver;
+
+/** the latency of selecting a password (decryption included) and listing the password headers by username **/
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SelectPasswordBenchmark {
+
+	@Param({ "10000" })
+	public int entries;
+
+	/** decrypt the secrets encrypted by public key with private key, or the ones encrypted by session key with it **/
+	@Param({ "false", "true" })
+	public boolean isSession;
+
+	private StoreFixture fixture;
+	private StoreDriver storeDriver;
+	private CryptoKey decryptionKey;
+	private int websites;
+	private int next;
+
+	@Setup(Level.Trial)
+	public void setup() {
+		fixture = new StoreFixture("select", 1024).populate(entries, isSession);
+		CryptoDriver cryptoDriver = new RSACryptoDriver();
+		storeDriver = fixture.open(fixture.dataDir, cryptoDriver, new Properties());
+		decryptionKey = isSession ? fixture.openSession(cryptoDriver) : fixture.privateKey;
+		websites = fixture.websiteIds.size();
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() {
+		storeDriver.close();
+		fixture.destroy();
+	}
+
+	@Benchmark
+	public Password selectPassword() {
+		int w = next++ % websites;
+		int u = (next / websites) % StoreFixture.PASSWORDS_PER_WEBSITE;
+		Password.Header header = new Password.Header(fixture.websiteIds.get(w), StoreFixture.username(u));
+		return StoreFixture.check(storeDriver.selectPassword(header, decryptionKey), "select password");
+	}
+
+	@Benchmark
+	public List<Password.Header> listPasswordByUsername() {
+		String username = StoreFixture.username(next++ % StoreFixture.PASSWORDS_PER_WEBSITE);
+		return StoreFixture.check(storeDriver.listPassword(username), "list password");
+	}
+}
@@ -0,0 +1,151 @@
+package com.lee.password.keeper.benchmark;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.keeper.impl.crypto.RSACryptoDriver;
+import com.lee.password.keeper.impl.store.BinaryStoreDriver;
+
+/** a temporary key pair and store file populated with passwords for benchmarks **/
+public class StoreFixture {
+
+	/** passwords of each website, so the websites are one tenth of the entries **/
+	public static final int PASSWORDS_PER_WEBSITE = 10;
+
+	public final File baseDir;
+	public final File keyDir;
+	public final File dataDir;
+	public final CryptoKey publicKey;
+	public final CryptoKey privateKey;
+	/** website ids in ascending order, the same order of their passwords in the store file **/
+	public final List<Long> websiteIds = new ArrayList<Long>();
+
+	public StoreFixture(String name, int keySize) {
+		try {
+			baseDir = File.createTempFile("pk-bench-" + name + "-", "");
+		}catch(IOException e) {
+			throw new IllegalStateException("failed to create temporary directory", e);
+		}
+		baseDir.delete();
+		keyDir = new File(baseDir, "key");
+		dataDir = new File(baseDir, "data");
+		CryptoDriver cryptoDriver = new RSACryptoDriver();
+		try {
+			Result<CryptoKey[]> keyPair = cryptoDriver.generateKeyPair(keyDir.getAbsolutePath(), keySize);
+			check(keyPair, "generate key pair");
+			publicKey = keyPair.result[0];
+			privateKey = keyPair.result[1];
+		}finally {
+			cryptoDriver.close();
+		}
+	}
+
+	public static String username(int i) { return "user" + i + "@example.com"; }
+
+	/** populate the store with {@code entries} passwords encrypted by public key, committed by one rewrite **/
+	public StoreFixture populate(int entries) { return populate(entries, false); }
+
+	/** populate the store with {@code entries} passwords encrypted by public key or session key, committed by one rewrite **/
+	public StoreFixture populate(int entries, boolean isSession) {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_REWRITE_THRESHOLD, "1");
+		CryptoDriver cryptoDriver = new RSACryptoDriver();
+		StoreDriver storeDriver = open(dataDir, cryptoDriver, options);
+		try {
+			CryptoKey encryptionKey = isSession ? openSession(cryptoDriver) : publicKey;
+			int websites = Math.max(1, entries / PASSWORDS_PER_WEBSITE);
+			for(int w=0; w<websites; w++) {
+				Website website = new Website("website" + w, "www.website" + w + ".com");
+				check(storeDriver.insertWebsite(website), "insert website");
+				websiteIds.add(website.id());
+			}
+			for(int i=0; i<entries; i++) {
+				long websiteId = websiteIds.get(i % websites);
+				Password password = new Password(websiteId, username(i / websites));
+				password.password("password-" + i);
+				password.pairOf("question", "answer-" + i);
+				check(storeDriver.insertPassword(password, encryptionKey), "insert password");
+			}
+			check(storeDriver.commit(), "commit");
+		}finally {
+			storeDriver.close();
+		}
+		Collections.sort(websiteIds);
+		return this;
+	}
+
+	/** the session key of private key, whose vault key file is shared by the sessions of all crypto drivers **/
+	public CryptoKey openSession(CryptoDriver cryptoDriver) {
+		return check(cryptoDriver.openSession(privateKey, 0), "open session");
+	}
+
+	public StoreDriver open() { return open(new Properties()); }
+
+	public StoreDriver open(Properties options) { return open(dataDir, new RSACryptoDriver(), options); }
+
+	/** every store owns its crypto driver, which is closed along with the store **/
+	public StoreDriver open(File dataDir, CryptoDriver cryptoDriver, Properties options) {
+		return new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+	}
+
+	/** copy the store file to {@code destDir}, which is reused as a fresh data directory **/
+	public void copyStoreTo(File destDir) {
+		StoreDriver storeDriver = open();
+		File storeFile = new File(storeDriver.storePath().result);
+		storeDriver.close();
+		destDir.mkdirs();
+		copy(storeFile, new File(destDir, storeFile.getName()));
+	}
+
+	private static void copy(File src, File dest) {
+		FileChannel in = null;
+		FileChannel out = null;
+		try {
+			in = new FileInputStream(src).getChannel();
+			out = new FileOutputStream(dest).getChannel();
+			long position = 0, size = in.size();
+			while(position < size) { position += in.transferTo(position, size - position, out); }
+		}catch(IOException e) {
+			throw new IllegalStateException(String.format("failed to copy %s to %s", src, dest), e);
+		}finally {
+			closeQuietly(in);
+			closeQuietly(out);
+		}
+	}
+
+	private static void closeQuietly(FileChannel channel) {
+		if(channel != null) {
+			try { channel.close(); }catch(IOException e) { /** can not do anything **/ }
+		}
+	}
+
+	public void destroy() {
+		deleteRecursively(baseDir);
+	}
+
+	public static void deleteRecursively(File file) {
+		File[] children = file.listFiles();
+		if(children != null) {
+			for(File child : children) { deleteRecursively(child); }
+		}
+		file.delete();
+	}
+
+	public static <T> T check(Result<T> result, String action) {
+		if(!result.isSuccess()) { throw new IllegalStateException(action + " failed: " + result.msg); }
+		return result.result;
+	}
+}
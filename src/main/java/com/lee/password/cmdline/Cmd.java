@@ -198,6 +198,27 @@ public enum Cmd {
 			indent("list web -h -- show the help info of 'list web' command");
 		}
 	},
+
+	SEARCH_WEB("search web", CmdArgs.SEARCH_WEB_ARGS) {
+		@Override
+		public void printSynopsis() {
+			line("search web -h | (-k keyword [-d maxDistance] [-l limit])");
+		}
+		@Override
+		public void printDoc() {
+			printSynopsis();
+			line("Note:");
+			indent("keywords are matched ignoring case, by prefix without '-d', or by the number of edited chars with '-d'");
+			indent("before search website, you must specify variables '" + Name.CRYPTO_DRIVER.name + "' and '" + Name.STORE_DRIVER.name + "'");
+			indent("default '" + Name.CRYPTO_DRIVER.name + "' implementation is '" + RSACryptoDriver.class.getName() + "'");
+			indent("default '" + Name.STORE_DRIVER.name + "' implementation is '" + BinaryStoreDriver.class.getName() + "'");
+			line("Use examples:");
+			indent("search web -h -- show the help info of 'search web' command");
+			indent("search web -k aw -- search the websites which keyword starts with 'aw'");
+			indent("search web -k aw -l 5 -- search at most 5 websites which keyword starts with 'aw'");
+			indent("search web -k amazom -d 1 -- search the websites which keyword differs from 'amazom' by at most 1 char, nearest first");
+		}
+	},
 	
 	ADD_PWD("add pwd", CmdArgs.ADD_PWD_ARGS) {
 		@Override
@@ -381,6 +402,71 @@ public enum Cmd {
 		}
 	},
 	
+	VERIFY("verify", CmdArgs.VERIFY_ARGS) {
+		@Override
+		public void printSynopsis() {
+			line("verify [-h]");
+		}
+		@Override
+		public void printDoc() {
+			printSynopsis();
+			line("Note:");
+			indent("only the committed changes are verified, against the block checksums kept since variable '" + Name.IS_BLOCK_CHECKSUMS.name + "' is set to true");
+			indent("before verify, you must specify variables '" + Name.CRYPTO_DRIVER.name + "' and '" + Name.STORE_DRIVER.name + "'");
+			indent("default '" + Name.CRYPTO_DRIVER.name + "' implementation is '" + RSACryptoDriver.class.getName() + "'");
+			indent("default '" + Name.STORE_DRIVER.name + "' implementation is '" + BinaryStoreDriver.class.getName() + "'");
+			line("Use examples:");
+			indent("verify -- verify the checksums of the whole store file, and print the positions of the corrupted blocks");
+			indent("verify -h -- show the help info of 'verify' command");
+		}
+	},
+	
+	ROLLBACK("rollback", CmdArgs.ROLLBACK_ARGS) {
+		@Override
+		public void printSynopsis() {
+			line("rollback -h | (-t time)");
+		}
+		@Override
+		public void printDoc() {
+			printSynopsis();
+			line("Note:");
+			indent("time is formatted as 'yyyy-MM-dd HH:mm:ss' in single quotes, or in milliseconds");
+			indent("the changes committed after time are reverted as uncommitted changes, run 'commit' to keep them or 'undo' to drop them");
+			indent("only the changes recorded in history are reverted, you must specify variable '" + Name.HISTORY_SIZE.name + "' to record them");
+			indent("before rollback, you must specify variables '" + Name.CRYPTO_DRIVER.name + "' and '" + Name.STORE_DRIVER.name + "'");
+			indent("default '" + Name.CRYPTO_DRIVER.name + "' implementation is '" + RSACryptoDriver.class.getName() + "'");
+			indent("default '" + Name.STORE_DRIVER.name + "' implementation is '" + BinaryStoreDriver.class.getName() + "'");
+			line("Use examples:");
+			indent("rollback -t '2016-05-01 08:30:00' -- revert all the changes committed after 2016-05-01 08:30:00");
+			indent("rollback -h -- show the help info of 'rollback' command");
+		}
+	},
+	
+	IMPORT("import", CmdArgs.IMPORT_ARGS) {
+		@Override
+		public void printSynopsis() {
+			line("import -h | (-f file [-t (csv | json)])");
+		}
+		@Override
+		public void printDoc() {
+			printSynopsis();
+			line("Note:");
+			indent("the format is taken from the file extension if not specified, csv unless it ends with '.json'");
+			indent("the first line of csv names the columns 'keyword', 'url', 'username', 'password' and optional 'memo' in any order");
+			indent("json is an array of objects, or a sequence of objects one per line, with the same fields as the csv columns");
+			indent("the websites are added by keyword if absent, the url is required only for them");
+			indent("the passwords are added and committed at once, which can't be undone; nothing is imported if any of them fails");
+			indent("before import, you must commit or undo the uncommitted changes");
+			indent("before import, you must specify variables '" + Name.CRYPTO_DRIVER.name + "' and '" + Name.STORE_DRIVER.name + "'");
+			indent("default '" + Name.CRYPTO_DRIVER.name + "' implementation is '" + RSACryptoDriver.class.getName() + "'");
+			indent("default '" + Name.STORE_DRIVER.name + "' implementation is '" + BinaryStoreDriver.class.getName() + "'");
+			line("Use examples:");
+			indent("import -f '/home/peter/vault.csv' -- import the passwords from csv file '/home/peter/vault.csv'");
+			indent("import -f '/home/peter/vault.txt' -t json -- import the passwords from json file '/home/peter/vault.txt'");
+			indent("import -h -- show the help info of 'import' command");
+		}
+	},
+	
 	EXIT("exit", CmdArgs.EXIT_ARGS) {
 		@Override
 		public void printSynopsis() {
@@ -18,6 +18,7 @@ import com.lee.password.cmdline.commands.CountWebCommand;
 import com.lee.password.cmdline.commands.ExitCommand;
 import com.lee.password.cmdline.commands.GenerateKeyCommand;
 import com.lee.password.cmdline.commands.HelpCommand;
+import com.lee.password.cmdline.commands.ImportCommand;
 import com.lee.password.cmdline.commands.ListEnvCommand;
 import com.lee.password.cmdline.commands.ListPwdCommand;
 import com.lee.password.cmdline.commands.ListWebCommand;
@@ -26,8 +27,11 @@ import com.lee.password.cmdline.commands.QueryWebCommand;
 import com.lee.password.cmdline.commands.RedoCommand;
 import com.lee.password.cmdline.commands.RemovePwdCommand;
 import com.lee.password.cmdline.commands.RemoveWebCommand;
+import com.lee.password.cmdline.commands.RollbackCommand;
+import com.lee.password.cmdline.commands.SearchWebCommand;
 import com.lee.password.cmdline.commands.SetCommand;
 import com.lee.password.cmdline.commands.UndoCommand;
+import com.lee.password.cmdline.commands.VerifyCommand;
 import com.lee.password.util.Converter;
 import com.lee.password.util.Triple;
 
@@ -277,6 +281,31 @@ public enum CmdArgs {
 		}
 	},
 	
+	@SuppressWarnings("unchecked")
+	SEARCH_WEB_ARGS(
+		triple("-k", true, STRING_CONVERTER),
+		triple("-d", false, INTEGER_CONVERTER),
+		triple("-l", false, INTEGER_CONVERTER)
+	) {
+		@Override
+		public Command parse(List<String> cmdArgsList) {
+			int size = cmdArgsList.size();
+			if(size == 1 && "-h".equals(cmdArgsList.get(0))) { return new HelpCommand(Cmd.SEARCH_WEB); }
+			Triple<Boolean, String, Map<String, Object>> triple = parseArgs(Cmd.SEARCH_WEB, cmdArgsList);
+			if(!triple.first) { return Cmd.incorrectCommand(triple.second); }
+			Triple<Boolean, String, String> keywordTriple = parseArgsValue(Cmd.SEARCH_WEB, triple.third, "-k", String.class);
+			if(!keywordTriple.first) { return Cmd.incorrectCommand(keywordTriple.second); }
+			Triple<Boolean, String, Integer> distanceTriple = parseArgsValue(Cmd.SEARCH_WEB, triple.third, "-d", Integer.class);
+			Integer maxDistance = distanceTriple.third;
+			if(maxDistance != null && maxDistance < 0) {
+				return Cmd.incorrectCommand("while search website, edit distance must not be negative, "
+						+ "please run 'help search web' command to check the use examples");
+			}
+			Triple<Boolean, String, Integer> limitTriple = parseArgsValue(Cmd.SEARCH_WEB, triple.third, "-l", Integer.class);
+			return new SearchWebCommand(keywordTriple.third, maxDistance, limitTriple.third);
+		}
+	},
+
 	@SuppressWarnings("unchecked")
 	ADD_PWD_ARGS(
 		triple("-i", false, LONG_CONVERTER),
@@ -475,6 +504,57 @@ public enum CmdArgs {
 			}
 		}
 	},
+	VERIFY_ARGS() {
+		@Override
+		public Command parse(List<String> cmdArgsList) {
+			int size = cmdArgsList.size();
+			switch(size) {
+			case 0:
+				return new VerifyCommand();
+			case 1:
+				if("-h".equals(cmdArgsList.get(0))) {
+					return new HelpCommand(Cmd.VERIFY);
+				}
+			default:
+				return Cmd.incorrectCommand("incorrect command arguments for '" + Cmd.VERIFY.cmd() + "' command");
+			}
+		}
+	},
+	@SuppressWarnings("unchecked")
+	ROLLBACK_ARGS(
+		triple("-t", true, TIME_CONVERTER)
+	) {
+		@Override
+		public Command parse(List<String> cmdArgsList) {
+			int size = cmdArgsList.size();
+			if(size == 1 && "-h".equals(cmdArgsList.get(0))) { return new HelpCommand(Cmd.ROLLBACK); }
+			Triple<Boolean, String, Map<String, Object>> triple = parseArgs(Cmd.ROLLBACK, cmdArgsList);
+			if(!triple.first) { return Cmd.incorrectCommand(triple.second); }
+			Triple<Boolean, String, Long> timeTriple = parseArgsValue(Cmd.ROLLBACK, triple.third, "-t", Long.class);
+			if(!timeTriple.first) { return Cmd.incorrectCommand(timeTriple.second); }
+			return new RollbackCommand(timeTriple.third);
+		}
+	},
+	@SuppressWarnings("unchecked")
+	IMPORT_ARGS(
+		triple("-f", true, FILE_CONVERTER),
+		triple("-t", false, STRING_CONVERTER)
+	) {
+		@Override
+		public Command parse(List<String> cmdArgsList) {
+			int size = cmdArgsList.size();
+			if(size == 1 && "-h".equals(cmdArgsList.get(0))) { return new HelpCommand(Cmd.IMPORT); }
+			Triple<Boolean, String, Map<String, Object>> triple = parseArgs(Cmd.IMPORT, cmdArgsList);
+			if(!triple.first) { return Cmd.incorrectCommand(triple.second); }
+			Triple<Boolean, String, File> fileTriple = parseArgsValue(Cmd.IMPORT, triple.third, "-f", File.class);
+			if(!fileTriple.first) { return Cmd.incorrectCommand(fileTriple.second); }
+			Triple<Boolean, String, String> formatTriple = parseArgsValue(Cmd.IMPORT, triple.third, "-t", String.class);
+			if(formatTriple.first && !ImportCommand.CSV.equals(formatTriple.third) && !ImportCommand.JSON.equals(formatTriple.third)) {
+				return Cmd.incorrectCommand("while import, format must be '" + ImportCommand.CSV + "' or '" + ImportCommand.JSON + "'");
+			}
+			return new ImportCommand(fileTriple.third, formatTriple.third);
+		}
+	},
 	EXIT_ARGS() {
 		@Override
 		public Command parse(List<String> cmdArgsList) {
@@ -11,6 +11,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 import java.util.prefs.BackingStoreException;
 import java.util.prefs.Preferences;
 
@@ -115,6 +117,90 @@ public final class Environment {
 				}
 			}
 		},
+		IS_MAPPED_LOAD("isMappedLoad", "load the password data file by memory mapping or not, "
+				+ "it speeds up loading a large data file") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidBoolean(this, value); }
+			@Override
+			protected Boolean convert(String value) { return Boolean.valueOf(value); }
+		},
+		IS_GROUP_COMMIT("isGroupCommit", "commit all the changes atomically with a single disk force or not, "
+				+ "it speeds up committing a lot of changes") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidBoolean(this, value); }
+			@Override
+			protected Boolean convert(String value) { return Boolean.valueOf(value); }
+		},
+		IS_WRITE_AHEAD_LOG("isWriteAheadLog", "log the changes of a commit before applying them and force the data file "
+				+ "only on checkpoint or not, it speeds up committing often and survives power loss") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidBoolean(this, value); }
+			@Override
+			protected Boolean convert(String value) { return Boolean.valueOf(value); }
+		},
+		CHECKPOINT_SIZE("checkpointSize", "the size in bytes of write-ahead log to force the password data file and empty the log at") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidNonNegativeInt(this, value); }
+			@Override
+			protected Integer convert(String value) { return Integer.valueOf(value); }
+		},
+		HISTORY_SIZE("historySize", "the max size in bytes of history journal which records the committed changes across sessions "
+				+ "for rollback, 0 means no history, the oldest half of history is dropped once it grows beyond") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidNonNegativeInt(this, value); }
+			@Override
+			protected Integer convert(String value) { return Integer.valueOf(value); }
+		},
+		CHANGE_QUEUE_SIZE("changeQueueSize", "the size in bytes of the uncommitted changes kept in memory for undo and redo each, "
+				+ "the older ones are spilled to a side file, 0 means keeping all of them in memory") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidNonNegativeInt(this, value); }
+			@Override
+			protected Integer convert(String value) { return Integer.valueOf(value); }
+		},
+		REWRITE_THRESHOLD("rewriteThreshold", "rewrite the whole password data file on commit once the number of changes reaches it, "
+				+ "0 means never, it speeds up committing a lot of inserts and deletes") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidNonNegativeInt(this, value); }
+			@Override
+			protected Integer convert(String value) { return Integer.valueOf(value); }
+		},
+		IS_LAZY_LOAD("isLazyLoad", "load only the password headers and read the secrets from password data file on demand or not, "
+				+ "it speeds up loading and saves memory for a large data file") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidBoolean(this, value); }
+			@Override
+			protected Boolean convert(String value) { return Boolean.valueOf(value); }
+		},
+		SECRET_CACHE_SIZE("secretCacheSize", "the number of passwords whose secrets are cached after read on demand in lazy load mode") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidNonNegativeInt(this, value); }
+			@Override
+			protected Integer convert(String value) { return Integer.valueOf(value); }
+		},
+		IS_OFF_HEAP_SECRETS("isOffHeapSecrets", "keep the loaded password records in direct memory which is zeroed on close or not, "
+				+ "it cuts the heap usage of a large data file, ignored in lazy load mode") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidBoolean(this, value); }
+			@Override
+			protected Boolean convert(String value) { return Boolean.valueOf(value); }
+		},
+		IS_BLOCK_CHECKSUMS("isBlockChecksums", "keep the block checksums of password data file to verify it or not, "
+				+ "they are saved on each commit, or only on checkpoint with write-ahead log") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidBoolean(this, value); }
+			@Override
+			protected Boolean convert(String value) { return Boolean.valueOf(value); }
+		},
+		SESSION_TIMEOUT("sessionTimeout", "open a session with private key and forget it after being idle for these minutes, "
+				+ "0 means no session, it speeds up encrypting/decrypting a lot of passwords, but the passwords "
+				+ "encrypted in session need the vault key file besides private key to be decrypted, so keep it along with "
+				+ "private key, and they are limited to fewer bytes") {
+			@Override
+			public Pair<Boolean, String> checkValid(String value) { return checkValidNonNegativeInt(this, value); }
+			@Override
+			protected Integer convert(String value) { return Integer.valueOf(value); }
+		},
 		;
 		
 		public final String name;
@@ -155,6 +241,16 @@ public final class Environment {
 			return Pair.create(false, "the value of variable '" + name + "' is not a boolean literal");
 		}
 		
+		static Pair<Boolean, String> checkValidNonNegativeInt(Name name, String value) {
+			if(value == null) { return Pair.create(false, "the value of variable '" + name + "' is null"); }
+			try {
+				if(Integer.parseInt(value) >= 0) { return Pair.create(true, "success"); }
+			}catch(NumberFormatException e) {
+				// fall through
+			}
+			return Pair.create(false, "the value of variable '" + name + "' is not a non-negative integer");
+		}
+		
 		protected final Pair<String, Object> cast(String value) { return Pair.create(value, convert(value)); }
 		
 		protected abstract Object convert(String value);
@@ -293,8 +389,22 @@ public final class Environment {
 		case DATA_DIR:
 		case IS_DATA_LOCK:
 		case STORE_DRIVER:
+		case IS_MAPPED_LOAD:
+		case IS_GROUP_COMMIT:
+		case IS_WRITE_AHEAD_LOG:
+		case CHECKPOINT_SIZE:
+		case HISTORY_SIZE:
+		case CHANGE_QUEUE_SIZE:
+		case REWRITE_THRESHOLD:
+		case IS_LAZY_LOAD:
+		case SECRET_CACHE_SIZE:
+		case IS_OFF_HEAP_SECRETS:
+		case IS_BLOCK_CHECKSUMS:
 			storeDriver.onChanged();
 			break;
+		case SESSION_TIMEOUT:
+			// the session is opened on demand with current timeout
+			break;
 		}
 	}
 	
@@ -361,6 +471,7 @@ public final class Environment {
 	}
 	
 	public Triple<Boolean, String, CryptoKey> getEncryptionKey() {
+		if(isSessionMode()) { return openSessionKey(); }
 		if(encryptionKey != null) {
 			if(!encryptionKey.isChanged) { return Triple.create(true, "success", encryptionKey.value); }
 		}
@@ -389,6 +500,11 @@ public final class Environment {
 	}
 	
 	public Triple<Boolean, String, CryptoKey> getDecryptionKey() {
+		if(isSessionMode()) { return openSessionKey(); }
+		return getPrivateKey();
+	}
+	
+	private Triple<Boolean, String, CryptoKey> getPrivateKey() {
 		if(decryptionKey != null) {
 			if(!decryptionKey.isChanged) { return Triple.create(true, "success", decryptionKey.value); }
 		}
@@ -418,6 +534,29 @@ public final class Environment {
 		return Triple.create(true, "success", decryptionKey.value);
 	}
 	
+	private boolean isSessionMode() {
+		Triple<Boolean, String, Integer> sessionTimeoutTriple = getVariable(Name.SESSION_TIMEOUT, Integer.class);
+		return sessionTimeoutTriple.first && sessionTimeoutTriple.third > 0;
+	}
+	
+	/** open the session with private key, a live session is returned without any decryption **/
+	private Triple<Boolean, String, CryptoKey> openSessionKey() {
+		Triple<Boolean, String, CryptoKey> privateKeyTriple = getPrivateKey();
+		if(!privateKeyTriple.first) {
+			return Triple.create(false, "failed to get dependency variable '"+Name.PRIVATE_KEY_DIR+"': "+privateKeyTriple.second, null);
+		}
+		Triple<Boolean, String, CryptoDriver> cryptoDriverTriple = getCryptoDriver();
+		if(!cryptoDriverTriple.first) {
+			return Triple.create(false, "failed to get dependency variable '"+Name.CRYPTO_DRIVER+"': "+cryptoDriverTriple.second, null);
+		}
+		long idleTimeout = TimeUnit.MINUTES.toMillis(getVariable(Name.SESSION_TIMEOUT, Integer.class).third);
+		Result<CryptoKey> sessionKeyResult = cryptoDriverTriple.third.openSession(privateKeyTriple.third, idleTimeout);
+		if(!sessionKeyResult.isSuccess()) {
+			return Triple.create(false, "failed to open session with private key: "+sessionKeyResult.msg, null);
+		}
+		return Triple.create(true, "success", sessionKeyResult.result);
+	}
+	
 	public Triple<Boolean, String, StoreDriver> getStoreDriver() {
 		if(storeDriver != null) {
 			if(!storeDriver.isChanged) { return Triple.create(true, "success", storeDriver.value); }
@@ -443,7 +582,7 @@ public final class Environment {
 			return Triple.create(false, "failed to get dependency variable '"+Name.CRYPTO_DRIVER+"': "+cryptoDriverTriple.second, null);
 		}
 		CryptoDriver cryptoDriver = cryptoDriverTriple.third;
-		Triple<Boolean, String, CryptoKey> decryptionKeyTriple = getDecryptionKey();
+		Triple<Boolean, String, CryptoKey> decryptionKeyTriple = getPrivateKey();
 		if(!decryptionKeyTriple.first) {
 			return Triple.create(false, "failed to get dependency variable '"+Name.PRIVATE_KEY_DIR+"': "+decryptionKeyTriple.second, null);
 		}
@@ -454,9 +593,16 @@ public final class Environment {
 		}
 		boolean isDataLock = isDataLockTriple.third;
 		try {
-			// StoreDriver constructor convention
-			Constructor<StoreDriver> constructor = clazz.getConstructor(String.class, CryptoDriver.class, int.class, boolean.class);
-			StoreDriver driver = constructor.newInstance(dataDir, cryptoDriver, secretBlockSize, isDataLock);
+			// StoreDriver constructor convention, prefer the one with options
+			StoreDriver driver = null;
+			try {
+				Constructor<StoreDriver> constructor = clazz.getConstructor(
+						String.class, CryptoDriver.class, int.class, boolean.class, Properties.class);
+				driver = constructor.newInstance(dataDir, cryptoDriver, secretBlockSize, isDataLock, storeOptions());
+			}catch(NoSuchMethodException e) {
+				Constructor<StoreDriver> constructor = clazz.getConstructor(String.class, CryptoDriver.class, int.class, boolean.class);
+				driver = constructor.newInstance(dataDir, cryptoDriver, secretBlockSize, isDataLock);
+			}
 			if(storeDriver == null) {
 				storeDriver = new Holder<StoreDriver>(driver);
 			}else {
@@ -469,6 +615,15 @@ public final class Environment {
 		}
 	}
 	
+	/** all the set variables as store driver options **/
+	private Properties storeOptions() {
+		Properties options = new Properties();
+		for(Entry<Name, Pair<String, Object>> entry : variableMap.entrySet()) {
+			options.setProperty(entry.getKey().name, entry.getValue().first);
+		}
+		return options;
+	}
+	
 	private void closeQuietly(StoreDriver driver) {
 		if(driver != null) {
 			boolean isSuccess = true;
@@ -0,0 +1,179 @@
+package com.lee.password.cmdline.commands;
+
+import static com.lee.password.cmdline.Environment.current;
+import static com.lee.password.cmdline.Environment.line;
+import static com.lee.password.cmdline.Environment.prompt;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import com.lee.password.cmdline.Command;
+import com.lee.password.keeper.api.Entity;
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.util.CsvReader;
+import com.lee.password.util.JsonReader;
+import com.lee.password.util.Pair;
+import com.lee.password.util.Triple;
+
+public class ImportCommand implements Command {
+
+	public static final String CSV = "csv";
+	public static final String JSON = "json";
+
+	private static final String KEYWORD = "keyword";
+	private static final String URL = "url";
+	private static final String USERNAME = "username";
+	private static final String PASSWORD = "password";
+	private static final String MEMO = "memo";
+
+	private final File file;
+	private final String format;
+
+	public ImportCommand(File file, String format) {
+		this.file = file;
+		this.format = format != null ? format : (file.getName().toLowerCase().endsWith("." + JSON) ? JSON : CSV);
+	}
+
+	@Override
+	public void execute() {
+		Triple<Boolean, String, StoreDriver> storeDriverResult = current().getStoreDriver();
+		if(!storeDriverResult.first) {
+			line(storeDriverResult.second);
+		}else {
+			Triple<Boolean, String, CryptoKey> encryptionKeyResult = current().getEncryptionKey();
+			if(!encryptionKeyResult.first) {
+				line(encryptionKeyResult.second);
+			}else {
+				importFrom(storeDriverResult.third, encryptionKeyResult.third);
+			}
+		}
+		prompt();
+	}
+
+	private void importFrom(StoreDriver storeDriver, CryptoKey encryptionKey) {
+		Reader in = null;
+		try {
+			in = new BufferedReader(new InputStreamReader(new FileInputStream(file), Entity.CHARSET));
+			RecordReader reader = JSON.equals(format) ? jsonReader(new JsonReader(in)) : csvReader(new CsvReader(in));
+			long start = System.currentTimeMillis();
+			Result<Integer> importResult = storeDriver.importEntries(new EntryIterator(reader), encryptionKey);
+			if(!importResult.isSuccess()) {
+				line("failed to import "+file+": "+importResult.msg);
+			}else {
+				line(String.format("success to import %d passwords in %d ms", importResult.result,
+						System.currentTimeMillis() - start));
+			}
+		}catch(Exception e) {
+			line("failed to import "+file+": "+e.getMessage());
+		}finally {
+			if(in != null) {
+				try { in.close(); }catch(IOException ignore) {}
+			}
+		}
+	}
+
+	/** the records of import file by field name, which are read one by one **/
+	private interface RecordReader {
+		/** return null if there is no more **/
+		Map<String, String> next() throws IOException;
+		int lineNumber();
+	}
+
+	private static RecordReader jsonReader(final JsonReader reader) {
+		return new RecordReader() {
+			@Override
+			public Map<String, String> next() throws IOException {
+				Map<String, String> fields = reader.next();
+				if(fields == null) { return null; }
+				Map<String, String> record = new HashMap<String, String>();
+				for(Map.Entry<String, String> field : fields.entrySet()) { record.put(fieldName(field.getKey()), field.getValue()); }
+				return record;
+			}
+			@Override
+			public int lineNumber() { return reader.lineNumber(); }
+		};
+	}
+
+	/** the first record of csv names the fields of the others **/
+	private static RecordReader csvReader(final CsvReader reader) throws IOException {
+		final List<String> header = reader.next();
+		if(header == null) { throw new IllegalArgumentException("header line of csv is absent"); }
+		return new RecordReader() {
+			@Override
+			public Map<String, String> next() throws IOException {
+				List<String> fields = reader.next();
+				if(fields == null) { return null; }
+				if(fields.size() > header.size()) {
+					throw new IllegalArgumentException("more fields than header at line "+reader.lineNumber());
+				}
+				Map<String, String> record = new HashMap<String, String>();
+				for(int i=0; i<fields.size(); i++) { record.put(fieldName(header.get(i)), fields.get(i)); }
+				return record;
+			}
+			@Override
+			public int lineNumber() { return reader.lineNumber(); }
+		};
+	}
+
+	/** the field names are matched case-insensitively regardless of the default locale **/
+	private static String fieldName(String name) { return name.trim().toLowerCase(Locale.ENGLISH); }
+
+	/** transform the records to entries lazily, so the import file is never loaded entirely **/
+	private static class EntryIterator implements Iterator<Pair<Website, Password>> {
+
+		private final RecordReader reader;
+		private Map<String, String> next;
+
+		EntryIterator(RecordReader reader) { this.reader = reader; }
+
+		@Override
+		public boolean hasNext() {
+			if(next == null) {
+				try {
+					next = reader.next();
+				}catch(IOException e) {
+					throw new IllegalStateException("failed to read at line "+reader.lineNumber()+", "+e.getMessage(), e);
+				}
+			}
+			return next != null;
+		}
+
+		@Override
+		public Pair<Website, Password> next() {
+			if(!hasNext()) { throw new NoSuchElementException(); }
+			Map<String, String> record = next;
+			next = null;
+			Website website = new Website(required(record, KEYWORD), record.get(URL));
+			Password password = new Password(0, required(record, USERNAME));
+			password.password(required(record, PASSWORD));
+			String memo = record.get(MEMO);
+			if(memo != null && !memo.isEmpty()) { password.keyValuePairs(memo); }
+			return Pair.create(website, password);
+		}
+
+		private String required(Map<String, String> record, String name) {
+			String value = record.get(name);
+			if(value == null || value.isEmpty()) {
+				throw new IllegalArgumentException("field '"+name+"' is absent at line "+reader.lineNumber());
+			}
+			return value;
+		}
+
+		@Override
+		public void remove() { throw new UnsupportedOperationException(); }
+	}
+}
@@ -5,18 +5,17 @@ import static com.lee.password.cmdline.Environment.line;
 import static com.lee.password.cmdline.Environment.newLine;
 import static com.lee.password.cmdline.Environment.prompt;
 
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
-
 import com.lee.password.cmdline.Cmd;
 import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.store.Page;
 import com.lee.password.keeper.api.store.Password.Header;
 import com.lee.password.keeper.api.store.StoreDriver;
 import com.lee.password.util.Triple;
 
 public class ListPwdCommand extends BasePwdCommand {
 
+	private static final int PAGE_SIZE = 100;
+
 	private final String username;
 	
 	public ListPwdCommand(String websiteKeyword, Long websiteId, String username) {
@@ -57,12 +56,10 @@ public class ListPwdCommand extends BasePwdCommand {
 								}
 							}
 						}else {
-							Result<List<Header>> pwdListResult = storeDriver.listPassword(websiteId);
-							printPasswordList(storeDriver, pwdListResult);
+							printPasswordPages(storeDriver, websiteId, null, storeDriver.passwordCount(websiteId));
 						}
 					}else {
-						Result<List<Header>> pwdListResult = storeDriver.listPassword(username);
-						printPasswordList(storeDriver, pwdListResult);
+						printPasswordPages(storeDriver, null, username, storeDriver.passwordCount(username));
 					}
 				}
 			}
@@ -70,28 +67,38 @@ public class ListPwdCommand extends BasePwdCommand {
 		prompt();
 	}
 	
-	private void printPasswordList(StoreDriver storeDriver, Result<List<Header>> pwdListResult) {
-		if(!pwdListResult.isSuccess()) {
-			line("failed to list password: "+pwdListResult.msg);
+	/** print the passwords of {@code websiteId} or else {@code username} page by page **/
+	private void printPasswordPages(StoreDriver storeDriver, Long websiteId, String username, Result<Integer> countResult) {
+		if(!countResult.isSuccess()) {
+			line("failed to list password: "+countResult.msg);
+		}else if(countResult.result == 0) {
+			line("there are no passwords");
 		}else {
-			List<Header> pwdList = pwdListResult.result;
-			int size = pwdList.size();
-			if(size == 0) {
-				line("there are no passwords");
-			}else {
-				line("there are " + size + " passwords:");
-				Map<Long, String> idKeywordMap = new HashMap<Long, String>(size);
-				for(Header pwd : pwdList) {
-					String keyword = idKeywordMap.get(pwd.websiteId());
+			line("there are " + countResult.result + " passwords:");
+			String websiteKeyword = null;
+			String token = null;
+			boolean isFirst = true;
+			do {
+				Result<Page<Header>> pageResult = websiteId != null ?
+						storeDriver.listPassword(websiteId, token, PAGE_SIZE) : storeDriver.listPassword(username, token, PAGE_SIZE);
+				if(!pageResult.isSuccess()) {
+					line("failed to list password: "+pageResult.msg);
+					break;
+				}
+				for(Header pwd : pageResult.result.items()) {
+					String keyword = websiteKeyword;
 					if(keyword == null) {
 						Triple<Boolean, String, String> keywordTriple = mapToWebsiteKeyword(storeDriver, pwd.websiteId());
 						keyword = keywordTriple.first ? keywordTriple.third : keywordTriple.second;	// error info
-						idKeywordMap.put(pwd.websiteId(), keyword);
+						// the passwords of a username are all in different websites
+						if(websiteId != null) { websiteKeyword = keyword; }
 					}
+					if(!isFirst) { newLine(); }
 					printPassword(pwd, keyword);
-					if(--size > 0) { newLine(); }
+					isFirst = false;
 				}
-			}
+				token = pageResult.result.nextToken();
+			}while(token != null);
 		}
 	}
 }
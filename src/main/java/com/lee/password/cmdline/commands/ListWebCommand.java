@@ -5,15 +5,16 @@ import static com.lee.password.cmdline.Environment.line;
 import static com.lee.password.cmdline.Environment.newLine;
 import static com.lee.password.cmdline.Environment.prompt;
 
-import java.util.List;
-
 import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.store.Page;
 import com.lee.password.keeper.api.store.StoreDriver;
 import com.lee.password.keeper.api.store.Website;
 import com.lee.password.util.Triple;
 
 public class ListWebCommand extends BaseWebCommand {
 
+	private static final int PAGE_SIZE = 100;
+
 	@Override
 	public void execute() {
 		Triple<Boolean, String, StoreDriver> result = current().getStoreDriver();
@@ -21,21 +22,29 @@ public class ListWebCommand extends BaseWebCommand {
 			line(result.second);
 		}else {
 			StoreDriver storeDriver = result.third;
-			Result<List<Website>> listResult = storeDriver.listWebsite();
-			if(!listResult.isSuccess()) {
-				line("failed to list website: "+listResult.msg);
+			Result<Integer> countResult = storeDriver.websiteCount();
+			if(!countResult.isSuccess()) {
+				line("failed to list website: "+countResult.msg);
+			}else if(countResult.result == 0) {
+				line("there are no webistes:");
 			}else {
-				List<Website> websiteList = listResult.result;
-				int size = websiteList.size();
-				if(size == 0) {
-					line("there are no webistes:");
-				}else {
-					line("there are " + size + " webistes:");
-					for(Website web : websiteList) {
+				line("there are " + countResult.result + " webistes:");
+				// print page by page, so only one page of websites is held at a time
+				String token = null;
+				boolean isFirst = true;
+				do {
+					Result<Page<Website>> pageResult = storeDriver.listWebsite(token, PAGE_SIZE);
+					if(!pageResult.isSuccess()) {
+						line("failed to list website: "+pageResult.msg);
+						break;
+					}
+					for(Website web : pageResult.result.items()) {
+						if(!isFirst) { newLine(); }
 						printWebsite(web);
-						if(--size > 0) { newLine(); }
+						isFirst = false;
 					}
-				}
+					token = pageResult.result.nextToken();
+				}while(token != null);
 			}
 		}
 		prompt();
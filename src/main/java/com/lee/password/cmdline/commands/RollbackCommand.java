@@ -0,0 +1,46 @@
+package com.lee.password.cmdline.commands;
+
+import static com.lee.password.cmdline.Environment.current;
+import static com.lee.password.cmdline.Environment.format;
+import static com.lee.password.cmdline.Environment.line;
+import static com.lee.password.cmdline.Environment.prompt;
+
+import com.lee.password.cmdline.Command;
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.impl.store.BinaryStoreDriver;
+import com.lee.password.keeper.impl.store.ConcurrentStoreDriver;
+import com.lee.password.util.Triple;
+
+public class RollbackCommand implements Command {
+
+	private final long timestamp;
+
+	public RollbackCommand(long timestamp) { this.timestamp = timestamp; }
+
+	@Override
+	public void execute() {
+		Triple<Boolean, String, StoreDriver> result = current().getStoreDriver();
+		if(!result.first) {
+			line(result.second);
+		}else {
+			StoreDriver storeDriver = result.third;
+			Result<Integer> rollbackResult = null;
+			if(storeDriver instanceof BinaryStoreDriver) {
+				rollbackResult = ((BinaryStoreDriver) storeDriver).rollbackTo(timestamp);
+			}else if(storeDriver instanceof ConcurrentStoreDriver) {
+				rollbackResult = ((ConcurrentStoreDriver) storeDriver).rollbackTo(timestamp);
+			}
+			if(rollbackResult == null) {
+				line("rollback is not supported by "+storeDriver.getClass().getName());
+			}else if(!rollbackResult.isSuccess()) {
+				line("failed to rollback: "+rollbackResult.msg);
+			}else {
+				line(String.format("success to revert %d changes committed after %s, commit to keep them",
+						rollbackResult.result, format(timestamp)));
+			}
+		}
+		prompt();
+	}
+
+}
@@ -0,0 +1,56 @@
+package com.lee.password.cmdline.commands;
+
+import static com.lee.password.cmdline.Environment.current;
+import static com.lee.password.cmdline.Environment.line;
+import static com.lee.password.cmdline.Environment.newLine;
+import static com.lee.password.cmdline.Environment.prompt;
+
+import java.util.List;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.util.Triple;
+
+public class SearchWebCommand extends BaseWebCommand {
+
+	private final String keyword;
+	private final Integer maxDistance;
+	private final Integer limit;
+
+	/** search by keyword prefix if {@code maxDistance} is null, otherwise by edit distance **/
+	public SearchWebCommand(String keyword, Integer maxDistance, Integer limit) {
+		this.keyword = keyword;
+		this.maxDistance = maxDistance;
+		this.limit = limit;
+	}
+
+	@Override
+	public void execute() {
+		Triple<Boolean, String, StoreDriver> result = current().getStoreDriver();
+		if(!result.first) {
+			line(result.second);
+		}else {
+			StoreDriver storeDriver = result.third;
+			int max = limit == null ? 0 : limit;
+			Result<List<Website>> searchResult = maxDistance == null ?
+					storeDriver.searchWebsites(keyword, max) : storeDriver.fuzzySearchWebsites(keyword, maxDistance, max);
+			if(!searchResult.isSuccess()) {
+				line("failed to search website: "+searchResult.msg);
+			}else {
+				List<Website> websiteList = searchResult.result;
+				int size = websiteList.size();
+				if(size == 0) {
+					line("there are no matched webistes:");
+				}else {
+					line("there are " + size + " matched webistes:");
+					for(Website web : websiteList) {
+						printWebsite(web);
+						if(--size > 0) { newLine(); }
+					}
+				}
+			}
+		}
+		prompt();
+	}
+}
@@ -0,0 +1,47 @@
+package com.lee.password.cmdline.commands;
+
+import static com.lee.password.cmdline.Environment.current;
+import static com.lee.password.cmdline.Environment.indent;
+import static com.lee.password.cmdline.Environment.line;
+import static com.lee.password.cmdline.Environment.prompt;
+
+import java.util.List;
+
+import com.lee.password.cmdline.Command;
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.impl.store.BinaryStoreDriver;
+import com.lee.password.keeper.impl.store.ConcurrentStoreDriver;
+import com.lee.password.util.Triple;
+
+public class VerifyCommand implements Command {
+
+	@Override
+	public void execute() {
+		Triple<Boolean, String, StoreDriver> result = current().getStoreDriver();
+		if(!result.first) {
+			line(result.second);
+		}else {
+			StoreDriver storeDriver = result.third;
+			Result<List<Long>> verifyResult = null;
+			if(storeDriver instanceof BinaryStoreDriver) {
+				verifyResult = ((BinaryStoreDriver) storeDriver).verify();
+			}else if(storeDriver instanceof ConcurrentStoreDriver) {
+				verifyResult = ((ConcurrentStoreDriver) storeDriver).verify();
+			}
+			if(verifyResult == null) {
+				line("verify is not supported by "+storeDriver.getClass().getName());
+			}else if(!verifyResult.isSuccess()) {
+				line("failed to verify store file: "+verifyResult.msg);
+				List<Long> corrupted = verifyResult.result;
+				if(corrupted != null) {
+					for(Long position : corrupted) { indent("corrupted block at position "+position); }
+				}
+			}else {
+				line("success to verify store file: "+verifyResult.msg);
+			}
+		}
+		prompt();
+	}
+
+}
@@ -20,8 +20,21 @@ public interface CryptoDriver {
 	
 	Result<byte[]> encrypt(byte[] data, CryptoKey key);
 	
+	/** decrypt <code>secret</code> with <code>key</code>, it may be called by multiple threads concurrently **/
 	Result<byte[]> decrypt(byte[] secret, CryptoKey key);
 	
+	/**
+	 * open a session with {@code privateKey}: the vault key saved besides the private key file
+	 * (created at first) is decrypted only once, and the returned {@link CryptoKey.KeyType#SESSION} key
+	 * encrypts/decrypts data symmetrically, it also decrypts the secrets encrypted by public key.<br/>
+	 * the session expires after being idle for {@code idleTimeout} milliseconds, 0 means never;
+	 * opening a live session again returns it without any decryption.
+	 */
+	Result<CryptoKey> openSession(CryptoKey privateKey, long idleTimeout);
+	
+	/** close the session of {@code sessionKey} and forget its vault key **/
+	void closeSession(CryptoKey sessionKey);
+	
 	/** close this driver and releases any system resources associated with the driver. **/
 	void close();
 }
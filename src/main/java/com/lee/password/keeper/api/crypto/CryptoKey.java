@@ -7,6 +7,8 @@ public class CryptoKey implements Entity {
 	public static enum KeyType {
 		PUBLIC(1),
 		PRIVATE(2),
+		/** a symmetric key opened by private key, for both encryption and decryption **/
+		SESSION(3),
 		;
 		public final byte code;
 		private KeyType(int code) { this.code = (byte) code; }
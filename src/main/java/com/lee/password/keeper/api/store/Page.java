@@ -0,0 +1,23 @@
+package com.lee.password.keeper.api.store;
+
+import java.util.List;
+
+/** a page of listed entries, with a continuation token to request the next page **/
+public class Page<T> {
+
+	private final List<T> items;
+
+	private final String nextToken;
+
+	public Page(List<T> items, String nextToken) {
+		this.items = items;
+		this.nextToken = nextToken;
+	}
+
+	public List<T> items() { return items; }
+
+	/** the token to request the next page, null if this is the last page **/
+	public String nextToken() { return nextToken; }
+
+	public boolean hasNext() { return nextToken != null; }
+}
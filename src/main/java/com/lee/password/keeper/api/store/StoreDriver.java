@@ -1,10 +1,12 @@
 package com.lee.password.keeper.api.store;
 
+import java.util.Iterator;
 import java.util.List;
 
 import com.lee.password.keeper.api.Entity;
 import com.lee.password.keeper.api.Result;
 import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.util.Pair;
 
 /**
  * Each implementation of {@link StoreDriver} must provides a special constructor
@@ -16,6 +18,12 @@ import com.lee.password.keeper.api.crypto.CryptoKey;
  *   secretBlockSize -- the bit size of secret block for asymmetric encryption;
  *   isStoreFileLock -- whether the data store file is locked or not
  * </pre>
+ * An implementation may provides an additional constructor with a trailing options argument: <pre>
+ * public xxxStoreDriver(String dataDir, CryptoDriver cryptoDriver, int secretBlockSize, boolean isStoreFileLock,
+ *                       {@link java.util.Properties Properties} options)
+ *   options -- implementation specific options keyed by environment variable name, never null;
+ * </pre>
+ * which is preferred to the former if both exist.
  */
 public interface StoreDriver {
 	
@@ -34,7 +42,25 @@ public interface StoreDriver {
 	
 	/** list all website entry **/ 
 	Result<List<Website>> listWebsite();
-	
+
+	/**
+	 * list at most <code>pageSize</code> website entries in <code>website id</code> order,
+	 * starting after the page which returned <code>token</code>, or from the first entry if it is null.
+	 */
+	Result<Page<Website>> listWebsite(String token, int pageSize);
+
+	/**
+	 * search at most <code>limit</code> websites whose keyword starts with <code>prefix</code>
+	 * ignoring case, in keyword order. all of them if <code>limit</code> is non-positive.
+	 */
+	Result<List<Website>> searchWebsites(String prefix, int limit);
+
+	/**
+	 * search at most <code>limit</code> websites whose keyword is within <code>maxDistance</code>
+	 * edits of <code>keyword</code> ignoring case, nearest first. all of them if <code>limit</code> is non-positive.
+	 */
+	Result<List<Website>> fuzzySearchWebsites(String keyword, int maxDistance, int limit);
+
 	Result<Password.Header> insertPassword(Password entry, CryptoKey encryptionKey);
 	
 	Result<Password.Header> deletePassword(Password.Header header);
@@ -43,6 +69,18 @@ public interface StoreDriver {
 	
 	Result<Password> selectPassword(Password.Header header, CryptoKey decryptionKey);
 	
+	/**
+	 * select and decrypt all password entries by <code>website id</code>,
+	 * the implementation may decrypt them concurrently.
+	 */
+	Result<List<Password>> selectPasswords(long websiteId, CryptoKey decryptionKey);
+	
+	/**
+	 * select and decrypt all password entries by <code>username</code>,
+	 * the implementation may decrypt them concurrently.
+	 */
+	Result<List<Password>> selectPasswords(String username, CryptoKey decryptionKey);
+	
 	Result<Integer> passwordCount();
 	
 	Result<Integer> passwordCount(long websiteId);
@@ -64,6 +102,27 @@ public interface StoreDriver {
 	Result<List<Password.Header>> listPassword(String username);
 	
 	Result<Password.Header> listPassword(long websiteId, String username);
+
+	/**
+	 * list a page of password entry with only <code>website</code> and <code>username</code>
+	 * by <code>website id</code> in <code>username</code> order, see {@link #listWebsite(String, int)} for paging.
+	 */
+	Result<Page<Password.Header>> listPassword(long websiteId, String token, int pageSize);
+
+	/**
+	 * list a page of password entry with only <code>website</code> and <code>username</code>
+	 * by <code>username</code> in <code>website id</code> order, see {@link #listWebsite(String, int)} for paging.
+	 */
+	Result<Page<Password.Header>> listPassword(String username, String token, int pageSize);
+
+	/**
+	 * import password entries in bulk and commit them at once, each entry is paired with its <code>website</code>
+	 * looked up by <code>keyword</code>, which is inserted if absent, and the <code>website id</code> of entry is ignored.
+	 * <code>entries</code> are consumed in a streaming fashion and may throw runtime exception for malformed input,
+	 * then nothing is imported. it fails if there is any change to commit, and the imported can't be undone.
+	 * the implementation may encrypt them concurrently. return the number of imported password entries.
+	 */
+	Result<Integer> importEntries(Iterator<Pair<Website, Password>> entries, CryptoKey encryptionKey);
 	
 	Result<Integer> canUndoTimes();
 	
@@ -0,0 +1,178 @@
+package com.lee.password.keeper.impl.crypto;
+
+import java.nio.ByteBuffer;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.Result.Code;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoException;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.crypto.CryptoKey.KeyType;
+import com.lee.password.keeper.impl.crypto.hybrid.DataKey;
+import com.lee.password.keeper.impl.crypto.hybrid.HybridConstants;
+import com.lee.password.keeper.impl.crypto.hybrid.HybridCryptor;
+import com.lee.password.keeper.impl.crypto.rsa.RSACryptor;
+import com.lee.password.keeper.impl.crypto.rsa.RSAKeyCache;
+import com.lee.password.keeper.impl.crypto.session.SessionVault;
+
+/**
+ * A crypto driver encrypts data by AES with a data key, and only the data key is encrypted by RSA.
+ * one data key is generated per public key for the lifetime of the driver, and a wrapped data key
+ * is decrypted by RSA only once, so most of encryptions/decryptions cost no RSA operation,
+ * and the data size is no longer limited by the RSA key size.
+ * the key files are the same as {@link RSACryptoDriver}, but the max block sizes of the keys differ.
+ */
+public class HybridCryptoDriver implements CryptoDriver {
+
+	private final RSACryptoDriver rsaDriver = new RSACryptoDriver();
+	private final RSAKeyCache keyCache = new RSAKeyCache();
+	private final SessionVault sessions = new SessionVault(keyCache);
+	private final SecureRandom random = new SecureRandom();
+
+	/** the data key of each public key to encrypt with **/
+	private final ConcurrentMap<PublicKey, DataKey> encryptKeys = new ConcurrentHashMap<PublicKey, DataKey>();
+	/** the unwrapped data keys by their wrapped bytes **/
+	private final ConcurrentMap<ByteBuffer, DataKey> decryptKeys = new ConcurrentHashMap<ByteBuffer, DataKey>();
+
+	private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>() {
+		@Override
+		protected Cipher initialValue() { return HybridCryptor.newCipher(); }
+	};
+	private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+		@Override
+		protected Mac initialValue() { return HybridCryptor.newMac(); }
+	};
+
+	private boolean isClosed;
+
+	@Override
+	public Result<CryptoKey[]> generateKeyPair(String destDirectory, int keySize) {
+		Result<CryptoKey[]> result = rsaDriver.generateKeyPair(destDirectory, keySize);
+		if(!result.isSuccess()) { return result; }
+		CryptoKey[] resultKey = new CryptoKey[] { toHybridKey(result.result[0]), toHybridKey(result.result[1]) };
+		return new Result<CryptoKey[]>(Code.SUCCESS, "success", resultKey);
+	}
+
+	@Override
+	public Result<CryptoKey> loadPublicKey(String destDirectory) {
+		Result<CryptoKey> result = rsaDriver.loadPublicKey(destDirectory);
+		if(!result.isSuccess()) { return result; }
+		return new Result<CryptoKey>(Code.SUCCESS, "success", toHybridKey(result.result));
+	}
+
+	@Override
+	public Result<CryptoKey> loadPrivateKey(String destDirectory) {
+		Result<CryptoKey> result = rsaDriver.loadPrivateKey(destDirectory);
+		if(!result.isSuccess()) { return result; }
+		return new Result<CryptoKey>(Code.SUCCESS, "success", toHybridKey(result.result));
+	}
+
+	/** the RSA key files record the max block sizes of RSA encryption/decryption **/
+	private static CryptoKey toHybridKey(CryptoKey rsaKey) {
+		if(rsaKey.keyType() == KeyType.PUBLIC) {
+			return new CryptoKey(KeyType.PUBLIC, HybridConstants.MAX_DATA_SIZE, rsaKey.path(), rsaKey.encoded());
+		}
+		int maxSecretBlockSize = HybridCryptor.maxSecretBlockSize(rsaKey.maxBlockSize());
+		return new CryptoKey(KeyType.PRIVATE, maxSecretBlockSize, rsaKey.path(), rsaKey.encoded());
+	}
+
+	@Override
+	public Result<byte[]> encrypt(byte[] data, CryptoKey key) {
+		try {
+			if(KeyType.SESSION == key.keyType()) {
+				return new Result<byte[]>(Code.SUCCESS, "success", sessions.encrypt(data, key));
+			}
+			if(KeyType.PUBLIC != key.keyType()) {
+				return new Result<byte[]>(Code.FAIL, "incorrect key type fro encryption: "+key.type());
+			}
+			if(data.length > key.maxBlockSize()) {
+				return new Result<byte[]>(Code.FAIL, String.format("data must be no longer than %d bytes",  key.maxBlockSize()));
+			}
+			byte[] iv = new byte[HybridConstants.IV_SIZE];
+			random.nextBytes(iv);
+			byte[] secret = HybridCryptor.encrypt(data, encryptKey(key), iv, ciphers.get(), macs.get());
+			return new Result<byte[]>(Code.SUCCESS, "success", secret);
+		}catch(Exception e) {
+			return new Result<byte[]>(Code.FAIL, e.getMessage());
+		}
+	}
+
+	private DataKey encryptKey(CryptoKey key) {
+		PublicKey publicKey = keyCache.publicKey(key.encoded());
+		DataKey dataKey = encryptKeys.get(publicKey);
+		if(dataKey == null) {
+			byte[] raw = new byte[DataKey.rawSize()];
+			random.nextBytes(raw);
+			byte[] wrapped = RSACryptor.encrypt(raw, publicKey, keyCache.cipher());
+			dataKey = new DataKey(raw, wrapped);
+			DataKey existed = encryptKeys.putIfAbsent(publicKey, dataKey);
+			if(existed != null) { dataKey = existed; }
+		}
+		return dataKey;
+	}
+
+	@Override
+	public Result<byte[]> decrypt(byte[] secret, CryptoKey key) {
+		try {
+			if(KeyType.SESSION == key.keyType()) {
+				return new Result<byte[]>(Code.SUCCESS, "success", sessions.decrypt(secret, key, this));
+			}
+			if(KeyType.PRIVATE != key.keyType()) {
+				return new Result<byte[]>(Code.FAIL, "incorrect key type for decryption: "+key.type());
+			}
+			if(secret.length > key.maxBlockSize()) {
+				return new Result<byte[]>(Code.FAIL, String.format("secret must be no longer than %d bytes", key.maxBlockSize()));
+			}
+			byte[] data = HybridCryptor.decrypt(secret, decryptKey(secret, key), ciphers.get(), macs.get());
+			return new Result<byte[]>(Code.SUCCESS, "success", data);
+		}catch(Exception e) {
+			return new Result<byte[]>(Code.FAIL, e.getMessage());
+		}
+	}
+
+	private DataKey decryptKey(byte[] secret, CryptoKey key) {
+		byte[] wrapped = HybridCryptor.wrappedKey(secret);
+		ByteBuffer wrappedKey = ByteBuffer.wrap(wrapped);
+		DataKey dataKey = decryptKeys.get(wrappedKey);
+		if(dataKey == null) {
+			byte[] raw = RSACryptor.decrypt(wrapped, keyCache.privateKey(key.encoded()), keyCache.cipher());
+			if(raw.length != DataKey.rawSize()) {
+				throw new CryptoException(String.format("incorrect data key length %d", raw.length));
+			}
+			dataKey = new DataKey(raw, wrapped);
+			decryptKeys.putIfAbsent(wrappedKey, dataKey);
+		}
+		return dataKey;
+	}
+
+	@Override
+	public Result<CryptoKey> openSession(CryptoKey privateKey, long idleTimeout) {
+		try {
+			return new Result<CryptoKey>(Code.SUCCESS, "success", sessions.open(privateKey, idleTimeout));
+		}catch(Exception e) {
+			return new Result<CryptoKey>(Code.FAIL, e.getMessage());
+		}
+	}
+
+	@Override
+	public void closeSession(CryptoKey sessionKey) { sessions.close(sessionKey); }
+
+	@Override
+	public void close() {
+		if(!isClosed) {
+			sessions.clear();
+			encryptKeys.clear();
+			decryptKeys.clear();
+			keyCache.clear();
+			rsaDriver.close();
+			isClosed = true;
+		}
+	}
+}
@@ -11,6 +11,8 @@ import com.lee.password.keeper.api.crypto.CryptoDriver;
 import com.lee.password.keeper.api.crypto.CryptoKey;
 import com.lee.password.keeper.api.crypto.CryptoKey.KeyType;
 import com.lee.password.keeper.impl.crypto.rsa.RSACryptor;
+import com.lee.password.keeper.impl.crypto.rsa.RSAKeyCache;
+import com.lee.password.keeper.impl.crypto.session.SessionVault;
 import com.lee.password.keeper.impl.crypto.rsa.RSAKeyGenerator;
 import com.lee.password.keeper.impl.crypto.rsa.RSAKeyReader;
 import com.lee.password.keeper.impl.crypto.rsa.RSAKeyWriter;
@@ -19,6 +21,9 @@ public class RSACryptoDriver implements CryptoDriver {
 
 	private boolean isClosed;
 	
+	private final RSAKeyCache keyCache = new RSAKeyCache();
+	private final SessionVault sessions = new SessionVault(keyCache);
+	
 	@Override
 	public Result<CryptoKey[]> generateKeyPair(String destDirectory, int keySize) {
 		File destDir = null;
@@ -87,13 +92,16 @@ public class RSACryptoDriver implements CryptoDriver {
 	@Override
 	public Result<byte[]> encrypt(byte[] data, CryptoKey key) {
 		try {
+			if(KeyType.SESSION == key.keyType()) {
+				return new Result<byte[]>(Code.SUCCESS, "success", sessions.encrypt(data, key));
+			}
 			if(KeyType.PUBLIC != key.keyType()) {
 				return new Result<byte[]>(Code.FAIL, "incorrect key type fro encryption: "+key.type());
 			}
 			if(data.length > key.maxBlockSize()) {
 				return new Result<byte[]>(Code.FAIL, String.format("data must be no longer than %d bytes",  key.maxBlockSize()));
 			}
-			byte[] secret = RSACryptor.encrypt(data, key.encoded());
+			byte[] secret = RSACryptor.encrypt(data, keyCache.publicKey(key.encoded()), keyCache.cipher());
 			return new Result<byte[]>(Code.SUCCESS, "success", secret);
 		}catch(Exception e) {
 			return new Result<byte[]>(Code.FAIL, e.getMessage());
@@ -103,22 +111,41 @@ public class RSACryptoDriver implements CryptoDriver {
 	@Override
 	public Result<byte[]> decrypt(byte[] secret, CryptoKey key) {
 		try {
+			if(KeyType.SESSION == key.keyType()) {
+				return new Result<byte[]>(Code.SUCCESS, "success", sessions.decrypt(secret, key, this));
+			}
 			if(KeyType.PRIVATE != key.keyType()) {
 				return new Result<byte[]>(Code.FAIL, "incorrect key type for decryption: "+key.type());
 			}
 			if(secret.length > key.maxBlockSize()) {
 				return new Result<byte[]>(Code.FAIL, String.format("secret must be no longer than %d bytes", key.maxBlockSize()));
 			}
-			byte[] data = RSACryptor.decrypt(secret, key.encoded());
+			byte[] data = RSACryptor.decrypt(secret, keyCache.privateKey(key.encoded()), keyCache.cipher());
 			return new Result<byte[]>(Code.SUCCESS, "success", data);
 		}catch(Exception e) {
 			return new Result<byte[]>(Code.FAIL, e.getMessage());
 		}
 	}
 
+	@Override
+	public Result<CryptoKey> openSession(CryptoKey privateKey, long idleTimeout) {
+		try {
+			return new Result<CryptoKey>(Code.SUCCESS, "success", sessions.open(privateKey, idleTimeout));
+		}catch(Exception e) {
+			return new Result<CryptoKey>(Code.FAIL, e.getMessage());
+		}
+	}
+
+	@Override
+	public void closeSession(CryptoKey sessionKey) { sessions.close(sessionKey); }
+
 	@Override
 	public void close() {
-		if(!isClosed) { isClosed = true; }	// do nothing
+		if(!isClosed) {
+			sessions.clear();
+			keyCache.clear();
+			isClosed = true;
+		}
 	}
 
 }
@@ -0,0 +1,26 @@
+package com.lee.password.keeper.impl.crypto.hybrid;
+
+import javax.crypto.spec.SecretKeySpec;
+
+/** the symmetric keys encrypting data and their bytes wrapped by RSA public key **/
+public class DataKey implements HybridConstants {
+
+	private final SecretKeySpec encryptKey;
+	private final SecretKeySpec macKey;
+	private final byte[] wrapped;
+	
+	/** {@code raw} is the encrypt key followed by the mac key **/
+	public DataKey(byte[] raw, byte[] wrapped) {
+		this.encryptKey = new SecretKeySpec(raw, 0, ENCRYPT_KEY_SIZE, DATA_KEY_ALGORITHM);
+		this.macKey = new SecretKeySpec(raw, ENCRYPT_KEY_SIZE, MAC_KEY_SIZE, MAC_ALGORITHM);
+		this.wrapped = wrapped;
+	}
+	
+	public static int rawSize() { return ENCRYPT_KEY_SIZE + MAC_KEY_SIZE; }
+	
+	public SecretKeySpec encryptKey() { return encryptKey; }
+	
+	public SecretKeySpec macKey() { return macKey; }
+	
+	public byte[] wrapped() { return wrapped; }
+}
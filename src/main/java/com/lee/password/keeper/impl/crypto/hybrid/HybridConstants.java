@@ -0,0 +1,28 @@
+package com.lee.password.keeper.impl.crypto.hybrid;
+
+public interface HybridConstants {
+
+	/** the first byte of secret denotes its layout **/
+	public static final byte VERSION = 1;
+	
+	public static final String DATA_KEY_ALGORITHM = "AES";
+	
+	public static final String TRANSFORMATION = "AES/CTR/NoPadding";
+	
+	public static final String MAC_ALGORITHM = "HmacSHA256";
+	
+	/** 128 bits AES key is available without unlimited strength policy **/
+	public static final int ENCRYPT_KEY_SIZE = 16;
+	
+	public static final int MAC_KEY_SIZE = 32;
+	
+	public static final int IV_SIZE = 16;
+	
+	/** truncated HMAC-SHA256 tag **/
+	public static final int MAC_SIZE = 16;
+	
+	public static final int WRAPPED_LEN_SIZE = 2;
+	
+	/** support max data size for encryption, independent of RSA key size **/
+	public static final int MAX_DATA_SIZE = 1024;
+}
@@ -0,0 +1,102 @@
+package com.lee.password.keeper.impl.crypto.hybrid;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.security.MessageDigest;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+
+import com.lee.password.keeper.api.crypto.CryptoException;
+
+/**
+ * Encrypt/decrypt data with a data key wrapped by RSA.
+ * <pre>
+ * secret layout:
+ *   version(1) + wrappedLen(2) + wrapped + iv(16) + cipher text + mac(16)
+ * the mac is computed over all the bytes ahead of it (encrypt-then-mac).
+ * </pre>
+ */
+public class HybridCryptor implements HybridConstants {
+	
+	public static byte[] encrypt(byte[] data, DataKey dataKey, byte[] iv, Cipher cipher, Mac mac) {
+		byte[] wrapped = dataKey.wrapped();
+		ByteBuffer buf = ByteBuffer.allocate(overhead(wrapped.length) + data.length).order(ByteOrder.BIG_ENDIAN);
+		buf.put(VERSION).putShort((short) wrapped.length).put(wrapped).put(iv);
+		try {
+			cipher.init(Cipher.ENCRYPT_MODE, dataKey.encryptKey(), new IvParameterSpec(iv));
+			int written = cipher.doFinal(data, 0, data.length, buf.array(), buf.position());
+			buf.position(buf.position() + written);
+			mac.init(dataKey.macKey());
+			mac.update(buf.array(), 0, buf.position());
+			buf.put(mac.doFinal(), 0, MAC_SIZE);
+			return buf.array();
+		}catch(Exception e) {
+			throw new CryptoException("failed to encrypt data with "+TRANSFORMATION, e);
+		}
+	}
+	
+	/** return the wrapped data key of {@code secret} **/
+	public static byte[] wrappedKey(byte[] secret) {
+		if(secret.length < 1 + WRAPPED_LEN_SIZE || secret[0] != VERSION) {
+			throw new CryptoException("unsupported secret layout");
+		}
+		int wrappedLength = ((secret[1] & 0xff) << 8) | (secret[2] & 0xff);
+		if(secret.length < overhead(wrappedLength)) {
+			throw new CryptoException(String.format("secret with %d bytes is too short", secret.length));
+		}
+		byte[] wrapped = new byte[wrappedLength];
+		System.arraycopy(secret, 1 + WRAPPED_LEN_SIZE, wrapped, 0, wrappedLength);
+		return wrapped;
+	}
+	
+	public static byte[] decrypt(byte[] secret, DataKey dataKey, Cipher cipher, Mac mac) {
+		int ivOffset = 1 + WRAPPED_LEN_SIZE + dataKey.wrapped().length;
+		int textOffset = ivOffset + IV_SIZE;
+		int macOffset = secret.length - MAC_SIZE;
+		try {
+			mac.init(dataKey.macKey());
+			mac.update(secret, 0, macOffset);
+			byte[] expected = new byte[MAC_SIZE];
+			System.arraycopy(mac.doFinal(), 0, expected, 0, MAC_SIZE);
+			byte[] actual = new byte[MAC_SIZE];
+			System.arraycopy(secret, macOffset, actual, 0, MAC_SIZE);
+			if(!MessageDigest.isEqual(expected, actual)) {
+				throw new CryptoException("secret is tampered or decrypted with wrong key");
+			}
+			cipher.init(Cipher.DECRYPT_MODE, dataKey.encryptKey(), new IvParameterSpec(secret, ivOffset, IV_SIZE));
+			return cipher.doFinal(secret, textOffset, macOffset - textOffset);
+		}catch(CryptoException e) {
+			throw e;
+		}catch(Exception e) {
+			throw new CryptoException("failed to decrypt secret with "+TRANSFORMATION, e);
+		}
+	}
+	
+	/** the bytes of secret except cipher text **/
+	public static int overhead(int wrappedLength) {
+		return 1 + WRAPPED_LEN_SIZE + wrappedLength + IV_SIZE + MAC_SIZE;
+	}
+	
+	/** compute the support max secret block size with RSA key of {@code rsaKeyBytes} **/
+	public static int maxSecretBlockSize(int rsaKeyBytes) {
+		return overhead(rsaKeyBytes) + MAX_DATA_SIZE;
+	}
+	
+	public static Cipher newCipher() {
+		try {
+			return Cipher.getInstance(TRANSFORMATION);
+		}catch(Exception e) {
+			throw new CryptoException("failed to get cipher instance of "+TRANSFORMATION, e);
+		}
+	}
+	
+	public static Mac newMac() {
+		try {
+			return Mac.getInstance(MAC_ALGORITHM);
+		}catch(Exception e) {
+			throw new CryptoException("failed to get mac instance of "+MAC_ALGORITHM, e);
+		}
+	}
+}
@@ -3,7 +3,9 @@ package com.lee.password.keeper.impl.crypto.rsa;
 import java.security.KeyFactory;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.interfaces.RSAPrivateCrtKey;
 import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAPublicKeySpec;
 import java.security.spec.X509EncodedKeySpec;
 
 import javax.crypto.Cipher;
@@ -13,11 +15,11 @@ import com.lee.password.keeper.api.crypto.CryptoException;
 public class RSACryptor implements RSAConstants {
 	
 	public static byte[] encrypt(byte[] data, byte[] publicKey) {
+		return encrypt(data, toPublicKey(publicKey), newCipher());
+	}
+	
+	public static byte[] encrypt(byte[] data, PublicKey key, Cipher cipher) {
 		try {
-			X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKey);
-			KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
-			PublicKey key = keyFactory.generatePublic(keySpec);
-			Cipher cipher = Cipher.getInstance(TRANSFORMATION);
 			cipher.init(Cipher.ENCRYPT_MODE, key);
 			return cipher.doFinal(data);
 		}catch(Exception e) {
@@ -26,11 +28,11 @@ public class RSACryptor implements RSAConstants {
 	}
 	
 	public static byte[] decrypt(byte[] secret, byte[] privateKey) {
+		return decrypt(secret, toPrivateKey(privateKey), newCipher());
+	}
+	
+	public static byte[] decrypt(byte[] secret, PrivateKey key, Cipher cipher) {
 		try {
-			PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKey);
-			KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
-			PrivateKey key = keyFactory.generatePrivate(keySpec);
-			Cipher cipher = Cipher.getInstance(TRANSFORMATION);
 			cipher.init(Cipher.DECRYPT_MODE, key);
 			return cipher.doFinal(secret);
 		}catch(Exception e) {
@@ -38,6 +40,51 @@ public class RSACryptor implements RSAConstants {
 		}
 	}
 	
+	/** parse the X.509 encoded public key **/
+	public static PublicKey toPublicKey(byte[] publicKey) {
+		try {
+			X509EncodedKeySpec keySpec = new X509EncodedKeySpec(publicKey);
+			KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+			return keyFactory.generatePublic(keySpec);
+		}catch(Exception e) {
+			throw new CryptoException("failed to parse "+PUBLIC_KEY_FORMAT+" encoded public key", e);
+		}
+	}
+	
+	/** parse the PKCS#8 encoded private key **/
+	public static PrivateKey toPrivateKey(byte[] privateKey) {
+		try {
+			PKCS8EncodedKeySpec keySpec = new PKCS8EncodedKeySpec(privateKey);
+			KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+			return keyFactory.generatePrivate(keySpec);
+		}catch(Exception e) {
+			throw new CryptoException("failed to parse "+PRIVATE_KEY_FORMAT+" encoded private key", e);
+		}
+	}
+	
+	/** derive the public key from the CRT parameters of {@code privateKey} **/
+	public static PublicKey publicKeyOf(PrivateKey privateKey) {
+		if(!(privateKey instanceof RSAPrivateCrtKey)) {
+			throw new CryptoException("can not derive public key from private key without CRT parameters");
+		}
+		RSAPrivateCrtKey crtKey = (RSAPrivateCrtKey) privateKey;
+		try {
+			RSAPublicKeySpec keySpec = new RSAPublicKeySpec(crtKey.getModulus(), crtKey.getPublicExponent());
+			KeyFactory keyFactory = KeyFactory.getInstance(ALGORITHM);
+			return keyFactory.generatePublic(keySpec);
+		}catch(Exception e) {
+			throw new CryptoException("failed to derive public key from private key", e);
+		}
+	}
+	
+	public static Cipher newCipher() {
+		try {
+			return Cipher.getInstance(TRANSFORMATION);
+		}catch(Exception e) {
+			throw new CryptoException("failed to get cipher instance of "+TRANSFORMATION, e);
+		}
+	}
+	
 	/** compute the support max data block size for public key encryption **/
 	public static int maxDataBlockSize(int keySize) {
 		return keySize / Byte.SIZE - PADDING_LENGTH;
@@ -0,0 +1,71 @@
+package com.lee.password.keeper.impl.crypto.rsa;
+
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Cipher;
+
+/**
+ * A cache of parsed keys by their encoded bytes and a cipher per thread,
+ * saves the key parsing and provider lookup of each encryption/decryption.
+ */
+public class RSAKeyCache {
+
+	private final ConcurrentMap<EncodedKey, PublicKey> publicKeys = new ConcurrentHashMap<EncodedKey, PublicKey>();
+	private final ConcurrentMap<EncodedKey, PrivateKey> privateKeys = new ConcurrentHashMap<EncodedKey, PrivateKey>();
+	
+	/** cipher is not thread safe, but can be initialized again with another key and mode **/
+	private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>() {
+		@Override
+		protected Cipher initialValue() { return RSACryptor.newCipher(); }
+	};
+	
+	public PublicKey publicKey(byte[] encoded) {
+		EncodedKey key = new EncodedKey(encoded);
+		PublicKey publicKey = publicKeys.get(key);
+		if(publicKey == null) {
+			publicKey = RSACryptor.toPublicKey(encoded);
+			publicKeys.putIfAbsent(key, publicKey);
+		}
+		return publicKey;
+	}
+	
+	public PrivateKey privateKey(byte[] encoded) {
+		EncodedKey key = new EncodedKey(encoded);
+		PrivateKey privateKey = privateKeys.get(key);
+		if(privateKey == null) {
+			privateKey = RSACryptor.toPrivateKey(encoded);
+			privateKeys.putIfAbsent(key, privateKey);
+		}
+		return privateKey;
+	}
+	
+	public Cipher cipher() { return ciphers.get(); }
+	
+	public void clear() {
+		publicKeys.clear();
+		privateKeys.clear();
+		ciphers.remove();
+	}
+	
+	private static final class EncodedKey {
+		private final byte[] encoded;
+		private final int hash;
+		EncodedKey(byte[] encoded) {
+			this.encoded = encoded;
+			this.hash = Arrays.hashCode(encoded);
+		}
+		
+		@Override public int hashCode() { return hash; }
+		@Override public boolean equals(Object obj) {
+			if(obj == this) { return true; }
+			if(!(obj instanceof EncodedKey)) { return false; }
+			EncodedKey another = (EncodedKey) obj;
+			return this.hash == another.hash
+				 && (this.encoded == another.encoded || Arrays.equals(this.encoded, another.encoded));
+		}
+	}
+}
@@ -0,0 +1,15 @@
+package com.lee.password.keeper.impl.crypto.session;
+
+public interface SessionConstants {
+
+	/** the first byte of secret encrypted by session key, distinct from the hybrid secret layout **/
+	public static final byte SESSION_VERSION = 2;
+	
+	/** the vault key file is saved besides the private key file, and must be kept along with it **/
+	public static final String VAULT_KEY_FILE = "vault.key.pk";
+	
+	public static final String VAULT_KEY_ALGORITHM = "AES+HmacSHA256";
+	
+	/** the vault key is encrypted by RSA public key **/
+	public static final String VAULT_KEY_FORMAT = "RSA-wrapped";
+}
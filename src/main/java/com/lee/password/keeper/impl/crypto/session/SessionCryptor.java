@@ -0,0 +1,63 @@
+package com.lee.password.keeper.impl.crypto.session;
+
+import java.security.MessageDigest;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.IvParameterSpec;
+
+import com.lee.password.keeper.api.crypto.CryptoException;
+import com.lee.password.keeper.impl.crypto.hybrid.DataKey;
+import com.lee.password.keeper.impl.crypto.hybrid.HybridConstants;
+
+/**
+ * Encrypt/decrypt data with the vault key of a session.
+ * <pre>
+ * secret layout:
+ *   version(1) + iv(16) + cipher text + mac(16)
+ * the mac is computed over all the bytes ahead of it (encrypt-then-mac).
+ * </pre>
+ */
+public class SessionCryptor implements HybridConstants, SessionConstants {
+	
+	/** the bytes of secret except cipher text **/
+	public static final int OVERHEAD = 1 + IV_SIZE + MAC_SIZE;
+	
+	public static byte[] encrypt(byte[] data, DataKey vaultKey, byte[] iv, Cipher cipher, Mac mac) {
+		byte[] secret = new byte[OVERHEAD + data.length];
+		secret[0] = SESSION_VERSION;
+		System.arraycopy(iv, 0, secret, 1, IV_SIZE);
+		try {
+			cipher.init(Cipher.ENCRYPT_MODE, vaultKey.encryptKey(), new IvParameterSpec(iv));
+			int macOffset = 1 + IV_SIZE + cipher.doFinal(data, 0, data.length, secret, 1 + IV_SIZE);
+			mac.init(vaultKey.macKey());
+			mac.update(secret, 0, macOffset);
+			System.arraycopy(mac.doFinal(), 0, secret, macOffset, MAC_SIZE);
+			return secret;
+		}catch(Exception e) {
+			throw new CryptoException("failed to encrypt data with "+TRANSFORMATION, e);
+		}
+	}
+	
+	/**
+	 * decrypt {@code secret} with the vault key,
+	 * return null if the secret is not encrypted by this vault key, e.g. encrypted by public key.
+	 */
+	public static byte[] decrypt(byte[] secret, DataKey vaultKey, Cipher cipher, Mac mac) {
+		if(secret.length < OVERHEAD || secret[0] != SESSION_VERSION) { return null; }
+		int macOffset = secret.length - MAC_SIZE;
+		try {
+			mac.init(vaultKey.macKey());
+			mac.update(secret, 0, macOffset);
+			byte[] expected = new byte[MAC_SIZE];
+			System.arraycopy(mac.doFinal(), 0, expected, 0, MAC_SIZE);
+			byte[] actual = new byte[MAC_SIZE];
+			System.arraycopy(secret, macOffset, actual, 0, MAC_SIZE);
+			if(!MessageDigest.isEqual(expected, actual)) { return null; }
+			cipher.init(Cipher.DECRYPT_MODE, vaultKey.encryptKey(), new IvParameterSpec(secret, 1, IV_SIZE));
+			return cipher.doFinal(secret, 1 + IV_SIZE, macOffset - 1 - IV_SIZE);
+		}catch(Exception e) {
+			throw new CryptoException("failed to decrypt secret with "+TRANSFORMATION, e);
+		}
+	}
+}
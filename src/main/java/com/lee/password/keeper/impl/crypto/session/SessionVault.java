@@ -0,0 +1,181 @@
+package com.lee.password.keeper.impl.crypto.session;
+
+import java.io.File;
+import java.security.PrivateKey;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.crypto.Cipher;
+import javax.crypto.Mac;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoException;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.crypto.CryptoKey.KeyType;
+import com.lee.password.keeper.impl.crypto.hybrid.DataKey;
+import com.lee.password.keeper.impl.crypto.hybrid.HybridConstants;
+import com.lee.password.keeper.impl.crypto.hybrid.HybridCryptor;
+import com.lee.password.keeper.impl.crypto.rsa.RSACryptor;
+import com.lee.password.keeper.impl.crypto.rsa.RSAKeyCache;
+
+/**
+ * Hold the vault keys of the open sessions in memory, one session per vault key file.
+ * a session is forgotten after being idle for its timeout, so the vault key is decrypted
+ * by RSA once per session instead of once per secret. the secrets encrypted in a session can
+ * not be decrypted without the vault key file, so it is key material as the private key is.
+ */
+public class SessionVault implements SessionConstants {
+
+	private final RSAKeyCache keyCache;
+	private final SecureRandom random = new SecureRandom();
+	private final ConcurrentMap<String, Session> sessions = new ConcurrentHashMap<String, Session>();
+
+	private final ThreadLocal<Cipher> ciphers = new ThreadLocal<Cipher>() {
+		@Override
+		protected Cipher initialValue() { return HybridCryptor.newCipher(); }
+	};
+	private final ThreadLocal<Mac> macs = new ThreadLocal<Mac>() {
+		@Override
+		protected Mac initialValue() { return HybridCryptor.newMac(); }
+	};
+
+	/** forget the idle sessions in background, created on first use **/
+	private Timer sweeper;
+
+	public SessionVault(RSAKeyCache keyCache) { this.keyCache = keyCache; }
+
+	public synchronized CryptoKey open(CryptoKey privateKey, long idleTimeout) {
+		if(KeyType.PRIVATE != privateKey.keyType()) {
+			throw new CryptoException("incorrect key type for opening session: "+privateKey.keyType());
+		}
+		if(idleTimeout < 0) {
+			throw new CryptoException("idle timeout of session must be non-negative: "+idleTimeout);
+		}
+		File vaultFile = new File(new File(privateKey.path()).getAbsoluteFile().getParentFile(), VAULT_KEY_FILE);
+		String vaultPath = vaultFile.getAbsolutePath();
+		Session session = sessions.get(vaultPath);
+		if(session != null && session.idleTimeout == idleTimeout && session.touch()) { return session.sessionKey; }
+
+		PrivateKey rsaKey = keyCache.privateKey(privateKey.encoded());
+		byte[] raw = null;
+		byte[] wrapped = null;
+		if(vaultFile.exists()) {
+			wrapped = VaultKeyFile.read(vaultFile);
+		}else {
+			raw = new byte[DataKey.rawSize()];
+			random.nextBytes(raw);
+			wrapped = RSACryptor.encrypt(raw, RSACryptor.publicKeyOf(rsaKey), keyCache.cipher());
+			VaultKeyFile.write(wrapped, vaultFile);
+		}
+		// decrypt even the created one, which verifies the key pair
+		raw = RSACryptor.decrypt(wrapped, rsaKey, keyCache.cipher());
+		if(raw.length != DataKey.rawSize()) {
+			throw new CryptoException(String.format("incorrect vault key length %d", raw.length));
+		}
+		CryptoKey sessionKey = new CryptoKey(KeyType.SESSION, privateKey.maxBlockSize(), vaultPath, wrapped);
+		Session opened = new Session(sessionKey, new DataKey(raw, wrapped), privateKey, idleTimeout);
+		Arrays.fill(raw, (byte) 0);
+
+		Session old = sessions.put(vaultPath, opened);
+		if(old != null) { old.sweep.cancel(); }
+		if(idleTimeout > 0) { sweeper().schedule(opened.sweep, idleTimeout, idleTimeout); }
+		return sessionKey;
+	}
+
+	public byte[] encrypt(byte[] data, CryptoKey sessionKey) {
+		int maxDataSize = sessionKey.maxBlockSize() - SessionCryptor.OVERHEAD;
+		if(data.length > maxDataSize) {
+			throw new CryptoException(String.format("data must be no longer than %d bytes in session, "
+					+ "which is %d bytes less than without session", maxDataSize, SessionCryptor.OVERHEAD));
+		}
+		Session session = lookup(sessionKey);
+		byte[] iv = new byte[HybridConstants.IV_SIZE];
+		random.nextBytes(iv);
+		return SessionCryptor.encrypt(data, session.vaultKey, iv, ciphers.get(), macs.get());
+	}
+
+	/** the secrets not encrypted by the session key are decrypted by {@code fallback} with the private key **/
+	public byte[] decrypt(byte[] secret, CryptoKey sessionKey, CryptoDriver fallback) {
+		if(secret.length > sessionKey.maxBlockSize()) {
+			throw new CryptoException(String.format("secret must be no longer than %d bytes", sessionKey.maxBlockSize()));
+		}
+		Session session = lookup(sessionKey);
+		byte[] data = SessionCryptor.decrypt(secret, session.vaultKey, ciphers.get(), macs.get());
+		if(data != null) { return data; }
+		Result<byte[]> result = fallback.decrypt(secret, session.privateKey);
+		if(!result.isSuccess()) { throw new CryptoException(result.msg); }
+		return result.result;
+	}
+
+	private Session lookup(CryptoKey sessionKey) {
+		Session session = sessions.get(sessionKey.path());
+		if(session == null || !Arrays.equals(session.sessionKey.encoded(), sessionKey.encoded())) {
+			throw new CryptoException("session is closed, please open it again");
+		}
+		if(!session.touch()) {
+			forget(session);
+			throw new CryptoException("session is expired, please open it again");
+		}
+		return session;
+	}
+
+	public void close(CryptoKey sessionKey) {
+		Session session = sessions.get(sessionKey.path());
+		if(session != null) { forget(session); }
+	}
+
+	private void forget(Session session) {
+		session.sweep.cancel();
+		sessions.remove(session.sessionKey.path(), session);
+	}
+
+	public synchronized void clear() {
+		if(sweeper != null) {
+			sweeper.cancel();
+			sweeper = null;
+		}
+		sessions.clear();
+	}
+
+	private synchronized Timer sweeper() {
+		if(sweeper == null) { sweeper = new Timer("session-sweeper", true); }
+		return sweeper;
+	}
+
+	private final class Session {
+		private final CryptoKey sessionKey;
+		private final DataKey vaultKey;
+		private final CryptoKey privateKey;
+		private final long idleTimeout;
+		private volatile long lastAccess;
+		private final TimerTask sweep = new TimerTask() {
+			@Override
+			public void run() {
+				if(isExpired(System.currentTimeMillis())) { forget(Session.this); }
+			}
+		};
+
+		Session(CryptoKey sessionKey, DataKey vaultKey, CryptoKey privateKey, long idleTimeout) {
+			this.sessionKey = sessionKey;
+			this.vaultKey = vaultKey;
+			this.privateKey = privateKey;
+			this.idleTimeout = idleTimeout;
+			this.lastAccess = System.currentTimeMillis();
+		}
+
+		boolean isExpired(long now) { return idleTimeout > 0 && now - lastAccess > idleTimeout; }
+
+		/** mark accessed now, return false if it has been expired **/
+		boolean touch() {
+			long now = System.currentTimeMillis();
+			if(isExpired(now)) { return false; }
+			lastAccess = now;
+			return true;
+		}
+	}
+}
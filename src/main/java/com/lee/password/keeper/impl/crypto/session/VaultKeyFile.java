@@ -0,0 +1,65 @@
+package com.lee.password.keeper.impl.crypto.session;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import com.lee.password.keeper.api.crypto.CryptoException;
+import com.lee.password.keeper.api.crypto.CryptoKey.KeyType;
+
+/** read/write the wrapped vault key, the file layout follows the RSA key files **/
+public class VaultKeyFile implements SessionConstants {
+
+	public static void write(byte[] wrapped, File destFile) {
+		if(destFile.exists() && destFile.length() > 0) {
+			throw new CryptoException(destFile + "exists, please check no duplicate file");
+		}
+		FileOutputStream fos = null;
+		try {
+			fos = new FileOutputStream(destFile);
+			DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos));
+			dos.writeByte(KeyType.SESSION.code);
+			dos.writeUTF(VAULT_KEY_ALGORITHM);
+			dos.writeUTF(VAULT_KEY_FORMAT);
+			dos.writeInt(wrapped.length);
+			dos.write(wrapped);
+			dos.close();
+		}catch(IOException e) {
+			throw new CryptoException(String.format("failed to serialize vault key to {%s}", destFile));
+		}finally {
+			if(fos != null) {
+				try { fos.close(); }catch(Exception e) { /** can not do anything **/ }
+			}
+		}
+	}
+	
+	public static byte[] read(File destFile) {
+		FileInputStream fis = null;
+		try {
+			fis = new FileInputStream(destFile);
+			DataInputStream dis = new DataInputStream(new BufferedInputStream(fis));
+			int keyType = dis.readByte();
+			String algorithm = dis.readUTF();
+			String format = dis.readUTF();
+			if(keyType != KeyType.SESSION.code || !VAULT_KEY_ALGORITHM.equals(algorithm) || !VAULT_KEY_FORMAT.equals(format)) {
+				throw new CryptoException(String.format("unsupported vault key file {%s}", destFile));
+			}
+			int wrappedLength = dis.readInt();
+			byte[] wrapped = new byte[wrappedLength];
+			dis.readFully(wrapped);
+			dis.close();
+			return wrapped;
+		}catch(IOException e) {
+			throw new CryptoException(String.format("failed to deserialize vault key from {%s}", destFile));
+		}finally {
+			if(fis != null) {
+				try { fis.close(); }catch(Exception e) { /** can not do anything **/ }
+			}
+		}
+	}
+}
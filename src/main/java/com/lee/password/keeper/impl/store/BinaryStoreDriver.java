@@ -1,21 +1,22 @@
 package com.lee.password.keeper.impl.store;
 
-import static com.lee.password.keeper.api.store.Password.CHARSET;
-
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
 import java.nio.channels.FileLock;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Deque;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
 
 import com.lee.password.keeper.api.Entity;
 import com.lee.password.keeper.api.Entity.Type;
@@ -23,32 +24,167 @@ import com.lee.password.keeper.api.Result;
 import com.lee.password.keeper.api.Result.Code;
 import com.lee.password.keeper.api.crypto.CryptoDriver;
 import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Page;
 import com.lee.password.keeper.api.store.Password;
 import com.lee.password.keeper.api.store.StoreDriver;
 import com.lee.password.keeper.api.store.StoreException;
 import com.lee.password.keeper.api.store.Website;
 import com.lee.password.keeper.impl.InternalEntity;
 import com.lee.password.keeper.impl.store.binary.BinaryPassword;
+import com.lee.password.keeper.impl.store.binary.BlockChecksums;
+import com.lee.password.keeper.impl.store.binary.BinarySecrets;
 import com.lee.password.keeper.impl.store.binary.BinaryWebsite;
+import com.lee.password.keeper.impl.store.binary.ChangeQueue;
 import com.lee.password.keeper.impl.store.binary.ChangedOperation;
 import com.lee.password.keeper.impl.store.binary.ChangedOperation.OP;
+import com.lee.password.keeper.impl.store.binary.ChangedOperations;
+import com.lee.password.keeper.impl.store.binary.CompositeKeyMap;
+import com.lee.password.keeper.impl.store.binary.HistoryJournal;
+import com.lee.password.keeper.impl.store.binary.KeywordTrie;
+import com.lee.password.keeper.impl.store.binary.PageCollector;
+import com.lee.password.keeper.impl.store.binary.LongObjectMap;
+import com.lee.password.keeper.impl.store.binary.ParallelDecryptor;
+import com.lee.password.keeper.impl.store.binary.RollbackJournal;
+import com.lee.password.keeper.impl.store.binary.SecretCache;
+import com.lee.password.keeper.impl.store.binary.SecretSlab;
+import com.lee.password.keeper.impl.store.binary.StoreFormat;
+import com.lee.password.keeper.impl.store.binary.StoreSnapshot;
+import com.lee.password.keeper.impl.store.binary.WebsiteIndex;
+import com.lee.password.keeper.impl.store.binary.WriteAheadLog;
+import com.lee.password.util.Pair;
 
 public class BinaryStoreDriver implements StoreDriver {
 
 	private static final String DATA_FILE = "binary.store.pk";
 	
-	private static final byte[] MAGIC = "bpsd".getBytes(CHARSET);
+	private static final String JOURNAL_SUFFIX = ".journal";
+	
+	private static final String REWRITE_SUFFIX = ".tmp";
+	
+	private static final String CHECKSUM_SUFFIX = ".crc";
+	
+	private static final String WAL_SUFFIX = ".wal";
+	
+	private static final String HISTORY_SUFFIX = ".history";
+	
+	private static final String UNDO_SUFFIX = ".undo";
+	
+	private static final String REDO_SUFFIX = ".redo";
+	
+	/** the layout of store file header is defined by {@link StoreFormat} **/
+	private static final int META_DATA_LEN = StoreFormat.META_DATA_LEN;
+	
+	private static final int METADATA_POSITION = StoreFormat.METADATA_POSITION;
+	
+	private static final int HEADER_LEN = StoreFormat.HEADER_LEN;
+	
+	/** the number of entries encrypted at once on import, which bounds the plain secrets held in memory **/
+	private static final int IMPORT_BATCH_SIZE = 1024;
+	
+	/** the buffer size to stream the records through while rewriting the tail of store file **/
+	private static final int TAIL_BUFFER_SIZE = 64 * 1024;
+	
+	/** option: load the website and password regions by read-only memory mapping, default false **/
+	public static final String OPT_MAPPED_LOAD = "isMappedLoad";
+	
+	/** option: apply all the changes of a commit atomically with a single force, default false **/
+	public static final String OPT_GROUP_COMMIT = "isGroupCommit";
+	
+	/**
+	 * option: log the changes of a commit to a write-ahead log before applying them, and force store file
+	 * only on checkpoint instead of per commit, preferred to {@link #OPT_GROUP_COMMIT}, default false
+	 */
+	public static final String OPT_WRITE_AHEAD_LOG = "isWriteAheadLog";
+	
+	/** option: the size of write-ahead log in bytes to checkpoint at, default 4M **/
+	public static final String OPT_CHECKPOINT_SIZE = "checkpointSize";
+	
+	/**
+	 * option: the max size of history journal in bytes, which records the images of the entries before and after
+	 * each commit so that they can be rolled back to a point in time across sessions, default 0 (no history)
+	 */
+	public static final String OPT_HISTORY_SIZE = "historySize";
+	
+	/**
+	 * option: the bytes of the changed images each of undo and redo queue keeps in memory, the older ones
+	 * are spilled to a side file, default 16M, 0 means keeping all of them in memory
+	 */
+	public static final String OPT_CHANGE_QUEUE_SIZE = "changeQueueSize";
+	
+	/** option: rewrite the whole store file once the number of changes to be committed reaches it, default 0 (never) **/
+	public static final String OPT_REWRITE_THRESHOLD = "rewriteThreshold";
+	
+	/** option: load only the password headers, and read the secrets from store file on demand, default false **/
+	public static final String OPT_LAZY_LOAD = "isLazyLoad";
+	
+	/** option: the number of passwords read with secrets to cache in lazy load mode, default 256 **/
+	public static final String OPT_SECRET_CACHE_SIZE = "secretCacheSize";
 	
-	private static final int META_DATA_LEN = 4 + 8 + 4 + 8;	
+	/** option: keep the loaded password records in direct memory instead of heap arrays, ignored in lazy load mode, default false **/
+	public static final String OPT_OFF_HEAP_SECRETS = "isOffHeapSecrets";
+	
+	/**
+	 * option: keep the block checksums of store file in a side file to verify it, which are saved on each commit,
+	 * or only on checkpoint with {@link #OPT_WRITE_AHEAD_LOG}, default false
+	 */
+	public static final String OPT_BLOCK_CHECKSUMS = "isBlockChecksums";
 	
 	/** secret block size defined by private crypto key **/
 	private final int secretBlockSize;
 	
+	/** load store file by memory mapping or not **/
+	private final boolean isMappedLoad;
+	
+	/** commit all the changes as an atomic group or not **/
+	private final boolean isGroupCommit;
+	
+	/** log the changes before applying them or not **/
+	private final boolean isWriteAheadLog;
+	
+	/** keep the block checksums of store file or not **/
+	private final boolean isBlockChecksums;
+	
+	/** the size of write-ahead log to checkpoint at **/
+	private final long checkpointSize;
+	
+	/** the max size of history journal, non-positive means no history **/
+	private final long historySize;
+	
+	/** the bytes of the changed images kept in memory per change queue, non-positive means unbounded **/
+	private final long changeQueueSize;
+	
+	/** the number of changes to commit by rewriting the whole store file, non-positive means never **/
+	private final int rewriteThreshold;
+	
+	/** load the password headers only or not **/
+	private final boolean isLazyLoad;
+	
+	/** the recently read secrets of the passwords loaded without secrets **/
+	private final SecretCache secretCache;
+	
+	/** the loaded password records out of heap, null if not enabled **/
+	private final SecretSlab secretSlab;
+	
+	/** the number of commits since opened, and the snapshot taken of the latest version if any **/
+	private long version;
+	private StoreSnapshot snapshot;
+	
 	// encryption/decryption driver
 	private CryptoDriver cryptoDriver;
+	private ParallelDecryptor decryptor;
 	
 	// storage resources
 	private File storePath;
+	private File journalPath;
+	private File checksumPath;
+	/** the block checksums if enabled, otherwise null **/
+	private BlockChecksums checksums;
+	private File walPath;
+	/** the write-ahead log if enabled, otherwise null **/
+	private WriteAheadLog writeAheadLog;
+	private File historyPath;
+	/** the history journal if enabled, otherwise null **/
+	private HistoryJournal history;
 	private RandomAccessFile storeMappedFile;
 	private FileChannel storeChannel;
 	private FileLock storeLock;
@@ -64,20 +200,22 @@ public class BinaryStoreDriver implements StoreDriver {
 	private long websiteOffset;
 	
 	// index password and website
-	private Map<PasswordKey, BinaryPassword> passwordMap;
-	private Map<Long, List<BinaryPassword>> websiteIdPwdMap;
+	private CompositeKeyMap<BinaryPassword> passwordMap;
+	private LongObjectMap<List<BinaryPassword>> websiteIdPwdMap;
 	private Map<String, List<BinaryPassword>> usernamePwdMap;
-	private Map<Long, BinaryWebsite> websiteIdMap;
+	private LongObjectMap<BinaryWebsite> websiteIdMap;
 	private Map<String, BinaryWebsite> websiteKeywordMap;
+	private KeywordTrie<BinaryWebsite> websiteKeywordTrie;
 	
 	// change operation queue
-	private Deque<ChangedOperation<? extends InternalEntity>> undoQueue;
-	private Deque<ChangedOperation<? extends InternalEntity>> redoQueue;
+	private ChangeQueue undoQueue;
+	private ChangeQueue redoQueue;
 	
 	// sync buffer
 	/** metadata buffer layout: passwordCount(4) + passwordOffset(8) + websiteCount(4) + websiteOffset(8) **/
 	private ByteBuffer metadataBuffer;
-	private BinaryWebsite[] sortedWebsitesBuffer;
+	/** the websites in store file, which mirrors the website region **/
+	private WebsiteIndex websiteIndex;
 	
 	// flush I/O buffer
 	private ByteBuffer intBuffer;
@@ -85,7 +223,6 @@ public class BinaryStoreDriver implements StoreDriver {
 	private ByteBuffer keywordBuffer;
 	private ByteBuffer urlPortionWebsiteBuffer;
 	private ByteBuffer webPortionWebsiteBuffer;
-	private ByteBuffer pwdPortionWebsiteBuffer;
 	private ByteBuffer websiteBuffer;
 	private ByteBuffer usernameBuffer;
 	private ByteBuffer keyValuePairBuffer;
@@ -97,10 +234,34 @@ public class BinaryStoreDriver implements StoreDriver {
 	private boolean isClosed;
 	
 	public BinaryStoreDriver(String dataDir, CryptoDriver cryptoDriver, int secretBlockSize, boolean isStoreFileLock) {
+		this(dataDir, cryptoDriver, secretBlockSize, isStoreFileLock, new Properties());
+	}
+	
+	public BinaryStoreDriver(String dataDir, CryptoDriver cryptoDriver, int secretBlockSize, boolean isStoreFileLock,
+			Properties options) {
+		// parse the options before allocating any resource, so an incorrect one fails with its own message
+		this.secretBlockSize = secretBlockSize;
+		this.isMappedLoad = Boolean.parseBoolean(options.getProperty(OPT_MAPPED_LOAD, "false"));
+		this.isGroupCommit = Boolean.parseBoolean(options.getProperty(OPT_GROUP_COMMIT, "false"));
+		this.isWriteAheadLog = Boolean.parseBoolean(options.getProperty(OPT_WRITE_AHEAD_LOG, "false"));
+		this.checkpointSize = longOption(options, OPT_CHECKPOINT_SIZE, 4 * 1024 * 1024);
+		this.historySize = longOption(options, OPT_HISTORY_SIZE, 0);
+		this.changeQueueSize = longOption(options, OPT_CHANGE_QUEUE_SIZE, 16 * 1024 * 1024);
+		this.rewriteThreshold = intOption(options, OPT_REWRITE_THRESHOLD, 0);
+		this.isLazyLoad = Boolean.parseBoolean(options.getProperty(OPT_LAZY_LOAD, "false"));
+		int secretCacheSize = intOption(options, OPT_SECRET_CACHE_SIZE, 256);
+		boolean isOffHeapSecrets = Boolean.parseBoolean(options.getProperty(OPT_OFF_HEAP_SECRETS, "false"));
+		this.isBlockChecksums = Boolean.parseBoolean(options.getProperty(OPT_BLOCK_CHECKSUMS, "false"));
 		try {
-			this.secretBlockSize = secretBlockSize;
+			this.secretCache = new SecretCache(secretCacheSize);
+			this.secretSlab = isOffHeapSecrets && !isLazyLoad ? new SecretSlab(BinaryPassword.occupiedSize(secretBlockSize)) : null;
 			this.cryptoDriver = cryptoDriver;
+			this.decryptor = new ParallelDecryptor("binary-store");
 			this.storePath = createIfNotExisted(dataDir);
+			this.journalPath = new File(storePath.getPath() + JOURNAL_SUFFIX);
+			this.checksumPath = new File(storePath.getPath() + CHECKSUM_SUFFIX);
+			this.walPath = new File(storePath.getPath() + WAL_SUFFIX);
+			this.historyPath = new File(storePath.getPath() + HISTORY_SUFFIX);
 			this.storeMappedFile = new RandomAccessFile(storePath, "rw");
 			this.storeChannel = storeMappedFile.getChannel();
 			if(isStoreFileLock) { this.storeLock = storeChannel.lock(); }
@@ -120,9 +281,28 @@ public class BinaryStoreDriver implements StoreDriver {
 		}
 	}
 	
+	private static long longOption(Properties options, String name, long defaultValue) {
+		String value = options.getProperty(name);
+		if(value == null) { return defaultValue; }
+		try {
+			return Long.parseLong(value.trim());
+		}catch(NumberFormatException e) {
+			throw new StoreException(String.format("incorrect option %s, it must be a number: %s", name, value), e);
+		}
+	}
+	
+	private static int intOption(Properties options, String name, int defaultValue) {
+		long value = longOption(options, name, defaultValue);
+		if(value != (int) value) {
+			throw new StoreException(String.format("incorrect option %s, it is out of range: %d", name, value));
+		}
+		return (int) value;
+	}
+	
 	private static File createIfNotExisted(String dataDir) {
 		File dir = makeDataDir(dataDir);
 		File dataFile = new File(dir, DATA_FILE);
+		recoverFromRewrite(dataFile);
 		if(!dataFile.exists()) {
 			try {
 				dataFile.createNewFile();
@@ -133,6 +313,22 @@ public class BinaryStoreDriver implements StoreDriver {
 		return dataFile;
 	}
 	
+	/**
+	 * a rewritten file is complete once it is renamed, so the one left by crash is discarded,
+	 * unless the store file has been deleted for renaming on the platforms can't rename over an existing file.
+	 */
+	private static void recoverFromRewrite(File dataFile) {
+		File rewriteFile = new File(dataFile.getPath() + REWRITE_SUFFIX);
+		if(!rewriteFile.exists()) { return; }
+		if(dataFile.exists()) {
+			if(!rewriteFile.delete()) {
+				throw new StoreException("failed to delete uncompleted rewrite file: "+rewriteFile);
+			}
+		}else if(!rewriteFile.renameTo(dataFile)) {
+			throw new StoreException(String.format("failed to rename rewrite file %s to %s", rewriteFile, dataFile));
+		}
+	}
+	
 	private static File makeDataDir(String dataDir) {
 		File dir = new File(dataDir);
 		if(!dir.exists()) {
@@ -148,19 +344,146 @@ public class BinaryStoreDriver implements StoreDriver {
 	}
 	
 	private void init() throws Exception {
+		recoverFromJournal();
+		boolean isReplayed = recoverFromWriteAheadLog();
 		initUndoAndRedoDeque();
 		initFlushIOBuffer();
-		if(storePath.length() == 0) { // created new file
+		boolean isCreated = storePath.length() == 0;
+		boolean isNewStore = isCreated;
+		if(isCreated) { // created new file
 			initStore();
 		}else {
+			isNewStore = upgradeStore();
 			loadStore();
 		}
+		initChecksums(isNewStore || isReplayed);
+		if(isWriteAheadLog) { writeAheadLog = new WriteAheadLog(walPath); }
+		initHistory(isNewStore, isCreated);
 		isClosed = false;
 	}
 	
+	/**
+	 * migrate store file of an older format version to the current one through a rewrite file,
+	 * which is renamed over store file once complete as {@link #rewriteCommit()} does.
+	 * return whether store file is upgraded.
+	 */
+	private boolean upgradeStore() throws IOException {
+		int version = StoreFormat.readVersion(storeChannel, storePath);
+		if(version == StoreFormat.VERSION) { return false; }
+		if(version > StoreFormat.VERSION) {
+			throw new StoreException(String.format("unsupported format version %d of store path: %s, the latest is %d",
+					version, storePath, StoreFormat.VERSION));
+		}
+		File rewriteFile = new File(storePath.getPath() + REWRITE_SUFFIX);
+		try {
+			StoreFormat.upgrade(storeChannel, version, rewriteFile, secretBlockSize);
+		}catch(IOException e) {
+			rewriteFile.delete();
+			throw e;
+		}
+		replaceStoreFile(rewriteFile);
+		return true;
+	}
+	
+	/**
+	 * load the checksums of store file if enabled, checksum the whole file if it is new or changed by the replayed log,
+	 * or they are missing or incomplete. the stale ones are deleted if disabled, so they are computed again once enabled.
+	 */
+	private void initChecksums(boolean isChanged) throws IOException {
+		if(!isBlockChecksums) {
+			if(checksumPath.exists() && !checksumPath.delete()) {
+				throw new StoreException("failed to delete stale checksums: "+checksumPath);
+			}
+			return;
+		}
+		checksums = isChanged ? null : BlockChecksums.load(checksumPath, HEADER_LEN);
+		if(checksums == null) {
+			checksums = BlockChecksums.compute(storeChannel, HEADER_LEN);
+			checksums.save(checksumPath);
+		}
+	}
+	
+	/** save the position a commit starts modifying at before it modifies store file **/
+	private void beginChecksums(long position) throws IOException {
+		if(checksums == null) { return; }
+		checksums.pending(position);
+		checksums.save(checksumPath);
+	}
+	
+	/** checksum the blocks written by a commit again after it completed **/
+	private void endChecksums() throws IOException {
+		if(checksums == null) { return; }
+		checksums.refresh(storeChannel);
+		checksums.save(checksumPath);
+	}
+	
+	/**
+	 * save the checksums before the log is emptied, since they are computed again only if any batch is replayed,
+	 * then force store file and empty the log.
+	 */
+	private void checkpoint() throws IOException {
+		if(checksums != null) {
+			checksums.refresh(storeChannel);
+			checksums.save(checksumPath);
+		}
+		writeAheadLog.checkpoint(storeChannel);
+	}
+	
+	private void touchChecksums(long position, long length) {
+		if(checksums != null) { checksums.touch(position, length); }
+	}
+	
+	private void touchChecksumsFrom(long position) {
+		if(checksums != null) { checksums.touchFrom(position); }
+	}
+	
+	/**
+	 * open history journal if enabled, the history of a deleted or upgraded store file is discarded.
+	 * a journal started over records the changes from now on, or from the beginning for a created store file.
+	 */
+	private void initHistory(boolean isNewStore, boolean isCreated) throws IOException {
+		if(historySize <= 0) { return; }
+		if(isNewStore && historyPath.exists() && !historyPath.delete()) {
+			throw new StoreException("failed to delete stale history journal: "+historyPath);
+		}
+		history = new HistoryJournal(historyPath, secretBlockSize, historySize, isCreated ? 0 : System.currentTimeMillis());
+	}
+	
+	/** roll back the uncompleted group commit left by crash **/
+	private void recoverFromJournal() throws IOException {
+		if(!journalPath.exists()) { return; }
+		RollbackJournal.restore(journalPath, storeChannel);
+		discardJournal();
+	}
+	
+	/**
+	 * apply the batches logged but not checkpointed before crash, the log left by a deleted store file is discarded.
+	 * return whether any batch is applied.
+	 */
+	private boolean recoverFromWriteAheadLog() throws IOException {
+		if(!walPath.exists()) { return false; }
+		if(storePath.length() == 0) {
+			if(!walPath.delete()) { throw new StoreException("failed to delete stale write-ahead log: "+walPath); }
+			return false;
+		}
+		return WriteAheadLog.replay(walPath, storeChannel) > 0;
+	}
+	
+	/** make the journal incomplete before delete it, so that a failed deletion is harmless **/
+	private void discardJournal() throws IOException {
+		RandomAccessFile journal = new RandomAccessFile(journalPath, "rw");
+		try {
+			journal.getChannel().truncate(0);
+			journal.getChannel().force(true);
+		}finally {
+			journal.close();
+		}
+		journalPath.delete();
+	}
+	
 	private void initUndoAndRedoDeque() {
-		this.undoQueue = new LinkedList<ChangedOperation<? extends InternalEntity>>();
-		this.redoQueue = new LinkedList<ChangedOperation<? extends InternalEntity>>();
+		this.undoQueue = new ChangeQueue(new File(storePath.getPath() + UNDO_SUFFIX), changeQueueSize);
+		this.redoQueue = new ChangeQueue(new File(storePath.getPath() + REDO_SUFFIX), changeQueueSize);
 	}
 	
 	private void initFlushIOBuffer() {
@@ -169,7 +492,6 @@ public class BinaryStoreDriver implements StoreDriver {
 		keywordBuffer = byteOrder(ByteBuffer.allocate(BinaryWebsite.keywordSize()));
 		urlPortionWebsiteBuffer = byteOrder(ByteBuffer.allocate(BinaryWebsite.urlPortionSize()));
 		webPortionWebsiteBuffer = byteOrder(ByteBuffer.allocate(BinaryWebsite.webPortionSize()));
-		pwdPortionWebsiteBuffer = byteOrder(ByteBuffer.allocate(BinaryWebsite.pwdPortionSize()));
 		websiteBuffer = byteOrder(ByteBuffer.allocate(BinaryWebsite.occupiedSize()));
 		usernameBuffer = byteOrder(ByteBuffer.allocate(BinaryPassword.maxUsernameSize()));
 		keyValuePairBuffer = byteOrder(ByteBuffer.allocate(BinaryPassword.keyValuePairSize(secretBlockSize)));
@@ -183,7 +505,7 @@ public class BinaryStoreDriver implements StoreDriver {
 	
 	/** init an data file with metadata **/
 	private void initStore() throws Exception {
-		long offset = MAGIC.length + META_DATA_LEN;
+		long offset = HEADER_LEN;
 		this.passwordCount = 0;
 		this.passwordOffset = offset;
 		this.websiteCount = 0;
@@ -192,16 +514,16 @@ public class BinaryStoreDriver implements StoreDriver {
 		metadataBuffer.clear();
 		
 		storeChannel.position(0);
-		storeChannel.write(byteOrder(ByteBuffer.wrap(MAGIC)));
-		storeChannel.write(metadataBuffer);
+		storeChannel.write(StoreFormat.header(metadataBuffer));
 		storeChannel.force(true);
 		
-		this.passwordMap = new HashMap<PasswordKey, BinaryPassword>();
-		this.websiteIdPwdMap = new HashMap<Long, List<BinaryPassword>>();
+		this.passwordMap = new CompositeKeyMap<BinaryPassword>();
+		this.websiteIdPwdMap = new LongObjectMap<List<BinaryPassword>>();
 		this.usernamePwdMap = new HashMap<String, List<BinaryPassword>>();
-		this.websiteIdMap = new HashMap<Long, BinaryWebsite>();
+		this.websiteIdMap = new LongObjectMap<BinaryWebsite>();
 		this.websiteKeywordMap = new HashMap<String, BinaryWebsite>();
-		this.sortedWebsitesBuffer = new BinaryWebsite[10];
+		this.websiteKeywordTrie = new KeywordTrie<BinaryWebsite>();
+		this.websiteIndex = new WebsiteIndex(0);
 	}
 	
 	private ByteBuffer initMetaBuffer(int passwordCount, long passwordOffset, int websiteCount, long websiteOffset) {
@@ -215,29 +537,16 @@ public class BinaryStoreDriver implements StoreDriver {
 	
 	/** load all the data from file to memory **/
 	private void loadStore() throws Exception {
-		matchMagic();
 		loadMetadata();
 		loadWebsites();
 		loadPasswords();
 	}
 	
-	private void matchMagic() throws IOException {
-		int expectedLen = MAGIC.length;
-		byte[] magic = new byte[expectedLen];
-		int len = storeChannel.read(byteOrder(ByteBuffer.wrap(magic)), 0);
-		if(len != expectedLen) {
-			throw new StoreException("incorrect magic number size from store path: "+storePath);
-		}
-		if(!Arrays.equals(magic, MAGIC)) {
-			throw new StoreException("wrong magic number from store path: "+storePath);
-		}
-	}
-	
 	private void loadMetadata() {
 		try {
 			this.metadataBuffer = byteOrder(ByteBuffer.allocate(META_DATA_LEN));
 			metadataBuffer.clear();
-			int len = storeChannel.read(metadataBuffer, MAGIC.length);
+			int len = storeChannel.read(metadataBuffer, METADATA_POSITION);
 			if(len != META_DATA_LEN) {
 				throw new StoreException("incorrect metadata size from store path: "+storePath);
 			}
@@ -254,29 +563,32 @@ public class BinaryStoreDriver implements StoreDriver {
 	private void loadWebsites() throws IOException {
 		long position = this.websiteOffset;
 		int count = this.websiteCount;
-		this.websiteIdMap = new HashMap<Long, BinaryWebsite>(count);
+		this.websiteIdMap = new LongObjectMap<BinaryWebsite>(count);
 		this.websiteKeywordMap = new HashMap<String, BinaryWebsite>(count);
-		this.sortedWebsitesBuffer = new BinaryWebsite[10];
+		this.websiteKeywordTrie = new KeywordTrie<BinaryWebsite>();
+		this.websiteIndex = new WebsiteIndex(count);
 		if(count == 0) { return; }
 		
 		/**
 		 * mapping is more expensive than reading or writing, it is only worth
-		 * mapping relatively large files.
-		 * generally, pasword store is a small file, so we use read or write methods here.
+		 * mapping relatively large files, so it is enabled by option {@link #OPT_MAPPED_LOAD}.
+		 * otherwise we use read method per website here.
 		 */
-		ByteBuffer websiteBuffer = this.websiteBuffer;
 		int size = BinaryWebsite.occupiedSize();
+		ByteBuffer websiteBuffer = isMappedLoad ? mapRegion(position, count, size, "website") : this.websiteBuffer;
 		long lastWebsiteId = Long.MIN_VALUE;
 		int totalPasswordCount = 0;
 		for(int i=0; i<count; i++) {
-			websiteBuffer.clear();
-			int readBytes = storeChannel.read(websiteBuffer, position);
-			if(readBytes != size) {
-				throw new StoreException(String.format("%d bytes starting at %d is not enough for website data from store path: %s",
-						readBytes, position, storePath));
+			if(!isMappedLoad) {
+				websiteBuffer.clear();
+				int readBytes = storeChannel.read(websiteBuffer, position);
+				if(readBytes != size) {
+					throw new StoreException(String.format("%d bytes starting at %d is not enough for website data from store path: %s",
+							readBytes, position, storePath));
+				}
+				websiteBuffer.flip();
+				position += size;
 			}
-			websiteBuffer.flip();
-			position += size;
 			
 			BinaryWebsite website = BinaryWebsite.read(websiteBuffer);
 			long websiteId = website.websiteId();
@@ -289,7 +601,7 @@ public class BinaryStoreDriver implements StoreDriver {
 				throw new StoreException(String.format("conflict website with website id=%d from store path: %s",
 						websiteId, storePath));
 			}
-			addToSortedWebsitesBuffer(website.copy(), i);
+			websiteIndex.append(website);
 			lastWebsiteId = websiteId;
 			totalPasswordCount += website.count();
 		}
@@ -299,105 +611,113 @@ public class BinaryStoreDriver implements StoreDriver {
 		}
 	}
 	
-	private void addToSortedWebsitesBuffer(BinaryWebsite newWebsite, int existedCount) {
-		long targetWebsiteId = newWebsite.websiteId();
-		BinaryWebsite[] array = sortedWebsitesBuffer;
-		int insertingIndex = findInsertIndex(targetWebsiteId, array, 0, existedCount-1);
-		addToSortedWebsitesBuffer(newWebsite, insertingIndex, existedCount);
-	}
-	
-	private int findInsertIndex(long targetWebsiteId, BinaryWebsite[] array, int begin, int end) {
-		while(begin <= end) {
-			int mid = (begin + end) / 2;
-			long websiteId = array[mid].websiteId();
-			if(targetWebsiteId == websiteId) {
-				begin = mid + 1;
-				break;
-			}else if(targetWebsiteId < websiteId) {
-				end = mid -1;
-			}else {
-				begin = mid + 1;
-			}
-		}
-		return begin;
-	}
-	
-	private void addToSortedWebsitesBuffer(BinaryWebsite newWebsite, int index, int limit) {
-		if(index < 0 || index > limit) {
-			throw new IndexOutOfBoundsException(String.format("inserting index %d is out of bounds %d for sorted website buffer",
-					index, limit));
-		}
-		if(limit >= sortedWebsitesBuffer.length) {
-			int newCount = limit * 3 / 2 + 1;
-			BinaryWebsite[] array = new BinaryWebsite[newCount];
-			System.arraycopy(sortedWebsitesBuffer, 0, array, 0, limit);
-			sortedWebsitesBuffer = array;
-		}
-		if(index == limit) {
-			sortedWebsitesBuffer[limit] = newWebsite;
-		}else {
-			BinaryWebsite[] array = sortedWebsitesBuffer;
-			System.arraycopy(array, index, array, index+1, limit-index);
-			array[index] = newWebsite;
+	/**
+	 * map the region of {@code count} records with {@code size} bytes each starting at {@code position}.
+	 * the mapping is released when the returned buffer is garbage collected.
+	 */
+	private ByteBuffer mapRegion(long position, int count, int size, String name) throws IOException {
+		long length = (long) count * size;
+		if(position + length > storeChannel.size()) {
+			throw new StoreException(String.format("%d bytes starting at %d is not enough for %d %s data from store path: %s",
+					storeChannel.size() - position, position, count, name, storePath));
 		}
+		MappedByteBuffer region = storeChannel.map(MapMode.READ_ONLY, position, length);
+		return byteOrder(region);
 	}
 	
 	private void loadPasswords() throws IOException {
 		int websiteCount = this.websiteCount;
 		long position = this.passwordOffset;
 		int count = this.passwordCount;
-		this.passwordMap = new HashMap<PasswordKey, BinaryPassword>(count);
-		this.websiteIdPwdMap = new HashMap<Long, List<BinaryPassword>>();
+		this.passwordMap = new CompositeKeyMap<BinaryPassword>(count);
+		this.websiteIdPwdMap = new LongObjectMap<List<BinaryPassword>>(websiteCount);
 		this.usernamePwdMap = new HashMap<String, List<BinaryPassword>>();
 		if(count == 0) { return; }
 		
-		BinaryWebsite[] sortedView = this.sortedWebsitesBuffer;
+		WebsiteIndex index = this.websiteIndex;
 		int size = BinaryPassword.occupiedSize(this.secretBlockSize);
+		ByteBuffer region = isMappedLoad ? mapRegion(position, count, size, "password") : null;
 		int offset = 0;
 		for(int i=0; i<websiteCount; i++) {
-			BinaryWebsite website = sortedView[i];
-			if(website.offset() != offset) {
+			long websiteId = index.websiteId(i);
+			int websitePasswordCount = index.count(i);
+			// the website never had any password has no password data
+			if(!index.isValidOffset(i) && websitePasswordCount == 0) { continue; }
+			if(index.offset(i) != offset) {
 				// password data placed order by website id asc in store file
 				throw new StoreException(String.format("incorrect password data order for website id=%d from store path: %s",
-						website.websiteId(), storePath));
+						websiteId, storePath));
+			}
+			if(isMappedLoad) {
+				loadPasswordsBy(size, websiteId, websitePasswordCount, region, offset);
+			}else {
+				loadPasswordsBy(size, websiteId, websitePasswordCount, position+offset);
 			}
-			loadPasswordsBy(size, website, position+offset);
-			offset += website.count() * size;
+			offset += websitePasswordCount * size;
+		}
+	}
+	
+	private void loadPasswordsBy(int passwordSize, long websiteId, int count, ByteBuffer region, int offset) {
+		for(int i=0; i<count; i++) {
+			// password read doesn't skip the padding of key value pair slot
+			region.position(offset + i * passwordSize);
+			addLoadedPassword(websiteId, readLoadedPassword(region));
 		}
 	}
 	
-	private void loadPasswordsBy(int passwordSize, BinaryWebsite website, long position) throws IOException {
-		long websiteId = website.websiteId();
-		int count = website.count();
+	private void loadPasswordsBy(int passwordSize, long websiteId, int count, long position) throws IOException {
 		ByteBuffer passwordBuffer = this.passwordBuffer;
+		// only the header is read in lazy load mode
+		int readSize = isLazyLoad ? BinaryPassword.headerSize() : passwordSize;
 		for(int i=0; i<count; i++) {
-			passwordBuffer.clear();
+			passwordBuffer.clear().limit(readSize);
 			int readBytes = storeChannel.read(passwordBuffer, position);
-			if(readBytes != passwordSize) {
+			if(readBytes != readSize) {
 				throw new StoreException(String.format("%d bytes starting at %d is not enough for password data from store path: %s",
 						readBytes, position, storePath));
 			}
 			passwordBuffer.flip();
 			position += passwordSize;
 			
-			BinaryPassword password = BinaryPassword.read(passwordBuffer, secretBlockSize);
-			/* generally, one person who may not register multiple account on the same website,
-			 * so all the password data belong to the same website don't placed in order.
-			 */
-			if(password.websiteId() != websiteId) {
-				throw new StoreException(String.format("inconsistent website id=%d from store path: %s", websiteId, storePath));
-			}
-			if(!put(password, false)) {
-				throw new StoreException(String.format("conflict passwords with website id=%d from store path: %s",
-						websiteId, storePath));
-			}
+			addLoadedPassword(websiteId, readLoadedPassword(passwordBuffer));
+		}
+	}
+	
+	/** read the password starting at the position of {@code buffer}, which holds the whole record unless in lazy load mode **/
+	private BinaryPassword readLoadedPassword(ByteBuffer buffer) {
+		if(isLazyLoad) { return BinaryPassword.readHeader(buffer); }
+		if(secretSlab == null) { return BinaryPassword.read(buffer, secretBlockSize); }
+		int position = buffer.position();
+		BinaryPassword password = BinaryPassword.readHeader(buffer);
+		buffer.position(position);
+		password.slot(secretSlab.add(buffer));
+		return password;
+	}
+	
+	private void addLoadedPassword(long websiteId, BinaryPassword password) {
+		/* generally, one person who may not register multiple account on the same website,
+		 * so all the password data belong to the same website don't placed in order.
+		 */
+		if(password.websiteId() != websiteId) {
+			throw new StoreException(String.format("inconsistent website id=%d from store path: %s", websiteId, storePath));
+		}
+		if(!put(password, false)) {
+			throw new StoreException(String.format("conflict passwords with website id=%d from store path: %s",
+					websiteId, storePath));
 		}
 	}
 	
 	/** release all resources **/
 	private void release() {
 		try {
+			if(decryptor != null) { decryptor.shutdown(); decryptor = null; }
+			if(secretCache != null) { secretCache.clear(); }
+			if(secretSlab != null) { secretSlab.clear(); }
 			if(cryptoDriver != null) { cryptoDriver.close(); cryptoDriver = null; }
+			if(writeAheadLog != null) { writeAheadLog.close(); writeAheadLog = null; }
+			if(history != null) { history.close(); history = null; }
+			if(undoQueue != null) { undoQueue.close(); }
+			if(redoQueue != null) { redoQueue.close(); }
 			if(storeLock != null) { storeLock.release(); storeLock = null; }
 			if(storeChannel != null) { storeChannel.close(); storeChannel = null; }
 			if(storeMappedFile != null) { storeMappedFile.close(); storeMappedFile = null; }
@@ -450,6 +770,7 @@ public class BinaryStoreDriver implements StoreDriver {
 			websiteKeywordMap.put(keyword, oldWebsite);
 			return false;
 		}
+		websiteKeywordTrie.put(keyword, newWebsite);
 		if(increaseCountIfSuccess) { websiteCount++; }
 		return true;
 	}
@@ -493,6 +814,7 @@ public class BinaryStoreDriver implements StoreDriver {
 			websiteIdMap.put(websiteId, one);
 			return false;
 		}
+		websiteKeywordTrie.remove(keyword, one);
 		websiteCount--;
 		return true;
 	}
@@ -590,6 +912,8 @@ public class BinaryStoreDriver implements StoreDriver {
 				websiteKeywordMap.put(keyword, one);
 				return false;
 			}
+			websiteKeywordTrie.remove(keyword, biWebsite);
+			websiteKeywordTrie.put(newKeyword, biWebsite);
 			biWebsite.keyword(newKeyword);
 			biWebsite.timestamp(newWebsite.timestamp());
 		}
@@ -659,6 +983,30 @@ public class BinaryStoreDriver implements StoreDriver {
 		return new Result<List<Website>>(Code.SUCCESS, "success", websiteList);
 	}
 
+	@Override
+	public Result<Page<Website>> listWebsite(String token, int pageSize) {
+		return PageCollector.websitePage(websiteKeywordMap.values(), token, pageSize);
+	}
+
+	@Override
+	public Result<List<Website>> searchWebsites(String prefix, int limit) {
+		if(prefix == null) { return new Result<List<Website>>(Code.FAIL, "search website without keyword prefix"); }
+		return transform(websiteKeywordTrie.prefix(prefix, limit));
+	}
+
+	@Override
+	public Result<List<Website>> fuzzySearchWebsites(String keyword, int maxDistance, int limit) {
+		if(keyword == null) { return new Result<List<Website>>(Code.FAIL, "search website without keyword"); }
+		if(maxDistance < 0) { return new Result<List<Website>>(Code.FAIL, "negative edit distance: "+maxDistance); }
+		return transform(websiteKeywordTrie.fuzzy(keyword, maxDistance, limit));
+	}
+
+	private static Result<List<Website>> transform(List<BinaryWebsite> biWebsiteList) {
+		List<Website> websiteList = new ArrayList<Website>(biWebsiteList.size());
+		for(BinaryWebsite biWebsite : biWebsiteList) { websiteList.add(biWebsite.transform()); }
+		return new Result<List<Website>>(Code.SUCCESS, "success", websiteList);
+	}
+
 	@Override
 	public Result<Password.Header> insertPassword(Password entry, CryptoKey encryptionKey) {
 		BinaryPassword biPassword = null;
@@ -688,31 +1036,7 @@ public class BinaryStoreDriver implements StoreDriver {
 	}
 	
 	private Result<BinaryPassword> encrypt(Password password, CryptoKey encryptionKey, boolean forInsert) {
-		Password.Header header = password.header();
-		Password.Secret secret = password.secret();
-		String pwd = secret.password();
-		String kvp = secret.keyValuePairs();
-		
-		BinaryPassword biPassword = new BinaryPassword(header.websiteId(), header.username(), header.timestamp());
-		if(pwd == null || pwd.isEmpty()) {
-			if(forInsert) { return new Result<BinaryPassword>(Code.FAIL, "pasword is empty"); }
-		}else {
-			Result<byte[]> encryptedResult = cryptoDriver.encrypt(pwd.getBytes(CHARSET), encryptionKey);
-			if(!encryptedResult.isSuccess()) {
-				return new Result<BinaryPassword>(Code.FAIL, "password encrypt failed: "+encryptedResult.msg);
-			}
-			biPassword.encryptedPassword(encryptedResult.result);
-		}
-		if(kvp == null) {
-			if(!forInsert) { return new Result<BinaryPassword>(Code.SUCCESS, "success", biPassword); }
-			kvp = "";
-		}
-		Result<byte[]> encryptedResult = cryptoDriver.encrypt(kvp.getBytes(CHARSET), encryptionKey);
-		if(!encryptedResult.isSuccess()) {
-			return new Result<BinaryPassword>(Code.FAIL, "key value pair encrypt failed: "+encryptedResult.msg);
-		}
-		biPassword.encryptedKeyValuePairs(encryptedResult.result);
-		return new Result<BinaryPassword>(Code.SUCCESS, "success", biPassword);
+		return BinarySecrets.encrypt(cryptoDriver, password, encryptionKey, forInsert);
 	}
 	
 	private boolean appendInsertOperation(BinaryPassword password) {
@@ -724,12 +1048,8 @@ public class BinaryStoreDriver implements StoreDriver {
 	private boolean put(BinaryPassword password, boolean increaseCountIfSuccess) {
 		long webisteId = password.websiteId();
 		String username = password.username();
-		PasswordKey passwordKey = new PasswordKey(webisteId, username);
-		BinaryPassword old = passwordMap.put(passwordKey, password);
-		if(old != null) {
-			passwordMap.put(passwordKey, old);
-			return false;
-		}
+		if(passwordMap.containsKey(webisteId, username)) { return false; }
+		passwordMap.put(webisteId, username, password);
 		List<BinaryPassword> websiteIdPwdList = websiteIdPwdMap.get(webisteId);
 		if(websiteIdPwdList == null) {
 			websiteIdPwdList = new ArrayList<BinaryPassword>(3);
@@ -769,12 +1089,11 @@ public class BinaryStoreDriver implements StoreDriver {
 	private boolean remove(BinaryPassword password) {
 		long websiteId = password.websiteId();
 		String username = password.username();
-		PasswordKey passwordKey = new PasswordKey(websiteId, username);
-		BinaryPassword old = passwordMap.remove(passwordKey);
+		BinaryPassword old = passwordMap.remove(websiteId, username);
 		if(old == null) { return false; }
 		List<BinaryPassword> websiteIdPasswords = websiteIdPwdMap.get(websiteId);
 		if(websiteIdPasswords == null) {
-			passwordMap.put(passwordKey, old);
+			passwordMap.put(websiteId, username, old);
 			return false;
 		}
 		int i = 0;
@@ -787,18 +1106,18 @@ public class BinaryStoreDriver implements StoreDriver {
 			i++;
 		}
 		if(one == null) {
-			passwordMap.put(passwordKey, old);
+			passwordMap.put(websiteId, username, old);
 			return false;
 		}
 		if(one != old) {
-			passwordMap.put(passwordKey, old);
+			passwordMap.put(websiteId, username, old);
 			websiteIdPasswords.add(one);
 			return false;
 		}
 		
 		List<BinaryPassword> usernamPasswords = usernamePwdMap.get(username);
 		if(usernamPasswords == null) {
-			passwordMap.put(passwordKey, old);
+			passwordMap.put(websiteId, username, old);
 			websiteIdPasswords.add(one);
 			return false;
 		}
@@ -812,12 +1131,12 @@ public class BinaryStoreDriver implements StoreDriver {
 			i++;
 		}
 		if(another == null) {
-			passwordMap.put(passwordKey, old);
+			passwordMap.put(websiteId, username, old);
 			websiteIdPasswords.add(one);
 			return false;
 		}
 		if(another != old) {
-			passwordMap.put(passwordKey, old);
+			passwordMap.put(websiteId, username, old);
 			websiteIdPasswords.add(one);
 			usernamPasswords.add(another);
 			return false;
@@ -831,12 +1150,14 @@ public class BinaryStoreDriver implements StoreDriver {
 		BinaryPassword newPassword = null;
 		BinaryPassword oldPassword = null;
 		BinaryPassword existedPassword = null;
+		BinaryPassword comparedPassword = null;
 		try {
 			Result<BinaryPassword> biPasswordResult = selectBy(entry.header());
 			if(!biPasswordResult.isSuccess()) {
 				return new Result<Password.Header>(Code.FAIL, biPasswordResult.msg);
 			}
 			existedPassword = biPasswordResult.result;
+			comparedPassword = withSecrets(existedPassword);
 			biPasswordResult = encrypt(entry, encryptionKey, false);
 			if(!biPasswordResult.isSuccess()) {
 				return new Result<Password.Header>(biPasswordResult.code, biPasswordResult.msg);
@@ -846,24 +1167,25 @@ public class BinaryStoreDriver implements StoreDriver {
 			return new Result<Password.Header>(Code.FAIL, e.getMessage());
 		}
 		
-		if(newPassword.encryptedPassword() == null || BinaryPassword.hasEqualPassword(newPassword, existedPassword)) {
-			if(newPassword.encryptedKeyValuePairs() == null || BinaryPassword.hasEqualKeyValuePair(newPassword, existedPassword)) {
+		if(newPassword.encryptedPassword() == null || BinaryPassword.hasEqualPassword(newPassword, comparedPassword)) {
+			if(newPassword.encryptedKeyValuePairs() == null || BinaryPassword.hasEqualKeyValuePair(newPassword, comparedPassword)) {
 				return new Result<Password.Header>(Code.FAIL, "nothing changed for password, don't need update");
 			}else {
-				oldPassword = existedPassword.copy();
+				oldPassword = comparedPassword.copy();
 				oldPassword.markEncryptedKeyValuePairsChanged();
 				newPassword.markEncryptedKeyValuePairsChanged();
 			}
 		}else {
-			oldPassword = existedPassword.copy();
+			oldPassword = comparedPassword.copy();
 			oldPassword.markEncryptedPasswordChanged();
 			newPassword.markEncryptedPasswordChanged();
-			if(newPassword.encryptedKeyValuePairs() != null && !BinaryPassword.hasEqualKeyValuePair(newPassword, existedPassword)) {
+			if(newPassword.encryptedKeyValuePairs() != null && !BinaryPassword.hasEqualKeyValuePair(newPassword, comparedPassword)) {
 				oldPassword.markEncryptedKeyValuePairsChanged();
 				newPassword.markEncryptedKeyValuePairsChanged();
 			}
 		}
-		if(appendUpdateOperation(existedPassword, oldPassword, newPassword)) {
+		// the change record keeps only the changed portions
+		if(appendUpdateOperation(existedPassword, oldPassword.changedPortions(), newPassword.changedPortions())) {
 			return new Result<Password.Header>(Code.SUCCESS, "success", entry.header());
 		}else {
 			return new Result<Password.Header>(Code.FAIL, "update binary password internal error");
@@ -903,26 +1225,127 @@ public class BinaryStoreDriver implements StoreDriver {
 			return new Result<BinaryPassword>(Code.FAIL, "password header without username and id");
 		}
 		
-		BinaryPassword biPassword = passwordMap.get(new PasswordKey(websiteId, username));
+		BinaryPassword biPassword = passwordMap.get(websiteId, username);
 		return biPassword == null ?
 				new Result<BinaryPassword>(Code.FAIL, "password mapping with username and id not found") :
 				new Result<BinaryPassword>(Code.SUCCESS, "success", biPassword);
 	}
 	
 	private Result<Password> decrypt(BinaryPassword biPassword, CryptoKey decryptionKey) {
-		Password password = new Password(biPassword.websiteId(), biPassword.username(), biPassword.timestamp());
-		
-		Result<byte[]> decryptedResult = cryptoDriver.decrypt(biPassword.encryptedPassword(), decryptionKey);
-		if(!decryptedResult.isSuccess()) {
-			return new Result<Password>(Code.FAIL, "password decrypt failed: "+decryptedResult.msg);
+		try {
+			return BinarySecrets.decrypt(cryptoDriver, withSecrets(biPassword), decryptionKey);
+		}catch(Exception e) {
+			return new Result<Password>(Code.FAIL, e.getMessage());
+		}
+	}
+	
+	private Result<List<Password>> decrypt(List<BinaryPassword> biPasswordList, CryptoKey decryptionKey) {
+		List<BinaryPassword> targets = new ArrayList<BinaryPassword>(biPasswordList.size());
+		try {
+			for(BinaryPassword biPassword : biPasswordList) { targets.add(withSecrets(biPassword)); }
+		}catch(Exception e) {
+			return new Result<List<Password>>(Code.FAIL, e.getMessage());
+		}
+		return decryptor.decrypt(cryptoDriver, targets, decryptionKey);
+	}
+	
+	/**
+	 * return {@code password} itself if its secrets are in heap, otherwise a copy with the secrets
+	 * read from its slot, or from store file which is cached for the hot ones.
+	 * the secrets not in heap are always unchanged since last commit, so the slot or store file holds them.
+	 */
+	private BinaryPassword withSecrets(BinaryPassword password) {
+		if(password.hasSecrets()) { return password; }
+		if(password.slot() != BinaryPassword.NO_SLOT) { return password.fill(secretSlab.read(password.slot(), secretBlockSize)); }
+		BinaryPassword stored = secretCache.get(password);
+		if(stored == null) {
+			stored = findStoredPassword(readStoredPasswords(password.websiteId()), password);
+			secretCache.put(password, stored);
 		}
-		password.password(new String(decryptedResult.result, CHARSET));
-		decryptedResult = cryptoDriver.decrypt(biPassword.encryptedKeyValuePairs(), decryptionKey);
-		if(!decryptedResult.isSuccess()) {
-			return new Result<Password>(Code.FAIL, "key value pair decrypt failed: "+decryptedResult.msg);
+		return password.fill(stored);
+	}
+	
+	/**
+	 * fill the secrets of {@code passwords} as {@link #withSecrets(BinaryPassword)}, but read the stored passwords
+	 * of each website at most once and never cache them, so that reading all of them doesn't evict the hot ones,
+	 * which can't be hit by the copies anyway.
+	 */
+	private List<BinaryPassword> withStoredSecrets(List<BinaryPassword> passwords) {
+		LongObjectMap<List<BinaryPassword>> websitePasswords = new LongObjectMap<List<BinaryPassword>>();
+		for(BinaryPassword password : passwords) {
+			List<BinaryPassword> list = websitePasswords.get(password.websiteId());
+			if(list == null) {
+				list = new ArrayList<BinaryPassword>();
+				websitePasswords.put(password.websiteId(), list);
+			}
+			list.add(password);
+		}
+		List<BinaryPassword> filled = new ArrayList<BinaryPassword>(passwords.size());
+		for(List<BinaryPassword> list : websitePasswords.values()) {
+			ByteBuffer block = null;
+			for(BinaryPassword password : list) {
+				if(password.hasSecrets() || password.slot() != BinaryPassword.NO_SLOT) {
+					filled.add(withSecrets(password));
+					continue;
+				}
+				if(block == null) { block = readStoredPasswords(password.websiteId()); }
+				filled.add(password.fill(findStoredPassword(block, password)));
+			}
+		}
+		return filled;
+	}
+	
+	/** read all the stored passwords of website with {@code websiteId} in one go **/
+	private ByteBuffer readStoredPasswords(long websiteId) {
+		int index = websiteIndex.indexOf(websiteId);
+		int count = index == -1 ? 0 : websiteIndex.count(index);
+		ByteBuffer block = byteOrder(ByteBuffer.allocate(count * BinaryPassword.occupiedSize(secretBlockSize)));
+		if(count == 0) { return block; }
+		long position = readPasswordOffset() + websiteIndex.offset(index);
+		try {
+			while(block.hasRemaining()) {
+				if(read(block, position + block.position()) < 0) {
+					throw new StoreException(String.format("unexpected end of store path %s while reading passwords of website id=%d",
+							storePath, websiteId));
+				}
+			}
+		}catch(IOException e) {
+			throw new StoreException(String.format("failed to read passwords of website id=%d from store path: %s",
+					websiteId, storePath), e);
+		}
+		block.flip();
+		return block;
+	}
+	
+	private BinaryPassword findStoredPassword(ByteBuffer block, BinaryPassword target) {
+		int size = BinaryPassword.occupiedSize(secretBlockSize);
+		for(int position=0; position<block.limit(); position+=size) {
+			block.position((int) BinaryPassword.usernamePosition(position));
+			if(BinaryPassword.hasEqualUsername(target, block)) {
+				block.position(position);
+				return BinaryPassword.read(block, secretBlockSize);
+			}
+		}
+		throw new StoreException(String.format("failed to find secrets of password with website id=%d and username=%s from store path: %s",
+				target.websiteId(), target.username(), storePath));
+	}
+	
+	@Override
+	public Result<List<Password>> selectPasswords(long websiteId, CryptoKey decryptionKey) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<List<Password>>(Code.FAIL, "no password list mapping with webiste id");
+		}
+		return decrypt(biPasswordList, decryptionKey);
+	}
+	
+	@Override
+	public Result<List<Password>> selectPasswords(String username, CryptoKey decryptionKey) {
+		List<BinaryPassword> biPasswordList = usernamePwdMap.get(username);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<List<Password>>(Code.FAIL, "no password list mapping with username");
 		}
-		password.keyValuePairs(new String(decryptedResult.result, CHARSET));
-		return new Result<Password>(Code.SUCCESS, "success", password);
+		return decrypt(biPasswordList, decryptionKey);
 	}
 	
 	@Override
@@ -946,7 +1369,7 @@ public class BinaryStoreDriver implements StoreDriver {
 	
 	@Override
 	public Result<Integer> passwordCount(long websiteId, String username) {
-		boolean isExisted = passwordMap.containsKey(new PasswordKey(websiteId, username));
+		boolean isExisted = passwordMap.containsKey(websiteId, username);
 		return new Result<Integer>(Code.SUCCESS, "success", isExisted ? 1 : 0);
 	}
 
@@ -980,7 +1403,7 @@ public class BinaryStoreDriver implements StoreDriver {
 	
 	@Override
 	public Result<Password.Header> listPassword(long websiteId, String username) {
-		BinaryPassword biPassword = passwordMap.get(new PasswordKey(websiteId, username));
+		BinaryPassword biPassword = passwordMap.get(websiteId, username);
 		if(biPassword == null) {
 			return new Result<Password.Header>(Code.FAIL, "no password mapping with websiteId and username");
 		}
@@ -988,6 +1411,138 @@ public class BinaryStoreDriver implements StoreDriver {
 				new Password.Header(biPassword.websiteId(), biPassword.username(), biPassword.timestamp()));
 	}
 	
+	@Override
+	public Result<Page<Password.Header>> listPassword(long websiteId, String token, int pageSize) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<Page<Password.Header>>(Code.FAIL, "no password list mapping with webiste id");
+		}
+		return PageCollector.passwordPageByUsername(biPasswordList, token, pageSize);
+	}
+
+	@Override
+	public Result<Page<Password.Header>> listPassword(String username, String token, int pageSize) {
+		List<BinaryPassword> biPasswordList = usernamePwdMap.get(username);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<Page<Password.Header>>(Code.FAIL, "no password list mapping with username");
+		}
+		return PageCollector.passwordPageByWebsiteId(biPasswordList, token, pageSize);
+	}
+
+	/**
+	 * the entries are inserted without any change record and encrypted in parallel batches, then written along with
+	 * all the others to a freshly sorted store file in one pass as {@link #rewriteStore()} does. the imported are
+	 * journaled as the inserts of one commit if history is enabled, so they can be rolled back by {@link #rollbackTo(long)}.
+	 */
+	@Override
+	public Result<Integer> importEntries(Iterator<Pair<Website, Password>> entries, CryptoKey encryptionKey) {
+		if(!undoQueue.isEmpty()) {
+			return new Result<Integer>(Code.FAIL, "commit or undo the uncommitted changes before import");
+		}
+		List<BinaryWebsite> importedWebsites = new ArrayList<BinaryWebsite>();
+		List<BinaryPassword> importedPasswords = new ArrayList<BinaryPassword>();
+		List<Password> batch = new ArrayList<Password>(IMPORT_BATCH_SIZE);
+		String failure = null;
+		try {
+			while(failure == null && entries.hasNext()) {
+				Pair<Website, Password> entry = entries.next();
+				if(!entry.second.header().hasUsername()) {
+					failure = "username is empty";
+					continue;
+				}
+				Result<BinaryWebsite> websiteResult = importWebsite(entry.first, importedWebsites);
+				if(!websiteResult.isSuccess()) {
+					failure = websiteResult.msg;
+					continue;
+				}
+				batch.add(withWebsiteId(entry.second, websiteResult.result.websiteId()));
+				if(batch.size() == IMPORT_BATCH_SIZE) {
+					Result<Integer> batchResult = importPasswords(batch, encryptionKey, importedPasswords);
+					if(!batchResult.isSuccess()) { failure = batchResult.msg; }
+					batch.clear();
+				}
+			}
+			if(failure == null && !batch.isEmpty()) {
+				Result<Integer> batchResult = importPasswords(batch, encryptionKey, importedPasswords);
+				if(!batchResult.isSuccess()) { failure = batchResult.msg; }
+			}
+		}catch(Exception e) {
+			failure = e.getMessage();
+		}
+		if(failure != null) {
+			discardImported(importedWebsites, importedPasswords);
+			return new Result<Integer>(Code.FAIL, "failed to import entries: "+failure);
+		}
+		if(importedWebsites.isEmpty() && importedPasswords.isEmpty()) {
+			return new Result<Integer>(Code.SUCCESS, "success", 0);
+		}
+		
+		long commitTime = System.currentTimeMillis();
+		Pair<Boolean, Result<Throwable>> commitResult = rewriteStore();
+		if(!commitResult.second.isSuccess()) {
+			// the imported are kept once the rewritten store file takes effect, as they are loaded on next open
+			if(!commitResult.first) { discardImported(importedWebsites, importedPasswords); }
+			return new Result<Integer>(Code.FAIL, "failed to commit imported entries: "+commitResult.second.msg);
+		}
+		if(history != null) {
+			List<HistoryJournal.Entry> inserts = new ArrayList<HistoryJournal.Entry>(
+					importedWebsites.size() + importedPasswords.size());
+			for(BinaryWebsite website : importedWebsites) { inserts.add(new HistoryJournal.Entry(commitTime, null, website.copy())); }
+			for(BinaryPassword password : importedPasswords) { inserts.add(new HistoryJournal.Entry(commitTime, null, password)); }
+			try {
+				history.append(inserts);
+			}catch(Exception e) {
+				return new Result<Integer>(Code.FAIL, "imported, but failed to append history journal: "+historyPath);
+			}
+		}
+		return new Result<Integer>(Code.SUCCESS, "success", importedPasswords.size());
+	}
+	
+	/** the website of imported entry by keyword, which is inserted without change record if absent **/
+	private Result<BinaryWebsite> importWebsite(Website website, List<BinaryWebsite> importedWebsites) {
+		if(!website.hasKeyword()) { return new Result<BinaryWebsite>(Code.FAIL, "website keyword is empty"); }
+		BinaryWebsite biWebsite = websiteKeywordMap.get(website.keyword());
+		if(biWebsite != null) { return new Result<BinaryWebsite>(Code.SUCCESS, "success", biWebsite); }
+		biWebsite = BinaryWebsite.cast(website);
+		// the websites created within one millisecond collide in id by chance, take the next millisecond instead
+		long timestamp = website.timestamp();
+		while(websiteIdMap.containsKey(biWebsite.websiteId())) {
+			biWebsite = BinaryWebsite.cast(new Website(++timestamp, 0).keyword(website.keyword()).url(website.url()));
+		}
+		if(!put(biWebsite, true)) { return new Result<BinaryWebsite>(Code.FAIL, "insert binary website internal error"); }
+		importedWebsites.add(biWebsite);
+		return new Result<BinaryWebsite>(Code.SUCCESS, "success", biWebsite);
+	}
+	
+	/** encrypt {@code batch} in parallel, and insert them without change record **/
+	private Result<Integer> importPasswords(List<Password> batch, CryptoKey encryptionKey,
+			List<BinaryPassword> importedPasswords) {
+		Result<List<BinaryPassword>> encryptedResult = decryptor.encrypt(cryptoDriver, batch, encryptionKey);
+		if(!encryptedResult.isSuccess()) { return new Result<Integer>(Code.FAIL, encryptedResult.msg); }
+		for(BinaryPassword password : encryptedResult.result) {
+			if(!put(password, true)) {
+				return new Result<Integer>(Code.FAIL, String.format("an existed entry mapping for username %s of website id %d",
+						password.username(), password.websiteId()));
+			}
+			importedPasswords.add(password);
+		}
+		return new Result<Integer>(Code.SUCCESS, "success", encryptedResult.result.size());
+	}
+	
+	private void discardImported(List<BinaryWebsite> importedWebsites, List<BinaryPassword> importedPasswords) {
+		for(BinaryPassword password : importedPasswords) { remove(password); }
+		for(BinaryWebsite website : importedWebsites) { remove(website); }
+	}
+	
+	/** a copy of {@code entry} for the website of {@code websiteId} **/
+	private static Password withWebsiteId(Password entry, long websiteId) {
+		Password password = new Password(websiteId, entry.header().username(), entry.header().timestamp());
+		password.password(entry.secret().password());
+		String kvp = entry.secret().keyValuePairs();
+		if(kvp != null) { password.keyValuePairs(kvp); }
+		return password;
+	}
+
 	@Override
 	public Result<Integer> canUndoTimes() {
 		return new Result<Integer>(Code.SUCCESS, "success", undoQueue.size());
@@ -1091,8 +1646,7 @@ public class BinaryStoreDriver implements StoreDriver {
 	private boolean undoUpdateWebsite(BinaryWebsite oldWebsite, BinaryWebsite newWebsite) { return replace(newWebsite, oldWebsite); }
 	
 	private boolean undoUpdatePassword(BinaryPassword oldPassword, BinaryPassword newPassword) {
-		PasswordKey passwordKey = new PasswordKey(oldPassword.websiteId(), oldPassword.username());
-		BinaryPassword existedPassword = passwordMap.get(passwordKey);
+		BinaryPassword existedPassword = passwordMap.get(oldPassword.websiteId(), oldPassword.username());
 		if(existedPassword == null) { return false; }
 		replace(existedPassword, oldPassword);
 		return true;
@@ -1201,107 +1755,819 @@ public class BinaryStoreDriver implements StoreDriver {
 	private boolean redoUpdateWebsite(BinaryWebsite oldWebsite, BinaryWebsite newWebsite) { return replace(oldWebsite, newWebsite); }
 	
 	private boolean redoUpdatePassword(BinaryPassword oldPassword, BinaryPassword newPassword) {
-		PasswordKey passwordKey = new PasswordKey(oldPassword.websiteId(), oldPassword.username());
-		BinaryPassword existedPassword = passwordMap.get(passwordKey);
+		BinaryPassword existedPassword = passwordMap.get(oldPassword.websiteId(), oldPassword.username());
 		if(existedPassword == null) { return false; }
 		replace(existedPassword, newPassword);
 		return true;
 	}
 	
-	@Override
-	public Result<Integer> needCommitCount() {
-		return new Result<Integer>(Code.SUCCESS, "success", undoQueue.size());
-	}
-
-	@Override
-	public Result<Throwable> commit() {
-		ChangedOperation<? extends InternalEntity> first = null;
-		int toBeFlushedCount = undoQueue.size();
+	/**
+	 * return an immutable snapshot of the store as of the last commit, the changes not committed are excluded.
+	 * it is taken once per commit on demand, and shared by all the callers until next commit.
+	 */
+	public synchronized Result<StoreSnapshot> snapshot() {
+		if(snapshot != null && snapshot.version() == version) {
+			return new Result<StoreSnapshot>(Code.SUCCESS, "success", snapshot);
+		}
 		try {
-			while((first = undoQueue.poll()) != null) {
-				OP op = first.op();
-				/*
-				 * for simplicity, flush changed operation sequentially.
-				 * to reduce the I/O operation, you can merge all changed operations
-				 * of the same entry first, and then flush to underlying storage. 
-				 */
-				switch(op) {
-				case INSERT:
-					InternalEntity inserted = first.after();
-					try {
-						if(inserted.type() == Type.WEBSITE) {
-							writeInsertWebsite((BinaryWebsite) inserted);
-						}else {
-							writeInsertPassword((BinaryPassword) inserted);
-						}
-					}catch(Exception e) {
-						return new Result<Throwable>(Code.FAIL, "commit insert internal error", e);
-					}
-					break;
-				case DELETE:
-					InternalEntity deleted = first.before();
-					try {
-						if(deleted.type() == Type.WEBSITE) {
-							writeDeleteWebsite((BinaryWebsite) deleted);
-						}else {
-							writeDeletePassword((BinaryPassword) deleted);
-						}
-					}catch(Exception e) {
-						return new Result<Throwable>(Code.FAIL, "commit delete internal error", e);
+			LongObjectMap<BinaryWebsite> websites = new LongObjectMap<BinaryWebsite>(websiteIdMap.size());
+			for(BinaryWebsite website : websiteIdMap.values()) { websites.put(website.websiteId(), website.copy()); }
+			CompositeKeyMap<BinaryPassword> passwords = new CompositeKeyMap<BinaryPassword>(passwordMap.size());
+			for(List<BinaryPassword> list : websiteIdPwdMap.values()) {
+				for(BinaryPassword password : list) { passwords.put(password.websiteId(), password.username(), password.copy()); }
+			}
+			// roll back the changes not committed from the latest, so the earliest image of each entity remains
+			Iterator<ChangedOperation<? extends InternalEntity>> iterator = undoQueue.descendingIterator();
+			while(iterator.hasNext()) {
+				ChangedOperation<? extends InternalEntity> changed = iterator.next();
+				InternalEntity image = changed.op() == OP.INSERT ? changed.after() : changed.before();
+				if(image.type() == Type.WEBSITE) {
+					BinaryWebsite website = (BinaryWebsite) image;
+					if(changed.op() == OP.INSERT) {
+						websites.remove(website.websiteId());
+					}else {
+						websites.put(website.websiteId(), website.copy());
 					}
-					break;
-				case UPDATE:
-					InternalEntity before = first.before();
-					InternalEntity after = first.after();
-					try {
-						if(before.type() == Type.WEBSITE) {
-							writeUpdateWebsite((BinaryWebsite) before, (BinaryWebsite) after);
-						}else {
-							writeUpdatePassword((BinaryPassword) before, (BinaryPassword) after);
-						}
-					}catch(Exception e) {
-						return new Result<Throwable>(Code.FAIL, "commit update internal error", e);
+				}else {
+					BinaryPassword password = (BinaryPassword) image;
+					if(changed.op() == OP.INSERT) {
+						passwords.remove(password.websiteId(), password.username());
+					}else if(changed.op() == OP.UPDATE) {
+						// the before image of update holds only the changed portions
+						BinaryPassword current = passwords.get(password.websiteId(), password.username());
+						passwords.put(password.websiteId(), password.username(), BinarySecrets.merge(current, password));
+					}else {
+						passwords.put(password.websiteId(), password.username(), password.copy());
 					}
-					break;
-				default:
-					undoQueue.offerFirst(first);
-					return new Result<Throwable>(Code.FAIL, "unsupported op type of commit operation: "+op);
 				}
-				// just for test
-				try { flushChanged(); }catch(IOException e) { throw new StoreException("commit change failed", e); }
-			}
-			return new Result<Throwable>(Code.SUCCESS, "success");
-		}finally {
-			try {
-				if(undoQueue.size() < toBeFlushedCount) { flushChanged(); }
-			}catch(IOException e) {
-				return new Result<Throwable>(Code.FAIL, "failed to force commit change to store path: "+storePath, e);
 			}
+			snapshot = new StoreSnapshot(version, cryptoDriver, websites.values(), withStoredSecrets(passwords.values()));
+		}catch(Exception e) {
+			return new Result<StoreSnapshot>(Code.FAIL, "failed to take snapshot of store path "+storePath+": "+e.getMessage());
 		}
+		return new Result<StoreSnapshot>(Code.SUCCESS, "success", snapshot);
 	}
 	
-	private void writeInsertWebsite(BinaryWebsite target) {
-		BinaryWebsite[] array = sortedWebsitesBuffer;
-		long targetWebsiteId = target.websiteId();
-		int actualCount = readWebsiteCount();
-		int offsetCount = actualCount == 0 ? 0 : findInsertIndex(targetWebsiteId, array, 0, actualCount-1);
-
-		long position = readWebsiteOffset();
-		int size = BinaryWebsite.occupiedSize();
+	/**
+	 * verify store file against the checksums kept by option {@link #OPT_BLOCK_CHECKSUMS}, by the threads of all processors.
+	 * fail with the positions of the corrupted blocks if any. the uncommitted changes are never written
+	 * to store file, so it can be verified at any time.
+	 */
+	public Result<List<Long>> verify() {
+		if(checksums == null) { return new Result<List<Long>>(Code.FAIL, "block checksums are disabled, set option "+OPT_BLOCK_CHECKSUMS); }
 		try {
-			// validateWebsiteInsertOffset(targetWebsiteId, position, size, actualCount, offsetCount);
-			long insertingPosition = position + offsetCount * size;
-			ByteBuffer buf = websiteBuffer;
-			buf.clear();
-			BinaryWebsite.write(buf, target);
-			buf.flip();
-			expandAndFill(insertingPosition, buf, size);
-			addToSortedWebsitesBuffer(target, offsetCount, actualCount);
-			writeWebsiteCount(actualCount + 1);
+			List<Long> corrupted = checksums.verify(storeChannel, Runtime.getRuntime().availableProcessors());
+			if(!corrupted.isEmpty()) {
+				return new Result<List<Long>>(Code.FAIL, corrupted.size()+" corrupted blocks found in store path: "+storePath, corrupted);
+			}
+			long pendingFrom = checksums.pendingFrom();
+			String msg = pendingFrom == BlockChecksums.NONE ? "success" : String.format("success, but the header and the blocks "
+					+ "starting at %d are not verified for an uncompleted commit", pendingFrom);
+			return new Result<List<Long>>(Code.SUCCESS, msg, corrupted);
 		}catch(IOException e) {
-			throw new StoreException(String.format("failed to insert website with id=%d to store path: %s",
-					targetWebsiteId, storePath), e);
+			return new Result<List<Long>>(Code.FAIL, "failed to verify store path: "+storePath+", "+e.getMessage());
+		}
+	}
+	
+	/**
+	 * revert all the changes committed after {@code timestamp} as recorded by history journal, even in the
+	 * previous sessions. the reverting changes are queued as the uncommitted ones, which can be undone or committed.
+	 * return the number of the reverting changes, it fails without any change if the history is disabled,
+	 * {@code timestamp} is before the history starts, there are uncommitted changes,
+	 * or any entry has been changed beyond the history.
+	 */
+	public Result<Integer> rollbackTo(long timestamp) {
+		if(history == null) { return new Result<Integer>(Code.FAIL, "history is disabled, set option "+OPT_HISTORY_SIZE); }
+		if(timestamp < history.startTime()) {
+			return new Result<Integer>(Code.FAIL, String.format("failed to rollback to %d, the history before %d has been dropped "
+					+ "or not recorded", timestamp, history.startTime()));
+		}
+		if(!undoQueue.isEmpty()) {
+			return new Result<Integer>(Code.FAIL, "commit or undo the uncommitted changes before rollback");
+		}
+		List<HistoryJournal.Entry> entries = null;
+		try {
+			entries = history.since(timestamp);
+		}catch(Exception e) {
+			return new Result<Integer>(Code.FAIL, "failed to read history journal: "+historyPath+", "+e.getMessage());
+		}
+		int reverted = 0;
+		String failure = null;
+		for(int i=entries.size()-1; i>=0 && failure==null; i--) {
+			HistoryJournal.Entry entry = entries.get(i);
+			try {
+				boolean isReverted = entry.type() == Type.WEBSITE ?
+						revertWebsite((BinaryWebsite) entry.before(), (BinaryWebsite) entry.after()) :
+						revertPassword((BinaryPassword) entry.before(), (BinaryPassword) entry.after());
+				if(isReverted) {
+					reverted = undoQueue.size();
+				}else {
+					failure = "entry changed beyond history";
+				}
+			}catch(Exception e) {
+				failure = e.getMessage();
+			}
+		}
+		if(failure != null) {
+			// revert the reverting changes, which are unable to redo
+			for(; reverted>0; reverted--) {
+				undo();
+				redoQueue.pollLast();
+			}
+			return new Result<Integer>(Code.FAIL, "failed to rollback to "+timestamp+": "+failure);
+		}
+		return new Result<Integer>(Code.SUCCESS, "success", reverted);
+	}
+	
+	/** queue the change from {@code after} back to {@code before}, return false if it isn't the current image **/
+	private boolean revertWebsite(BinaryWebsite before, BinaryWebsite after) {
+		if(before == null) {
+			BinaryWebsite current = websiteIdMap.get(after.websiteId());
+			if(!isCurrentWebsite(current, after)) { return false; }
+			List<BinaryPassword> passwords = websiteIdPwdMap.get(current.websiteId());
+			if(passwords != null && !passwords.isEmpty()) { return false; }
+			return appendDeleteOperation(current);
+		}
+		if(after == null) {
+			BinaryWebsite website = before.copy();
+			website.count(0);
+			website.offset(-1);
+			return appendInsertOperation(website);
+		}
+		BinaryWebsite current = websiteIdMap.get(after.websiteId());
+		if(!isCurrentWebsite(current, after)) { return false; }
+		BinaryWebsite oldWebsite = current.copy();
+		BinaryWebsite newWebsite = current.copy();
+		if(!current.keyword().equals(before.keyword())) {
+			newWebsite.changeKeyword(before.keyword());
+			oldWebsite.markKeywordChanged();
+		}
+		if(!current.url().equals(before.url())) {
+			newWebsite.changeUrl(before.url());
+			oldWebsite.markUrlChanged();
+		}
+		if(!newWebsite.isKeywordChanged() && !newWebsite.isUrlChanged()) { return true; }
+		newWebsite.timestamp(System.currentTimeMillis());
+		return appendUpdateOperation(oldWebsite, newWebsite);
+	}
+	
+	private static boolean isCurrentWebsite(BinaryWebsite current, BinaryWebsite after) {
+		return current != null && current.keyword().equals(after.keyword()) && current.url().equals(after.url());
+	}
+	
+	/** queue the change from {@code after} back to {@code before}, return false if it isn't the current image **/
+	private boolean revertPassword(BinaryPassword before, BinaryPassword after) {
+		if(before == null) {
+			BinaryPassword current = passwordMap.get(after.websiteId(), after.username());
+			return isCurrentPassword(current, after) && appendDeleteOperation(current);
+		}
+		if(after == null) {
+			if(!websiteIdMap.containsKey(before.websiteId())) { return false; }
+			return appendInsertOperation(before.copy());
+		}
+		BinaryPassword current = passwordMap.get(after.websiteId(), after.username());
+		if(!isCurrentPassword(current, after)) { return false; }
+		BinaryPassword oldPassword = current.copy();
+		oldPassword.markEncryptedPasswordChanged();
+		oldPassword.markEncryptedKeyValuePairsChanged();
+		BinaryPassword newPassword = before.copy();
+		newPassword.timestamp(System.currentTimeMillis());
+		newPassword.markEncryptedPasswordChanged();
+		newPassword.markEncryptedKeyValuePairsChanged();
+		return appendUpdateOperation(current, oldPassword, newPassword);
+	}
+	
+	/** every change of a password renews its timestamp, which is loaded even without secrets, and its encrypted secrets **/
+	private static boolean isCurrentPassword(BinaryPassword current, BinaryPassword after) {
+		if(current == null || current.timestamp() != after.timestamp()) { return false; }
+		return !current.hasSecrets() || (BinaryPassword.hasEqualPassword(current, after) && BinaryPassword.hasEqualKeyValuePair(current, after));
+	}
+	
+	@Override
+	public Result<Integer> needCommitCount() {
+		return new Result<Integer>(Code.SUCCESS, "success", undoQueue.size());
+	}
+
+	/** clear the committed changes, and release the slots of the deleted passwords **/
+	private void clearCommitted() {
+		version++;
+		if(secretSlab != null) {
+			for(ChangedOperation<? extends InternalEntity> changed : undoQueue) {
+				if(changed.op() == OP.DELETE && changed.before().type() == Type.PASSWORD) {
+					int slot = ((BinaryPassword) changed.before()).slot();
+					if(slot != BinaryPassword.NO_SLOT) { secretSlab.release(slot); }
+				}
+			}
+		}
+		undoQueue.clear();
+	}
+	
+	@Override
+	public Result<Throwable> commit() {
+		List<HistoryJournal.Entry> entries = null;
+		if(history != null && !undoQueue.isEmpty()) {
+			try {
+				entries = historyEntries(System.currentTimeMillis());
+			}catch(Exception e) {
+				return new Result<Throwable>(Code.FAIL, "failed to capture history of commit", e);
+			}
 		}
+		Result<Throwable> result = commitChanges();
+		if(!result.isSuccess() || entries == null) { return result; }
+		try {
+			history.append(entries);
+		}catch(Exception e) {
+			return new Result<Throwable>(Code.FAIL, "committed, but failed to append history journal: "+historyPath, e);
+		}
+		return result;
+	}
+	
+	/**
+	 * the images of the entries changed by the commit before and after it, one per entry.
+	 * it must be called before store file is modified, which the before images of passwords are read from,
+	 * since the change records of password update hold only the changed portions.
+	 */
+	private List<HistoryJournal.Entry> historyEntries(long commitTime) {
+		List<ChangedOperation<? extends InternalEntity>> changes = ChangedOperations.coalesce(undoQueue);
+		List<HistoryJournal.Entry> entries = new ArrayList<HistoryJournal.Entry>(changes.size());
+		LongObjectMap<ByteBuffer> storedBlocks = new LongObjectMap<ByteBuffer>();
+		for(ChangedOperation<? extends InternalEntity> changed : changes) {
+			InternalEntity before = changed.before();
+			if(before != null && before.type() == Type.PASSWORD) {
+				long websiteId = ((BinaryPassword) before).websiteId();
+				ByteBuffer block = storedBlocks.get(websiteId);
+				if(block == null) {
+					block = readStoredPasswords(websiteId);
+					storedBlocks.put(websiteId, block);
+				}
+				before = findStoredPassword(block, (BinaryPassword) before);
+			}
+			InternalEntity after = null;
+			if(changed.op() != OP.DELETE) {
+				// the after image of update holds only the changed portions, take the complete one in memory
+				InternalEntity target = changed.after();
+				if(target.type() == Type.WEBSITE) {
+					after = websiteIdMap.get(((BinaryWebsite) target).websiteId()).copy();
+				}else {
+					BinaryPassword password = (BinaryPassword) target;
+					after = withSecrets(passwordMap.get(password.websiteId(), password.username()));
+				}
+			}
+			entries.add(new HistoryJournal.Entry(commitTime, before, after));
+		}
+		return entries;
+	}
+	
+	private Result<Throwable> commitChanges() {
+		if(rewriteThreshold > 0 && undoQueue.size() >= rewriteThreshold) { return rewriteCommit(); }
+		if(writeAheadLog != null) { return writeAheadCommit(); }
+		if(isGroupCommit) { return groupCommit(); }
+		if(undoQueue.isEmpty()) { return new Result<Throwable>(Code.SUCCESS, "success"); }
+		
+		List<ChangedOperation<? extends InternalEntity>> changes = null;
+		try {
+			changes = ChangedOperations.coalesce(undoQueue);
+		}catch(StoreException e) {
+			return new Result<Throwable>(Code.FAIL, "commit internal error", e);
+		}
+		try {
+			beginChecksums(lowestChangedPosition());
+		}catch(IOException e) {
+			return new Result<Throwable>(Code.FAIL, "failed to save checksums: "+checksumPath, e);
+		}
+		clearCommitted();
+		try {
+			writeCoalesced(changes);
+		}catch(Exception e) {
+			return new Result<Throwable>(Code.FAIL, "commit internal error", e);
+		}finally {
+			try {
+				flushChanged();
+			}catch(IOException e) {
+				return new Result<Throwable>(Code.FAIL, "failed to force commit change to store path: "+storePath, e);
+			}
+		}
+		try {
+			endChecksums();
+		}catch(IOException e) {
+			return new Result<Throwable>(Code.FAIL, "committed, but failed to save checksums: "+checksumPath, e);
+		}
+		return new Result<Throwable>(Code.SUCCESS, "success");
+	}
+	
+	/**
+	 * write the coalesced changes, all the updates are written in place first,
+	 * then the inserts and deletes are applied by rewriting the tail of store file
+	 * starting at the lowest affected password block in a single pass,
+	 * so the succeeding records are shifted only once.
+	 */
+	private void writeCoalesced(List<ChangedOperation<? extends InternalEntity>> changes) throws IOException {
+		Map<Long, BinaryWebsite> insertedWebsites = new HashMap<Long, BinaryWebsite>();
+		List<BinaryWebsite> deletedWebsites = new ArrayList<BinaryWebsite>();
+		TreeMap<Long, List<BinaryPassword>> insertedPasswords = new TreeMap<Long, List<BinaryPassword>>();
+		TreeMap<Long, List<BinaryPassword>> deletedPasswords = new TreeMap<Long, List<BinaryPassword>>();
+		TreeMap<Long, List<ChangedOperation<? extends InternalEntity>>> updates =
+				new TreeMap<Long, List<ChangedOperation<? extends InternalEntity>>>();
+		for(ChangedOperation<? extends InternalEntity> changed : changes) {
+			OP op = changed.op();
+			switch(op) {
+			case INSERT:
+				InternalEntity inserted = changed.after();
+				if(inserted.type() == Type.WEBSITE) {
+					// the inserted website is kept by sorted websites buffer and modified later
+					BinaryWebsite website = ((BinaryWebsite) inserted).copy();
+					website.count(0);
+					website.offset(-1);
+					insertedWebsites.put(website.websiteId(), website);
+				}else {
+					BinaryPassword password = (BinaryPassword) inserted;
+					group(insertedPasswords, password.websiteId(), password);
+				}
+				break;
+			case DELETE:
+				InternalEntity deleted = changed.before();
+				if(deleted.type() == Type.WEBSITE) {
+					deletedWebsites.add((BinaryWebsite) deleted);
+				}else {
+					BinaryPassword password = (BinaryPassword) deleted;
+					group(deletedPasswords, password.websiteId(), password);
+				}
+				break;
+			case UPDATE:
+				InternalEntity before = changed.before();
+				long websiteId = before.type() == Type.WEBSITE ?
+						((BinaryWebsite) before).websiteId() : ((BinaryPassword) before).websiteId();
+				group(updates, websiteId, changed);
+				break;
+			default:
+				throw new UnsupportedOperationException("unsupported op type of commit operation: "+op);
+			}
+		}
+		
+		// updates never move any record, write them in the order of file offset
+		for(List<ChangedOperation<? extends InternalEntity>> group : updates.values()) {
+			for(ChangedOperation<? extends InternalEntity> changed : group) {
+				if(changed.before().type() == Type.PASSWORD) {
+					writeUpdatePassword((BinaryPassword) changed.before(), (BinaryPassword) changed.after());
+				}
+			}
+		}
+		for(List<ChangedOperation<? extends InternalEntity>> group : updates.values()) {
+			for(ChangedOperation<? extends InternalEntity> changed : group) {
+				if(changed.before().type() == Type.WEBSITE) {
+					writeUpdateWebsite((BinaryWebsite) changed.before(), (BinaryWebsite) changed.after());
+				}
+			}
+		}
+		if(insertedWebsites.isEmpty() && deletedWebsites.isEmpty()
+				&& insertedPasswords.isEmpty() && deletedPasswords.isEmpty()) {
+			return;
+		}
+		rewriteTail(insertedWebsites, deletedWebsites, insertedPasswords, deletedPasswords);
+	}
+	
+	private static <T> void group(Map<Long, List<T>> groups, long websiteId, T one) {
+		List<T> group = groups.get(websiteId);
+		if(group == null) {
+			group = new ArrayList<T>();
+			groups.put(websiteId, group);
+		}
+		group.add(one);
+	}
+	
+	private void rewriteTail(Map<Long, BinaryWebsite> insertedWebsites, List<BinaryWebsite> deletedWebsites,
+			TreeMap<Long, List<BinaryPassword>> insertedPasswords, TreeMap<Long, List<BinaryPassword>> deletedPasswords)
+			throws IOException {
+		WebsiteIndex index = websiteIndex;
+		long passwordOffset = readPasswordOffset();
+		long websiteOffset = readWebsiteOffset();
+		// the whole website region is rewritten, so read the records with keyword and url from store file
+		TreeMap<Long, BinaryWebsite> websites = new TreeMap<Long, BinaryWebsite>();
+		for(BinaryWebsite website : readStoredWebsites(websiteOffset, index.size())) { websites.put(website.websiteId(), website); }
+		for(BinaryWebsite deleted : deletedWebsites) {
+			BinaryWebsite existed = websites.get(deleted.websiteId());
+			if(existed == null) {
+				throw new StoreException(String.format("while delete website, website with id=%d not found in store path: %s",
+						deleted.websiteId(), storePath));
+			}
+		}
+		websites.putAll(insertedWebsites);
+		
+		// the password blocks ahead of the lowest resized website stay still
+		long startPosition = websiteOffset;
+		Long firstResized = null;
+		if(!insertedPasswords.isEmpty()) { firstResized = insertedPasswords.firstKey(); }
+		if(!deletedPasswords.isEmpty() && (firstResized == null || deletedPasswords.firstKey() < firstResized)) {
+			firstResized = deletedPasswords.firstKey();
+		}
+		long anchorWebsiteId = Long.MAX_VALUE;
+		if(firstResized != null) {
+			startPosition = passwordOffset;
+			anchorWebsiteId = Long.MIN_VALUE;
+			for(int i=index.floorIndex(firstResized); i>=0; i--) {
+				if(index.isValidOffset(i)) {
+					startPosition = passwordOffset + index.offset(i);
+					anchorWebsiteId = index.websiteId(i);
+					break;
+				}
+			}
+		}
+		
+		// the old records are streamed through the shifter, which holds only the ones displaced by the growth of the tail
+		TailShifter shifter = new TailShifter(startPosition, websiteOffset);
+		int size = BinaryPassword.occupiedSize(secretBlockSize);
+		ByteBuffer inserted = byteOrder(ByteBuffer.allocate(size));
+		
+		int passwordDelta = 0;
+		if(firstResized != null) {
+			for(BinaryWebsite website : websites.tailMap(anchorWebsiteId).values()) {
+				long websiteId = website.websiteId();
+				long blockOffset = shifter.position() - passwordOffset;
+				List<BinaryPassword> deleting = deletedPasswords.get(websiteId);
+				int remainingDeletes = deleting == null ? 0 : deleting.size();
+				int newCount = 0;
+				if(website.isValidOffset()) {
+					long blockStart = passwordOffset + website.offset();
+					for(int i=0; i<website.count(); i++) {
+						ByteBuffer record = shifter.next(blockStart + (long) i * size, size);
+						if(remainingDeletes > 0 && removeMatched(deleting, record, 0)) {
+							remainingDeletes--;
+							continue;
+						}
+						shifter.put(record);
+						newCount++;
+					}
+				}
+				if(remainingDeletes > 0) {
+					throw new StoreException(String.format("while delete password, failed to find password with id=%d and username=%s from store path: %s",
+							websiteId, deleting.get(0).username(), storePath));
+				}
+				List<BinaryPassword> inserting = insertedPasswords.get(websiteId);
+				if(inserting != null) {
+					for(BinaryPassword password : inserting) {
+						inserted.clear();
+						BinaryPassword.write(inserted, secretBlockSize, password);
+						inserted.clear();
+						shifter.put(inserted);
+						newCount++;
+					}
+				}
+				if(newCount != website.count()) {
+					passwordDelta += newCount - website.count();
+					website.count(newCount);
+					website.timestamp(System.currentTimeMillis());
+				}
+				if(website.isValidOffset() || newCount > 0) { website.offset(blockOffset); }
+			}
+			for(Long websiteId : insertedPasswords.keySet()) {
+				if(!websites.containsKey(websiteId)) {
+					throw new StoreException(String.format("while insert password, failed to find website with id=%d from store path: %s",
+							websiteId, storePath));
+				}
+			}
+		}
+		for(BinaryWebsite deleted : deletedWebsites) {
+			BinaryWebsite removed = websites.remove(deleted.websiteId());
+			if(removed.count() > 0) {
+				throw new StoreException(String.format("while delete website, website with id=%d still has %d passwords in store path: %s",
+						deleted.websiteId(), removed.count(), storePath));
+			}
+		}
+		long newWebsiteOffset = shifter.position();
+		ByteBuffer websiteRecord = byteOrder(ByteBuffer.allocate(BinaryWebsite.occupiedSize()));
+		for(BinaryWebsite website : websites.values()) {
+			websiteRecord.clear();
+			BinaryWebsite.write(websiteRecord, website);
+			websiteRecord.flip();
+			shifter.put(websiteRecord);
+		}
+		long newLength = shifter.finish();
+		if(isLogging()) {
+			writeAheadLog.truncate(newLength);
+		}else {
+			storeChannel.truncate(newLength);
+		}
+		touchChecksumsFrom(startPosition);
+		
+		if(passwordDelta != 0) { writePasswordCount(readPasswordCount() + passwordDelta); }
+		if(newWebsiteOffset != websiteOffset) { writeWebsiteOffset(newWebsiteOffset); }
+		writeWebsiteCount(websites.size());
+		WebsiteIndex newIndex = new WebsiteIndex(websites.size());
+		for(BinaryWebsite website : websites.values()) { newIndex.append(website); }
+		websiteIndex = newIndex;
+	}
+	
+	/** read {@code count} website records starting at {@code position} from store file in one go **/
+	private List<BinaryWebsite> readStoredWebsites(long position, int count) throws IOException {
+		ByteBuffer buf = byteOrder(ByteBuffer.allocate(count * BinaryWebsite.occupiedSize()));
+		while(buf.hasRemaining()) {
+			if(read(buf, position + buf.position()) < 0) {
+				throw new StoreException("incorrect website size from store path: "+storePath);
+			}
+		}
+		buf.flip();
+		List<BinaryWebsite> websites = new ArrayList<BinaryWebsite>(count);
+		for(int i=0; i<count; i++) { websites.add(BinaryWebsite.read(buf)); }
+		return websites;
+	}
+	
+	/** remove the one of {@code candidates} with the same username as the password record starting at {@code position} **/
+	private boolean removeMatched(List<BinaryPassword> candidates, ByteBuffer tail, int position) {
+		ByteBuffer username = tail.duplicate();
+		int usernamePosition = (int) BinaryPassword.usernamePosition(position);
+		username.limit(usernamePosition + BinaryPassword.maxUsernameSize());
+		for(int i=0; i<candidates.size(); i++) {
+			username.position(usernamePosition);
+			if(BinaryPassword.hasEqualUsername(candidates.get(i), username)) {
+				candidates.remove(i);
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * write a brand new store file from memory sequentially, and rename it over the store file,
+	 * all the changes to be committed are applied atomically.
+	 */
+	private Result<Throwable> rewriteCommit() { return rewriteStore().second; }
+	
+	/** commit as {@link #rewriteCommit()}, and tell whether the rewritten file takes effect, even if it fails **/
+	private Pair<Boolean, Result<Throwable>> rewriteStore() {
+		File rewriteFile = new File(storePath.getPath() + REWRITE_SUFFIX);
+		WebsiteIndex index = null;
+		try {
+			// the logged batches must not be replayed on the rewritten file
+			if(writeAheadLog != null) { checkpoint(); }
+		}catch(IOException e) {
+			return Pair.create(false, new Result<Throwable>(Code.FAIL, "failed to checkpoint write-ahead log: "+walPath, e));
+		}
+		try {
+			beginChecksums(HEADER_LEN);
+		}catch(IOException e) {
+			return Pair.create(false, new Result<Throwable>(Code.FAIL, "failed to save checksums: "+checksumPath, e));
+		}
+		try {
+			index = writeRewriteFile(rewriteFile);
+		}catch(Exception e) {
+			rewriteFile.delete();
+			return Pair.create(false, new Result<Throwable>(Code.FAIL, "failed to rewrite store path: "+rewriteFile, e));
+		}
+		Exception reloadFailure = null;
+		try {
+			replaceStoreFile(rewriteFile);
+			reloadMetadata();
+		}catch(Exception e) {
+			// the rewritten file left means it isn't renamed over store file, so nothing is committed
+			if(rewriteFile.exists()) {
+				return Pair.create(false,
+						new Result<Throwable>(Code.FAIL, "failed to replace store path with rewritten file: "+rewriteFile, e));
+			}
+			reloadFailure = e;
+		}
+		// the rewritten file is live once renamed, the commit is done even if it can't be reloaded
+		websiteIndex = index;
+		clearCommitted();
+		touchChecksumsFrom(0);
+		if(reloadFailure != null) {
+			return Pair.create(true,
+					new Result<Throwable>(Code.FAIL, "committed, but failed to reload rewritten store path: "+storePath, reloadFailure));
+		}
+		try {
+			endChecksums();
+		}catch(IOException e) {
+			return Pair.create(true, new Result<Throwable>(Code.FAIL, "committed, but failed to save checksums: "+checksumPath, e));
+		}
+		return Pair.create(true, new Result<Throwable>(Code.SUCCESS, "success"));
+	}
+	
+	/** write all the websites and passwords in memory to {@code rewriteFile}, return the index of the websites in it **/
+	private WebsiteIndex writeRewriteFile(File rewriteFile) throws IOException {
+		long[] websiteIds = websiteIdMap.keys();
+		Arrays.sort(websiteIds);
+		int websiteCount = websiteIds.length;
+		BinaryWebsite[] array = new BinaryWebsite[websiteCount];
+		WebsiteIndex newIndex = new WebsiteIndex(websiteCount);
+		int size = BinaryPassword.occupiedSize(secretBlockSize);
+		long offset = 0;
+		int passwordCount = 0;
+		for(int i=0; i<websiteCount; i++) {
+			long websiteId = websiteIds[i];
+			BinaryWebsite website = websiteIdMap.get(websiteId).copy();
+			List<BinaryPassword> passwords = websiteIdPwdMap.get(websiteId);
+			int count = passwords == null ? 0 : passwords.size();
+			int index = websiteIndex.indexOf(websiteId);
+			if(index != -1) { website.timestamp(Math.max(website.timestamp(), websiteIndex.timestamp(index))); }
+			if(count != (index == -1 ? 0 : websiteIndex.count(index))) { website.timestamp(System.currentTimeMillis()); }
+			website.count(count);
+			website.offset(count > 0 || (index != -1 && websiteIndex.isValidOffset(index)) ? offset : -1);
+			array[i] = website;
+			newIndex.append(website);
+			offset += count * size;
+			passwordCount += count;
+		}
+		
+		long passwordOffset = HEADER_LEN;
+		long websiteOffset = passwordOffset + offset;
+		ByteBuffer buf = byteOrder(ByteBuffer.allocate(64 * 1024));
+		RandomAccessFile file = new RandomAccessFile(rewriteFile, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			buf.put(StoreFormat.header(initMetaBuffer(passwordCount, passwordOffset, websiteCount, websiteOffset)));
+			for(int i=0; i<websiteCount; i++) {
+				List<BinaryPassword> passwords = websiteIdPwdMap.get(array[i].websiteId());
+				if(passwords == null) { continue; }
+				ByteBuffer block = null;
+				for(BinaryPassword password : passwords) {
+					if(password.slot() != BinaryPassword.NO_SLOT) {
+						password = withSecrets(password);
+					}else if(!password.hasSecrets()) {
+						// read the stored passwords of the website at most once, instead of caching all of them
+						BinaryPassword stored = secretCache.get(password);
+						if(stored == null) {
+							if(block == null) { block = readStoredPasswords(array[i].websiteId()); }
+							stored = findStoredPassword(block, password);
+						}
+						password = password.fill(stored);
+					}
+					if(buf.remaining() < size) { drain(channel, buf); }
+					int position = buf.position();
+					BinaryPassword.write(buf, secretBlockSize, password);
+					buf.position(position + size);
+				}
+			}
+			for(int i=0; i<websiteCount; i++) {
+				if(buf.remaining() < BinaryWebsite.occupiedSize()) { drain(channel, buf); }
+				BinaryWebsite.write(buf, array[i]);
+			}
+			drain(channel, buf);
+			channel.force(true);
+		}finally {
+			file.close();
+		}
+		return newIndex;
+	}
+	
+	private static void drain(FileChannel channel, ByteBuffer buf) throws IOException {
+		buf.flip();
+		while(buf.hasRemaining()) { channel.write(buf); }
+		buf.clear();
+	}
+	
+	/** rename {@code rewriteFile} over the store file, and reopen it with lock as before **/
+	private void replaceStoreFile(File rewriteFile) throws IOException {
+		boolean isStoreFileLock = storeLock != null;
+		if(storeLock != null) { storeLock.release(); storeLock = null; }
+		storeChannel.close();
+		storeMappedFile.close();
+		try {
+			if(!rewriteFile.renameTo(storePath)) {
+				// some platforms can't rename over an existing file, it is recovered on next open if crash here
+				if(!storePath.delete() || !rewriteFile.renameTo(storePath)) {
+					throw new StoreException(String.format("failed to rename %s to %s", rewriteFile, storePath));
+				}
+			}
+		}finally {
+			// never create an empty store file, the rewritten file is renamed on next open
+			if(storePath.exists()) {
+				storeMappedFile = new RandomAccessFile(storePath, "rw");
+				storeChannel = storeMappedFile.getChannel();
+				if(isStoreFileLock) { storeLock = storeChannel.lock(); }
+			}else {
+				storeMappedFile = null;
+				storeChannel = null;
+			}
+		}
+	}
+	
+	/** read the metadata buffer mirroring store file again after store file is replaced or restored **/
+	private void reloadMetadata() throws IOException {
+		metadataBuffer.clear();
+		if(storeChannel.read(metadataBuffer, METADATA_POSITION) != META_DATA_LEN) {
+			throw new StoreException("incorrect metadata size from store path: "+storePath);
+		}
+	}
+	
+	/**
+	 * save the original image of the regions to be modified to a rollback journal first,
+	 * then apply all the changed operations and force only once; if any operation failed,
+	 * the store file is rolled back and all the changed operations remain to be committed.
+	 */
+	private Result<Throwable> groupCommit() {
+		if(undoQueue.isEmpty()) { return new Result<Throwable>(Code.SUCCESS, "success"); }
+		try {
+			beginChecksums(lowestChangedPosition());
+		}catch(IOException e) {
+			return new Result<Throwable>(Code.FAIL, "failed to save checksums: "+checksumPath, e);
+		}
+		try {
+			RollbackJournal.write(journalPath, storeChannel, HEADER_LEN, lowestChangedPosition());
+		}catch(Exception e) {
+			return new Result<Throwable>(Code.FAIL, "failed to write rollback journal: "+journalPath, e);
+		}
+		
+		try {
+			writeCoalesced(ChangedOperations.coalesce(undoQueue));
+			flushChanged();
+		}catch(Exception e) {
+			try {
+				rollback();
+				endChecksums();
+			}catch(Exception re) {
+				return new Result<Throwable>(Code.FAIL, "failed to roll back store path, it will be rolled back on next open: "+storePath, re);
+			}
+			return new Result<Throwable>(Code.FAIL, "commit internal error, rolled back", e);
+		}
+		clearCommitted();
+		try {
+			discardJournal();
+		}catch(IOException e) {
+			return new Result<Throwable>(Code.FAIL, "committed, but failed to discard rollback journal: "+journalPath, e);
+		}
+		try {
+			endChecksums();
+		}catch(IOException e) {
+			return new Result<Throwable>(Code.FAIL, "committed, but failed to save checksums: "+checksumPath, e);
+		}
+		return new Result<Throwable>(Code.SUCCESS, "success");
+	}
+	
+	/**
+	 * log all the writes of the coalesced changes as one batch and force the log, then apply them to store file
+	 * without forcing it. if any operation failed, nothing is written to store file, and the buffers mirroring it
+	 * are reloaded. store file is forced on checkpoint, once the log grows to {@link #OPT_CHECKPOINT_SIZE}.
+	 */
+	private Result<Throwable> writeAheadCommit() {
+		if(undoQueue.isEmpty()) { return new Result<Throwable>(Code.SUCCESS, "success"); }
+		try {
+			writeAheadLog.begin(storeChannel);
+			writeCoalesced(ChangedOperations.coalesce(undoQueue));
+			writeAheadLog.commit();
+		}catch(Exception e) {
+			writeAheadLog.discard();
+			try {
+				reloadMirrors();
+			}catch(IOException re) {
+				return new Result<Throwable>(Code.FAIL, "failed to reload store path after commit failed: "+storePath, re);
+			}
+			return new Result<Throwable>(Code.FAIL, "commit internal error, nothing written", e);
+		}
+		clearCommitted();
+		try {
+			writeAheadLog.apply(storeChannel);
+			if(writeAheadLog.size() >= checkpointSize) { checkpoint(); }
+		}catch(IOException e) {
+			return new Result<Throwable>(Code.FAIL, "committed to write-ahead log, it will be applied on next open: "+walPath, e);
+		}
+		try {
+			// the checksums are saved on checkpoint, and computed again if any batch is replayed after crash
+			if(checksums != null) { checksums.refresh(storeChannel); }
+		}catch(IOException e) {
+			return new Result<Throwable>(Code.FAIL, "committed, but failed to checksum store path: "+storePath, e);
+		}
+		return new Result<Throwable>(Code.SUCCESS, "success");
+	}
+	
+	/**
+	 * return the lowest position of store file may be modified by the changed operations.
+	 * the records following a modified position may be shifted, but never ahead of it.
+	 */
+	private long lowestChangedPosition() {
+		long lowest = Long.MAX_VALUE;
+		for(ChangedOperation<? extends InternalEntity> changed : undoQueue) {
+			InternalEntity target = changed.after() != null ? changed.after() : changed.before();
+			if(target.type() == Type.WEBSITE) {
+				lowest = Math.min(lowest, readWebsiteOffset());
+			}else {
+				lowest = Math.min(lowest, lowestPasswordPosition(((BinaryPassword) target).websiteId()));
+			}
+		}
+		return lowest;
+	}
+	
+	private long lowestPasswordPosition(long websiteId) {
+		WebsiteIndex index = websiteIndex;
+		for(int i=index.floorIndex(websiteId); i>=0; i--) {
+			if(index.isValidOffset(i)) { return readPasswordOffset() + index.offset(i); }
+		}
+		return readPasswordOffset();
+	}
+	
+	/** restore store file from rollback journal, and reload the buffers mirroring store file **/
+	private void rollback() throws IOException {
+		RollbackJournal.restore(journalPath, storeChannel);
+		discardJournal();
+		reloadMirrors();
+	}
+	
+	/** reload the metadata buffer and website index mirroring store file **/
+	private void reloadMirrors() throws IOException {
+		reloadMetadata();
+		int count = readWebsiteCount();
+		WebsiteIndex index = new WebsiteIndex(count);
+		for(BinaryWebsite website : readStoredWebsites(readWebsiteOffset(), count)) { index.append(website); }
+		websiteIndex = index;
 	}
 	
 	@SuppressWarnings("unused")
@@ -1362,60 +2628,16 @@ public class BinaryStoreDriver implements StoreDriver {
 		}
 	}
 	
-	private void expandAndFill(long position, ByteBuffer buf, int increamentSize) throws IOException {
-		long fileSize = storeChannel.size();
-		int movedBytes = (int) (fileSize - position);
-		if(movedBytes > 0) {
-			transfer(position, movedBytes, position + increamentSize);
-		}
-		int writeBytes = storeChannel.write(buf, position);
-		if(writeBytes != increamentSize) {
-			throw new StoreException(String.format("failed to write %d bytes starting at %d to store path: %s",
-					increamentSize, position, storePath));
-		}
-	}
-	
-	private void transfer(long srcPosition, int transferBytes, long destPosition) throws IOException {
-		/**
-		 * when using transferFrom() or transferTo() on a FileChannel to transfer data from one region of
-		 * the file to another, the call hangs on the OS X platform, whether the source region overlap with
-		 * destination region or not, a similar bug report for openjdk see {@link https://bugs.openjdk.java.net/browse/JDK-8140241};
-		 * while on Windows platform, the call doesn't hang, but causes data overwritten if two regions overlaps;
-		 * other platforms not tested;
-		 * 
-		 * although transfer operation is potentially much more efficient, a simple loop that reads from
-		 * this channel and writes to itself was also choosen for corectness guarantee.
-		 */
-		ByteBuffer movedBuf = ByteBuffer.allocate((int)transferBytes);
-		int readBytes = storeChannel.read(movedBuf, srcPosition);
-		if(readBytes != transferBytes) {
-			throw new StoreException(String.format("for expand, failed to read %d bytes starting at %d from store path: %s",
-					transferBytes, srcPosition, storePath));
-		}
-		movedBuf.flip();
-		int writeBytes = storeChannel.write(movedBuf, destPosition);
-		if(writeBytes != transferBytes) {
-			throw new StoreException(String.format("for expand, failed to write %d bytes starting at %d to store path: %s",
-					transferBytes, destPosition, storePath));
-		}
-	}
-
 	private int readPasswordCount() { return readIntFromMetadataBuffer(0); }
 	private long readPasswordOffset() { return readLongFromMetadataBuffer(4); }
 	private int readWebsiteCount() { return readIntFromMetadataBuffer(12); }
 	private long readWebsiteOffset() { return readLongFromMetadataBuffer(16); }
 	
-	private int readIntFromMetadataBuffer(int offset) {
-		ByteBuffer buf = metadataBuffer;
-		buf.clear().position(offset);
-		return buf.getInt();
-	}
+	/** absolute get keeps the buffer untouched, so the concurrent reads are safe **/
+	private int readIntFromMetadataBuffer(int offset) { return metadataBuffer.getInt(offset); }
 	
-	private long readLongFromMetadataBuffer(int offset) {
-		ByteBuffer buf = metadataBuffer;
-		buf.clear().position(offset);
-		return buf.getLong();
-	}
+	/** absolute get keeps the buffer untouched, so the concurrent reads are safe **/
+	private long readLongFromMetadataBuffer(int offset) { return metadataBuffer.getLong(offset); }
 	
 	private void writePasswordCount(int passwordCount) { writeIntToMetadataBuffer(0, passwordCount); }
 	@SuppressWarnings("unused")
@@ -1428,7 +2650,7 @@ public class BinaryStoreDriver implements StoreDriver {
 		buf.clear().position(offset);
 		buf.putInt(value);
 		
-		writeInt(MAGIC.length + offset, value);
+		writeInt(METADATA_POSITION + offset, value);
 	}
 	
 	private void writeInt(long position, int value) {
@@ -1441,6 +2663,11 @@ public class BinaryStoreDriver implements StoreDriver {
 	
 	private void write(ByteBuffer buf, long position) {
 		int length = buf.capacity();
+		touchChecksums(position, length);
+		if(isLogging()) {
+			writeAheadLog.write(buf, position);
+			return;
+		}
 		try {
 			if(storeChannel.write(buf, position) != length) {
 				throw new StoreException(String.format("failed to write %d bytes at position %d to store path: %s",
@@ -1452,12 +2679,20 @@ public class BinaryStoreDriver implements StoreDriver {
 		}
 	}
 	
+	/** whether the writes are being logged to write-ahead log instead of store file **/
+	private boolean isLogging() { return writeAheadLog != null && writeAheadLog.isLogging(); }
+	
+	/** read from store file, through the writes being logged to write-ahead log if any **/
+	private int read(ByteBuffer buf, long position) throws IOException {
+		return writeAheadLog != null ? writeAheadLog.read(storeChannel, buf, position) : storeChannel.read(buf, position);
+	}
+	
 	private void writeLongToMetadataBuffer(int offset, long value) {
 		ByteBuffer buf = metadataBuffer;
 		buf.clear().position(offset);
 		buf.putLong(value);
 		
-		writeLong(MAGIC.length + offset, value);
+		writeLong(METADATA_POSITION + offset, value);
 	}
 	
 	private void writeLong(long position, long value) {
@@ -1468,191 +2703,6 @@ public class BinaryStoreDriver implements StoreDriver {
 		write(buf, position);
 	}
 	
-	private void writeInsertPassword(BinaryPassword target) {
-		BinaryWebsite[] array = sortedWebsitesBuffer;
-		long targetWebsiteId = target.websiteId();
-		int actualWebsiteCount = readWebsiteCount();
-		long position = readPasswordOffset();
-		int actualCount = readPasswordCount();
-		int size = BinaryPassword.occupiedSize(secretBlockSize);
-		ByteBuffer buf = passwordBuffer;
-		buf.clear();
-		BinaryPassword.write(buf, secretBlockSize, target);
-		buf.flip();
-
-		try {
-			int curIndex = findExactIndex(targetWebsiteId, array, 0, actualWebsiteCount-1);
-			if(curIndex == -1) {
-				throw new StoreException(String.format("while insert password, failed to find website with id=%d from store path: %s",
-						targetWebsiteId, storePath));
-			}
-			BinaryWebsite existedWebsite = array[curIndex];
-			long insertingPosition = position;
-			long pwdOffsetOfWebsite = 0;
-			if(actualCount > 0) {
-				if(existedWebsite.isValidOffset()) {
-					pwdOffsetOfWebsite = existedWebsite.offset();
-					insertingPosition += pwdOffsetOfWebsite;
-					insertingPosition += existedWebsite.count()*size;
-				}else {
-					int prevIndex = -1;
-					for(int i=curIndex-1; i>=0; i--) {
-						if(array[i].isValidOffset()) {
-							prevIndex = i;
-							break;
-						}
-					}
-					if(prevIndex != -1) {
-						BinaryWebsite prevWebsite = array[prevIndex];
-						insertingPosition += prevWebsite.offset();
-						insertingPosition += prevWebsite.count()*size;
-					}
-					pwdOffsetOfWebsite = insertingPosition - position;
-				}
-			}
-			expandAndFill(insertingPosition, buf, size);
-			writePasswordCount(actualCount+1);
-			writeWebsiteOffset(readWebsiteOffset()+size);
-			writeCurrentPwdCountAndOffset(curIndex, array, pwdOffsetOfWebsite, 1);
-			writeSucceedingOffsets(array, curIndex+1, actualWebsiteCount, size);
-		}catch(IOException e) {
-			throw new StoreException(String.format("failed to insert password with website id=%d and username=%s from store path: %s",
-					targetWebsiteId, target.username(), storePath), e);
-		}
-	}
-	
-	/**
-	 * return the exact index of {@code targetWebsiteId}, if it is contained in the {@code array}
-	 * within the specified range {@code [begin, end]}; otherwise {@code -1} **/
-	private int findExactIndex(long targetWebsiteId, BinaryWebsite[] array, int begin, int end) {
-		int index = -1;
-		while(begin <= end) {
-			int mid = (begin + end) / 2;
-			long websiteId = array[mid].websiteId();
-			if(targetWebsiteId == websiteId) {
-				index = mid;
-				break;
-			}else if(targetWebsiteId < websiteId) {
-				end = mid -1;
-			}else {
-				begin = mid + 1;
-			}
-		}
-		return index;
-	}
-	
-	private void writeCurrentPwdCountAndOffset(int curIndex, BinaryWebsite[] array, long newOffset, int deltaCount) throws IOException {
-		// update password count and password entries offset of current website
-		long websiteOffset = readWebsiteOffset();
-		int size = BinaryWebsite.occupiedSize();
-		long position = websiteOffset + curIndex * size;
-		BinaryWebsite website = array[curIndex];
-		website.incrementCount(deltaCount);
-		website.timestamp(System.currentTimeMillis());
-		if(!website.isValidOffset()) { website.offset(newOffset); }
-		writePwdPortionOfWebsite(position, website);
-	}
-	
-	private void writePwdPortionOfWebsite(long websitePosition, BinaryWebsite website) {
-		long position = BinaryWebsite.pwdPortionPosition(websitePosition);
-		ByteBuffer buf = pwdPortionWebsiteBuffer;
-		buf.clear();
-		BinaryWebsite.writePwdPortion(buf, website);
-		buf.flip();
-		write(buf, position);
-	}
-	
-	private void writeSucceedingOffsets(BinaryWebsite[] array, int firstIndex, int totalCount,
-			int deltaOffset) throws IOException {
-		// update password offset of succeeding websites
-		long websiteOffset = readWebsiteOffset();
-		int size = BinaryWebsite.occupiedSize();
-		for(int i=firstIndex; i<totalCount; i++) {
-			BinaryWebsite website = array[i];
-			if(website.isValidOffset()) {
-				website.incrementOffset(deltaOffset);
-				long position = websiteOffset + i * size;
-				writePasswordOffsetOfWebsite(position, website.offset());
-			}
-		}
-	}
-	
-	private void writePasswordOffsetOfWebsite(long websitePosition, long newOffset) throws IOException {
-		long position = BinaryWebsite.offsetPosition(websitePosition);
-		writeLong(position, newOffset);
-	}
-	
-	private void writeDeleteWebsite(BinaryWebsite target) {
-		long targetWebsiteId = target.websiteId();
-		BinaryWebsite[] array = sortedWebsitesBuffer;
-		int actualCount = readWebsiteCount();
-		int removingIndex = findExactIndex(targetWebsiteId, array, 0, actualCount-1);
-		if(removingIndex == -1) {
-			throw new StoreException(String.format("while delete website, website with id=%d not found in store path: %s",
-					targetWebsiteId, storePath));
-		}
-		
-		try {
-			long position = readWebsiteOffset();
-			int size = BinaryWebsite.occupiedSize();
-			position += removingIndex * size;
-			truncate(position, size);
-			
-			// check website count equal 0 or not
-			System.arraycopy(array, removingIndex+1, array, removingIndex, actualCount - removingIndex - 1);
-			array[actualCount-1] = null;
-			
-			writeWebsiteCount(actualCount-1);
-		}catch(IOException e) {
-			throw new StoreException(String.format("failed to delete website with id=%d from store path: %s",
-					targetWebsiteId, storePath), e);
-		}
-	}
-	
-	private void truncate(long position, int decreamentSize) throws IOException {
-		long fileSize = storeChannel.size();
-		long nextPosition = position + decreamentSize;
-		int movedBytes = (int) (fileSize - nextPosition);
-		if(movedBytes > 0) {
-			transfer(nextPosition, movedBytes, position);
-		}
-		storeChannel.truncate(fileSize - decreamentSize);
-	}
-	
-	private void writeDeletePassword(BinaryPassword target) {
-		BinaryWebsite[] array = sortedWebsitesBuffer;
-		int actualWebsiteCount = readWebsiteCount();
-		long position = readPasswordOffset();
-		int actualCount = readPasswordCount();
-		long targetWebsiteId = target.websiteId();
-		int size = BinaryPassword.occupiedSize(secretBlockSize);
-		
-		try {
-			int curIndex = findExactIndex(targetWebsiteId, array, 0, actualWebsiteCount-1);
-			if(curIndex == -1) {
-				throw new StoreException(String.format("while delete password, failed to find website with id=%d from store path: %s",
-						targetWebsiteId, storePath));
-			}
-			BinaryWebsite existedWebsite = array[curIndex];
-			
-			long deletingPosition = position + existedWebsite.offset();
-			int passwordCount = existedWebsite.count();
-			deletingPosition = findPasswordPostion(deletingPosition, passwordCount, size, target);
-			if(deletingPosition == -1) {
-				throw new StoreException(String.format("while delete password, failed to find password with id=%d and username=%s from store path: %s",
-						targetWebsiteId, target.username(), storePath));
-			}
-			truncate(deletingPosition, size);
-			writePasswordCount(actualCount-1);
-			writeWebsiteOffset(readWebsiteOffset()-size);
-			writeCurrentPwdCountAndOffset(curIndex, array, existedWebsite.offset(), -1);
-			writeSucceedingOffsets(array, curIndex+1, actualWebsiteCount, -size);
-		}catch(IOException e) {
-			throw new StoreException(String.format("failed to delete password with website id=%d and username=%s from store path: %s",
-					targetWebsiteId, target.username(), storePath), e);
-		}
-	}
-	
 	/** return the position of target password if it exists, otherwise -1 **/
 	private long findPasswordPostion(long startPosition, int passwordCount, int passwordSize,
 			BinaryPassword targetPassword) throws IOException {
@@ -1660,7 +2710,7 @@ public class BinaryStoreDriver implements StoreDriver {
 		long position = startPosition;
 		for(int i=0; i<passwordCount; i++) {
 			buf.clear();
-			storeChannel.read(buf, BinaryPassword.usernamePosition(position));
+			read(buf, BinaryPassword.usernamePosition(position));
 			buf.flip();
 			if(BinaryPassword.hasEqualUsername(targetPassword, buf)) {
 				return position;
@@ -1672,31 +2722,26 @@ public class BinaryStoreDriver implements StoreDriver {
 	
 	private void writeUpdateWebsite(BinaryWebsite oldWebsite, BinaryWebsite newWebsite) {
 		long targetWebsiteId = newWebsite.websiteId();
-		BinaryWebsite[] array = sortedWebsitesBuffer;
-		int actualCount = readWebsiteCount();
-		int index = findExactIndex(targetWebsiteId, array, 0, actualCount-1);
+		int index = websiteIndex.indexOf(targetWebsiteId);
 		if(index == -1) {
 			throw new StoreException(String.format("while update website, website with id=%d not found in store path: %s",
 					targetWebsiteId, storePath));
 		}
 		
 		try {
-			BinaryWebsite biWebsite = array[index];
 			long position = readWebsiteOffset();
 			int size = BinaryWebsite.occupiedSize();
 			position += index * size;
 			if(newWebsite.isKeywordChanged()) {
 				if(newWebsite.isUrlChanged()) {
 					writeKeywordAndUrl(position, newWebsite);
-					biWebsite.pasteUrl(newWebsite);
 				}else {
 					writeKeyword(position, newWebsite);
 				}
-				biWebsite.pasteKeyword(newWebsite);
+				websiteIndex.timestamp(index, newWebsite.timestamp());
 			}else {
 				if(newWebsite.isUrlChanged()) {
 					writeUrl(position, newWebsite);
-					biWebsite.pasteUrl(newWebsite);
 				}else {
 					throw new StoreException(String.format("while update website, no changed found for website id=%d in store path: %s",
 							targetWebsiteId, storePath));
@@ -1736,21 +2781,18 @@ public class BinaryStoreDriver implements StoreDriver {
 	}
 	
 	private void writeUpdatePassword(BinaryPassword oldPassword, BinaryPassword newPassword) {
-		BinaryWebsite[] array = sortedWebsitesBuffer;
-		int actualWebsiteCount = readWebsiteCount();
 		long position = readPasswordOffset();
 		long targetWebsiteId = oldPassword.websiteId();
 		int size = BinaryPassword.occupiedSize(secretBlockSize);
 		
 		try {
-			int curIndex = findExactIndex(targetWebsiteId, array, 0, actualWebsiteCount-1);
+			int curIndex = websiteIndex.indexOf(targetWebsiteId);
 			if(curIndex == -1) {
 				throw new StoreException(String.format("while update password, failed to find website with id=%d from store path: %s",
 						targetWebsiteId, storePath));
 			}
-			BinaryWebsite existedWebsite = array[curIndex];
-			long updatingPosition = position + existedWebsite.offset();
-			int passwordCount = existedWebsite.count();
+			long updatingPosition = position + websiteIndex.offset(curIndex);
+			int passwordCount = websiteIndex.count(curIndex);
 			updatingPosition = findPasswordPostion(updatingPosition, passwordCount, size, oldPassword);
 			if(updatingPosition == -1) {
 				throw new StoreException(String.format("while update password, failed to find password with id=%d and username=%s from store path: %s",
@@ -1793,7 +2835,9 @@ public class BinaryStoreDriver implements StoreDriver {
 		write(buf, BinaryPassword.pwdPortionPosition(startPosition));
 	}
 	
+	/** write the timestamp and the key-value pairs, the password portion between them is untouched **/
 	private void writeKvp(long startPosition, BinaryPassword newPassword) {
+		writeLong(BinaryPassword.pwdPortionPosition(startPosition), newPassword.timestamp());
 		ByteBuffer buf = keyValuePairBuffer;
 		buf.clear();
 		BinaryPassword.writeKeyValuePair(buf, secretBlockSize, newPassword);
@@ -1809,6 +2853,7 @@ public class BinaryStoreDriver implements StoreDriver {
 		if(!result.isSuccess()) { return result; }
 		if(!isClosed) {
 			try {
+				if(writeAheadLog != null) { checkpoint(); }
 				release();
 			}catch(Exception e) {
 				return new Result<Throwable>(Code.FAIL, "release resources failed", e);
@@ -1818,24 +2863,105 @@ public class BinaryStoreDriver implements StoreDriver {
 		return new Result<Throwable>(Code.SUCCESS, "success");
 	}
 	
-	private static final class PasswordKey {
-		final long websiteId;
-		final String username;
-		PasswordKey(long websiteId, String username) {
-			this.websiteId = websiteId;
-			this.username = username;
+	/**
+	 * rewrite the tail of store file in place through fixed-size buffers, from the position the first resized block starts at.
+	 * the old records are read before the writes reach them, so the ones displaced by the grown tail are held in memory
+	 * until they are written, which are no more than the inserted ones, instead of the whole old tail.
+	 */
+	private class TailShifter {
+		
+		/** the end of the old records to read **/
+		private final long oldEnd;
+		/** the old records read but not passed yet, whose position is at {@link #aheadPosition} **/
+		private ByteBuffer ahead = byteOrder(ByteBuffer.allocate(TAIL_BUFFER_SIZE));
+		private long aheadPosition;
+		/** the new records to write at {@link #writePosition} **/
+		private final ByteBuffer out = byteOrder(ByteBuffer.allocate(TAIL_BUFFER_SIZE));
+		private long writePosition;
+		/** the copy of the last old record, since the read ones may be moved by reading ahead **/
+		private ByteBuffer record;
+		
+		TailShifter(long startPosition, long oldEnd) {
+			this.oldEnd = oldEnd;
+			this.aheadPosition = startPosition;
+			this.writePosition = startPosition;
+			ahead.flip();
+		}
+		
+		/** the position the next written record will be at **/
+		long position() { return writePosition + out.position(); }
+		
+		/**
+		 * the old record of {@code size} bytes at {@code position}, which must not be ahead of the last one's end.
+		 * it is valid until the next one.
+		 */
+		ByteBuffer next(long position, int size) throws IOException {
+			if(position < aheadPosition || position + size > oldEnd) {
+				throw new StoreException(String.format("incorrect password record at %d in store path: %s", position, storePath));
+			}
+			readAhead(position + size);
+			ahead.position(ahead.position() + (int) (position - aheadPosition));
+			if(record == null || record.capacity() != size) { record = byteOrder(ByteBuffer.allocate(size)); }
+			record.clear();
+			ByteBuffer source = ahead.duplicate();
+			source.limit(source.position() + size);
+			record.put(source).flip();
+			ahead.position(ahead.position() + size);
+			aheadPosition = position + size;
+			return record;
+		}
+		
+		/** write the remaining bytes of {@code record} following the previous one **/
+		void put(ByteBuffer record) throws IOException {
+			while(record.hasRemaining()) {
+				if(!out.hasRemaining()) { flush(); }
+				int count = Math.min(out.remaining(), record.remaining());
+				ByteBuffer part = record.duplicate();
+				part.limit(part.position() + count);
+				out.put(part);
+				record.position(record.position() + count);
+			}
+		}
+		
+		/** write all the buffered records, return the new end of store file **/
+		long finish() throws IOException {
+			flush();
+			return writePosition;
 		}
 		
-		@Override public int hashCode() {
-			long h = websiteId + 31 * username.hashCode();
-			return (int) ((h >>> Integer.SIZE) & h);
-		}
-		@Override public boolean equals(Object obj) {
-			if(obj == this) { return true; }
-			if(!(obj instanceof PasswordKey)) { return false; }
-			PasswordKey another = (PasswordKey) obj;
-			return this.websiteId == another.websiteId
-				 && this.username.equals(another.username);
+		private void flush() throws IOException {
+			out.flip();
+			if(out.hasRemaining()) {
+				// the old records about to be overwritten are read first
+				readAhead(writePosition + out.remaining());
+				ByteBuffer chunk = out.slice();
+				write(chunk, writePosition);
+				writePosition += chunk.capacity();
+			}
+			out.clear();
+		}
+		
+		/** read the old records until {@code position} into memory if not yet **/
+		private void readAhead(long position) throws IOException {
+			long readPosition = aheadPosition + ahead.remaining();
+			if(position <= readPosition || readPosition >= oldEnd) { return; }
+			long target = Math.min(oldEnd, Math.max(position, readPosition + TAIL_BUFFER_SIZE));
+			int count = (int) (target - readPosition);
+			ahead.compact();
+			if(ahead.remaining() < count) {
+				ByteBuffer grown = byteOrder(ByteBuffer.allocate(Math.max(ahead.capacity() * 2, ahead.position() + count)));
+				ahead.flip();
+				grown.put(ahead);
+				ahead = grown;
+			}
+			ahead.limit(ahead.position() + count);
+			while(ahead.hasRemaining()) {
+				if(read(ahead, readPosition + count - ahead.remaining()) < 0) {
+					throw new StoreException(String.format("failed to read %d bytes starting at %d from store path: %s",
+							count, readPosition, storePath));
+				}
+			}
+			ahead.flip();
 		}
 	}
 }
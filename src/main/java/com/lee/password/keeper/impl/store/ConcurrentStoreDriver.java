@@ -0,0 +1,275 @@
+package com.lee.password.keeper.impl.store;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.lee.password.keeper.api.Entity;
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.Result.Code;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Page;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.keeper.impl.store.binary.StoreSnapshot;
+import com.lee.password.util.Pair;
+
+/**
+ * A thread-safe {@link StoreDriver} guarding another one with a read-write lock,
+ * so one instance can be shared across threads. the selects, counts and lists run concurrently
+ * under the read lock, which includes the decryption of secrets, while all the changes,
+ * undo/redo, commit and close are serialized under the write lock.
+ * <p>the guarded driver must keep its reads free of shared mutable state, as {@link BinaryStoreDriver} does.
+ */
+public class ConcurrentStoreDriver implements StoreDriver {
+
+	private final StoreDriver storeDriver;
+	private final Lock readLock;
+	private final Lock writeLock;
+
+	public ConcurrentStoreDriver(String dataDir, CryptoDriver cryptoDriver, int secretBlockSize, boolean isStoreFileLock) {
+		this(new BinaryStoreDriver(dataDir, cryptoDriver, secretBlockSize, isStoreFileLock));
+	}
+
+	public ConcurrentStoreDriver(String dataDir, CryptoDriver cryptoDriver, int secretBlockSize, boolean isStoreFileLock,
+			Properties options) {
+		this(new BinaryStoreDriver(dataDir, cryptoDriver, secretBlockSize, isStoreFileLock, options));
+	}
+
+	public ConcurrentStoreDriver(StoreDriver storeDriver) {
+		this.storeDriver = storeDriver;
+		ReadWriteLock lock = new ReentrantReadWriteLock();
+		this.readLock = lock.readLock();
+		this.writeLock = lock.writeLock();
+	}
+
+	@Override
+	public Result<String> storePath() {
+		readLock.lock();
+		try { return storeDriver.storePath(); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Website> insertWebsite(Website website) {
+		writeLock.lock();
+		try { return storeDriver.insertWebsite(website); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Website> deleteWebsite(Website website) {
+		writeLock.lock();
+		try { return storeDriver.deleteWebsite(website); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Website> updateWebsite(Website website) {
+		writeLock.lock();
+		try { return storeDriver.updateWebsite(website); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Website> selectWebsite(Website website) {
+		readLock.lock();
+		try { return storeDriver.selectWebsite(website); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> websiteCount() {
+		readLock.lock();
+		try { return storeDriver.websiteCount(); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<List<Website>> listWebsite() {
+		readLock.lock();
+		try { return storeDriver.listWebsite(); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Page<Website>> listWebsite(String token, int pageSize) {
+		readLock.lock();
+		try { return storeDriver.listWebsite(token, pageSize); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<List<Website>> searchWebsites(String prefix, int limit) {
+		readLock.lock();
+		try { return storeDriver.searchWebsites(prefix, limit); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<List<Website>> fuzzySearchWebsites(String keyword, int maxDistance, int limit) {
+		readLock.lock();
+		try { return storeDriver.fuzzySearchWebsites(keyword, maxDistance, limit); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Password.Header> insertPassword(Password entry, CryptoKey encryptionKey) {
+		writeLock.lock();
+		try { return storeDriver.insertPassword(entry, encryptionKey); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Password.Header> deletePassword(Password.Header header) {
+		writeLock.lock();
+		try { return storeDriver.deletePassword(header); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Password.Header> updatePassword(Password entry, CryptoKey encryptionKey) {
+		writeLock.lock();
+		try { return storeDriver.updatePassword(entry, encryptionKey); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Password> selectPassword(Password.Header header, CryptoKey decryptionKey) {
+		readLock.lock();
+		try { return storeDriver.selectPassword(header, decryptionKey); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<List<Password>> selectPasswords(long websiteId, CryptoKey decryptionKey) {
+		readLock.lock();
+		try { return storeDriver.selectPasswords(websiteId, decryptionKey); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<List<Password>> selectPasswords(String username, CryptoKey decryptionKey) {
+		readLock.lock();
+		try { return storeDriver.selectPasswords(username, decryptionKey); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> passwordCount() {
+		readLock.lock();
+		try { return storeDriver.passwordCount(); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> passwordCount(long websiteId) {
+		readLock.lock();
+		try { return storeDriver.passwordCount(websiteId); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> passwordCount(String username) {
+		readLock.lock();
+		try { return storeDriver.passwordCount(username); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> passwordCount(long websiteId, String username) {
+		readLock.lock();
+		try { return storeDriver.passwordCount(websiteId, username); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<List<Password.Header>> listPassword(long websiteId) {
+		readLock.lock();
+		try { return storeDriver.listPassword(websiteId); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<List<Password.Header>> listPassword(String username) {
+		readLock.lock();
+		try { return storeDriver.listPassword(username); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Password.Header> listPassword(long websiteId, String username) {
+		readLock.lock();
+		try { return storeDriver.listPassword(websiteId, username); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Page<Password.Header>> listPassword(long websiteId, String token, int pageSize) {
+		readLock.lock();
+		try { return storeDriver.listPassword(websiteId, token, pageSize); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Page<Password.Header>> listPassword(String username, String token, int pageSize) {
+		readLock.lock();
+		try { return storeDriver.listPassword(username, token, pageSize); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> importEntries(Iterator<Pair<Website, Password>> entries, CryptoKey encryptionKey) {
+		writeLock.lock();
+		try { return storeDriver.importEntries(entries, encryptionKey); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> canUndoTimes() {
+		readLock.lock();
+		try { return storeDriver.canUndoTimes(); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Entity> undo() {
+		writeLock.lock();
+		try { return storeDriver.undo(); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> canRedoTimes() {
+		readLock.lock();
+		try { return storeDriver.canRedoTimes(); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Entity> redo() {
+		writeLock.lock();
+		try { return storeDriver.redo(); }finally { writeLock.unlock(); }
+	}
+
+	/** take a snapshot as {@link BinaryStoreDriver#snapshot()}, then read it without any lock **/
+	public Result<StoreSnapshot> snapshot() {
+		if(!(storeDriver instanceof BinaryStoreDriver)) {
+			return new Result<StoreSnapshot>(Code.FAIL, "snapshot is not supported by "+storeDriver.getClass().getName());
+		}
+		readLock.lock();
+		try { return ((BinaryStoreDriver) storeDriver).snapshot(); }finally { readLock.unlock(); }
+	}
+
+	/** verify store file as {@link BinaryStoreDriver#verify()} **/
+	public Result<List<Long>> verify() {
+		if(!(storeDriver instanceof BinaryStoreDriver)) {
+			return new Result<List<Long>>(Code.FAIL, "verify is not supported by "+storeDriver.getClass().getName());
+		}
+		readLock.lock();
+		try { return ((BinaryStoreDriver) storeDriver).verify(); }finally { readLock.unlock(); }
+	}
+
+	/** revert the changes committed after {@code timestamp} as {@link BinaryStoreDriver#rollbackTo(long)} **/
+	public Result<Integer> rollbackTo(long timestamp) {
+		if(!(storeDriver instanceof BinaryStoreDriver)) {
+			return new Result<Integer>(Code.FAIL, "rollback is not supported by "+storeDriver.getClass().getName());
+		}
+		writeLock.lock();
+		try { return ((BinaryStoreDriver) storeDriver).rollbackTo(timestamp); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Integer> needCommitCount() {
+		readLock.lock();
+		try { return storeDriver.needCommitCount(); }finally { readLock.unlock(); }
+	}
+
+	@Override
+	public Result<Throwable> commit() {
+		writeLock.lock();
+		try { return storeDriver.commit(); }finally { writeLock.unlock(); }
+	}
+
+	@Override
+	public Result<Throwable> close() {
+		writeLock.lock();
+		try { return storeDriver.close(); }finally { writeLock.unlock(); }
+	}
+}
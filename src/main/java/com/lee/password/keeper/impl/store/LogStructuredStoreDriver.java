@@ -0,0 +1,1138 @@
+package com.lee.password.keeper.impl.store;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileLock;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import com.lee.password.keeper.api.Entity;
+import com.lee.password.keeper.api.Entity.Type;
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.Result.Code;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Page;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.StoreException;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.keeper.impl.InternalEntity;
+import com.lee.password.keeper.impl.store.binary.BinaryPassword;
+import com.lee.password.keeper.impl.store.binary.BinarySecrets;
+import com.lee.password.keeper.impl.store.binary.BinaryWebsite;
+import com.lee.password.keeper.impl.store.binary.ChangedOperation;
+import com.lee.password.keeper.impl.store.binary.ChangedOperation.OP;
+import com.lee.password.keeper.impl.store.binary.KeywordTrie;
+import com.lee.password.keeper.impl.store.binary.PageCollector;
+import com.lee.password.keeper.impl.store.binary.ParallelDecryptor;
+import com.lee.password.keeper.impl.store.log.LogRecord;
+import com.lee.password.keeper.impl.store.log.LogSegment;
+import com.lee.password.util.Pair;
+
+/**
+ * A {@link StoreDriver} which appends every committed change as a record to a segment log,
+ * so the cost of commit is proportional to the number of changes instead of the store size.
+ * <pre>
+ * the in-memory indexes are rebuilt by replaying all the segments on open;
+ * the active segment is sealed and a new one is created once it exceeds the size limit;
+ * the sealed segments are compacted into a single snapshot segment by a background thread
+ * once the records on disk are far more than the live entries.
+ * </pre>
+ */
+public class LogStructuredStoreDriver implements StoreDriver {
+
+	private static final String LOCK_FILE = "log.store.lock";
+
+	/** roll the active segment once its size exceeds this limit **/
+	private static final long SEGMENT_MAX_SIZE = 4L * 1024 * 1024;
+
+	/** the minimum number of obsolete records on disk to trigger compaction **/
+	private static final long COMPACT_MIN_RECORDS = 4096;
+
+	/** the number of entries encrypted at once on import, which bounds the plain secrets held in memory **/
+	private static final int IMPORT_BATCH_SIZE = 1024;
+
+	/** secret block size defined by private crypto key **/
+	private final int secretBlockSize;
+	private final long segmentMaxSize;
+	private final long compactMinRecords;
+
+	// encryption/decryption driver
+	private CryptoDriver cryptoDriver;
+	private ParallelDecryptor decryptor;
+
+	// storage resources
+	private File storeDir;
+	private RandomAccessFile lockFile;
+	private FileLock storeLock;
+
+	// segments, guarded by segmentLock
+	private final Object segmentLock = new Object();
+	private List<LogSegment> sealedSegments;
+	private LogSegment activeSegment;
+	/** the number of records of all the segments on disk **/
+	private long diskRecordCount;
+
+	// background compaction
+	private ExecutorService compactor;
+	private Future<?> compaction;
+
+	// index password and website
+	private Map<PasswordKey, BinaryPassword> passwordMap;
+	private Map<Long, List<BinaryPassword>> websiteIdPwdMap;
+	private Map<String, List<BinaryPassword>> usernamePwdMap;
+	private Map<Long, BinaryWebsite> websiteIdMap;
+	private Map<String, BinaryWebsite> websiteKeywordMap;
+	private KeywordTrie<BinaryWebsite> websiteKeywordTrie;
+
+	// change operation queue
+	private Deque<ChangedOperation<? extends InternalEntity>> undoQueue;
+	private Deque<ChangedOperation<? extends InternalEntity>> redoQueue;
+
+	/** closed flag **/
+	private boolean isClosed;
+
+	public LogStructuredStoreDriver(String dataDir, CryptoDriver cryptoDriver, int secretBlockSize, boolean isStoreFileLock) {
+		this(dataDir, cryptoDriver, secretBlockSize, isStoreFileLock, SEGMENT_MAX_SIZE, COMPACT_MIN_RECORDS);
+	}
+
+	LogStructuredStoreDriver(String dataDir, CryptoDriver cryptoDriver, int secretBlockSize, boolean isStoreFileLock,
+			long segmentMaxSize, long compactMinRecords) {
+		try {
+			this.secretBlockSize = secretBlockSize;
+			this.segmentMaxSize = segmentMaxSize;
+			this.compactMinRecords = compactMinRecords;
+			this.cryptoDriver = cryptoDriver;
+			this.decryptor = new ParallelDecryptor("log-store");
+			this.storeDir = makeDataDir(dataDir);
+			if(isStoreFileLock) {
+				this.lockFile = new RandomAccessFile(new File(storeDir, LOCK_FILE), "rw");
+				this.storeLock = lockFile.getChannel().lock();
+			}
+
+			init();
+		}catch(Exception e) {
+			release();
+			StoreException se = null;
+			if(e instanceof StoreException) {
+				se = (StoreException) e;
+			}else {
+				se = new StoreException(
+					String.format("failed to init log structured store driver from data directory {%s}: %s", dataDir, e.getMessage()),
+					e);
+			}
+			throw se;
+		}
+	}
+
+	private static File makeDataDir(String dataDir) {
+		File dir = new File(dataDir);
+		if(!dir.exists()) {
+			if(!dir.mkdirs()) {
+				throw new StoreException(dataDir + " create failed");
+			}
+		}else {
+			if(!dir.isDirectory()) {
+				throw new StoreException(dataDir + " is not a directory");
+			}
+		}
+		return dir;
+	}
+
+	private void init() throws Exception {
+		this.undoQueue = new LinkedList<ChangedOperation<? extends InternalEntity>>();
+		this.redoQueue = new LinkedList<ChangedOperation<? extends InternalEntity>>();
+		this.passwordMap = new HashMap<PasswordKey, BinaryPassword>();
+		this.websiteIdPwdMap = new HashMap<Long, List<BinaryPassword>>();
+		this.usernamePwdMap = new HashMap<String, List<BinaryPassword>>();
+		this.websiteIdMap = new HashMap<Long, BinaryWebsite>();
+		this.websiteKeywordMap = new HashMap<String, BinaryWebsite>();
+		this.websiteKeywordTrie = new KeywordTrie<BinaryWebsite>();
+		this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "log-store-compactor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		loadSegments();
+		isClosed = false;
+	}
+
+	/** replay all the segments to rebuild the indexes, and open the active segment **/
+	private void loadSegments() throws IOException {
+		deleteTempSegments();
+		List<LogSegment> segments = LogSegment.list(storeDir, secretBlockSize);
+		Replayer replayer = new Replayer();
+		int size = segments.size();
+		long count = 0;
+		for(int i=0; i<size; i++) {
+			LogSegment segment = segments.get(i);
+			// only the last segment may be torn by crash during append
+			segment.replay(replayer, i == size - 1);
+			count += segment.recordCount();
+		}
+		for(BinaryWebsite website : replayer.websites.values()) { put(website); }
+		for(BinaryPassword password : replayer.passwords.values()) { put(password); }
+
+		this.sealedSegments = new ArrayList<LogSegment>(segments);
+		this.diskRecordCount = count;
+		LogSegment last = size == 0 ? null : segments.get(size - 1);
+		if(last != null && isActiveSequence(last.sequence()) && last.size() < segmentMaxSize) {
+			sealedSegments.remove(size - 1);
+			this.activeSegment = last;
+		}else {
+			this.activeSegment = LogSegment.create(storeDir, nextActiveSequence(last), secretBlockSize);
+		}
+		for(LogSegment sealed : sealedSegments) { sealed.close(); }
+	}
+
+	private void deleteTempSegments() {
+		String[] names = storeDir.list();
+		if(names == null) { throw new StoreException("failed to list data directory: "+storeDir); }
+		for(String name : names) {
+			if(LogSegment.isTempFile(name) && !new File(storeDir, name).delete()) {
+				throw new StoreException("failed to delete uncompleted compaction segment: "+name);
+			}
+		}
+	}
+
+	/** active segments use even sequences, the compacted segments use odd sequences **/
+	private static boolean isActiveSequence(long sequence) { return (sequence & 1) == 0; }
+
+	private static long nextActiveSequence(LogSegment last) {
+		if(last == null) { return 0; }
+		long sequence = last.sequence();
+		return isActiveSequence(sequence) ? sequence + 2 : sequence + 1;
+	}
+
+	/** release all resources **/
+	private void release() {
+		try {
+			if(compactor != null) {
+				compactor.shutdown();
+				compactor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+				compactor = null;
+			}
+			synchronized(segmentLock) {
+				if(activeSegment != null) { activeSegment.close(); activeSegment = null; }
+				if(sealedSegments != null) {
+					for(LogSegment sealed : sealedSegments) { sealed.close(); }
+					sealedSegments = null;
+				}
+			}
+			if(decryptor != null) { decryptor.shutdown(); decryptor = null; }
+			if(cryptoDriver != null) { cryptoDriver.close(); cryptoDriver = null; }
+			if(storeLock != null) { storeLock.release(); storeLock = null; }
+			if(lockFile != null) { lockFile.close(); lockFile = null; }
+		}catch(Exception e) {
+			throw new StoreException("failed to release resoures of "+storeDir, e);
+		}
+	}
+
+	@Override
+	public Result<String> storePath() { return new Result<String>(Code.SUCCESS, "success", storeDir.getAbsolutePath()); }
+
+	@Override
+	public Result<Website> insertWebsite(Website website) {
+		BinaryWebsite biWebsite = null;
+		try {
+			Result<BinaryWebsite> result = selectBy(website);
+			if(result.isSuccess()) {
+				return new Result<Website>(Code.FAIL, "already exists this website");
+			}
+			biWebsite = BinaryWebsite.cast(website);
+		}catch(Exception e) {
+			return new Result<Website>(Code.FAIL, e.getMessage());
+		}
+
+		if(put(biWebsite)) {
+			undoQueue.offer(new ChangedOperation<BinaryWebsite>(null, OP.INSERT, biWebsite.copy()));
+			website.id(biWebsite.websiteId());
+			return new Result<Website>(Code.SUCCESS, "success", website);
+		}else {
+			return new Result<Website>(Code.FAIL, "insert log website internal error");
+		}
+	}
+
+	private boolean put(BinaryWebsite newWebsite) {
+		long websiteId = newWebsite.websiteId();
+		String keyword = newWebsite.keyword();
+		if(websiteIdMap.containsKey(websiteId) || websiteKeywordMap.containsKey(keyword)) { return false; }
+		websiteIdMap.put(websiteId, newWebsite);
+		websiteKeywordMap.put(keyword, newWebsite);
+		websiteKeywordTrie.put(keyword, newWebsite);
+		return true;
+	}
+
+	@Override
+	public Result<Website> deleteWebsite(Website website) {
+		Result<BinaryWebsite> result = selectBy(website);
+		if(!result.isSuccess()) {
+			return new Result<Website>(Code.FAIL, result.msg);
+		}
+		BinaryWebsite biWebsite = result.result;
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(biWebsite.websiteId());
+		if(biPasswordList != null && !biPasswordList.isEmpty()) {
+			return new Result<Website>(Code.FAIL, "remained password list mapping with webiste id");
+		}
+		if(remove(biWebsite)) {
+			undoQueue.offer(new ChangedOperation<BinaryWebsite>(biWebsite.copy(), OP.DELETE, null));
+			return new Result<Website>(Code.SUCCESS, "success", biWebsite.transform());
+		}else {
+			return new Result<Website>(Code.FAIL, "delete log website internal error");
+		}
+	}
+
+	private boolean remove(BinaryWebsite oldWebsite) {
+		BinaryWebsite one = websiteIdMap.get(oldWebsite.websiteId());
+		if(one == null || websiteKeywordMap.get(oldWebsite.keyword()) != one) { return false; }
+		websiteIdMap.remove(oldWebsite.websiteId());
+		websiteKeywordMap.remove(oldWebsite.keyword());
+		websiteKeywordTrie.remove(oldWebsite.keyword(), one);
+		return true;
+	}
+
+	@Override
+	public Result<Website> updateWebsite(Website website) {
+		String keyword = website.keyword();
+		String url = website.url();
+		if(!website.hasId() && !website.hasKeyword()) {
+			return new Result<Website>(Code.FAIL, "website without mapping with keyword or id");
+		}
+		BinaryWebsite existed = null;
+		boolean isKeywordChanged = false;
+		if(website.hasId()) {
+			existed = websiteIdMap.get(website.id());
+			if(existed == null) { return new Result<Website>(Code.FAIL, "website mapping with id not found"); }
+			if(website.hasKeyword()) {
+				BinaryWebsite biWebsite = websiteKeywordMap.get(keyword);
+				if(biWebsite == null) {
+					isKeywordChanged = true;
+				}else if(biWebsite != existed) {
+					return new Result<Website>(Code.FAIL, "conflict with existed keyword");
+				}
+			}else {
+				website.keyword(existed.keyword());
+			}
+		}else {
+			existed = websiteKeywordMap.get(keyword);
+			if(existed == null) { return new Result<Website>(Code.FAIL, "website mapping with keyword not found"); }
+			website.id(existed.websiteId());
+		}
+		boolean isUrlChanged = url != null && !url.isEmpty() && !existed.url().equals(url);
+		if(!isKeywordChanged && !isUrlChanged) {
+			return new Result<Website>(Code.FAIL, "nothing changed for website, don't need update");
+		}
+
+		BinaryWebsite oldBiWebsite = existed.copy();
+		BinaryWebsite newBiWebsite = existed.copy();
+		try {
+			if(isKeywordChanged) {
+				newBiWebsite.changeKeyword(keyword);
+				oldBiWebsite.markKeywordChanged();
+			}
+			if(isUrlChanged) {
+				newBiWebsite.changeUrl(url);
+				oldBiWebsite.markUrlChanged();
+			}
+		}catch(Exception e) {
+			return new Result<Website>(Code.FAIL, e.getMessage());
+		}
+		newBiWebsite.timestamp(System.currentTimeMillis());
+		if(replace(oldBiWebsite, newBiWebsite)) {
+			undoQueue.offer(new ChangedOperation<BinaryWebsite>(oldBiWebsite, OP.UPDATE, newBiWebsite));
+			return new Result<Website>(Code.SUCCESS, "success", website);
+		}else {
+			return new Result<Website>(Code.FAIL, "update log website internal error");
+		}
+	}
+
+	/** replace the current state of {@code oldWebsite} with the changed portion of {@code newWebsite} **/
+	private boolean replace(BinaryWebsite oldWebsite, BinaryWebsite newWebsite) {
+		BinaryWebsite biWebsite = websiteIdMap.get(oldWebsite.websiteId());
+		if(biWebsite == null) { return false; }
+		if(newWebsite.isKeywordChanged()) {
+			String keyword = oldWebsite.keyword();
+			String newKeyword = newWebsite.keyword();
+			if(websiteKeywordMap.get(keyword) != biWebsite || websiteKeywordMap.containsKey(newKeyword)) { return false; }
+			websiteKeywordMap.remove(keyword);
+			websiteKeywordMap.put(newKeyword, biWebsite);
+			websiteKeywordTrie.remove(keyword, biWebsite);
+			websiteKeywordTrie.put(newKeyword, biWebsite);
+			biWebsite.keyword(newKeyword);
+			biWebsite.timestamp(newWebsite.timestamp());
+		}
+		if(newWebsite.isUrlChanged()) {
+			biWebsite.url(newWebsite.url());
+			biWebsite.timestamp(newWebsite.timestamp());
+		}
+		return true;
+	}
+
+	@Override
+	public Result<Website> selectWebsite(Website website) {
+		Result<BinaryWebsite> result = selectBy(website);
+		if(!result.isSuccess()) {
+			return new Result<Website>(Code.FAIL, result.msg);
+		}
+		return new Result<Website>(Code.SUCCESS, "success", result.result.transform());
+	}
+
+	private Result<BinaryWebsite> selectBy(Website website) {
+		if(!website.hasId() && !website.hasKeyword()) {
+			return new Result<BinaryWebsite>(Code.FAIL, "website without keyword or id");
+		}
+
+		BinaryWebsite biWebsite = null;
+		if(website.hasId()) {
+			biWebsite = websiteIdMap.get(website.id());
+			if(biWebsite == null) { return new Result<BinaryWebsite>(Code.FAIL, "website mapping with id not found"); }
+			if(website.hasKeyword() && biWebsite != websiteKeywordMap.get(website.keyword())) {
+				return new Result<BinaryWebsite>(Code.FAIL, "inconsistent website mapping with keyword and id");
+			}
+		}else {
+			biWebsite = websiteKeywordMap.get(website.keyword());
+			if(biWebsite == null) {
+				return new Result<BinaryWebsite>(Code.FAIL, "website mapping with keyword not found");
+			}
+		}
+		return new Result<BinaryWebsite>(Code.SUCCESS, "success", biWebsite);
+	}
+
+	@Override
+	public Result<Integer> websiteCount() {
+		return new Result<Integer>(Code.SUCCESS, "success", websiteIdMap.size());
+	}
+
+	@Override
+	public Result<List<Website>> listWebsite() {
+		List<Website> websiteList = new ArrayList<Website>(websiteKeywordMap.size());
+		for(BinaryWebsite biWebiste : websiteKeywordMap.values()) {
+			websiteList.add(biWebiste.transform());
+		}
+		return new Result<List<Website>>(Code.SUCCESS, "success", websiteList);
+	}
+
+	@Override
+	public Result<Page<Website>> listWebsite(String token, int pageSize) {
+		return PageCollector.websitePage(websiteKeywordMap.values(), token, pageSize);
+	}
+
+	@Override
+	public Result<List<Website>> searchWebsites(String prefix, int limit) {
+		if(prefix == null) { return new Result<List<Website>>(Code.FAIL, "search website without keyword prefix"); }
+		return transform(websiteKeywordTrie.prefix(prefix, limit));
+	}
+
+	@Override
+	public Result<List<Website>> fuzzySearchWebsites(String keyword, int maxDistance, int limit) {
+		if(keyword == null) { return new Result<List<Website>>(Code.FAIL, "search website without keyword"); }
+		if(maxDistance < 0) { return new Result<List<Website>>(Code.FAIL, "negative edit distance: "+maxDistance); }
+		return transform(websiteKeywordTrie.fuzzy(keyword, maxDistance, limit));
+	}
+
+	private static Result<List<Website>> transform(List<BinaryWebsite> biWebsiteList) {
+		List<Website> websiteList = new ArrayList<Website>(biWebsiteList.size());
+		for(BinaryWebsite biWebsite : biWebsiteList) { websiteList.add(biWebsite.transform()); }
+		return new Result<List<Website>>(Code.SUCCESS, "success", websiteList);
+	}
+
+	@Override
+	public Result<Password.Header> insertPassword(Password entry, CryptoKey encryptionKey) {
+		BinaryPassword biPassword = null;
+		try {
+			if(!websiteIdMap.containsKey(entry.header().websiteId())) {
+				return new Result<Password.Header>(Code.FAIL, "website mapping with id not found");
+			}
+			Result<BinaryPassword> biPasswordResult = selectBy(entry.header());
+			if(biPasswordResult.isSuccess()) {
+				return new Result<Password.Header>(Code.FAIL, "an existed entry mapping for this header");
+			}
+			biPasswordResult = BinarySecrets.encrypt(cryptoDriver, entry, encryptionKey, true);
+			if(!biPasswordResult.isSuccess()) {
+				return new Result<Password.Header>(biPasswordResult.code, biPasswordResult.msg);
+			}
+			biPassword = biPasswordResult.result;
+		}catch(Exception e) {
+			return new Result<Password.Header>(Code.FAIL, e.getMessage());
+		}
+
+		if(put(biPassword)) {
+			undoQueue.offer(new ChangedOperation<BinaryPassword>(null, OP.INSERT, biPassword.copy()));
+			return new Result<Password.Header>(Code.SUCCESS, "success", entry.header());
+		}else {
+			return new Result<Password.Header>(Code.FAIL, "insert log password internal error");
+		}
+	}
+
+	private boolean put(BinaryPassword password) {
+		long websiteId = password.websiteId();
+		String username = password.username();
+		PasswordKey passwordKey = new PasswordKey(websiteId, username);
+		if(passwordMap.containsKey(passwordKey)) { return false; }
+		passwordMap.put(passwordKey, password);
+		List<BinaryPassword> websiteIdPwdList = websiteIdPwdMap.get(websiteId);
+		if(websiteIdPwdList == null) {
+			websiteIdPwdList = new ArrayList<BinaryPassword>(3);
+			websiteIdPwdMap.put(websiteId, websiteIdPwdList);
+		}
+		websiteIdPwdList.add(password);
+		List<BinaryPassword> usernamePwdList = usernamePwdMap.get(username);
+		if(usernamePwdList == null) {
+			usernamePwdList = new ArrayList<BinaryPassword>();
+			usernamePwdMap.put(username, usernamePwdList);
+		}
+		usernamePwdList.add(password);
+		return true;
+	}
+
+	@Override
+	public Result<Password.Header> deletePassword(Password.Header header) {
+		Result<BinaryPassword> biPasswordResult = selectBy(header);
+		if(!biPasswordResult.isSuccess()) {
+			return new Result<Password.Header>(Code.FAIL, biPasswordResult.msg);
+		}
+		BinaryPassword biPassword = biPasswordResult.result;
+		if(remove(biPassword)) {
+			undoQueue.offer(new ChangedOperation<BinaryPassword>(biPassword.copy(), OP.DELETE, null));
+			return new Result<Password.Header>(Code.SUCCESS, "success", header);
+		}else {
+			return new Result<Password.Header>(Code.FAIL, "delete log password internal error");
+		}
+	}
+
+	private boolean remove(BinaryPassword password) {
+		long websiteId = password.websiteId();
+		String username = password.username();
+		BinaryPassword old = passwordMap.remove(new PasswordKey(websiteId, username));
+		if(old == null) { return false; }
+		removeFrom(websiteIdPwdMap.get(websiteId), old);
+		removeFrom(usernamePwdMap.get(username), old);
+		return true;
+	}
+
+	private static void removeFrom(List<BinaryPassword> passwords, BinaryPassword target) {
+		if(passwords == null) { return; }
+		for(int i=0; i<passwords.size(); i++) {
+			if(passwords.get(i) == target) {
+				passwords.remove(i);
+				return;
+			}
+		}
+	}
+
+	@Override
+	public Result<Password.Header> updatePassword(Password entry, CryptoKey encryptionKey) {
+		BinaryPassword newPassword = null;
+		BinaryPassword oldPassword = null;
+		BinaryPassword existedPassword = null;
+		try {
+			Result<BinaryPassword> biPasswordResult = selectBy(entry.header());
+			if(!biPasswordResult.isSuccess()) {
+				return new Result<Password.Header>(Code.FAIL, biPasswordResult.msg);
+			}
+			existedPassword = biPasswordResult.result;
+			biPasswordResult = BinarySecrets.encrypt(cryptoDriver, entry, encryptionKey, false);
+			if(!biPasswordResult.isSuccess()) {
+				return new Result<Password.Header>(biPasswordResult.code, biPasswordResult.msg);
+			}
+			newPassword = biPasswordResult.result;
+		}catch(Exception e) {
+			return new Result<Password.Header>(Code.FAIL, e.getMessage());
+		}
+
+		if(newPassword.encryptedPassword() == null || BinaryPassword.hasEqualPassword(newPassword, existedPassword)) {
+			if(newPassword.encryptedKeyValuePairs() == null || BinaryPassword.hasEqualKeyValuePair(newPassword, existedPassword)) {
+				return new Result<Password.Header>(Code.FAIL, "nothing changed for password, don't need update");
+			}else {
+				oldPassword = existedPassword.copy();
+				oldPassword.markEncryptedKeyValuePairsChanged();
+				newPassword.markEncryptedKeyValuePairsChanged();
+			}
+		}else {
+			oldPassword = existedPassword.copy();
+			oldPassword.markEncryptedPasswordChanged();
+			newPassword.markEncryptedPasswordChanged();
+			if(newPassword.encryptedKeyValuePairs() != null && !BinaryPassword.hasEqualKeyValuePair(newPassword, existedPassword)) {
+				oldPassword.markEncryptedKeyValuePairsChanged();
+				newPassword.markEncryptedKeyValuePairsChanged();
+			}
+		}
+		replace(existedPassword, newPassword);
+		undoQueue.offer(new ChangedOperation<BinaryPassword>(oldPassword, OP.UPDATE, newPassword));
+		return new Result<Password.Header>(Code.SUCCESS, "success", entry.header());
+	}
+
+	private void replace(BinaryPassword existedPassword, BinaryPassword newPassword) {
+		if(newPassword.isEncryptedPasswordChanged()) {
+			existedPassword.encryptedPassword(newPassword.encryptedPassword());
+			existedPassword.timestamp(newPassword.timestamp());
+		}
+		if(newPassword.isEncryptedKeyValuePairsChanged()) {
+			existedPassword.encryptedKeyValuePairs(newPassword.encryptedKeyValuePairs());
+			existedPassword.timestamp(newPassword.timestamp());
+		}
+	}
+
+	private boolean replace(BinaryPassword targetPassword) {
+		BinaryPassword existedPassword = passwordMap.get(new PasswordKey(targetPassword.websiteId(), targetPassword.username()));
+		if(existedPassword == null) { return false; }
+		replace(existedPassword, targetPassword);
+		return true;
+	}
+
+	@Override
+	public Result<Password> selectPassword(Password.Header header, CryptoKey decryptionKey) {
+		Result<BinaryPassword> result = selectBy(header);
+		if(!result.isSuccess()) {
+			return new Result<Password>(Code.FAIL, result.msg);
+		}
+		return BinarySecrets.decrypt(cryptoDriver, result.result, decryptionKey);
+	}
+
+	@Override
+	public Result<List<Password>> selectPasswords(long websiteId, CryptoKey decryptionKey) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<List<Password>>(Code.FAIL, "no password list mapping with webiste id");
+		}
+		return decryptor.decrypt(cryptoDriver, biPasswordList, decryptionKey);
+	}
+
+	@Override
+	public Result<List<Password>> selectPasswords(String username, CryptoKey decryptionKey) {
+		List<BinaryPassword> biPasswordList = usernamePwdMap.get(username);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<List<Password>>(Code.FAIL, "no password list mapping with username");
+		}
+		return decryptor.decrypt(cryptoDriver, biPasswordList, decryptionKey);
+	}
+
+	private Result<BinaryPassword> selectBy(Password.Header header) {
+		if(!header.hasId() || !header.hasUsername()) {
+			return new Result<BinaryPassword>(Code.FAIL, "password header without username and id");
+		}
+		BinaryPassword biPassword = passwordMap.get(new PasswordKey(header.websiteId(), header.username()));
+		return biPassword == null ?
+				new Result<BinaryPassword>(Code.FAIL, "password mapping with username and id not found") :
+				new Result<BinaryPassword>(Code.SUCCESS, "success", biPassword);
+	}
+
+	@Override
+	public Result<Integer> passwordCount() {
+		return new Result<Integer>(Code.SUCCESS, "success", passwordMap.size());
+	}
+
+	@Override
+	public Result<Integer> passwordCount(long websiteId) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		int count = biPasswordList == null ? 0 : biPasswordList.size();
+		return new Result<Integer>(Code.SUCCESS, "success", count);
+	}
+
+	@Override
+	public Result<Integer> passwordCount(String username) {
+		List<BinaryPassword> biPasswordList = usernamePwdMap.get(username);
+		int count = biPasswordList == null ? 0 : biPasswordList.size();
+		return new Result<Integer>(Code.SUCCESS, "success", count);
+	}
+
+	@Override
+	public Result<Integer> passwordCount(long websiteId, String username) {
+		boolean isExisted = passwordMap.containsKey(new PasswordKey(websiteId, username));
+		return new Result<Integer>(Code.SUCCESS, "success", isExisted ? 1 : 0);
+	}
+
+	@Override
+	public Result<List<Password.Header>> listPassword(long websiteId) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<List<Password.Header>>(Code.FAIL, "no password list mapping with webiste id");
+		}
+		return new Result<List<Password.Header>>(Code.SUCCESS, "success", headers(biPasswordList));
+	}
+
+	@Override
+	public Result<List<Password.Header>> listPassword(String username) {
+		List<BinaryPassword> biPasswordList = usernamePwdMap.get(username);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<List<Password.Header>>(Code.FAIL, "no password list mapping with username");
+		}
+		return new Result<List<Password.Header>>(Code.SUCCESS, "success", headers(biPasswordList));
+	}
+
+	private static List<Password.Header> headers(List<BinaryPassword> biPasswordList) {
+		List<Password.Header> list = new ArrayList<Password.Header>(biPasswordList.size());
+		for(BinaryPassword biPassword : biPasswordList) {
+			list.add(new Password.Header(biPassword.websiteId(), biPassword.username(), biPassword.timestamp()));
+		}
+		return list;
+	}
+
+	@Override
+	public Result<Password.Header> listPassword(long websiteId, String username) {
+		BinaryPassword biPassword = passwordMap.get(new PasswordKey(websiteId, username));
+		if(biPassword == null) {
+			return new Result<Password.Header>(Code.FAIL, "no password mapping with websiteId and username");
+		}
+		return new Result<Password.Header>(Code.SUCCESS, "success",
+				new Password.Header(biPassword.websiteId(), biPassword.username(), biPassword.timestamp()));
+	}
+
+	@Override
+	public Result<Page<Password.Header>> listPassword(long websiteId, String token, int pageSize) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<Page<Password.Header>>(Code.FAIL, "no password list mapping with webiste id");
+		}
+		return PageCollector.passwordPageByUsername(biPasswordList, token, pageSize);
+	}
+
+	@Override
+	public Result<Page<Password.Header>> listPassword(String username, String token, int pageSize) {
+		List<BinaryPassword> biPasswordList = usernamePwdMap.get(username);
+		if(biPasswordList == null || biPasswordList.isEmpty()) {
+			return new Result<Page<Password.Header>>(Code.FAIL, "no password list mapping with username");
+		}
+		return PageCollector.passwordPageByWebsiteId(biPasswordList, token, pageSize);
+	}
+
+	/**
+	 * the entries are encrypted in parallel batches and queued as inserts without undo copies,
+	 * then appended to the active segment as one batch by {@link #commit()}.
+	 */
+	@Override
+	public Result<Integer> importEntries(Iterator<Pair<Website, Password>> entries, CryptoKey encryptionKey) {
+		if(!undoQueue.isEmpty()) {
+			return new Result<Integer>(Code.FAIL, "commit or undo the uncommitted changes before import");
+		}
+		int imported = 0;
+		List<Password> batch = new ArrayList<Password>(IMPORT_BATCH_SIZE);
+		String failure = null;
+		try {
+			while(failure == null && entries.hasNext()) {
+				Pair<Website, Password> entry = entries.next();
+				if(!entry.second.header().hasUsername()) {
+					failure = "username is empty";
+					continue;
+				}
+				Result<BinaryWebsite> websiteResult = importWebsite(entry.first);
+				if(!websiteResult.isSuccess()) {
+					failure = websiteResult.msg;
+					continue;
+				}
+				batch.add(withWebsiteId(entry.second, websiteResult.result.websiteId()));
+				if(batch.size() == IMPORT_BATCH_SIZE) {
+					Result<Integer> batchResult = importPasswords(batch, encryptionKey);
+					if(!batchResult.isSuccess()) { failure = batchResult.msg; }else { imported += batchResult.result; }
+					batch.clear();
+				}
+			}
+			if(failure == null && !batch.isEmpty()) {
+				Result<Integer> batchResult = importPasswords(batch, encryptionKey);
+				if(!batchResult.isSuccess()) { failure = batchResult.msg; }else { imported += batchResult.result; }
+			}
+		}catch(Exception e) {
+			failure = e.getMessage();
+		}
+		if(failure != null) {
+			discardImported();
+			return new Result<Integer>(Code.FAIL, "failed to import entries: "+failure);
+		}
+		Result<Throwable> commitResult = commit();
+		if(!commitResult.isSuccess()) {
+			// the batch is kept once appended to segment, even if the following roll failed
+			if(!undoQueue.isEmpty()) { discardImported(); }
+			return new Result<Integer>(Code.FAIL, "failed to commit imported entries: "+commitResult.msg);
+		}
+		return new Result<Integer>(Code.SUCCESS, "success", imported);
+	}
+
+	/** the website of imported entry by keyword, which is inserted if absent **/
+	private Result<BinaryWebsite> importWebsite(Website website) {
+		if(!website.hasKeyword()) { return new Result<BinaryWebsite>(Code.FAIL, "website keyword is empty"); }
+		BinaryWebsite biWebsite = websiteKeywordMap.get(website.keyword());
+		if(biWebsite != null) { return new Result<BinaryWebsite>(Code.SUCCESS, "success", biWebsite); }
+		biWebsite = BinaryWebsite.cast(website);
+		// the websites created within one millisecond collide in id by chance, take the next millisecond instead
+		long timestamp = website.timestamp();
+		while(websiteIdMap.containsKey(biWebsite.websiteId())) {
+			biWebsite = BinaryWebsite.cast(new Website(++timestamp, 0).keyword(website.keyword()).url(website.url()));
+		}
+		if(!put(biWebsite)) { return new Result<BinaryWebsite>(Code.FAIL, "insert log website internal error"); }
+		// the queued image is only written by commit, so it needs no copy
+		undoQueue.offer(new ChangedOperation<BinaryWebsite>(null, OP.INSERT, biWebsite));
+		return new Result<BinaryWebsite>(Code.SUCCESS, "success", biWebsite);
+	}
+
+	/** encrypt {@code batch} in parallel, and queue them as inserts **/
+	private Result<Integer> importPasswords(List<Password> batch, CryptoKey encryptionKey) {
+		Result<List<BinaryPassword>> encryptedResult = decryptor.encrypt(cryptoDriver, batch, encryptionKey);
+		if(!encryptedResult.isSuccess()) { return new Result<Integer>(Code.FAIL, encryptedResult.msg); }
+		for(BinaryPassword password : encryptedResult.result) {
+			if(!put(password)) {
+				return new Result<Integer>(Code.FAIL, String.format("an existed entry mapping for username %s of website id %d",
+						password.username(), password.websiteId()));
+			}
+			undoQueue.offer(new ChangedOperation<BinaryPassword>(null, OP.INSERT, password));
+		}
+		return new Result<Integer>(Code.SUCCESS, "success", encryptedResult.result.size());
+	}
+
+	/** revert all the queued inserts of import **/
+	private void discardImported() {
+		ChangedOperation<? extends InternalEntity> last = null;
+		while((last = undoQueue.pollLast()) != null) { revert(last); }
+	}
+
+	/** a copy of {@code entry} for the website of {@code websiteId} **/
+	private static Password withWebsiteId(Password entry, long websiteId) {
+		Password password = new Password(websiteId, entry.header().username(), entry.header().timestamp());
+		password.password(entry.secret().password());
+		String kvp = entry.secret().keyValuePairs();
+		if(kvp != null) { password.keyValuePairs(kvp); }
+		return password;
+	}
+
+	@Override
+	public Result<Integer> canUndoTimes() {
+		return new Result<Integer>(Code.SUCCESS, "success", undoQueue.size());
+	}
+
+	@Override
+	public Result<Entity> undo() {
+		ChangedOperation<? extends InternalEntity> last = undoQueue.pollLast();
+		if(last == null) {
+			return new Result<Entity>(Code.FAIL, "no history change operation afater last commit");
+		}
+		OP op = last.op();
+		Entity entity = entityOf(last);
+		if(!revert(last)) {
+			undoQueue.offer(last);
+			return new Result<Entity>(Code.FAIL, String.format("undo last %s operation failed", op.name().toLowerCase()), entity);
+		}
+		redoQueue.offer(last);
+		return new Result<Entity>(Code.SUCCESS, "success", entity);
+	}
+
+	@Override
+	public Result<Integer> canRedoTimes() {
+		return new Result<Integer>(Code.SUCCESS, "success", redoQueue.size());
+	}
+
+	@Override
+	public Result<Entity> redo() {
+		ChangedOperation<? extends InternalEntity> last = redoQueue.pollLast();
+		if(last == null) {
+			return new Result<Entity>(Code.FAIL, "no history undo operation");
+		}
+		OP op = last.op();
+		Entity entity = entityOf(last);
+		if(!apply(last)) {
+			redoQueue.offer(last);
+			return new Result<Entity>(Code.FAIL, String.format("redo last %s operation failed", op.name().toLowerCase()), entity);
+		}
+		undoQueue.offer(last);
+		return new Result<Entity>(Code.SUCCESS, "success", entity);
+	}
+
+	private static Entity entityOf(ChangedOperation<? extends InternalEntity> operation) {
+		InternalEntity target = operation.op() == OP.INSERT ? operation.after() : operation.before();
+		return target.type() == Type.WEBSITE ?
+				((BinaryWebsite) target).transform() : ((BinaryPassword) target).transformWithoutSecret();
+	}
+
+	/** apply the {@code operation} to indexes again **/
+	private boolean apply(ChangedOperation<? extends InternalEntity> operation) {
+		InternalEntity before = operation.before();
+		InternalEntity after = operation.after();
+		switch(operation.op()) {
+		case INSERT:
+			return after.type() == Type.WEBSITE ?
+					put(((BinaryWebsite) after).copy()) : put(((BinaryPassword) after).copy());
+		case DELETE:
+			return before.type() == Type.WEBSITE ?
+					remove((BinaryWebsite) before) : remove((BinaryPassword) before);
+		case UPDATE:
+			return after.type() == Type.WEBSITE ?
+					replace((BinaryWebsite) before, (BinaryWebsite) after) : replace((BinaryPassword) after);
+		default:
+			return false;
+		}
+	}
+
+	/** revert the {@code operation} from indexes **/
+	private boolean revert(ChangedOperation<? extends InternalEntity> operation) {
+		InternalEntity before = operation.before();
+		InternalEntity after = operation.after();
+		switch(operation.op()) {
+		case INSERT:
+			return after.type() == Type.WEBSITE ?
+					remove((BinaryWebsite) after) : remove((BinaryPassword) after);
+		case DELETE:
+			return before.type() == Type.WEBSITE ?
+					put(((BinaryWebsite) before).copy()) : put(((BinaryPassword) before).copy());
+		case UPDATE:
+			return after.type() == Type.WEBSITE ?
+					replace((BinaryWebsite) after, (BinaryWebsite) before) : replace((BinaryPassword) before);
+		default:
+			return false;
+		}
+	}
+
+	@Override
+	public Result<Integer> needCommitCount() {
+		return new Result<Integer>(Code.SUCCESS, "success", undoQueue.size());
+	}
+
+	@Override
+	public Result<Throwable> commit() {
+		int count = undoQueue.size();
+		if(count == 0) { return new Result<Throwable>(Code.SUCCESS, "success"); }
+
+		List<LogRecord> records = new ArrayList<LogRecord>(count + 1);
+		int totalSize = 0;
+		for(ChangedOperation<? extends InternalEntity> operation : undoQueue) {
+			LogRecord record = toRecord(operation);
+			records.add(record);
+			totalSize += record.occupiedSize(secretBlockSize);
+		}
+		LogRecord commitRecord = LogRecord.commit(count);
+		records.add(commitRecord);
+		totalSize += commitRecord.occupiedSize(secretBlockSize);
+
+		ByteBuffer buf = ByteBuffer.allocate(totalSize).order(ByteOrder.BIG_ENDIAN);
+		for(LogRecord record : records) { record.write(buf, secretBlockSize); }
+		buf.flip();
+
+		synchronized(segmentLock) {
+			long position = 0;
+			try {
+				position = activeSegment.size();
+				activeSegment.append(buf, count);
+				activeSegment.force();
+			}catch(Exception e) {
+				discardTornBatch(position);
+				return new Result<Throwable>(Code.FAIL, "failed to append changes to segment: "+activeSegment.file(), e);
+			}
+			diskRecordCount += count;
+			undoQueue.clear();
+			try {
+				if(activeSegment.size() >= segmentMaxSize) { rollSegment(); }
+			}catch(Exception e) {
+				return new Result<Throwable>(Code.FAIL, "failed to roll segment of store path: "+storeDir, e);
+			}
+			scheduleCompactionIfNecessary();
+		}
+		return new Result<Throwable>(Code.SUCCESS, "success");
+	}
+
+	private LogRecord toRecord(ChangedOperation<? extends InternalEntity> operation) {
+		InternalEntity before = operation.before();
+		InternalEntity after = operation.after();
+		switch(operation.op()) {
+		case INSERT:
+			return after.type() == Type.WEBSITE ?
+					LogRecord.putWebsite((BinaryWebsite) after) : LogRecord.putPassword((BinaryPassword) after);
+		case DELETE:
+			return before.type() == Type.WEBSITE ?
+					LogRecord.deleteWebsite((BinaryWebsite) before) : LogRecord.deletePassword((BinaryPassword) before);
+		case UPDATE:
+			// website after image is complete, while password after image only carries the changed portion
+			return after.type() == Type.WEBSITE ?
+					LogRecord.putWebsite((BinaryWebsite) after) :
+					LogRecord.putPassword(BinarySecrets.merge((BinaryPassword) before, (BinaryPassword) after));
+		default:
+			throw new StoreException("unsupported op type of commit operation: "+operation.op());
+		}
+	}
+
+	/** truncate the partially appended batch, it would be dropped on next open anyway **/
+	private void discardTornBatch(long position) {
+		try {
+			activeSegment.truncate(position);
+		}catch(Exception ignore) {}
+	}
+
+	/** seal the active segment and create a new one, must hold the segmentLock **/
+	private void rollSegment() throws IOException {
+		LogSegment sealed = activeSegment;
+		activeSegment = LogSegment.create(storeDir, sealed.sequence() + 2, secretBlockSize);
+		sealed.close();
+		sealedSegments.add(sealed);
+	}
+
+	/** compact the sealed segments if most records on disk are obsolete, must hold the segmentLock **/
+	private void scheduleCompactionIfNecessary() {
+		if(compaction != null && !compaction.isDone()) { return; }
+		long liveCount = websiteIdMap.size() + passwordMap.size();
+		long obsoleteCount = diskRecordCount - liveCount;
+		if(obsoleteCount < compactMinRecords || obsoleteCount < liveCount) { return; }
+		try {
+			if(activeSegment.recordCount() > 0) { rollSegment(); }
+		}catch(IOException e) {
+			return; // try again on next commit
+		}
+		if(sealedSegments.size() < 2 && (sealedSegments.isEmpty() || !isActiveSequence(sealedSegments.get(0).sequence()))) {
+			return; // nothing to compact
+		}
+		final List<LogSegment> toBeCompacted = new ArrayList<LogSegment>(sealedSegments);
+		compaction = compactor.submit(new Runnable() {
+			@Override
+			public void run() { compact(toBeCompacted); }
+		});
+	}
+
+	/**
+	 * replay the sealed segments and write the live entries into a new snapshot segment,
+	 * the snapshot segment takes the place of the sealed segments once it is published.
+	 */
+	private void compact(List<LogSegment> segments) {
+		LogSegment temp = null;
+		try {
+			Replayer replayer = new Replayer();
+			for(LogSegment segment : segments) { segment.replay(replayer, false); }
+			for(LogSegment segment : segments) { segment.close(); }
+
+			long sequence = segments.get(segments.size() - 1).sequence() + 1;
+			temp = LogSegment.createTemp(storeDir, sequence, secretBlockSize);
+			int count = replayer.websites.size() + replayer.passwords.size();
+			writeSnapshot(temp, replayer);
+
+			LogSegment compacted = temp.publish();
+			temp = null;
+			synchronized(segmentLock) {
+				if(sealedSegments == null) { return; } // closed
+				long obsoleteCount = 0;
+				for(LogSegment segment : segments) {
+					segment.delete();
+					obsoleteCount += segment.recordCount();
+				}
+				sealedSegments.removeAll(segments);
+				sealedSegments.add(0, compacted);
+				diskRecordCount = diskRecordCount - obsoleteCount + count;
+			}
+		}catch(Exception e) {
+			// the sealed segments are still valid, the uncompleted temporary segment is deleted on next open
+			if(temp != null) {
+				try { temp.delete(); }catch(Exception ignore) {}
+			}
+		}
+	}
+
+	private void writeSnapshot(LogSegment segment, Replayer replayer) throws IOException {
+		int websiteSize = LogRecord.occupiedSize(LogRecord.Kind.PUT_WEBSITE, secretBlockSize);
+		int passwordSize = LogRecord.occupiedSize(LogRecord.Kind.PUT_PASSWORD, secretBlockSize);
+		ByteBuffer buf = ByteBuffer.allocate(Math.max(64 * 1024, passwordSize)).order(ByteOrder.BIG_ENDIAN);
+		LogRecord.snapshot().write(buf, secretBlockSize);
+		for(BinaryWebsite website : replayer.websites.values()) {
+			if(buf.remaining() < websiteSize) { flush(segment, buf); }
+			LogRecord.putWebsite(website).write(buf, secretBlockSize);
+		}
+		for(BinaryPassword password : replayer.passwords.values()) {
+			if(buf.remaining() < passwordSize) { flush(segment, buf); }
+			LogRecord.putPassword(password).write(buf, secretBlockSize);
+		}
+		LogRecord commitRecord = LogRecord.commit(replayer.websites.size() + replayer.passwords.size());
+		if(buf.remaining() < commitRecord.occupiedSize(secretBlockSize)) { flush(segment, buf); }
+		commitRecord.write(buf, secretBlockSize);
+		buf.flip();
+		segment.append(buf, replayer.websites.size() + replayer.passwords.size());
+	}
+
+	private static void flush(LogSegment segment, ByteBuffer buf) throws IOException {
+		buf.flip();
+		segment.append(buf, 0);
+		buf.clear();
+	}
+
+	/** wait for the running compaction to complete, just for test **/
+	void awaitCompaction() throws Exception {
+		Future<?> running = null;
+		synchronized(segmentLock) { running = compaction; }
+		if(running != null) { running.get(); }
+	}
+
+	/** the number of segments on disk, just for test **/
+	int segmentCount() {
+		synchronized(segmentLock) { return sealedSegments.size() + 1; }
+	}
+
+	@Override
+	public Result<Throwable> close() {
+		Result<Throwable> result = commit();
+		if(!result.isSuccess()) { return result; }
+		if(!isClosed) {
+			try {
+				release();
+			}catch(Exception e) {
+				return new Result<Throwable>(Code.FAIL, "release resources failed", e);
+			}
+			isClosed = true;
+		}
+		return new Result<Throwable>(Code.SUCCESS, "success");
+	}
+
+	/** rebuild the live entries by replaying records in order **/
+	private static final class Replayer implements LogSegment.Visitor {
+		final Map<Long, BinaryWebsite> websites = new LinkedHashMap<Long, BinaryWebsite>();
+		final Map<PasswordKey, BinaryPassword> passwords = new LinkedHashMap<PasswordKey, BinaryPassword>();
+
+		@Override
+		public void visit(LogRecord record) {
+			switch(record.kind()) {
+			case PUT_WEBSITE: websites.put(record.website().websiteId(), record.website()); break;
+			case DELETE_WEBSITE: websites.remove(record.website().websiteId()); break;
+			case PUT_PASSWORD: passwords.put(keyOf(record.password()), record.password()); break;
+			case DELETE_PASSWORD: passwords.remove(keyOf(record.password())); break;
+			case SNAPSHOT:
+				websites.clear();
+				passwords.clear();
+				break;
+			default: break;
+			}
+		}
+
+		private static PasswordKey keyOf(BinaryPassword password) {
+			return new PasswordKey(password.websiteId(), password.username());
+		}
+	}
+
+	private static final class PasswordKey {
+		final long websiteId;
+		final String username;
+		PasswordKey(long websiteId, String username) {
+			this.websiteId = websiteId;
+			this.username = username;
+		}
+
+		@Override public int hashCode() {
+			long h = websiteId + 31 * username.hashCode();
+			return (int) ((h >>> Integer.SIZE) ^ h);
+		}
+		@Override public boolean equals(Object obj) {
+			if(obj == this) { return true; }
+			if(!(obj instanceof PasswordKey)) { return false; }
+			PasswordKey another = (PasswordKey) obj;
+			return this.websiteId == another.websiteId
+				 && this.username.equals(another.username);
+		}
+	}
+}
@@ -28,6 +28,9 @@ public class BinaryPassword implements InternalEntity {
 	private long timestamp;
 	private byte[] encryptedPassword;
 	private byte[] encryptedKeyValuePairs;
+	/** the slot of the record with secrets in {@link SecretSlab}, or {@link #NO_SLOT} **/
+	private int slot;
+	public static final int NO_SLOT = -1;
 	
 	/**
 	 * 0 - unchanged; 1- changed
@@ -40,6 +43,8 @@ public class BinaryPassword implements InternalEntity {
 	
 	/** return the bytes of this object occupied in store file **/
 	public static int occupiedSize(int secretBlockSize) { return FIXED_OCCUPIED_BYTES + secretBlockSize * 2; }
+	/** return the bytes of the header (website id, username and timestamp) in store file **/
+	public static int headerSize() { return TIMESTAMP_OFFSET + 8; }
 	/** return the max username size(size + data length) **/
 	public static int maxUsernameSize() { return 1 + MAX_USER_NAME_LEN; }
 	public static long usernamePosition(long passwordPosition) { return passwordPosition + USER_NAME_OFFSET; }
@@ -72,6 +77,17 @@ public class BinaryPassword implements InternalEntity {
 		return password;
 	}
 	
+	/** read the header only, the secrets are left unloaded **/
+	public static BinaryPassword readHeader(ByteBuffer buffer) {
+		long websiteId = buffer.getLong();
+		int len = 0xff & buffer.get();
+		byte[] username = new byte[len];
+		buffer.get(username);
+		buffer.position(buffer.position() + (MAX_USER_NAME_LEN - len)); // skip remaining bytes with username slot
+		long timestamp = buffer.getLong();
+		return new BinaryPassword(websiteId, username, timestamp);
+	}
+	
 	public static void write(ByteBuffer buffer, int secretBlockSize, BinaryPassword target) {
 		buffer.putLong(target.websiteId);
 		int len = target.username.length;
@@ -162,6 +178,7 @@ public class BinaryPassword implements InternalEntity {
 		this.websiteId = websiteId;
 		this.username = usernameBytes;
 		this.timestamp = timestamp;
+		this.slot = NO_SLOT;
 		this.changedFlag = 0;
 	}
 	
@@ -187,9 +204,34 @@ public class BinaryPassword implements InternalEntity {
 		BinaryPassword password = new BinaryPassword(websiteId, username, timestamp);
 		password.encryptedPassword(encryptedPassword);
 		password.encryptedKeyValuePairs(encryptedKeyValuePairs);
+		password.slot(slot);
+		return password;
+	}
+	
+	/** copy with the secrets which are not loaded filled from {@code stored} **/
+	public BinaryPassword fill(BinaryPassword stored) {
+		BinaryPassword password = copy();
+		if(encryptedPassword == null) { password.encryptedPassword(stored.encryptedPassword); }
+		if(encryptedKeyValuePairs == null) { password.encryptedKeyValuePairs(stored.encryptedKeyValuePairs); }
+		return password;
+	}
+	
+	/**
+	 * copy with only the secrets marked changed and the changed flags, which is all that
+	 * a change record needs, the unchanged secrets are left null.
+	 */
+	public BinaryPassword changedPortions() {
+		BinaryPassword password = new BinaryPassword(websiteId, username, timestamp);
+		password.slot(slot);
+		password.changedFlag = changedFlag;
+		if(isEncryptedPasswordChanged()) { password.encryptedPassword(encryptedPassword); }
+		if(isEncryptedKeyValuePairsChanged()) { password.encryptedKeyValuePairs(encryptedKeyValuePairs); }
 		return password;
 	}
 	
+	/** the secrets are null until loaded if it's read by {@link #readHeader(ByteBuffer)}, maybe kept in a slot **/
+	public boolean hasSecrets() { return encryptedPassword != null && encryptedKeyValuePairs != null; }
+	
 	public Password transformWithoutSecret() { return new Password(websiteId, username(), timestamp); }
 
 	public long websiteId() { return websiteId; }
@@ -208,6 +250,10 @@ public class BinaryPassword implements InternalEntity {
 
 	public void encryptedKeyValuePairs(byte[] encryptedKeyValuePairs) { this.encryptedKeyValuePairs = encryptedKeyValuePairs; }
 	
+	public int slot() { return slot; }
+	
+	public void slot(int slot) { this.slot = slot; }
+	
 	/** mark the encrypted password changed flag **/
 	public void markEncryptedPasswordChanged() { changedFlag |= ENCRYPT_PWD_CHANGED_MASK; }
 	
@@ -0,0 +1,72 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.Result.Code;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+
+/** encrypt/decrypt the secret portion of password entry shared by binary based store drivers **/
+public final class BinarySecrets {
+
+	private BinarySecrets() {}
+
+	public static Result<BinaryPassword> encrypt(CryptoDriver cryptoDriver, Password password,
+			CryptoKey encryptionKey, boolean forInsert) {
+		Password.Header header = password.header();
+		Password.Secret secret = password.secret();
+		String pwd = secret.password();
+		String kvp = secret.keyValuePairs();
+
+		BinaryPassword biPassword = new BinaryPassword(header.websiteId(), header.username(), header.timestamp());
+		if(pwd == null || pwd.isEmpty()) {
+			if(forInsert) { return new Result<BinaryPassword>(Code.FAIL, "pasword is empty"); }
+		}else {
+			Result<byte[]> encryptedResult = cryptoDriver.encrypt(pwd.getBytes(CHARSET), encryptionKey);
+			if(!encryptedResult.isSuccess()) {
+				return new Result<BinaryPassword>(Code.FAIL, "password encrypt failed: "+encryptedResult.msg);
+			}
+			biPassword.encryptedPassword(encryptedResult.result);
+		}
+		if(kvp == null) {
+			if(!forInsert) { return new Result<BinaryPassword>(Code.SUCCESS, "success", biPassword); }
+			kvp = "";
+		}
+		Result<byte[]> encryptedResult = cryptoDriver.encrypt(kvp.getBytes(CHARSET), encryptionKey);
+		if(!encryptedResult.isSuccess()) {
+			return new Result<BinaryPassword>(Code.FAIL, "key value pair encrypt failed: "+encryptedResult.msg);
+		}
+		biPassword.encryptedKeyValuePairs(encryptedResult.result);
+		return new Result<BinaryPassword>(Code.SUCCESS, "success", biPassword);
+	}
+
+	public static Result<Password> decrypt(CryptoDriver cryptoDriver, BinaryPassword biPassword, CryptoKey decryptionKey) {
+		Password password = new Password(biPassword.websiteId(), biPassword.username(), biPassword.timestamp());
+
+		Result<byte[]> decryptedResult = cryptoDriver.decrypt(biPassword.encryptedPassword(), decryptionKey);
+		if(!decryptedResult.isSuccess()) {
+			return new Result<Password>(Code.FAIL, "password decrypt failed: "+decryptedResult.msg);
+		}
+		password.password(new String(decryptedResult.result, CHARSET));
+		decryptedResult = cryptoDriver.decrypt(biPassword.encryptedKeyValuePairs(), decryptionKey);
+		if(!decryptedResult.isSuccess()) {
+			return new Result<Password>(Code.FAIL, "key value pair decrypt failed: "+decryptedResult.msg);
+		}
+		password.keyValuePairs(new String(decryptedResult.result, CHARSET));
+		return new Result<Password>(Code.SUCCESS, "success", password);
+	}
+
+	/**
+	 * merge the changed portion of {@code after} into a copy of {@code before},
+	 * return the complete image of password after update.
+	 */
+	public static BinaryPassword merge(BinaryPassword before, BinaryPassword after) {
+		BinaryPassword merged = before.copy();
+		if(after.isEncryptedPasswordChanged()) { merged.encryptedPassword(after.encryptedPassword()); }
+		if(after.isEncryptedKeyValuePairsChanged()) { merged.encryptedKeyValuePairs(after.encryptedKeyValuePairs()); }
+		merged.timestamp(after.timestamp());
+		return merged;
+	}
+}
@@ -0,0 +1,257 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+/**
+ * The crc32 checksums of a store file kept in a side file, one for the header and one per fixed-size block
+ * following the header. the blocks written are marked dirty and only they are checksummed again on refresh.
+ * <p>before a commit modifies store file, the position it starts modifying at is saved as pending,
+ * so a commit broken by crash leaves the blocks after it unverifiable instead of corrupted,
+ * while all the blocks ahead of it can still be verified.
+ * <pre>
+ * side file layout:
+ *   magic(4) + blockSize(4) + headerLength(4) + length(8) + pendingFrom(8) + headerCrc(4) + blockCount(4) + blockCrc(4) * blockCount + crc32(4)
+ * </pre>
+ */
+public class BlockChecksums {
+
+	private static final byte[] MAGIC = "bpsc".getBytes(CHARSET);
+	public static final int BLOCK_SIZE = 64 * 1024;
+	/** no commit is pending **/
+	public static final long NONE = Long.MAX_VALUE;
+
+	private final int headerLength;
+	private long length;
+	private long pendingFrom = NONE;
+	private int headerCrc;
+	private int[] blockCrcs = new int[0];
+	private int blockCount;
+
+	// changed since the last refresh
+	private boolean isHeaderDirty;
+	private final BitSet dirtyBlocks = new BitSet();
+	private long dirtyFrom = NONE;
+
+	public BlockChecksums(int headerLength) { this.headerLength = headerLength; }
+
+	/** checksum the whole {@code store} **/
+	public static BlockChecksums compute(FileChannel store, int headerLength) throws IOException {
+		BlockChecksums checksums = new BlockChecksums(headerLength);
+		checksums.dirtyFrom = headerLength;
+		checksums.isHeaderDirty = true;
+		checksums.refresh(store);
+		return checksums;
+	}
+
+	/** mark the {@code length} bytes starting at {@code position} written **/
+	public void touch(long position, long length) {
+		if(length <= 0) { return; }
+		if(position < headerLength) {
+			isHeaderDirty = true;
+			length -= headerLength - position;
+			position = headerLength;
+			if(length <= 0) { return; }
+		}
+		int first = blockOf(position);
+		int last = blockOf(position + length - 1);
+		dirtyBlocks.set(first, last + 1);
+	}
+
+	/** mark all the bytes starting at {@code position} written, which may be truncated or extended **/
+	public void touchFrom(long position) {
+		if(position < headerLength) { isHeaderDirty = true; }
+		dirtyFrom = Math.min(dirtyFrom, Math.max(position, headerLength));
+	}
+
+	/**
+	 * mark the modification of a commit starting at {@code position}, the header is always modified.
+	 * the modification of a failed commit still pending is checksummed again on the next refresh.
+	 */
+	public void pending(long position) {
+		if(pendingFrom != NONE) {
+			isHeaderDirty = true;
+			touchFrom(pendingFrom);
+		}
+		pendingFrom = Math.min(pendingFrom, Math.max(position, headerLength));
+	}
+
+	public long pendingFrom() { return pendingFrom; }
+
+	private int blockOf(long position) { return (int) ((position - headerLength) / BLOCK_SIZE); }
+
+	/** checksum the dirty header and blocks of {@code store} again, and clear the pending commit **/
+	public void refresh(FileChannel store) throws IOException {
+		long newLength = store.size();
+		int newBlockCount = newLength <= headerLength ? 0 : blockOf(newLength - 1) + 1;
+		if(newLength != length) {
+			// the last block of the shorter one is partial or missing in the other
+			touchFrom(Math.min(length, newLength));
+		}
+		if(newBlockCount > blockCrcs.length) { blockCrcs = Arrays.copyOf(blockCrcs, Math.max(newBlockCount, blockCrcs.length * 3 / 2)); }
+		ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+		if(isHeaderDirty) { headerCrc = checksum(store, 0, (int) Math.min(headerLength, newLength), buf); }
+		int firstDirtyFrom = dirtyFrom == NONE ? newBlockCount : Math.min(newBlockCount, blockOf(dirtyFrom));
+		for(int i=0; i<newBlockCount; i++) {
+			if(i >= firstDirtyFrom || dirtyBlocks.get(i)) { blockCrcs[i] = blockChecksum(store, i, newLength, buf); }
+		}
+		length = newLength;
+		blockCount = newBlockCount;
+		isHeaderDirty = false;
+		dirtyBlocks.clear();
+		dirtyFrom = NONE;
+		pendingFrom = NONE;
+	}
+
+	private int blockChecksum(FileChannel store, int block, long storeLength, ByteBuffer buf) throws IOException {
+		long position = headerLength + (long) block * BLOCK_SIZE;
+		return checksum(store, position, (int) Math.min(BLOCK_SIZE, storeLength - position), buf);
+	}
+
+	private static int checksum(FileChannel store, long position, int size, ByteBuffer buf) throws IOException {
+		buf.clear().limit(size);
+		while(buf.hasRemaining()) {
+			if(store.read(buf, position + buf.position()) < 0) {
+				throw new IOException(String.format("unexpected end of store file while reading %d bytes at %d", size, position));
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 0, size);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * verify {@code store} by {@code threads} threads, each verifies a contiguous slice of blocks,
+	 * return the positions of the corrupted header or blocks in ascending order.
+	 * the header and the blocks starting from a pending commit are skipped.
+	 */
+	public List<Long> verify(final FileChannel store, int threads) throws IOException {
+		List<Long> corrupted = new ArrayList<Long>();
+		final long storeLength = store.size();
+		long verifiedLength = Math.min(storeLength, length);
+		int verifiedBlocks = 0;
+		if(pendingFrom == NONE) {
+			if(storeLength < headerLength || checksum(store, 0, headerLength, ByteBuffer.allocate(headerLength)) != headerCrc) {
+				corrupted.add(0L);
+			}
+			// a truncated or extended store file is reported at the end of the shorter one
+			if(storeLength != length) { corrupted.add(verifiedLength); }
+			verifiedBlocks = verifiedLength <= headerLength ? 0 : blockOf(verifiedLength - 1) + 1;
+		}else {
+			verifiedLength = Math.min(verifiedLength, pendingFrom);
+			verifiedBlocks = (int) ((verifiedLength - headerLength) / BLOCK_SIZE);
+		}
+		
+		int slices = Math.max(1, Math.min(threads, verifiedBlocks));
+		ExecutorService pool = Executors.newFixedThreadPool(slices);
+		try {
+			List<Future<List<Long>>> futures = new ArrayList<Future<List<Long>>>(slices);
+			for(int i=0; i<slices; i++) {
+				final int begin = (int) ((long) verifiedBlocks * i / slices);
+				final int end = (int) ((long) verifiedBlocks * (i+1) / slices);
+				futures.add(pool.submit(new Callable<List<Long>>() {
+					@Override
+					public List<Long> call() throws Exception {
+						ByteBuffer buf = ByteBuffer.allocate(BLOCK_SIZE);
+						List<Long> corrupted = new ArrayList<Long>();
+						for(int block=begin; block<end; block++) {
+							long position = headerLength + (long) block * BLOCK_SIZE;
+							int size = (int) Math.min(BLOCK_SIZE, length - position);
+							if(position + size > storeLength || checksum(store, position, size, buf) != blockCrcs[block]) {
+								corrupted.add(position);
+							}
+						}
+						return corrupted;
+					}
+				}));
+			}
+			for(Future<List<Long>> future : futures) { corrupted.addAll(future.get()); }
+		}catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while verifying store file");
+		}catch(ExecutionException e) {
+			Throwable cause = e.getCause();
+			if(cause instanceof IOException) { throw (IOException) cause; }
+			throw new IOException("failed to verify store file: " + cause.getMessage(), cause);
+		}finally {
+			pool.shutdownNow();
+		}
+		Collections.sort(corrupted);
+		return corrupted;
+	}
+
+	/** save the checksums to {@code file}, and force it to disk **/
+	public void save(File file) throws IOException {
+		ByteBuffer buf = byteOrder(ByteBuffer.allocate(4 + 4 + 4 + 8 + 8 + 4 + 4 + 4 * blockCount + 4));
+		buf.put(MAGIC).putInt(BLOCK_SIZE).putInt(headerLength).putLong(length).putLong(pendingFrom)
+			.putInt(headerCrc).putInt(blockCount);
+		for(int i=0; i<blockCount; i++) { buf.putInt(blockCrcs[i]); }
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 0, buf.position());
+		buf.putInt((int) crc.getValue()).flip();
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			FileChannel channel = raf.getChannel();
+			channel.truncate(0);
+			while(buf.hasRemaining()) { channel.write(buf); }
+			channel.force(true);
+		}finally {
+			raf.close();
+		}
+	}
+
+	/** load the checksums saved in {@code file}, return null if it doesn't exist or is incomplete **/
+	public static BlockChecksums load(File file, int headerLength) throws IOException {
+		if(!file.exists()) { return null; }
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		ByteBuffer buf = null;
+		try {
+			long size = raf.length();
+			if(size < 4 + 4 + 4 + 8 + 8 + 4 + 4 + 4 || size > Integer.MAX_VALUE) { return null; }
+			buf = byteOrder(ByteBuffer.allocate((int) size));
+			FileChannel channel = raf.getChannel();
+			while(buf.hasRemaining()) {
+				if(channel.read(buf) < 0) { return null; }
+			}
+		}finally {
+			raf.close();
+		}
+		int dataLength = buf.capacity() - 4;
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 0, dataLength);
+		if(buf.getInt(dataLength) != (int) crc.getValue()) { return null; }
+		buf.flip();
+		byte[] magic = new byte[MAGIC.length];
+		buf.get(magic);
+		if(!Arrays.equals(magic, MAGIC) || buf.getInt() != BLOCK_SIZE || buf.getInt() != headerLength) { return null; }
+		BlockChecksums checksums = new BlockChecksums(headerLength);
+		checksums.length = buf.getLong();
+		checksums.pendingFrom = buf.getLong();
+		checksums.headerCrc = buf.getInt();
+		int blockCount = buf.getInt();
+		if(blockCount < 0 || blockCount * 4 != dataLength - buf.position()) { return null; }
+		checksums.blockCrcs = new int[blockCount];
+		for(int i=0; i<blockCount; i++) { checksums.blockCrcs[i] = buf.getInt(); }
+		checksums.blockCount = blockCount;
+		return checksums;
+	}
+
+	private static ByteBuffer byteOrder(ByteBuffer buf) { return buf.order(ByteOrder.BIG_ENDIAN); }
+}
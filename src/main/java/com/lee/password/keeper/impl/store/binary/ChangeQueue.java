@@ -0,0 +1,377 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.AbstractCollection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.lee.password.keeper.api.Entity.Type;
+import com.lee.password.keeper.api.store.StoreException;
+import com.lee.password.keeper.impl.InternalEntity;
+import com.lee.password.keeper.impl.store.binary.ChangedOperation.OP;
+
+/**
+ * A queue of changed operations backed by a ring buffer, which keeps the images of the newest operations
+ * within a byte budget in memory, the oldest ones beyond it are spilled to a side file in a batch,
+ * and read back in a batch once all the ones in memory are polled. so the heap stays flat however
+ * many changes are made before commit.
+ * <pre>
+ * spill file layout:
+ *   record * n
+ * record layout:
+ *   length(4) + op(1) + images(1) + [before] + [after] + length(4)
+ *   images: bit 0 set if the before image exists, bit 1 for the after one, bit 2 for password images
+ * image layout:
+ *   website: changedFlag(1) + {@link BinaryWebsite#write}
+ *   password: changedFlag(1) + websiteId(8) + username(2 + n) + timestamp(8) + slot(4) + encryptedPassword(4 + n) + encryptedKeyValuePairs(4 + n)
+ * </pre>
+ * the length is written on both sides, so the records can be read in either direction.
+ * the secrets of a password image may be absent, which is written as length -1.
+ */
+public class ChangeQueue extends AbstractCollection<ChangedOperation<? extends InternalEntity>> {
+
+	private static final int HAS_BEFORE = 0x01;
+	private static final int HAS_AFTER = 0x02;
+	private static final int IS_PASSWORD = 0x04;
+	/** the estimated bytes of an operation besides the images, for the objects and the slot of ring buffer **/
+	private static final int OPERATION_OVERHEAD = 64;
+	private static final int ABSENT = -1;
+
+	private final File spillPath;
+	private final long memoryBudget;
+
+	// ring buffer of the operations in memory, the oldest one at head
+	private ChangedOperation<?>[] ring = new ChangedOperation<?>[16];
+	private int head;
+	private int count;
+	private long memoryBytes;
+
+	// the spilled operations, which are older than all the ones in memory
+	private RandomAccessFile spillFile;
+	private FileChannel spillChannel;
+	private long spillLength;
+	private int spilledCount;
+
+	/** spill the oldest operations to {@code spillPath} once the ones in memory exceed {@code memoryBudget} bytes, never if non-positive **/
+	public ChangeQueue(File spillPath, long memoryBudget) {
+		this.spillPath = spillPath;
+		this.memoryBudget = memoryBudget;
+	}
+
+	@Override
+	public int size() { return spilledCount + count; }
+
+	/** append {@code operation} as the newest one **/
+	public boolean offer(ChangedOperation<? extends InternalEntity> operation) {
+		if(count == ring.length) { grow(); }
+		ring[(head + count) & (ring.length - 1)] = operation;
+		count++;
+		memoryBytes += estimate(operation);
+		if(memoryBudget > 0 && memoryBytes > memoryBudget && count > 1) { spill(); }
+		return true;
+	}
+
+	@Override
+	public boolean add(ChangedOperation<? extends InternalEntity> operation) { return offer(operation); }
+
+	/** remove and return the newest operation, or null if empty **/
+	public ChangedOperation<? extends InternalEntity> pollLast() {
+		if(count == 0) {
+			if(spilledCount == 0) { return null; }
+			unspill();
+		}
+		int index = (head + count - 1) & (ring.length - 1);
+		ChangedOperation<? extends InternalEntity> last = get(index);
+		ring[index] = null;
+		count--;
+		memoryBytes -= estimate(last);
+		return last;
+	}
+
+	@Override
+	public void clear() {
+		for(int i=0; i<count; i++) { ring[(head + i) & (ring.length - 1)] = null; }
+		head = 0;
+		count = 0;
+		memoryBytes = 0;
+		close();
+	}
+
+	/** release the spill file, and delete it **/
+	public void close() {
+		spillLength = 0;
+		spilledCount = 0;
+		if(spillFile == null) { return; }
+		try {
+			spillFile.close();
+		}catch(IOException e) {
+			throw new StoreException("failed to close spilled changes: "+spillPath, e);
+		}finally {
+			spillFile = null;
+			spillChannel = null;
+			spillPath.delete();
+		}
+	}
+
+	/** iterate from the oldest operation to the newest one, the spilled ones are read on demand **/
+	@Override
+	public Iterator<ChangedOperation<? extends InternalEntity>> iterator() {
+		return new Iterator<ChangedOperation<? extends InternalEntity>>() {
+			private long position = 0;
+			private int spilled = 0;
+			private int index = 0;
+			@Override
+			public boolean hasNext() { return spilled < spilledCount || index < count; }
+			@Override
+			public ChangedOperation<? extends InternalEntity> next() {
+				if(!hasNext()) { throw new NoSuchElementException(); }
+				if(spilled < spilledCount) {
+					ByteBuffer record = readRecord(position, true);
+					position += record.capacity();
+					spilled++;
+					return decode(record);
+				}
+				return get((head + index++) & (ring.length - 1));
+			}
+			@Override
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+
+	/** iterate from the newest operation to the oldest one, the spilled ones are read on demand **/
+	public Iterator<ChangedOperation<? extends InternalEntity>> descendingIterator() {
+		return new Iterator<ChangedOperation<? extends InternalEntity>>() {
+			private long position = spillLength;
+			private int spilled = spilledCount;
+			private int index = count;
+			@Override
+			public boolean hasNext() { return index > 0 || spilled > 0; }
+			@Override
+			public ChangedOperation<? extends InternalEntity> next() {
+				if(!hasNext()) { throw new NoSuchElementException(); }
+				if(index > 0) { return get((head + --index) & (ring.length - 1)); }
+				ByteBuffer record = readRecord(position, false);
+				position -= record.capacity();
+				spilled--;
+				return decode(record);
+			}
+			@Override
+			public void remove() { throw new UnsupportedOperationException(); }
+		};
+	}
+
+	@SuppressWarnings("unchecked")
+	private ChangedOperation<? extends InternalEntity> get(int index) { return (ChangedOperation<? extends InternalEntity>) ring[index]; }
+
+	private void grow() {
+		ChangedOperation<?>[] newRing = new ChangedOperation<?>[ring.length * 2];
+		for(int i=0; i<count; i++) { newRing[i] = ring[(head + i) & (ring.length - 1)]; }
+		ring = newRing;
+		head = 0;
+	}
+
+	/** append the oldest operations in memory to spill file until the rest fit in half of the budget **/
+	private void spill() {
+		int spilling = 0;
+		long bytes = memoryBytes;
+		int capacity = 0;
+		while(spilling < count - 1 && bytes > memoryBudget / 2) {
+			ChangedOperation<? extends InternalEntity> operation = get((head + spilling) & (ring.length - 1));
+			bytes -= estimate(operation);
+			capacity += encodedSize(operation);
+			spilling++;
+		}
+		ByteBuffer buf = byteOrder(ByteBuffer.allocate(capacity));
+		for(int i=0; i<spilling; i++) { encode(buf, get((head + i) & (ring.length - 1))); }
+		buf.flip();
+		try {
+			if(spillFile == null) {
+				spillFile = new RandomAccessFile(spillPath, "rw");
+				spillChannel = spillFile.getChannel();
+				spillChannel.truncate(0);
+			}
+			long position = spillLength;
+			while(buf.hasRemaining()) { position += spillChannel.write(buf, position); }
+		}catch(IOException e) {
+			throw new StoreException("failed to spill changes to "+spillPath, e);
+		}
+		for(int i=0; i<spilling; i++) {
+			ring[head] = null;
+			head = (head + 1) & (ring.length - 1);
+		}
+		count -= spilling;
+		memoryBytes = bytes;
+		spillLength += capacity;
+		spilledCount += spilling;
+	}
+
+	/** read the newest spilled operations back to memory within half of the budget, the memory must be empty **/
+	private void unspill() {
+		long position = spillLength;
+		int unspilling = 0;
+		long bytes = 0;
+		ChangedOperation<?>[] batch = new ChangedOperation<?>[Math.min(spilledCount, 16)];
+		do {
+			ByteBuffer record = readRecord(position, false);
+			position -= record.capacity();
+			ChangedOperation<? extends InternalEntity> operation = decode(record);
+			if(unspilling == batch.length) {
+				ChangedOperation<?>[] newBatch = new ChangedOperation<?>[Math.min(spilledCount, batch.length * 2)];
+				System.arraycopy(batch, 0, newBatch, 0, unspilling);
+				batch = newBatch;
+			}
+			batch[unspilling++] = operation;
+			bytes += estimate(operation);
+		}while(unspilling < spilledCount && bytes < memoryBudget / 2);
+		// the batch is read from the newest one backward
+		head = 0;
+		for(int i=unspilling-1; i>=0; i--) {
+			if(count == ring.length) { grow(); }
+			ring[count++] = batch[i];
+		}
+		memoryBytes = bytes;
+		spilledCount -= unspilling;
+		spillLength = position;
+		try {
+			spillChannel.truncate(spillLength);
+		}catch(IOException e) {
+			throw new StoreException("failed to truncate spilled changes: "+spillPath, e);
+		}
+	}
+
+	/** read the whole record starting at {@code position}, or ending at it if not {@code forward} **/
+	private ByteBuffer readRecord(long position, boolean forward) {
+		try {
+			ByteBuffer lengthBuf = byteOrder(ByteBuffer.allocate(4));
+			readFully(lengthBuf, forward ? position : position - 4);
+			int length = lengthBuf.getInt(0);
+			ByteBuffer record = byteOrder(ByteBuffer.allocate(4 + length + 4));
+			readFully(record, forward ? position : position - record.capacity());
+			record.flip();
+			return record;
+		}catch(IOException e) {
+			throw new StoreException("failed to read spilled changes: "+spillPath, e);
+		}
+	}
+
+	private void readFully(ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) {
+			if(spillChannel.read(buf, position + buf.position()) < 0) {
+				throw new StoreException("unexpected end of spilled changes: "+spillPath);
+			}
+		}
+	}
+
+	private static long estimate(ChangedOperation<? extends InternalEntity> operation) {
+		return OPERATION_OVERHEAD + imageSize(operation.before()) + imageSize(operation.after());
+	}
+
+	private static int encodedSize(ChangedOperation<? extends InternalEntity> operation) {
+		return 4 + 1 + 1 + imageSize(operation.before()) + imageSize(operation.after()) + 4;
+	}
+
+	private static int imageSize(InternalEntity image) {
+		if(image == null) { return 0; }
+		if(image.type() == Type.WEBSITE) { return 1 + BinaryWebsite.occupiedSize(); }
+		BinaryPassword password = (BinaryPassword) image;
+		return 1 + 8 + 2 + password.username().getBytes(CHARSET).length + 8 + 4
+				+ 4 + length(password.encryptedPassword()) + 4 + length(password.encryptedKeyValuePairs());
+	}
+
+	private static int length(byte[] bytes) { return bytes == null ? 0 : bytes.length; }
+
+	private static void encode(ByteBuffer buf, ChangedOperation<? extends InternalEntity> operation) {
+		int start = buf.position();
+		InternalEntity before = operation.before();
+		InternalEntity after = operation.after();
+		buf.putInt(0).put((byte) operation.op().ordinal())
+			.put((byte) ((before != null ? HAS_BEFORE : 0) | (after != null ? HAS_AFTER : 0)
+					| ((before != null ? before : after).type() == Type.PASSWORD ? IS_PASSWORD : 0)));
+		if(before != null) { encode(buf, before); }
+		if(after != null) { encode(buf, after); }
+		int length = buf.position() - start - 4;
+		buf.putInt(start, length);
+		buf.putInt(length);
+	}
+
+	private static void encode(ByteBuffer buf, InternalEntity image) {
+		if(image.type() == Type.WEBSITE) {
+			BinaryWebsite website = (BinaryWebsite) image;
+			buf.put((byte) ((website.isKeywordChanged() ? 0x01 : 0) | (website.isUrlChanged() ? 0x02 : 0)));
+			int position = buf.position();
+			BinaryWebsite.write(buf, website);
+			buf.position(position + BinaryWebsite.occupiedSize());
+			return;
+		}
+		BinaryPassword password = (BinaryPassword) image;
+		buf.put((byte) ((password.isEncryptedPasswordChanged() ? 0x01 : 0) | (password.isEncryptedKeyValuePairsChanged() ? 0x02 : 0)));
+		byte[] username = password.username().getBytes(CHARSET);
+		buf.putLong(password.websiteId()).putShort((short) username.length).put(username)
+			.putLong(password.timestamp()).putInt(password.slot());
+		putBytes(buf, password.encryptedPassword());
+		putBytes(buf, password.encryptedKeyValuePairs());
+	}
+
+	private static void putBytes(ByteBuffer buf, byte[] bytes) {
+		if(bytes == null) {
+			buf.putInt(ABSENT);
+		}else {
+			buf.putInt(bytes.length).put(bytes);
+		}
+	}
+
+	private static ChangedOperation<? extends InternalEntity> decode(ByteBuffer record) {
+		record.position(4);
+		OP op = OP.values()[record.get()];
+		int images = record.get();
+		if((images & IS_PASSWORD) == 0) {
+			BinaryWebsite before = (images & HAS_BEFORE) != 0 ? decodeWebsite(record) : null;
+			BinaryWebsite after = (images & HAS_AFTER) != 0 ? decodeWebsite(record) : null;
+			return new ChangedOperation<BinaryWebsite>(before, op, after);
+		}
+		BinaryPassword before = (images & HAS_BEFORE) != 0 ? decodePassword(record) : null;
+		BinaryPassword after = (images & HAS_AFTER) != 0 ? decodePassword(record) : null;
+		return new ChangedOperation<BinaryPassword>(before, op, after);
+	}
+
+	private static BinaryWebsite decodeWebsite(ByteBuffer record) {
+		int flag = record.get();
+		int position = record.position();
+		BinaryWebsite website = BinaryWebsite.read(record);
+		record.position(position + BinaryWebsite.occupiedSize());
+		if((flag & 0x01) != 0) { website.markKeywordChanged(); }
+		if((flag & 0x02) != 0) { website.markUrlChanged(); }
+		return website;
+	}
+
+	private static BinaryPassword decodePassword(ByteBuffer record) {
+		int flag = record.get();
+		long websiteId = record.getLong();
+		byte[] username = new byte[record.getShort()];
+		record.get(username);
+		BinaryPassword password = new BinaryPassword(websiteId, new String(username, CHARSET), record.getLong());
+		password.slot(record.getInt());
+		password.encryptedPassword(getBytes(record));
+		password.encryptedKeyValuePairs(getBytes(record));
+		if((flag & 0x01) != 0) { password.markEncryptedPasswordChanged(); }
+		if((flag & 0x02) != 0) { password.markEncryptedKeyValuePairsChanged(); }
+		return password;
+	}
+
+	private static byte[] getBytes(ByteBuffer record) {
+		int length = record.getInt();
+		if(length == ABSENT) { return null; }
+		byte[] bytes = new byte[length];
+		record.get(bytes);
+		return bytes;
+	}
+
+	private static ByteBuffer byteOrder(ByteBuffer buf) { return buf.order(ByteOrder.BIG_ENDIAN); }
+}
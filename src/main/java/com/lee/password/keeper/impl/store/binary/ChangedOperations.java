@@ -0,0 +1,162 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lee.password.keeper.api.Entity.Type;
+import com.lee.password.keeper.api.store.StoreException;
+import com.lee.password.keeper.impl.InternalEntity;
+import com.lee.password.keeper.impl.store.binary.ChangedOperation.OP;
+
+/** fold the changed operations of the same entry into their net effect **/
+public final class ChangedOperations {
+
+	private ChangedOperations() {}
+
+	/**
+	 * collapse the chain of changed operations per website id and per password key (website id + username):
+	 * <pre>
+	 * insert + update  -> insert of the updated image
+	 * insert + delete  -> nothing
+	 * update + update  -> update with all the changed portions
+	 * update + delete  -> delete
+	 * delete + insert  -> update of all the portions
+	 * </pre>
+	 * the order of the first operation of each entry is kept.
+	 */
+	public static List<ChangedOperation<? extends InternalEntity>> coalesce(
+			Collection<ChangedOperation<? extends InternalEntity>> operations) {
+		Map<Object, ChangedOperation<? extends InternalEntity>> folded =
+				new LinkedHashMap<Object, ChangedOperation<? extends InternalEntity>>();
+		for(ChangedOperation<? extends InternalEntity> operation : operations) {
+			Object key = keyOf(operation);
+			ChangedOperation<? extends InternalEntity> last = folded.get(key);
+			if(last == null) {
+				folded.put(key, operation);
+				continue;
+			}
+			ChangedOperation<? extends InternalEntity> next = fold(last, operation);
+			if(next == null) {
+				folded.remove(key);
+			}else {
+				folded.put(key, next);
+			}
+		}
+		return new ArrayList<ChangedOperation<? extends InternalEntity>>(folded.values());
+	}
+
+	private static Object keyOf(ChangedOperation<? extends InternalEntity> operation) {
+		InternalEntity target = operation.after() != null ? operation.after() : operation.before();
+		if(target.type() == Type.WEBSITE) { return ((BinaryWebsite) target).websiteId(); }
+		BinaryPassword password = (BinaryPassword) target;
+		return new PasswordKey(password.websiteId(), password.username());
+	}
+
+	/** return the net effect of {@code last} followed by {@code next}, or {@code null} if they cancel each other **/
+	private static ChangedOperation<? extends InternalEntity> fold(ChangedOperation<? extends InternalEntity> last,
+			ChangedOperation<? extends InternalEntity> next) {
+		OP lastOp = last.op();
+		OP nextOp = next.op();
+		if(lastOp == OP.INSERT && nextOp == OP.UPDATE) { return insertOf(last.after(), next.after()); }
+		if(lastOp == OP.INSERT && nextOp == OP.DELETE) { return null; }
+		if(lastOp == OP.UPDATE && nextOp == OP.UPDATE) { return updateOf(last, next); }
+		if(lastOp == OP.UPDATE && nextOp == OP.DELETE) {
+			return new ChangedOperation<InternalEntity>(last.before(), OP.DELETE, null);
+		}
+		if(lastOp == OP.DELETE && nextOp == OP.INSERT) { return replaceOf(last.before(), next.after()); }
+		throw new StoreException(String.format("inconsistent changed operation %s following %s", nextOp, lastOp));
+	}
+
+	private static ChangedOperation<? extends InternalEntity> insertOf(InternalEntity inserted, InternalEntity updated) {
+		if(inserted.type() == Type.WEBSITE) {
+			// website after image of update is complete
+			BinaryWebsite website = ((BinaryWebsite) updated).copy();
+			website.count(0);
+			website.offset(-1);
+			return new ChangedOperation<BinaryWebsite>(null, OP.INSERT, website);
+		}
+		BinaryPassword merged = BinarySecrets.merge((BinaryPassword) inserted, (BinaryPassword) updated);
+		return new ChangedOperation<BinaryPassword>(null, OP.INSERT, merged);
+	}
+
+	private static ChangedOperation<? extends InternalEntity> updateOf(ChangedOperation<? extends InternalEntity> last,
+			ChangedOperation<? extends InternalEntity> next) {
+		if(last.after().type() == Type.WEBSITE) {
+			BinaryWebsite lastAfter = (BinaryWebsite) last.after();
+			BinaryWebsite after = ((BinaryWebsite) next.after()).copy();
+			if(lastAfter.isKeywordChanged()) { after.markKeywordChanged(); }
+			if(lastAfter.isUrlChanged()) { after.markUrlChanged(); }
+			return new ChangedOperation<BinaryWebsite>((BinaryWebsite) last.before(), OP.UPDATE, after);
+		}
+		BinaryPassword lastAfter = (BinaryPassword) last.after();
+		BinaryPassword nextAfter = (BinaryPassword) next.after();
+		// the images hold only the changed portions, the before one takes the earliest image of each portion
+		BinaryPassword lastBefore = (BinaryPassword) last.before();
+		BinaryPassword nextBefore = (BinaryPassword) next.before();
+		BinaryPassword before = lastBefore.copy();
+		if(lastBefore.isEncryptedPasswordChanged()) {
+			before.markEncryptedPasswordChanged();
+		}else if(nextBefore.isEncryptedPasswordChanged()) {
+			before.encryptedPassword(nextBefore.encryptedPassword());
+			before.markEncryptedPasswordChanged();
+		}
+		if(lastBefore.isEncryptedKeyValuePairsChanged()) {
+			before.markEncryptedKeyValuePairsChanged();
+		}else if(nextBefore.isEncryptedKeyValuePairsChanged()) {
+			before.encryptedKeyValuePairs(nextBefore.encryptedKeyValuePairs());
+			before.markEncryptedKeyValuePairsChanged();
+		}
+		// copy() drops the changed flags, mark them again
+		BinaryPassword after = nextAfter.copy();
+		if(nextAfter.isEncryptedPasswordChanged()) {
+			after.markEncryptedPasswordChanged();
+		}else if(lastAfter.isEncryptedPasswordChanged()) {
+			after.encryptedPassword(lastAfter.encryptedPassword());
+			after.markEncryptedPasswordChanged();
+		}
+		if(nextAfter.isEncryptedKeyValuePairsChanged()) {
+			after.markEncryptedKeyValuePairsChanged();
+		}else if(lastAfter.isEncryptedKeyValuePairsChanged()) {
+			after.encryptedKeyValuePairs(lastAfter.encryptedKeyValuePairs());
+			after.markEncryptedKeyValuePairsChanged();
+		}
+		return new ChangedOperation<BinaryPassword>(before, OP.UPDATE, after);
+	}
+
+	private static ChangedOperation<? extends InternalEntity> replaceOf(InternalEntity deleted, InternalEntity inserted) {
+		if(inserted.type() == Type.WEBSITE) {
+			BinaryWebsite after = ((BinaryWebsite) inserted).copy();
+			after.markKeywordChanged();
+			after.markUrlChanged();
+			return new ChangedOperation<BinaryWebsite>((BinaryWebsite) deleted, OP.UPDATE, after);
+		}
+		BinaryPassword after = ((BinaryPassword) inserted).copy();
+		after.markEncryptedPasswordChanged();
+		after.markEncryptedKeyValuePairsChanged();
+		return new ChangedOperation<BinaryPassword>((BinaryPassword) deleted, OP.UPDATE, after);
+	}
+
+	private static final class PasswordKey {
+		final long websiteId;
+		final String username;
+		PasswordKey(long websiteId, String username) {
+			this.websiteId = websiteId;
+			this.username = username;
+		}
+
+		@Override public int hashCode() {
+			long h = websiteId + 31 * username.hashCode();
+			return (int) ((h >>> Integer.SIZE) ^ h);
+		}
+		@Override public boolean equals(Object obj) {
+			if(obj == this) { return true; }
+			if(!(obj instanceof PasswordKey)) { return false; }
+			PasswordKey another = (PasswordKey) obj;
+			return this.websiteId == another.websiteId
+				 && this.username.equals(another.username);
+		}
+	}
+}
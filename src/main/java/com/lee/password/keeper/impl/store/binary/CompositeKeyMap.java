@@ -0,0 +1,131 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An open addressing hash map with composite keys of a primitive long and a string,
+ * e.g. website id and username, it looks up without allocating a key object.
+ * null value is not supported, which marks an empty slot.
+ */
+public class CompositeKeyMap<V> {
+
+	private long[] ids;
+	private String[] names;
+	private Object[] values;
+	private int size;
+	private int mask;
+	/** resize once the size exceeds it, keep the load factor no more than 3/4 **/
+	private int threshold;
+
+	public CompositeKeyMap() { this(0); }
+
+	public CompositeKeyMap(int expectedSize) { allocate(LongObjectMap.capacityFor(expectedSize)); }
+
+	private static int hash(long id, String name) { return LongObjectMap.hash(id * 31 + name.hashCode()); }
+
+	private void allocate(int capacity) {
+		ids = new long[capacity];
+		names = new String[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		threshold = capacity * 3 / 4;
+	}
+
+	public int size() { return size; }
+
+	public boolean isEmpty() { return size == 0; }
+
+	/** return the slot of the key, or the complement of the empty slot to put it **/
+	private int indexOf(long id, String name) {
+		int i = hash(id, name) & mask;
+		while(values[i] != null) {
+			if(ids[i] == id && names[i].equals(name)) { return i; }
+			i = (i + 1) & mask;
+		}
+		return ~i;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long id, String name) {
+		int i = indexOf(id, name);
+		return i < 0 ? null : (V) values[i];
+	}
+
+	public boolean containsKey(long id, String name) { return indexOf(id, name) >= 0; }
+
+	/** put {@code value} with the key, return the old value or null **/
+	@SuppressWarnings("unchecked")
+	public V put(long id, String name, V value) {
+		if(value == null) { throw new NullPointerException("null value is not supported"); }
+		int i = indexOf(id, name);
+		if(i >= 0) {
+			V old = (V) values[i];
+			values[i] = value;
+			return old;
+		}
+		i = ~i;
+		ids[i] = id;
+		names[i] = name;
+		values[i] = value;
+		if(++size > threshold) { resize(); }
+		return null;
+	}
+
+	/** remove the value of the key, return it or null **/
+	@SuppressWarnings("unchecked")
+	public V remove(long id, String name) {
+		int i = indexOf(id, name);
+		if(i < 0) { return null; }
+		V old = (V) values[i];
+		// shift the following entries of the probe chain backward instead of leaving a tombstone
+		int j = i;
+		while(true) {
+			j = (j + 1) & mask;
+			if(values[j] == null) { break; }
+			int home = hash(ids[j], names[j]) & mask;
+			boolean stay = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if(stay) { continue; }
+			ids[i] = ids[j];
+			names[i] = names[j];
+			values[i] = values[j];
+			i = j;
+		}
+		names[i] = null;
+		values[i] = null;
+		size--;
+		return old;
+	}
+
+	public void clear() {
+		for(int i=0; i<values.length; i++) {
+			names[i] = null;
+			values[i] = null;
+		}
+		size = 0;
+	}
+
+	/** return all the values in no particular order **/
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> result = new ArrayList<V>(size);
+		for(int i=0; i<values.length; i++) {
+			if(values[i] != null) { result.add((V) values[i]); }
+		}
+		return result;
+	}
+
+	private void resize() {
+		long[] oldIds = ids;
+		String[] oldNames = names;
+		Object[] oldValues = values;
+		allocate(oldValues.length << 1);
+		for(int i=0; i<oldValues.length; i++) {
+			if(oldValues[i] == null) { continue; }
+			int j = ~indexOf(oldIds[i], oldNames[i]);
+			ids[j] = oldIds[i];
+			names[j] = oldNames[i];
+			values[j] = oldValues[i];
+		}
+	}
+}
@@ -0,0 +1,270 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.lee.password.keeper.api.Entity.Type;
+import com.lee.password.keeper.api.store.StoreException;
+import com.lee.password.keeper.impl.InternalEntity;
+
+/**
+ * An append-only journal of the committed changes, each records the complete image of an entry
+ * before and after a commit, so the changes can be reverted across sessions. it is bounded by
+ * dropping the oldest half of the changes once it grows beyond the max size.
+ * <p>the start time in header is the time the journal is started over, or the latest commit time of the dropped
+ * changes, all the changes committed after it are kept, so it is the earliest time they can be reverted to.
+ * <pre>
+ * journal layout:
+ *   magic(4) + secretBlockSize(4) + startTime(8) + entry * n
+ * entry layout:
+ *   length(4) + commitTime(8) + type(1) + images(1) + [before] + [after] + crc32(4)
+ * </pre>
+ * the images are written by {@link BinaryWebsite#write} or {@link BinaryPassword#write}, the bit 0 of images
+ * is set if the before image exists, and the bit 1 for the after one. an entry torn by crash is cut off on open.
+ */
+public class HistoryJournal {
+
+	private static final byte[] MAGIC = "bpsh".getBytes(CHARSET);
+	private static final int START_TIME_OFFSET = MAGIC.length + 4;
+	private static final int HEADER_LEN = START_TIME_OFFSET + 8;
+	private static final int CRC_SIZE = 4;
+	private static final byte WEBSITE = 0;
+	private static final byte PASSWORD = 1;
+	private static final int HAS_BEFORE = 0x01;
+	private static final int HAS_AFTER = 0x02;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	/** the images of an entry before and after a commit, the before one is null for insert, and the after one for delete **/
+	public static class Entry {
+		private final long commitTime;
+		private final InternalEntity before;
+		private final InternalEntity after;
+
+		public Entry(long commitTime, InternalEntity before, InternalEntity after) {
+			this.commitTime = commitTime;
+			this.before = before;
+			this.after = after;
+		}
+
+		public long commitTime() { return commitTime; }
+
+		public InternalEntity before() { return before; }
+
+		public InternalEntity after() { return after; }
+
+		public Type type() { return (before != null ? before : after).type(); }
+	}
+
+	private final File journalPath;
+	private final int secretBlockSize;
+	private final long maxSize;
+	private RandomAccessFile journalFile;
+	private FileChannel journalChannel;
+	private long startTime;
+
+	/**
+	 * open the journal, which is started over at {@code startTime} if it is missing or written with another secret block size.
+	 * {@code startTime} is 0 for a new store file, since there is no change before, otherwise the current time.
+	 */
+	public HistoryJournal(File journalPath, int secretBlockSize, long maxSize, long startTime) throws IOException {
+		this.journalPath = journalPath;
+		this.secretBlockSize = secretBlockSize;
+		this.maxSize = maxSize;
+		open();
+		ByteBuffer header = byteOrder(ByteBuffer.allocate(HEADER_LEN));
+		readFully(journalChannel, header, 0);
+		byte[] magic = Arrays.copyOf(header.array(), MAGIC.length);
+		if(header.hasRemaining() || !Arrays.equals(magic, MAGIC) || header.getInt(MAGIC.length) != secretBlockSize) {
+			this.startTime = startTime;
+			reset(journalChannel, startTime);
+		}else {
+			this.startTime = header.getLong(START_TIME_OFFSET);
+			journalChannel.truncate(validLength());
+		}
+	}
+
+	/** the earliest time the changes can be reverted to, the ones committed before it are dropped or not recorded **/
+	public long startTime() { return startTime; }
+
+	private void open() throws IOException {
+		journalFile = new RandomAccessFile(journalPath, "rw");
+		journalChannel = journalFile.getChannel();
+	}
+
+	private void reset(FileChannel channel, long startTime) throws IOException {
+		channel.truncate(0);
+		ByteBuffer header = byteOrder(ByteBuffer.allocate(HEADER_LEN));
+		header.put(MAGIC).putInt(secretBlockSize).putLong(startTime).flip();
+		writeFully(channel, header, 0);
+		channel.force(true);
+	}
+
+	/** the length of the complete entries, the following bytes are torn by crash **/
+	private long validLength() throws IOException {
+		long position = HEADER_LEN;
+		long size = journalChannel.size();
+		ByteBuffer lengthBuf = byteOrder(ByteBuffer.allocate(4));
+		while(position + 4 <= size) {
+			lengthBuf.clear();
+			readFully(journalChannel, lengthBuf, position);
+			int length = lengthBuf.getInt(0);
+			if(length < 8 + 1 + 1 || position + 4 + length + CRC_SIZE > size) { break; }
+			ByteBuffer buf = ByteBuffer.allocate(length + CRC_SIZE);
+			readFully(journalChannel, buf, position + 4);
+			CRC32 crc = new CRC32();
+			crc.update(buf.array(), 0, length);
+			if(buf.getInt(length) != (int) crc.getValue()) { break; }
+			position += 4 + length + CRC_SIZE;
+		}
+		return position;
+	}
+
+	/** append {@code entries} and force them to disk, then drop the oldest half if the journal grows beyond the max size **/
+	public void append(List<Entry> entries) throws IOException {
+		if(entries.isEmpty()) { return; }
+		int websiteSize = BinaryWebsite.occupiedSize();
+		int passwordSize = BinaryPassword.occupiedSize(secretBlockSize);
+		int capacity = 0;
+		for(Entry entry : entries) {
+			int imageSize = entry.type() == Type.WEBSITE ? websiteSize : passwordSize;
+			int images = (entry.before != null ? 1 : 0) + (entry.after != null ? 1 : 0);
+			capacity += 4 + 8 + 1 + 1 + images * imageSize + CRC_SIZE;
+		}
+		ByteBuffer buf = byteOrder(ByteBuffer.allocate(capacity));
+		for(Entry entry : entries) {
+			int start = buf.position();
+			buf.putInt(0).putLong(entry.commitTime).put(entry.type() == Type.WEBSITE ? WEBSITE : PASSWORD)
+				.put((byte) ((entry.before != null ? HAS_BEFORE : 0) | (entry.after != null ? HAS_AFTER : 0)));
+			if(entry.before != null) { writeImage(buf, entry.before); }
+			if(entry.after != null) { writeImage(buf, entry.after); }
+			int length = buf.position() - start - 4;
+			buf.putInt(start, length);
+			CRC32 crc = new CRC32();
+			crc.update(buf.array(), start + 4, length);
+			buf.putInt((int) crc.getValue());
+		}
+		buf.flip();
+		long position = journalChannel.size();
+		writeFully(journalChannel, buf, position);
+		journalChannel.force(true);
+		if(journalChannel.size() > maxSize) { compact(); }
+	}
+
+	private void writeImage(ByteBuffer buf, InternalEntity image) {
+		int position = buf.position();
+		if(image.type() == Type.WEBSITE) {
+			BinaryWebsite.write(buf, (BinaryWebsite) image);
+			buf.position(position + BinaryWebsite.occupiedSize());
+		}else {
+			BinaryPassword.write(buf, secretBlockSize, (BinaryPassword) image);
+			buf.position(position + BinaryPassword.occupiedSize(secretBlockSize));
+		}
+	}
+
+	/** read all the entries committed after {@code time} in commit order **/
+	public List<Entry> since(long time) throws IOException {
+		List<Entry> entries = new ArrayList<Entry>();
+		long position = HEADER_LEN;
+		long size = journalChannel.size();
+		ByteBuffer lengthBuf = byteOrder(ByteBuffer.allocate(4));
+		while(position < size) {
+			lengthBuf.clear();
+			readFully(journalChannel, lengthBuf, position);
+			int length = lengthBuf.getInt(0);
+			ByteBuffer buf = byteOrder(ByteBuffer.allocate(length));
+			readFully(journalChannel, buf, position + 4);
+			buf.flip();
+			long commitTime = buf.getLong();
+			if(commitTime > time) {
+				boolean isWebsite = buf.get() == WEBSITE;
+				int images = buf.get();
+				InternalEntity before = (images & HAS_BEFORE) != 0 ? readImage(buf, isWebsite) : null;
+				InternalEntity after = (images & HAS_AFTER) != 0 ? readImage(buf, isWebsite) : null;
+				entries.add(new Entry(commitTime, before, after));
+			}
+			position += 4 + length + CRC_SIZE;
+		}
+		return entries;
+	}
+
+	private InternalEntity readImage(ByteBuffer buf, boolean isWebsite) {
+		int position = buf.position();
+		if(isWebsite) {
+			BinaryWebsite website = BinaryWebsite.read(buf);
+			buf.position(position + BinaryWebsite.occupiedSize());
+			return website;
+		}
+		BinaryPassword password = BinaryPassword.read(buf, secretBlockSize);
+		buf.position(position + BinaryPassword.occupiedSize(secretBlockSize));
+		return password;
+	}
+
+	/**
+	 * keep the newest entries within half of the max size through a rewritten journal renamed over this one,
+	 * whose start time is the latest commit time of the dropped entries.
+	 */
+	private void compact() throws IOException {
+		long size = journalChannel.size();
+		long position = HEADER_LEN;
+		long newStartTime = startTime;
+		ByteBuffer prefixBuf = byteOrder(ByteBuffer.allocate(4 + 8));
+		while(position < size && size - position > maxSize / 2) {
+			prefixBuf.clear();
+			readFully(journalChannel, prefixBuf, position);
+			newStartTime = Math.max(newStartTime, prefixBuf.getLong(4));
+			position += 4 + prefixBuf.getInt(0) + CRC_SIZE;
+		}
+		File rewriteFile = new File(journalPath.getPath() + ".tmp");
+		RandomAccessFile file = new RandomAccessFile(rewriteFile, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			reset(channel, newStartTime);
+			ByteBuffer buf = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+			long target = HEADER_LEN;
+			while(position < size) {
+				buf.clear();
+				buf.limit((int) Math.min(buf.capacity(), size - position));
+				readFully(journalChannel, buf, position);
+				buf.flip();
+				int count = buf.remaining();
+				writeFully(channel, buf, target);
+				position += count;
+				target += count;
+			}
+			channel.force(true);
+		}finally {
+			file.close();
+		}
+		close();
+		if(!rewriteFile.renameTo(journalPath) && !(journalPath.delete() && rewriteFile.renameTo(journalPath))) {
+			open();
+			throw new StoreException(String.format("failed to rename %s to %s", rewriteFile, journalPath));
+		}
+		startTime = newStartTime;
+		open();
+	}
+
+	public void close() throws IOException { journalFile.close(); }
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) {
+			if(channel.read(buf, position + buf.position()) < 0) { return; }
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) { position += channel.write(buf, position); }
+	}
+
+	private static ByteBuffer byteOrder(ByteBuffer buf) { return buf.order(ByteOrder.BIG_ENDIAN); }
+}
@@ -0,0 +1,170 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * A trie of keywords ignoring case, it finds the values of keywords starting with a prefix,
+ * or within an edit distance of a term, by visiting only the branches that can match.
+ * the children of each node are kept in arrays sorted by char, so values are found in keyword order.
+ * a keyword may be mapped to more than one value, which differ only in case.
+ */
+public class KeywordTrie<V> {
+
+	private final Node root = new Node();
+	private int size;
+
+	private static final class Node {
+		private char[] chars = new char[0];
+		private Node[] children = new Node[0];
+		private int childCount;
+		/** the values of keywords ending at this node, null if none **/
+		private List<Object> values;
+
+		private Node child(char ch) {
+			int index = Arrays.binarySearch(chars, 0, childCount, ch);
+			return index < 0 ? null : children[index];
+		}
+
+		private Node addChild(char ch) {
+			int index = Arrays.binarySearch(chars, 0, childCount, ch);
+			if(index >= 0) { return children[index]; }
+			index = -index - 1;
+			if(childCount == chars.length) {
+				int capacity = childCount == 0 ? 2 : childCount * 2;
+				chars = Arrays.copyOf(chars, capacity);
+				children = Arrays.copyOf(children, capacity);
+			}
+			System.arraycopy(chars, index, chars, index+1, childCount-index);
+			System.arraycopy(children, index, children, index+1, childCount-index);
+			Node child = new Node();
+			chars[index] = ch;
+			children[index] = child;
+			childCount++;
+			return child;
+		}
+
+		private void removeChild(char ch) {
+			int index = Arrays.binarySearch(chars, 0, childCount, ch);
+			if(index < 0) { return; }
+			System.arraycopy(chars, index+1, chars, index, childCount-index-1);
+			System.arraycopy(children, index+1, children, index, childCount-index-1);
+			children[--childCount] = null;
+		}
+
+		private boolean isEmpty() { return childCount == 0 && values == null; }
+	}
+
+	private static String fold(String keyword) { return keyword.toLowerCase(Locale.ENGLISH); }
+
+	public void put(String keyword, V value) {
+		String key = fold(keyword);
+		Node node = root;
+		for(int i=0; i<key.length(); i++) { node = node.addChild(key.charAt(i)); }
+		if(node.values == null) { node.values = new ArrayList<Object>(1); }
+		node.values.add(value);
+		size++;
+	}
+
+	/** remove {@code value} mapped with {@code keyword} by identity, return false if not found **/
+	public boolean remove(String keyword, V value) {
+		String key = fold(keyword);
+		Node[] path = new Node[key.length()+1];
+		Node node = root;
+		path[0] = node;
+		for(int i=0; i<key.length(); i++) {
+			node = node.child(key.charAt(i));
+			if(node == null) { return false; }
+			path[i+1] = node;
+		}
+		if(node.values == null) { return false; }
+		boolean isRemoved = false;
+		for(int i=0; i<node.values.size(); i++) {
+			if(node.values.get(i) == value) {
+				node.values.remove(i);
+				isRemoved = true;
+				break;
+			}
+		}
+		if(!isRemoved) { return false; }
+		if(node.values.isEmpty()) { node.values = null; }
+		// prune the branch no longer leading to any keyword
+		for(int i=key.length(); i>0 && path[i].isEmpty(); i--) { path[i-1].removeChild(key.charAt(i-1)); }
+		size--;
+		return true;
+	}
+
+	public int size() { return size; }
+
+	/** return at most {@code limit} values of keywords starting with {@code prefix} in keyword order, all if {@code limit} is non-positive **/
+	public List<V> prefix(String prefix, int limit) {
+		List<V> valueList = new ArrayList<V>();
+		String key = fold(prefix);
+		Node node = root;
+		for(int i=0; i<key.length() && node != null; i++) { node = node.child(key.charAt(i)); }
+		if(node != null) { collect(node, limit <= 0 ? Integer.MAX_VALUE : limit, valueList); }
+		return valueList;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void collect(Node node, int limit, List<V> valueList) {
+		if(node.values != null) {
+			for(Object value : node.values) {
+				if(valueList.size() == limit) { return; }
+				valueList.add((V) value);
+			}
+		}
+		for(int i=0; i<node.childCount && valueList.size() < limit; i++) { collect(node.children[i], limit, valueList); }
+	}
+
+	/**
+	 * return at most {@code limit} values of keywords within {@code maxDistance} edits
+	 * (insertion, deletion or substitution of a char) of {@code term}, nearest first and
+	 * then in keyword order, all if {@code limit} is non-positive.
+	 * one row of the Levenshtein matrix is computed per node, and a branch is pruned
+	 * once all the distances in its row exceed {@code maxDistance}.
+	 */
+	public List<V> fuzzy(String term, int maxDistance, int limit) {
+		String key = fold(term);
+		int[] row = new int[key.length()+1];
+		for(int i=0; i<row.length; i++) { row[i] = i; }
+		List<List<V>> byDistance = new ArrayList<List<V>>(maxDistance+1);
+		for(int d=0; d<=maxDistance; d++) { byDistance.add(new ArrayList<V>()); }
+		if(row[key.length()] <= maxDistance) { addAll(root, byDistance.get(row[key.length()])); }
+		for(int i=0; i<root.childCount; i++) { fuzzy(root.children[i], root.chars[i], key, row, maxDistance, byDistance); }
+
+		int max = limit <= 0 ? Integer.MAX_VALUE : limit;
+		List<V> valueList = new ArrayList<V>();
+		for(List<V> list : byDistance) {
+			for(V value : list) {
+				if(valueList.size() == max) { return valueList; }
+				valueList.add(value);
+			}
+		}
+		return valueList;
+	}
+
+	private void fuzzy(Node node, char ch, String key, int[] lastRow, int maxDistance, List<List<V>> byDistance) {
+		int columns = lastRow.length;
+		int[] row = new int[columns];
+		row[0] = lastRow[0] + 1;
+		int minDistance = row[0];
+		for(int i=1; i<columns; i++) {
+			int replace = lastRow[i-1] + (key.charAt(i-1) == ch ? 0 : 1);
+			row[i] = Math.min(replace, Math.min(row[i-1] + 1, lastRow[i] + 1));
+			minDistance = Math.min(minDistance, row[i]);
+		}
+		int distance = row[columns-1];
+		if(distance <= maxDistance) { addAll(node, byDistance.get(distance)); }
+		if(minDistance > maxDistance) { return; }
+		for(int i=0; i<node.childCount; i++) { fuzzy(node.children[i], node.chars[i], key, row, maxDistance, byDistance); }
+	}
+
+	@SuppressWarnings("unchecked")
+	private void addAll(Node node, List<V> valueList) {
+		if(node.values == null) { return; }
+		for(Object value : node.values) { valueList.add((V) value); }
+	}
+}
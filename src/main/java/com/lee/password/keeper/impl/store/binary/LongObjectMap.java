@@ -0,0 +1,147 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * An open addressing hash map with primitive long keys and linear probing,
+ * it looks up without boxing the key or allocating an entry.
+ * null value is not supported, which marks an empty slot.
+ */
+public class LongObjectMap<V> {
+
+	private static final int MIN_CAPACITY = 8;
+
+	private long[] keys;
+	private Object[] values;
+	private int size;
+	private int mask;
+	/** resize once the size exceeds it, keep the load factor no more than 3/4 **/
+	private int threshold;
+
+	public LongObjectMap() { this(MIN_CAPACITY); }
+
+	public LongObjectMap(int expectedSize) { allocate(capacityFor(expectedSize)); }
+
+	static int capacityFor(int expectedSize) {
+		int capacity = MIN_CAPACITY;
+		while(capacity * 3 / 4 < expectedSize) { capacity <<= 1; }
+		return capacity;
+	}
+
+	/** spread the bits of {@code key} by the finalizer of MurmurHash3 **/
+	static int hash(long key) {
+		key ^= key >>> 33;
+		key *= 0xff51afd7ed558ccdL;
+		key ^= key >>> 33;
+		key *= 0xc4ceb9fe1a85ec53L;
+		key ^= key >>> 33;
+		return (int) key;
+	}
+
+	private void allocate(int capacity) {
+		keys = new long[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		threshold = capacity * 3 / 4;
+	}
+
+	public int size() { return size; }
+
+	public boolean isEmpty() { return size == 0; }
+
+	/** return the slot of {@code key}, or the complement of the empty slot to put it **/
+	private int indexOf(long key) {
+		int i = hash(key) & mask;
+		while(values[i] != null) {
+			if(keys[i] == key) { return i; }
+			i = (i + 1) & mask;
+		}
+		return ~i;
+	}
+
+	@SuppressWarnings("unchecked")
+	public V get(long key) {
+		int i = indexOf(key);
+		return i < 0 ? null : (V) values[i];
+	}
+
+	public boolean containsKey(long key) { return indexOf(key) >= 0; }
+
+	/** put {@code value} with {@code key}, return the old value or null **/
+	@SuppressWarnings("unchecked")
+	public V put(long key, V value) {
+		if(value == null) { throw new NullPointerException("null value is not supported"); }
+		int i = indexOf(key);
+		if(i >= 0) {
+			V old = (V) values[i];
+			values[i] = value;
+			return old;
+		}
+		i = ~i;
+		keys[i] = key;
+		values[i] = value;
+		if(++size > threshold) { resize(); }
+		return null;
+	}
+
+	/** remove the value of {@code key}, return it or null **/
+	@SuppressWarnings("unchecked")
+	public V remove(long key) {
+		int i = indexOf(key);
+		if(i < 0) { return null; }
+		V old = (V) values[i];
+		// shift the following entries of the probe chain backward instead of leaving a tombstone
+		int j = i;
+		while(true) {
+			j = (j + 1) & mask;
+			if(values[j] == null) { break; }
+			int home = hash(keys[j]) & mask;
+			boolean stay = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+			if(stay) { continue; }
+			keys[i] = keys[j];
+			values[i] = values[j];
+			i = j;
+		}
+		values[i] = null;
+		size--;
+		return old;
+	}
+
+	public void clear() {
+		for(int i=0; i<values.length; i++) { values[i] = null; }
+		size = 0;
+	}
+
+	/** return all the keys in no particular order **/
+	public long[] keys() {
+		long[] result = new long[size];
+		int n = 0;
+		for(int i=0; i<values.length; i++) {
+			if(values[i] != null) { result[n++] = keys[i]; }
+		}
+		return result;
+	}
+
+	/** return all the values in no particular order **/
+	@SuppressWarnings("unchecked")
+	public List<V> values() {
+		List<V> result = new ArrayList<V>(size);
+		for(int i=0; i<values.length; i++) {
+			if(values[i] != null) { result.add((V) values[i]); }
+		}
+		return result;
+	}
+
+	private void resize() {
+		long[] oldKeys = keys;
+		Object[] oldValues = values;
+		allocate(oldValues.length << 1);
+		for(int i=0; i<oldValues.length; i++) {
+			if(oldValues[i] == null) { continue; }
+			int j = ~indexOf(oldKeys[i]);
+			keys[j] = oldKeys[i];
+			values[j] = oldValues[i];
+		}
+	}
+}
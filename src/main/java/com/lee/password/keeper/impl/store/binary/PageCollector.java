@@ -0,0 +1,139 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.Result.Code;
+import com.lee.password.keeper.api.store.Page;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.Website;
+
+/**
+ * Collect the smallest {@code pageSize} entries offered in one pass, by a bounded heap
+ * whose head is the greatest one collected, so a page is taken in order from an unordered index
+ * without copying or sorting the whole index.
+ */
+public class PageCollector<T> {
+
+	private final int pageSize;
+	private final Comparator<? super T> comparator;
+	private final PriorityQueue<T> heap;
+	/** whether an entry greater than the collected ones was dropped **/
+	private boolean hasMore;
+
+	public PageCollector(int pageSize, final Comparator<? super T> comparator) {
+		this.pageSize = pageSize;
+		this.comparator = comparator;
+		this.heap = new PriorityQueue<T>(pageSize + 1, new Comparator<T>() {
+			@Override
+			public int compare(T one, T another) { return comparator.compare(another, one); }
+		});
+	}
+
+	public void offer(T entry) {
+		if(heap.size() < pageSize) {
+			heap.offer(entry);
+		}else {
+			hasMore = true;
+			if(comparator.compare(entry, heap.peek()) < 0) {
+				heap.poll();
+				heap.offer(entry);
+			}
+		}
+	}
+
+	/** whether any entry is left after the collected page **/
+	public boolean hasMore() { return hasMore; }
+
+	/** the collected page in ascending order **/
+	public List<T> page() {
+		List<T> page = new ArrayList<T>(heap);
+		Collections.sort(page, comparator);
+		return page;
+	}
+
+	/** collect the page of {@code websites} after the website id in {@code token} in website id order **/
+	public static Result<Page<Website>> websitePage(Iterable<BinaryWebsite> websites, String token, int pageSize) {
+		if(pageSize <= 0) { return new Result<Page<Website>>(Code.FAIL, "non-positive page size: "+pageSize); }
+		Long afterWebsiteId = null;
+		if(token != null) {
+			try {
+				afterWebsiteId = Long.parseLong(token);
+			}catch(NumberFormatException e) {
+				return new Result<Page<Website>>(Code.FAIL, "illegal page token: "+token);
+			}
+		}
+		PageCollector<BinaryWebsite> collector = new PageCollector<BinaryWebsite>(pageSize, WEBSITE_ID_ORDER);
+		for(BinaryWebsite biWebsite : websites) {
+			if(afterWebsiteId == null || biWebsite.websiteId() > afterWebsiteId) { collector.offer(biWebsite); }
+		}
+		List<BinaryWebsite> biWebsiteList = collector.page();
+		List<Website> websiteList = new ArrayList<Website>(biWebsiteList.size());
+		for(BinaryWebsite biWebsite : biWebsiteList) { websiteList.add(biWebsite.transform()); }
+		String nextToken = collector.hasMore() ? String.valueOf(biWebsiteList.get(biWebsiteList.size()-1).websiteId()) : null;
+		return new Result<Page<Website>>(Code.SUCCESS, "success", new Page<Website>(websiteList, nextToken));
+	}
+
+	/** collect the page of {@code passwords} of a username after the website id in {@code token} in website id order **/
+	public static Result<Page<Password.Header>> passwordPageByWebsiteId(List<BinaryPassword> passwords, String token, int pageSize) {
+		if(pageSize <= 0) { return new Result<Page<Password.Header>>(Code.FAIL, "non-positive page size: "+pageSize); }
+		Long afterWebsiteId = null;
+		if(token != null) {
+			try {
+				afterWebsiteId = Long.parseLong(token);
+			}catch(NumberFormatException e) {
+				return new Result<Page<Password.Header>>(Code.FAIL, "illegal page token: "+token);
+			}
+		}
+		PageCollector<BinaryPassword> collector = new PageCollector<BinaryPassword>(pageSize, PASSWORD_WEBSITE_ID_ORDER);
+		for(BinaryPassword biPassword : passwords) {
+			if(afterWebsiteId == null || biPassword.websiteId() > afterWebsiteId) { collector.offer(biPassword); }
+		}
+		List<BinaryPassword> biPasswordList = collector.page();
+		String nextToken = collector.hasMore() ? String.valueOf(biPasswordList.get(biPasswordList.size()-1).websiteId()) : null;
+		return new Result<Page<Password.Header>>(Code.SUCCESS, "success", new Page<Password.Header>(headers(biPasswordList), nextToken));
+	}
+
+	/** collect the page of {@code passwords} of a website after the username in {@code token} in username order **/
+	public static Result<Page<Password.Header>> passwordPageByUsername(List<BinaryPassword> passwords, String token, int pageSize) {
+		if(pageSize <= 0) { return new Result<Page<Password.Header>>(Code.FAIL, "non-positive page size: "+pageSize); }
+		PageCollector<BinaryPassword> collector = new PageCollector<BinaryPassword>(pageSize, USERNAME_ORDER);
+		for(BinaryPassword biPassword : passwords) {
+			if(token == null || biPassword.username().compareTo(token) > 0) { collector.offer(biPassword); }
+		}
+		List<BinaryPassword> biPasswordList = collector.page();
+		String nextToken = collector.hasMore() ? biPasswordList.get(biPasswordList.size()-1).username() : null;
+		return new Result<Page<Password.Header>>(Code.SUCCESS, "success", new Page<Password.Header>(headers(biPasswordList), nextToken));
+	}
+
+	private static List<Password.Header> headers(List<BinaryPassword> biPasswordList) {
+		List<Password.Header> headerList = new ArrayList<Password.Header>(biPasswordList.size());
+		for(BinaryPassword biPassword : biPasswordList) {
+			headerList.add(new Password.Header(biPassword.websiteId(), biPassword.username(), biPassword.timestamp()));
+		}
+		return headerList;
+	}
+
+	private static final Comparator<BinaryWebsite> WEBSITE_ID_ORDER = new Comparator<BinaryWebsite>() {
+		@Override
+		public int compare(BinaryWebsite one, BinaryWebsite another) {
+			return one.websiteId() < another.websiteId() ? -1 : (one.websiteId() == another.websiteId() ? 0 : 1);
+		}
+	};
+
+	private static final Comparator<BinaryPassword> PASSWORD_WEBSITE_ID_ORDER = new Comparator<BinaryPassword>() {
+		@Override
+		public int compare(BinaryPassword one, BinaryPassword another) {
+			return one.websiteId() < another.websiteId() ? -1 : (one.websiteId() == another.websiteId() ? 0 : 1);
+		}
+	};
+
+	private static final Comparator<BinaryPassword> USERNAME_ORDER = new Comparator<BinaryPassword>() {
+		@Override
+		public int compare(BinaryPassword one, BinaryPassword another) { return one.username().compareTo(another.username()); }
+	};
+}
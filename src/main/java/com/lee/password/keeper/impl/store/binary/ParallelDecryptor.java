@@ -0,0 +1,153 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.Result.Code;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+
+/**
+ * Decrypt a batch of passwords, or encrypt one for bulk import, with a bounded pool of worker threads,
+ * the passwords are split into one contiguous slice per worker.
+ * the pool is created on first use and must be shut down by {@link #shutdown()}.
+ */
+public class ParallelDecryptor {
+
+	/** a batch smaller than it is decrypted by the calling thread **/
+	private static final int MIN_PARALLEL_SIZE = 4;
+
+	/** the work on the passwords from {@code begin} inclusive to {@code end} exclusive of a batch **/
+	private interface Slice<T> {
+		Result<List<T>> call(int begin, int end);
+	}
+
+	private final int threads;
+	private final String name;
+	private ExecutorService pool;
+
+	public ParallelDecryptor(String name) {
+		this(name, Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelDecryptor(String name, int threads) {
+		this.name = name;
+		this.threads = Math.max(1, threads);
+	}
+
+	/** decrypt all {@code biPasswords} by {@code cryptoDriver}, which must be thread safe for decryption **/
+	public Result<List<Password>> decrypt(final CryptoDriver cryptoDriver, List<BinaryPassword> biPasswords,
+			final CryptoKey decryptionKey) {
+		final List<BinaryPassword> targets = new ArrayList<BinaryPassword>(biPasswords);
+		return inSlices("decrypt", targets.size(), new Slice<Password>() {
+			@Override
+			public Result<List<Password>> call(int begin, int end) {
+				return decrypt(cryptoDriver, targets, decryptionKey, begin, end);
+			}
+		});
+	}
+
+	/** encrypt all {@code passwords} for insert by {@code cryptoDriver}, which must be thread safe for encryption **/
+	public Result<List<BinaryPassword>> encrypt(final CryptoDriver cryptoDriver, List<Password> passwords,
+			final CryptoKey encryptionKey) {
+		final List<Password> targets = new ArrayList<Password>(passwords);
+		return inSlices("encrypt", targets.size(), new Slice<BinaryPassword>() {
+			@Override
+			public Result<List<BinaryPassword>> call(int begin, int end) {
+				return encrypt(cryptoDriver, targets, encryptionKey, begin, end);
+			}
+		});
+	}
+
+	/** {@code action} {@code total} passwords by {@code slice}, the results of the slices are concatenated in order **/
+	private <T> Result<List<T>> inSlices(String action, int total, final Slice<T> slice) {
+		if(threads == 1 || total < MIN_PARALLEL_SIZE) { return slice.call(0, total); }
+
+		int slices = Math.min(threads, total);
+		List<Future<Result<List<T>>>> futures = new ArrayList<Future<Result<List<T>>>>(slices);
+		ExecutorService pool = pool();
+		for(int i=0; i<slices; i++) {
+			final int begin = (int) ((long) total * i / slices);
+			final int end = (int) ((long) total * (i+1) / slices);
+			futures.add(pool.submit(new Callable<Result<List<T>>>() {
+				@Override
+				public Result<List<T>> call() throws Exception {
+					return slice.call(begin, end);
+				}
+			}));
+		}
+
+		List<T> results = new ArrayList<T>(total);
+		Result<List<T>> failure = null;
+		try {
+			for(Future<Result<List<T>>> future : futures) {
+				Result<List<T>> result = future.get();
+				if(!result.isSuccess()) {
+					if(failure == null) { failure = result; }
+				}else {
+					results.addAll(result.result);
+				}
+			}
+		}catch(InterruptedException e) {
+			for(Future<Result<List<T>>> future : futures) { future.cancel(true); }
+			Thread.currentThread().interrupt();
+			return new Result<List<T>>(Code.FAIL, "interrupted while "+action+"ing passwords");
+		}catch(ExecutionException e) {
+			return new Result<List<T>>(Code.FAIL, "failed to "+action+" passwords: "+e.getCause().getMessage());
+		}
+		return failure != null ? failure : new Result<List<T>>(Code.SUCCESS, "success", results);
+	}
+
+	private static Result<List<Password>> decrypt(CryptoDriver cryptoDriver, List<BinaryPassword> biPasswords,
+			CryptoKey decryptionKey, int begin, int end) {
+		List<Password> passwords = new ArrayList<Password>(end - begin);
+		for(int i=begin; i<end; i++) {
+			Result<Password> result = BinarySecrets.decrypt(cryptoDriver, biPasswords.get(i), decryptionKey);
+			if(!result.isSuccess()) { return new Result<List<Password>>(Code.FAIL, result.msg); }
+			passwords.add(result.result);
+		}
+		return new Result<List<Password>>(Code.SUCCESS, "success", passwords);
+	}
+
+	private static Result<List<BinaryPassword>> encrypt(CryptoDriver cryptoDriver, List<Password> passwords,
+			CryptoKey encryptionKey, int begin, int end) {
+		List<BinaryPassword> biPasswords = new ArrayList<BinaryPassword>(end - begin);
+		for(int i=begin; i<end; i++) {
+			Result<BinaryPassword> result = BinarySecrets.encrypt(cryptoDriver, passwords.get(i), encryptionKey, true);
+			if(!result.isSuccess()) { return new Result<List<BinaryPassword>>(Code.FAIL, result.msg); }
+			biPasswords.add(result.result);
+		}
+		return new Result<List<BinaryPassword>>(Code.SUCCESS, "success", biPasswords);
+	}
+
+	private synchronized ExecutorService pool() {
+		if(pool == null) {
+			final AtomicInteger sequence = new AtomicInteger();
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				@Override
+				public Thread newThread(Runnable r) {
+					Thread thread = new Thread(r, name + "-crypto-" + sequence.incrementAndGet());
+					thread.setDaemon(true);
+					return thread;
+				}
+			});
+		}
+		return pool;
+	}
+
+	public synchronized void shutdown() {
+		if(pool != null) {
+			pool.shutdownNow();
+			pool = null;
+		}
+	}
+}
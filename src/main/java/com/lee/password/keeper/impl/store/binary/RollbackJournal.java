@@ -0,0 +1,168 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import com.lee.password.keeper.api.store.StoreException;
+
+/**
+ * A rollback journal which saves the original image of store file regions before they are modified,
+ * makes a batch of modifications atomic.
+ * <pre>
+ * journal layout:
+ *   magic(4) + originalLength(8) + headerLength(4) + header + suffixPosition(8) + suffixLength(8) + suffix + crc32(4)
+ * the header is the leading bytes of store file, the suffix is all the bytes starting at suffixPosition;
+ * a journal without valid crc is incomplete, the store file hasn't been modified yet then.
+ * </pre>
+ */
+public final class RollbackJournal {
+
+	private static final byte[] MAGIC = "bpsj".getBytes(CHARSET);
+	private static final int CRC_SIZE = 4;
+	private static final int COPY_BUFFER_SIZE = 64 * 1024;
+
+	private RollbackJournal() {}
+
+	/**
+	 * save the original image of the first {@code headerLength} bytes and all the bytes
+	 * starting at {@code suffixPosition} of {@code store} to {@code journal}, and force it to disk.
+	 */
+	public static void write(File journal, FileChannel store, int headerLength, long suffixPosition) throws IOException {
+		long originalLength = store.size();
+		suffixPosition = Math.max(headerLength, Math.min(suffixPosition, originalLength));
+		long suffixLength = originalLength - suffixPosition;
+		RandomAccessFile file = new RandomAccessFile(journal, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			channel.truncate(0);
+			CRC32 crc = new CRC32();
+			ByteBuffer buf = byteOrder(ByteBuffer.allocate(COPY_BUFFER_SIZE));
+			buf.put(MAGIC).putLong(originalLength).putInt(headerLength);
+			copy(store, 0, headerLength, channel, buf, crc);
+			if(buf.remaining() < 8 + 8) { flush(channel, buf, crc); }
+			buf.putLong(suffixPosition).putLong(suffixLength);
+			copy(store, suffixPosition, suffixLength, channel, buf, crc);
+			flush(channel, buf, crc);
+			buf.putInt((int) crc.getValue()).flip();
+			while(buf.hasRemaining()) { channel.write(buf); }
+			channel.force(true);
+		}finally {
+			file.close();
+		}
+	}
+
+	/** copy {@code length} bytes starting at {@code position} of {@code src} through {@code buf} to the end of {@code dest} **/
+	private static void copy(FileChannel src, long position, long length, FileChannel dest,
+			ByteBuffer buf, CRC32 crc) throws IOException {
+		long end = position + length;
+		while(position < end) {
+			if(!buf.hasRemaining()) { flush(dest, buf, crc); }
+			int limit = (int) Math.min(buf.remaining(), end - position);
+			ByteBuffer slice = buf.duplicate();
+			slice.limit(slice.position() + limit);
+			int readBytes = src.read(slice, position);
+			if(readBytes <= 0) {
+				throw new StoreException(String.format("failed to read %d bytes starting at %d for rollback journal",
+						end - position, position));
+			}
+			buf.position(buf.position() + readBytes);
+			position += readBytes;
+		}
+	}
+
+	private static void flush(FileChannel dest, ByteBuffer buf, CRC32 crc) throws IOException {
+		buf.flip();
+		crc.update(buf.array(), buf.arrayOffset() + buf.position(), buf.remaining());
+		while(buf.hasRemaining()) { dest.write(buf); }
+		buf.clear();
+	}
+
+	/**
+	 * restore the original image saved in {@code journal} to {@code store} and force it to disk,
+	 * return {@code false} if the journal is incomplete, which means the store is intact.
+	 */
+	public static boolean restore(File journal, FileChannel store) throws IOException {
+		RandomAccessFile file = new RandomAccessFile(journal, "r");
+		try {
+			FileChannel channel = file.getChannel();
+			if(!isComplete(channel)) { return false; }
+
+			ByteBuffer fixed = byteOrder(ByteBuffer.allocate(MAGIC.length + 8 + 4));
+			readFully(channel, fixed, 0);
+			fixed.position(MAGIC.length);
+			long originalLength = fixed.getLong();
+			int headerLength = fixed.getInt();
+			long position = fixed.capacity();
+			transferFully(channel, position, headerLength, store, 0);
+			position += headerLength;
+
+			ByteBuffer suffix = byteOrder(ByteBuffer.allocate(8 + 8));
+			readFully(channel, suffix, position);
+			long suffixPosition = suffix.getLong();
+			long suffixLength = suffix.getLong();
+			position += suffix.capacity();
+			transferFully(channel, position, suffixLength, store, suffixPosition);
+			store.truncate(originalLength);
+			store.force(true);
+			return true;
+		}finally {
+			file.close();
+		}
+	}
+
+	private static boolean isComplete(FileChannel channel) throws IOException {
+		long size = channel.size();
+		if(size < MAGIC.length + CRC_SIZE) { return false; }
+		byte[] magic = new byte[MAGIC.length];
+		readFully(channel, ByteBuffer.wrap(magic), 0);
+		if(!Arrays.equals(magic, MAGIC)) { return false; }
+
+		CRC32 crc = new CRC32();
+		ByteBuffer buf = ByteBuffer.allocate(COPY_BUFFER_SIZE);
+		long position = 0;
+		long end = size - CRC_SIZE;
+		while(position < end) {
+			buf.clear();
+			buf.limit((int) Math.min(buf.capacity(), end - position));
+			int readBytes = channel.read(buf, position);
+			if(readBytes <= 0) { return false; }
+			crc.update(buf.array(), 0, readBytes);
+			position += readBytes;
+		}
+		ByteBuffer expected = byteOrder(ByteBuffer.allocate(CRC_SIZE));
+		readFully(channel, expected, end);
+		return expected.getInt() == (int) crc.getValue();
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) {
+			int readBytes = channel.read(buf, position);
+			if(readBytes < 0) { throw new StoreException("unexpected end of rollback journal at "+position); }
+			position += readBytes;
+		}
+		buf.flip();
+	}
+
+	private static void transferFully(FileChannel src, long position, long length, FileChannel dest, long destPosition) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate((int) Math.min(COPY_BUFFER_SIZE, Math.max(length, 1)));
+		long end = position + length;
+		while(position < end) {
+			buf.clear();
+			buf.limit((int) Math.min(buf.capacity(), end - position));
+			readFully(src, buf, position);
+			int count = buf.remaining();
+			while(buf.hasRemaining()) { destPosition += dest.write(buf, destPosition); }
+			position += count;
+		}
+	}
+
+	private static ByteBuffer byteOrder(ByteBuffer buf) { return buf.order(ByteOrder.BIG_ENDIAN); }
+}
@@ -0,0 +1,31 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least recently used cache of the passwords read from store file with secrets,
+ * keyed by the identity of the in-memory password whose secrets are not loaded.
+ */
+public class SecretCache {
+
+	private final Map<BinaryPassword, BinaryPassword> cache;
+
+	public SecretCache(final int capacity) {
+		this.cache = new LinkedHashMap<BinaryPassword, BinaryPassword>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<BinaryPassword, BinaryPassword> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	public synchronized BinaryPassword get(BinaryPassword password) { return cache.get(password); }
+
+	public synchronized void put(BinaryPassword password, BinaryPassword stored) { cache.put(password, stored); }
+
+	public synchronized int size() { return cache.size(); }
+
+	public synchronized void clear() { cache.clear(); }
+}
@@ -0,0 +1,90 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fixed-size password records kept out of java heap in direct buffers, addressed by slot.
+ * a released slot is zeroed at once and reused, and all the records are zeroed on clear,
+ * which can't be guaranteed for the secrets held by heap arrays.
+ */
+public class SecretSlab {
+
+	/** the bytes of each direct buffer allocated **/
+	private static final int CHUNK_BYTES = 1024 * 1024;
+
+	private final int recordSize;
+	private final int chunkRecords;
+	private final List<ByteBuffer> chunks = new ArrayList<ByteBuffer>();
+	private final byte[] zeros;
+
+	/** the next slot never used **/
+	private int limit;
+	/** the released slots to reuse **/
+	private int[] freeSlots = new int[16];
+	private int freeCount;
+
+	public SecretSlab(int recordSize) {
+		this.recordSize = recordSize;
+		this.chunkRecords = Math.max(1, CHUNK_BYTES / recordSize);
+		this.zeros = new byte[recordSize];
+	}
+
+	/** copy the record starting at the position of {@code src} into a slot, return the slot **/
+	public int add(ByteBuffer src) {
+		int slot = freeCount > 0 ? freeSlots[--freeCount] : newSlot();
+		ByteBuffer dest = record(slot);
+		ByteBuffer record = src.duplicate();
+		record.limit(record.position() + recordSize);
+		dest.put(record);
+		return slot;
+	}
+
+	private int newSlot() {
+		if(limit == chunks.size() * chunkRecords) {
+			chunks.add(ByteBuffer.allocateDirect(chunkRecords * recordSize).order(ByteOrder.BIG_ENDIAN));
+		}
+		return limit++;
+	}
+
+	/** read the password with secrets in {@code slot} **/
+	public BinaryPassword read(int slot, int secretBlockSize) {
+		return BinaryPassword.read(record(slot), secretBlockSize);
+	}
+
+	/** zero the record in {@code slot} and reuse it later **/
+	public void release(int slot) {
+		record(slot).put(zeros);
+		if(freeCount == freeSlots.length) { freeSlots = Arrays.copyOf(freeSlots, freeCount * 2); }
+		freeSlots[freeCount++] = slot;
+	}
+
+	/** a view of the record in {@code slot} positioned at its start **/
+	private ByteBuffer record(int slot) {
+		if(slot < 0 || slot >= limit) {
+			throw new IllegalArgumentException(String.format("slot %d is out of range [0, %d)", slot, limit));
+		}
+		ByteBuffer view = chunks.get(slot / chunkRecords).duplicate().order(ByteOrder.BIG_ENDIAN);
+		int position = (slot % chunkRecords) * recordSize;
+		view.limit(position + recordSize).position(position);
+		return view;
+	}
+
+	/** the number of slots in use **/
+	public int size() { return limit - freeCount; }
+
+	/** zero all the records and drop the direct buffers **/
+	public void clear() {
+		for(ByteBuffer chunk : chunks) {
+			ByteBuffer view = chunk.duplicate();
+			view.clear();
+			while(view.hasRemaining()) { view.put(zeros, 0, Math.min(zeros.length, view.remaining())); }
+		}
+		chunks.clear();
+		limit = 0;
+		freeCount = 0;
+	}
+}
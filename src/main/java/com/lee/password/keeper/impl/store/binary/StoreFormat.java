@@ -0,0 +1,160 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+import com.lee.password.keeper.api.store.StoreException;
+
+/**
+ * The versioned header of binary store file, and the migrations from the older formats to the current one.
+ * <pre>
+ * version 0: magic "bpsd"(4) + metadata(24) + password region + website region
+ * version 1: magic "bpsv"(4) + version(4) + metadata(24) + password region + website region
+ * metadata: passwordCount(4) + passwordOffset(8) + websiteCount(4) + websiteOffset(8)
+ * </pre>
+ * the offsets in metadata are absolute positions, while the password offset of a website is
+ * relative to the password region, so a migration only fixes up the records it changes.
+ * <p>a migration converts the whole file in one sequential pass with a fixed size buffer,
+ * so it takes constant memory however large the store is.
+ */
+public class StoreFormat {
+
+	/** the magic number of version 0, which has no version field **/
+	private static final byte[] LEGACY_MAGIC = "bpsd".getBytes(CHARSET);
+	private static final byte[] MAGIC = "bpsv".getBytes(CHARSET);
+
+	public static final int VERSION = 1;
+
+	public static final int META_DATA_LEN = 4 + 8 + 4 + 8;
+	public static final int METADATA_POSITION = MAGIC.length + 4;
+	/** the magic number, version and metadata, which are written as a whole **/
+	public static final int HEADER_LEN = METADATA_POSITION + META_DATA_LEN;
+
+	private static final int LEGACY_HEADER_LEN = LEGACY_MAGIC.length + META_DATA_LEN;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** the migrations indexed by the version they migrate from **/
+	private static final Migration[] MIGRATIONS = { new LegacyMigration() };
+
+	/** the header of current version with {@code metadata} **/
+	public static ByteBuffer header(ByteBuffer metadata) {
+		ByteBuffer header = byteOrder(ByteBuffer.allocate(HEADER_LEN));
+		header.put(MAGIC).putInt(VERSION).put(metadata.array(), 0, META_DATA_LEN).flip();
+		return header;
+	}
+
+	/** read the format version of {@code store}, fail if it isn't a binary store file **/
+	public static int readVersion(FileChannel store, File storePath) throws IOException {
+		ByteBuffer buf = byteOrder(ByteBuffer.allocate(MAGIC.length + 4));
+		readFully(store, buf, 0);
+		if(buf.position() < MAGIC.length) {
+			throw new StoreException("incorrect magic number size from store path: "+storePath);
+		}
+		byte[] magic = Arrays.copyOf(buf.array(), MAGIC.length);
+		if(Arrays.equals(magic, LEGACY_MAGIC)) { return 0; }
+		if(!Arrays.equals(magic, MAGIC)) {
+			throw new StoreException("wrong magic number from store path: "+storePath);
+		}
+		if(buf.hasRemaining()) {
+			throw new StoreException("incorrect version size from store path: "+storePath);
+		}
+		return buf.getInt(MAGIC.length);
+	}
+
+	/**
+	 * migrate {@code store} of {@code version} to the current version in {@code target}, and force it to disk.
+	 * the migrations of the versions between them are applied one after another.
+	 */
+	public static void upgrade(FileChannel store, int version, File target, int secretBlockSize) throws IOException {
+		if(version < 0 || version >= VERSION) {
+			throw new StoreException(String.format("can't upgrade store file from version %d to %d", version, VERSION));
+		}
+		FileChannel source = store;
+		RandomAccessFile staging = null;
+		File stagingPath = new File(target.getPath() + "." + version);
+		try {
+			for(int v=version; v<VERSION; v++) {
+				boolean isLast = v == VERSION - 1;
+				RandomAccessFile file = new RandomAccessFile(isLast ? target : stagingPath, "rw");
+				try {
+					FileChannel channel = file.getChannel();
+					channel.truncate(0);
+					MIGRATIONS[v].migrate(source, channel, secretBlockSize);
+					channel.force(true);
+				}catch(IOException e) {
+					file.close();
+					throw e;
+				}
+				if(isLast) {
+					file.close();
+				}else {
+					// the next migration reads the output of this one
+					if(staging != null) { staging.close(); }
+					staging = file;
+					source = file.getChannel();
+				}
+			}
+		}finally {
+			if(staging != null) { staging.close(); }
+			stagingPath.delete();
+		}
+	}
+
+	/** a migration from one version to the next one **/
+	private static abstract class Migration {
+		abstract void migrate(FileChannel source, FileChannel target, int secretBlockSize) throws IOException;
+	}
+
+	/** add the version field, the records are moved behind it unchanged **/
+	private static class LegacyMigration extends Migration {
+		@Override
+		void migrate(FileChannel source, FileChannel target, int secretBlockSize) throws IOException {
+			ByteBuffer legacy = byteOrder(ByteBuffer.allocate(META_DATA_LEN));
+			readFully(source, legacy, LEGACY_MAGIC.length);
+			if(legacy.hasRemaining()) { throw new StoreException("incorrect metadata size of legacy store file"); }
+			int shift = HEADER_LEN - LEGACY_HEADER_LEN;
+			ByteBuffer metadata = byteOrder(ByteBuffer.allocate(META_DATA_LEN))
+					.putInt(legacy.getInt(0))
+					.putLong(legacy.getLong(4) + shift)
+					.putInt(legacy.getInt(12))
+					.putLong(legacy.getLong(16) + shift);
+			write(target, header(metadata), 0);
+			copy(source, LEGACY_HEADER_LEN, target, HEADER_LEN);
+		}
+	}
+
+	/** copy all the bytes of {@code source} starting at {@code from} to {@code target} starting at {@code to} **/
+	private static void copy(FileChannel source, long from, FileChannel target, long to) throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(BUFFER_SIZE);
+		long length = source.size();
+		while(from < length) {
+			buf.clear();
+			readFully(source, buf, from);
+			buf.flip();
+			int size = buf.remaining();
+			write(target, buf, to);
+			from += size;
+			to += size;
+		}
+	}
+
+	/** read until {@code buf} is full or the end of {@code channel} **/
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) {
+			if(channel.read(buf, position + buf.position()) < 0) { return; }
+		}
+	}
+
+	private static void write(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) { position += channel.write(buf, position); }
+	}
+
+	private static ByteBuffer byteOrder(ByteBuffer buf) { return buf.order(ByteOrder.BIG_ENDIAN); }
+}
@@ -0,0 +1,118 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.Result.Code;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.Website;
+
+/**
+ * An immutable view of a store as of a committed version, with all the secrets in it,
+ * so it can be read by any threads without blocking or being blocked by the changes of the store.
+ * the secrets are decrypted by the crypto driver of the store, so read it before the store closed.
+ */
+public class StoreSnapshot {
+
+	private final long version;
+	private final CryptoDriver cryptoDriver;
+	private final LongObjectMap<BinaryWebsite> websiteIdMap;
+	private final Map<String, BinaryWebsite> websiteKeywordMap;
+	private final CompositeKeyMap<BinaryPassword> passwordMap;
+	private final LongObjectMap<List<BinaryPassword>> websiteIdPwdMap;
+
+	/** {@code websites} and {@code passwords} must not be changed any more, and the passwords must have secrets **/
+	public StoreSnapshot(long version, CryptoDriver cryptoDriver, List<BinaryWebsite> websites, List<BinaryPassword> passwords) {
+		this.version = version;
+		this.cryptoDriver = cryptoDriver;
+		this.websiteIdMap = new LongObjectMap<BinaryWebsite>(websites.size());
+		this.websiteKeywordMap = new HashMap<String, BinaryWebsite>(websites.size());
+		for(BinaryWebsite website : websites) {
+			websiteIdMap.put(website.websiteId(), website);
+			websiteKeywordMap.put(website.keyword(), website);
+		}
+		this.passwordMap = new CompositeKeyMap<BinaryPassword>(passwords.size());
+		this.websiteIdPwdMap = new LongObjectMap<List<BinaryPassword>>(websites.size());
+		for(BinaryPassword password : passwords) {
+			passwordMap.put(password.websiteId(), password.username(), password);
+			List<BinaryPassword> list = websiteIdPwdMap.get(password.websiteId());
+			if(list == null) {
+				list = new ArrayList<BinaryPassword>();
+				websiteIdPwdMap.put(password.websiteId(), list);
+			}
+			list.add(password);
+		}
+	}
+
+	/** the number of commits before the snapshot taken since the store opened **/
+	public long version() { return version; }
+
+	public Result<Integer> websiteCount() { return new Result<Integer>(Code.SUCCESS, "success", websiteIdMap.size()); }
+
+	public Result<List<Website>> listWebsite() {
+		List<Website> websiteList = new ArrayList<Website>(websiteIdMap.size());
+		for(BinaryWebsite biWebsite : websiteIdMap.values()) { websiteList.add(biWebsite.transform()); }
+		return new Result<List<Website>>(Code.SUCCESS, "success", websiteList);
+	}
+
+	public Result<Website> selectWebsite(Website website) {
+		BinaryWebsite biWebsite = null;
+		if(website.hasId()) {
+			biWebsite = websiteIdMap.get(website.id());
+		}else if(website.hasKeyword()) {
+			biWebsite = websiteKeywordMap.get(website.keyword());
+		}else {
+			return new Result<Website>(Code.FAIL, "website without keyword or id");
+		}
+		return biWebsite == null ?
+				new Result<Website>(Code.FAIL, "website not found in snapshot") :
+				new Result<Website>(Code.SUCCESS, "success", biWebsite.transform());
+	}
+
+	public Result<Integer> passwordCount() { return new Result<Integer>(Code.SUCCESS, "success", passwordMap.size()); }
+
+	public Result<Integer> passwordCount(long websiteId) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		return new Result<Integer>(Code.SUCCESS, "success", biPasswordList == null ? 0 : biPasswordList.size());
+	}
+
+	public Result<List<Password.Header>> listPassword(long websiteId) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		if(biPasswordList == null) {
+			return new Result<List<Password.Header>>(Code.FAIL, "no password list mapping with webiste id in snapshot");
+		}
+		List<Password.Header> headerList = new ArrayList<Password.Header>(biPasswordList.size());
+		for(BinaryPassword biPassword : biPasswordList) {
+			headerList.add(new Password.Header(biPassword.websiteId(), biPassword.username(), biPassword.timestamp()));
+		}
+		return new Result<List<Password.Header>>(Code.SUCCESS, "success", headerList);
+	}
+
+	public Result<Password> selectPassword(Password.Header header, CryptoKey decryptionKey) {
+		if(!header.hasId() || !header.hasUsername()) {
+			return new Result<Password>(Code.FAIL, "password header without username and id");
+		}
+		BinaryPassword biPassword = passwordMap.get(header.websiteId(), header.username());
+		if(biPassword == null) { return new Result<Password>(Code.FAIL, "password not found in snapshot"); }
+		return BinarySecrets.decrypt(cryptoDriver, biPassword, decryptionKey);
+	}
+
+	public Result<List<Password>> selectPasswords(long websiteId, CryptoKey decryptionKey) {
+		List<BinaryPassword> biPasswordList = websiteIdPwdMap.get(websiteId);
+		if(biPasswordList == null) {
+			return new Result<List<Password>>(Code.FAIL, "no password list mapping with webiste id in snapshot");
+		}
+		List<Password> passwordList = new ArrayList<Password>(biPasswordList.size());
+		for(BinaryPassword biPassword : biPasswordList) {
+			Result<Password> result = BinarySecrets.decrypt(cryptoDriver, biPassword, decryptionKey);
+			if(!result.isSuccess()) { return new Result<List<Password>>(Code.FAIL, result.msg); }
+			passwordList.add(result.result);
+		}
+		return new Result<List<Password>>(Code.SUCCESS, "success", passwordList);
+	}
+}
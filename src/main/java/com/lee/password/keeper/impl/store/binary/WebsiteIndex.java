@@ -0,0 +1,74 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.Arrays;
+
+/**
+ * The websites placed in store file as a sorted run of primitive arrays ordered by website id,
+ * it locates the password block and the record of each website in store file,
+ * without holding the keyword and url which are kept by the in-memory website map.
+ * a run is built by appending in order, and never shifted, the changes are merged into a new run on commit.
+ */
+public class WebsiteIndex {
+
+	private long[] websiteIds;
+	private long[] offsets;
+	private int[] counts;
+	private long[] timestamps;
+	private int size;
+
+	public WebsiteIndex(int expectedSize) {
+		int capacity = Math.max(10, expectedSize);
+		this.websiteIds = new long[capacity];
+		this.offsets = new long[capacity];
+		this.counts = new int[capacity];
+		this.timestamps = new long[capacity];
+	}
+
+	/** append {@code website} which must have a greater id than the last one **/
+	public void append(BinaryWebsite website) {
+		long websiteId = website.websiteId();
+		if(size > 0 && websiteIds[size-1] >= websiteId) {
+			throw new IllegalArgumentException(String.format("website id=%d is not greater than the last one %d",
+					websiteId, websiteIds[size-1]));
+		}
+		if(size == websiteIds.length) {
+			int capacity = size * 3 / 2 + 1;
+			websiteIds = Arrays.copyOf(websiteIds, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			counts = Arrays.copyOf(counts, capacity);
+			timestamps = Arrays.copyOf(timestamps, capacity);
+		}
+		websiteIds[size] = websiteId;
+		offsets[size] = website.offset();
+		counts[size] = website.count();
+		timestamps[size] = website.timestamp();
+		size++;
+	}
+
+	public int size() { return size; }
+
+	/** return the index of {@code websiteId}, otherwise -1 **/
+	public int indexOf(long websiteId) {
+		int index = Arrays.binarySearch(websiteIds, 0, size, websiteId);
+		return index < 0 ? -1 : index;
+	}
+
+	/** return the index of the greatest website id no greater than {@code websiteId}, otherwise -1 **/
+	public int floorIndex(long websiteId) {
+		int index = Arrays.binarySearch(websiteIds, 0, size, websiteId);
+		return index < 0 ? -index - 2 : index;
+	}
+
+	public long websiteId(int index) { return websiteIds[index]; }
+
+	/** the offset of password block relative to the password region, negative if the website never had any password **/
+	public long offset(int index) { return offsets[index]; }
+
+	public boolean isValidOffset(int index) { return offsets[index] >= 0; }
+
+	public int count(int index) { return counts[index]; }
+
+	public long timestamp(int index) { return timestamps[index]; }
+
+	public void timestamp(int index, long timestamp) { timestamps[index] = timestamp; }
+}
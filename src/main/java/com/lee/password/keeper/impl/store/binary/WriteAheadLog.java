@@ -0,0 +1,258 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import com.lee.password.keeper.api.store.StoreException;
+
+/**
+ * A write-ahead log which appends the after image of all the writes of a commit as one batch, and forces it
+ * before any of them is applied to store file, so store file needn't be forced per commit but only on checkpoint.
+ * the writes of the batch being logged are kept in memory, and the reads see them over store file.
+ * <pre>
+ * log layout:
+ *   magic(4) + batch * n
+ * batch layout:
+ *   payloadLength(4) + payload + crc32(4)
+ * payload layout:
+ *   (WRITE(1) + position(8) + length(4) + bytes | TRUNCATE(1) + length(8)) * n
+ * </pre>
+ * a batch without valid crc is torn by crash, none of its writes has been applied then;
+ * all the complete batches are applied again in order on open, which is harmless to the applied ones.
+ */
+public class WriteAheadLog {
+
+	private static final byte[] MAGIC = "bpsw".getBytes(CHARSET);
+	private static final byte WRITE = 1;
+	private static final byte TRUNCATE = 2;
+	private static final int CRC_SIZE = 4;
+
+	/** a write of {@code bytes} at {@code position}, or a truncation to {@code position} if bytes is null **/
+	private static final class Record {
+		final long position;
+		final byte[] bytes;
+		Record(long position, byte[] bytes) { this.position = position; this.bytes = bytes; }
+		boolean isTruncate() { return bytes == null; }
+	}
+
+	private final RandomAccessFile logFile;
+	private final FileChannel logChannel;
+
+	/** the writes of the batch being logged, null if none is being logged **/
+	private List<Record> batch;
+	/** the length of store file with the batch applied **/
+	private long batchLength;
+
+	public WriteAheadLog(File logPath) throws IOException {
+		this.logFile = new RandomAccessFile(logPath, "rw");
+		this.logChannel = logFile.getChannel();
+		if(logChannel.size() < MAGIC.length) {
+			logChannel.truncate(0);
+			writeFully(logChannel, ByteBuffer.wrap(MAGIC), 0);
+			logChannel.force(true);
+		}
+		logChannel.position(logChannel.size());
+	}
+
+	/** the size of the log, which grows with each batch until checkpoint **/
+	public long size() throws IOException { return logChannel.size(); }
+
+	/** start logging a batch of writes to {@code store} **/
+	public void begin(FileChannel store) throws IOException {
+		batch = new ArrayList<Record>();
+		batchLength = store.size();
+	}
+
+	/** whether a batch is being logged **/
+	public boolean isLogging() { return batch != null; }
+
+	/** log the remaining bytes of {@code buf} to be written at {@code position} **/
+	public void write(ByteBuffer buf, long position) {
+		byte[] bytes = new byte[buf.remaining()];
+		buf.get(bytes);
+		batch.add(new Record(position, bytes));
+		batchLength = Math.max(batchLength, position + bytes.length);
+	}
+
+	/** log the truncation of store file to {@code length} **/
+	public void truncate(long length) {
+		batch.add(new Record(length, null));
+		batchLength = length;
+	}
+
+	/**
+	 * read from {@code store} as {@link FileChannel#read(ByteBuffer, long)} does,
+	 * through the writes of the batch being logged if any.
+	 */
+	public int read(FileChannel store, ByteBuffer buf, long position) throws IOException {
+		if(batch == null || batch.isEmpty()) { return store.read(buf, position); }
+		int size = (int) Math.min(buf.remaining(), batchLength - position);
+		if(size <= 0) { return buf.hasRemaining() ? -1 : 0; }
+		ByteBuffer dest = buf.slice();
+		dest.limit(size);
+		while(dest.hasRemaining()) {
+			if(store.read(dest, position + dest.position()) < 0) { break; }
+		}
+		byte[] bytes = new byte[size];
+		dest.flip();
+		dest.get(bytes, 0, dest.remaining());
+		long end = position + size;
+		for(Record record : batch) {
+			if(record.isTruncate()) {
+				// the bytes past the truncated length read as zero if they are written again later
+				if(record.position < end) {
+					Arrays.fill(bytes, (int) Math.max(0, record.position - position), size, (byte) 0);
+				}
+				continue;
+			}
+			long from = Math.max(position, record.position);
+			long to = Math.min(end, record.position + record.bytes.length);
+			if(from < to) {
+				System.arraycopy(record.bytes, (int) (from - record.position), bytes, (int) (from - position), (int) (to - from));
+			}
+		}
+		buf.put(bytes);
+		return size;
+	}
+
+	/** append the batch being logged to the log, and force it to disk **/
+	public void commit() throws IOException {
+		int payloadLength = 0;
+		for(Record record : batch) { payloadLength += record.isTruncate() ? 1 + 8 : 1 + 8 + 4 + record.bytes.length; }
+		ByteBuffer buf = byteOrder(ByteBuffer.allocate(4 + payloadLength + CRC_SIZE));
+		buf.putInt(payloadLength);
+		for(Record record : batch) {
+			if(record.isTruncate()) {
+				buf.put(TRUNCATE).putLong(record.position);
+			}else {
+				buf.put(WRITE).putLong(record.position).putInt(record.bytes.length).put(record.bytes);
+			}
+		}
+		CRC32 crc = new CRC32();
+		crc.update(buf.array(), 4, payloadLength);
+		buf.putInt((int) crc.getValue()).flip();
+		long position = logChannel.size();
+		try {
+			writeFully(logChannel, buf, position);
+			logChannel.force(true);
+		}catch(IOException e) {
+			// a partial batch is torn anyway, cut it off so the following batches are replayed
+			logChannel.truncate(position);
+			throw e;
+		}
+	}
+
+	/** apply the logged batch to {@code store} without forcing it, and stop logging **/
+	public void apply(FileChannel store) throws IOException {
+		List<Record> records = batch;
+		batch = null;
+		apply(records, store);
+	}
+
+	/** drop the batch being logged, store file is untouched **/
+	public void discard() { batch = null; }
+
+	/** force {@code store} to disk, then all the logged batches are useless **/
+	public void checkpoint(FileChannel store) throws IOException {
+		store.force(true);
+		logChannel.truncate(MAGIC.length);
+		logChannel.force(true);
+		logChannel.position(MAGIC.length);
+	}
+
+	public void close() throws IOException { logFile.close(); }
+
+	/**
+	 * apply all the complete batches in {@code logPath} to {@code store} in order, and force it once.
+	 * return the number of the batches applied, the log is emptied then.
+	 */
+	public static int replay(File logPath, FileChannel store) throws IOException {
+		if(!logPath.exists()) { return 0; }
+		RandomAccessFile file = new RandomAccessFile(logPath, "rw");
+		try {
+			FileChannel channel = file.getChannel();
+			long size = channel.size();
+			if(size < MAGIC.length) { return 0; }
+			byte[] magic = new byte[MAGIC.length];
+			readFully(channel, ByteBuffer.wrap(magic), 0);
+			if(!Arrays.equals(magic, MAGIC)) {
+				throw new StoreException("wrong magic number of write-ahead log: "+logPath);
+			}
+			int count = 0;
+			long position = MAGIC.length;
+			ByteBuffer lengthBuf = byteOrder(ByteBuffer.allocate(4));
+			while(position + 4 + CRC_SIZE <= size) {
+				lengthBuf.clear();
+				readFully(channel, lengthBuf, position);
+				int payloadLength = lengthBuf.getInt(0);
+				if(payloadLength < 0 || position + 4 + payloadLength + CRC_SIZE > size) { break; }
+				ByteBuffer buf = byteOrder(ByteBuffer.allocate(payloadLength + CRC_SIZE));
+				readFully(channel, buf, position + 4);
+				CRC32 crc = new CRC32();
+				crc.update(buf.array(), 0, payloadLength);
+				if(buf.getInt(payloadLength) != (int) crc.getValue()) { break; }
+				buf.position(0).limit(payloadLength);
+				apply(parse(buf, logPath), store);
+				count++;
+				position += 4 + payloadLength + CRC_SIZE;
+			}
+			store.force(true);
+			channel.truncate(MAGIC.length);
+			channel.force(true);
+			return count;
+		}finally {
+			file.close();
+		}
+	}
+
+	private static List<Record> parse(ByteBuffer payload, File logPath) {
+		List<Record> records = new ArrayList<Record>();
+		while(payload.hasRemaining()) {
+			byte type = payload.get();
+			if(type == TRUNCATE) {
+				records.add(new Record(payload.getLong(), null));
+			}else if(type == WRITE) {
+				long position = payload.getLong();
+				byte[] bytes = new byte[payload.getInt()];
+				payload.get(bytes);
+				records.add(new Record(position, bytes));
+			}else {
+				throw new StoreException(String.format("unknown record type %d in write-ahead log: %s", type, logPath));
+			}
+		}
+		return records;
+	}
+
+	private static void apply(List<Record> records, FileChannel store) throws IOException {
+		for(Record record : records) {
+			if(record.isTruncate()) {
+				store.truncate(record.position);
+			}else {
+				writeFully(store, ByteBuffer.wrap(record.bytes), record.position);
+			}
+		}
+	}
+
+	private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) {
+			int readBytes = channel.read(buf, position + buf.position());
+			if(readBytes < 0) { throw new StoreException("unexpected end of write-ahead log at "+position); }
+		}
+	}
+
+	private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+		while(buf.hasRemaining()) { position += channel.write(buf, position); }
+	}
+
+	private static ByteBuffer byteOrder(ByteBuffer buf) { return buf.order(ByteOrder.BIG_ENDIAN); }
+}
@@ -0,0 +1,150 @@
+package com.lee.password.keeper.impl.store.log;
+
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import com.lee.password.keeper.api.store.StoreException;
+import com.lee.password.keeper.impl.InternalEntity;
+import com.lee.password.keeper.impl.store.binary.BinaryPassword;
+import com.lee.password.keeper.impl.store.binary.BinaryWebsite;
+
+/**
+ * A record appended to the segment log, layout: type(1) + payload + crc32(4).
+ * <pre>
+ * website records carry a {@link BinaryWebsite} image as payload;
+ * password records carry a {@link BinaryPassword} image as payload;
+ * snapshot record carries no payload, it discards all the state replayed before it;
+ * commit record carries the number of records of the batch it terminates.
+ * </pre>
+ */
+public final class LogRecord {
+
+	public static enum Kind {
+		PUT_WEBSITE(1),
+		DELETE_WEBSITE(2),
+		PUT_PASSWORD(3),
+		DELETE_PASSWORD(4),
+		SNAPSHOT(5),
+		COMMIT(6),
+		;
+		public final byte code;
+		private Kind(int code) { this.code = (byte) code; }
+
+		static Kind of(byte code) {
+			for(Kind kind : values()) {
+				if(kind.code == code) { return kind; }
+			}
+			return null;
+		}
+	}
+
+	private static final int TYPE_SIZE = 1;
+	private static final int CRC_SIZE = 4;
+
+	private final Kind kind;
+	private final InternalEntity entity;
+	private final int count;
+
+	private LogRecord(Kind kind, InternalEntity entity, int count) {
+		this.kind = kind;
+		this.entity = entity;
+		this.count = count;
+	}
+
+	public static LogRecord putWebsite(BinaryWebsite website) { return new LogRecord(Kind.PUT_WEBSITE, website, 0); }
+	public static LogRecord deleteWebsite(BinaryWebsite website) { return new LogRecord(Kind.DELETE_WEBSITE, website, 0); }
+	public static LogRecord putPassword(BinaryPassword password) { return new LogRecord(Kind.PUT_PASSWORD, password, 0); }
+	public static LogRecord deletePassword(BinaryPassword password) { return new LogRecord(Kind.DELETE_PASSWORD, password, 0); }
+	public static LogRecord snapshot() { return new LogRecord(Kind.SNAPSHOT, null, 0); }
+	public static LogRecord commit(int count) { return new LogRecord(Kind.COMMIT, null, count); }
+
+	public Kind kind() { return kind; }
+
+	public BinaryWebsite website() { return (BinaryWebsite) entity; }
+
+	public BinaryPassword password() { return (BinaryPassword) entity; }
+
+	/** the number of records terminated by a commit record **/
+	public int count() { return count; }
+
+	/** return the bytes of record of {@code kind} occupied in segment **/
+	public static int occupiedSize(Kind kind, int secretBlockSize) {
+		return TYPE_SIZE + payloadSize(kind, secretBlockSize) + CRC_SIZE;
+	}
+
+	private static int payloadSize(Kind kind, int secretBlockSize) {
+		switch(kind) {
+		case PUT_WEBSITE:
+		case DELETE_WEBSITE: return BinaryWebsite.occupiedSize();
+		case PUT_PASSWORD:
+		case DELETE_PASSWORD: return BinaryPassword.occupiedSize(secretBlockSize);
+		case SNAPSHOT: return 0;
+		case COMMIT: return 4;
+		default: throw new StoreException("unsupported log record kind: "+kind);
+		}
+	}
+
+	public int occupiedSize(int secretBlockSize) { return occupiedSize(kind, secretBlockSize); }
+
+	/** return the bytes of the largest record occupied in segment **/
+	public static int maxOccupiedSize(int secretBlockSize) {
+		int max = 0;
+		for(Kind kind : Kind.values()) { max = Math.max(max, occupiedSize(kind, secretBlockSize)); }
+		return max;
+	}
+
+	/** return the bytes of the record starting at {@code index} of {@code buffer} occupied in segment, {@code -1} if its kind is unknown **/
+	public static int occupiedSizeAt(ByteBuffer buffer, int index, int secretBlockSize) {
+		Kind kind = index < buffer.limit() ? Kind.of(buffer.get(index)) : null;
+		return kind == null ? -1 : occupiedSize(kind, secretBlockSize);
+	}
+
+	/** write this record to heap {@code buffer} **/
+	public void write(ByteBuffer buffer, int secretBlockSize) {
+		int start = buffer.position();
+		buffer.put(kind.code);
+		switch(kind) {
+		case PUT_WEBSITE:
+		case DELETE_WEBSITE: BinaryWebsite.write(buffer, website()); break;
+		case PUT_PASSWORD:
+		case DELETE_PASSWORD: BinaryPassword.write(buffer, secretBlockSize, password()); break;
+		case SNAPSHOT: break;
+		case COMMIT: buffer.putInt(count); break;
+		}
+		buffer.putInt(crc(buffer, start, buffer.position() - start));
+	}
+
+	/**
+	 * read a record from heap {@code buffer}, return {@code null} if the remaining bytes
+	 * is not a complete record or the record is corrupted, the buffer position is undefined then.
+	 */
+	public static LogRecord read(ByteBuffer buffer, int secretBlockSize) {
+		int start = buffer.position();
+		if(buffer.remaining() < TYPE_SIZE + CRC_SIZE) { return null; }
+		Kind kind = Kind.of(buffer.get(start));
+		if(kind == null) { return null; }
+		int size = occupiedSize(kind, secretBlockSize);
+		if(buffer.remaining() < size) { return null; }
+		int expectedCrc = buffer.getInt(start + size - CRC_SIZE);
+		if(crc(buffer, start, size - CRC_SIZE) != expectedCrc) { return null; }
+
+		buffer.position(start + TYPE_SIZE);
+		LogRecord record = null;
+		switch(kind) {
+		case PUT_WEBSITE:
+		case DELETE_WEBSITE: record = new LogRecord(kind, BinaryWebsite.read(buffer), 0); break;
+		case PUT_PASSWORD:
+		case DELETE_PASSWORD: record = new LogRecord(kind, BinaryPassword.read(buffer, secretBlockSize), 0); break;
+		case SNAPSHOT: record = snapshot(); break;
+		case COMMIT: record = commit(buffer.getInt()); break;
+		}
+		buffer.position(start + size);
+		return record;
+	}
+
+	private static int crc(ByteBuffer buffer, int offset, int length) {
+		CRC32 crc = new CRC32();
+		crc.update(buffer.array(), buffer.arrayOffset() + offset, length);
+		return (int) crc.getValue();
+	}
+}
@@ -0,0 +1,245 @@
+package com.lee.password.keeper.impl.store.log;
+
+import static com.lee.password.keeper.api.Entity.CHARSET;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.lee.password.keeper.api.store.StoreException;
+
+/**
+ * An append-only segment file of the log structured store.
+ * segment layout: magic(4) + secretBlockSize(4) + records...
+ * records are grouped into batches, each batch is terminated by a commit record,
+ * a batch without commit record is considered torn and never replayed.
+ */
+public class LogSegment {
+
+	private static final String PREFIX = "log.store.";
+	private static final String SUFFIX = ".pk";
+	private static final String TEMP_SUFFIX = ".tmp";
+
+	private static final byte[] MAGIC = "lpsd".getBytes(CHARSET);
+	private static final int HEADER_LEN = MAGIC.length + 4;
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	/** replay callback of committed records **/
+	public static interface Visitor {
+		void visit(LogRecord record);
+	}
+
+	private final long sequence;
+	private final File file;
+	private final int secretBlockSize;
+	private RandomAccessFile storeFile;
+	private FileChannel channel;
+	/** the number of committed records in this segment, exclude snapshot and commit records **/
+	private long recordCount;
+
+	private LogSegment(long sequence, File file, int secretBlockSize) {
+		this.sequence = sequence;
+		this.file = file;
+		this.secretBlockSize = secretBlockSize;
+	}
+
+	public static String fileName(long sequence) { return PREFIX + String.format("%016d", sequence) + SUFFIX; }
+
+	/** return the sequence of segment file, or {@code -1} if it is not a segment file **/
+	public static long parseSequence(String fileName) {
+		if(!fileName.startsWith(PREFIX) || !fileName.endsWith(SUFFIX)) { return -1; }
+		try {
+			return Long.parseLong(fileName.substring(PREFIX.length(), fileName.length() - SUFFIX.length()));
+		}catch(NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/** return whether {@code fileName} is a segment file left by an interrupted compaction **/
+	public static boolean isTempFile(String fileName) {
+		return fileName.startsWith(PREFIX) && fileName.endsWith(SUFFIX + TEMP_SUFFIX);
+	}
+
+	/** list all the segments in {@code dir} order by sequence asc **/
+	public static List<LogSegment> list(File dir, int secretBlockSize) {
+		String[] names = dir.list();
+		if(names == null) { throw new StoreException("failed to list segments of directory: "+dir); }
+		Arrays.sort(names);
+		List<LogSegment> segments = new ArrayList<LogSegment>(names.length);
+		for(String name : names) {
+			long sequence = parseSequence(name);
+			if(sequence >= 0) { segments.add(new LogSegment(sequence, new File(dir, name), secretBlockSize)); }
+		}
+		return segments;
+	}
+
+	/** create a new empty segment in {@code dir} **/
+	public static LogSegment create(File dir, long sequence, int secretBlockSize) throws IOException {
+		LogSegment segment = new LogSegment(sequence, new File(dir, fileName(sequence)), secretBlockSize);
+		if(segment.file.exists()) {
+			throw new StoreException("segment already exists: "+segment.file);
+		}
+		segment.open();
+		segment.writeHeader();
+		return segment;
+	}
+
+	/** create a temporary segment which becomes visible after {@link #publish()} **/
+	public static LogSegment createTemp(File dir, long sequence, int secretBlockSize) throws IOException {
+		File tempFile = new File(dir, fileName(sequence) + TEMP_SUFFIX);
+		if(tempFile.exists() && !tempFile.delete()) {
+			throw new StoreException("failed to delete stale temporary segment: "+tempFile);
+		}
+		LogSegment segment = new LogSegment(sequence, tempFile, secretBlockSize);
+		segment.open();
+		segment.writeHeader();
+		return segment;
+	}
+
+	private void open() throws IOException {
+		this.storeFile = new RandomAccessFile(file, "rw");
+		this.channel = storeFile.getChannel();
+	}
+
+	private void writeHeader() throws IOException {
+		ByteBuffer buf = ByteBuffer.allocate(HEADER_LEN).order(ByteOrder.BIG_ENDIAN);
+		buf.put(MAGIC).putInt(secretBlockSize).flip();
+		channel.write(buf, 0);
+		channel.position(HEADER_LEN);
+	}
+
+	/**
+	 * replay all the committed records of this segment to {@code visitor} through a fixed-size buffer,
+	 * the torn batch at the end of segment is truncated if {@code truncateTorn} is {@code true},
+	 * otherwise a {@link StoreException} is thrown. a batch is torn only if it runs up to the end of segment,
+	 * so a corrupted record followed by any other bytes fails the replay instead of dropping the committed ones.
+	 */
+	public void replay(Visitor visitor, boolean truncateTorn) throws IOException {
+		if(channel == null) { open(); }
+		long size = channel.size();
+		int maxRecordSize = LogRecord.maxOccupiedSize(secretBlockSize);
+		ByteBuffer buf = ByteBuffer.allocate(Math.max(BUFFER_SIZE, HEADER_LEN + maxRecordSize)).order(ByteOrder.BIG_ENDIAN);
+		readFully(buf, 0);
+		buf.flip();
+		verifyHeader(buf);
+
+		List<LogRecord> batch = new ArrayList<LogRecord>();
+		// the position in segment of the buffer start
+		long bufferStart = 0;
+		long committedEnd = HEADER_LEN;
+		long count = 0;
+		while(true) {
+			if(buf.remaining() < maxRecordSize && bufferStart + buf.limit() < size) {
+				bufferStart += buf.position();
+				buf.compact();
+				readFully(buf, bufferStart + buf.position());
+				buf.flip();
+			}
+			int index = buf.position();
+			long position = bufferStart + index;
+			if(position >= size) { break; }
+			LogRecord record = LogRecord.read(buf, secretBlockSize);
+			if(record == null) {
+				int recordSize = LogRecord.occupiedSizeAt(buf, index, secretBlockSize);
+				long recordEnd = position + (recordSize < 0 ? maxRecordSize : recordSize);
+				if(recordEnd < size) {
+					throw new StoreException(String.format("corrupted record at %d followed by %d bytes in segment: %s",
+							position, size - recordEnd, file));
+				}
+				break;
+			}
+			if(record.kind() != LogRecord.Kind.COMMIT) {
+				batch.add(record);
+				continue;
+			}
+			for(LogRecord one : batch) {
+				visitor.visit(one);
+				if(one.kind() != LogRecord.Kind.SNAPSHOT) { count++; }
+			}
+			batch.clear();
+			committedEnd = bufferStart + buf.position();
+		}
+		if(committedEnd < size) {
+			if(!truncateTorn) {
+				throw new StoreException(String.format("torn records starting at %d in segment: %s", committedEnd, file));
+			}
+			channel.truncate(committedEnd);
+			channel.force(true);
+		}
+		this.recordCount = count;
+		channel.position(committedEnd);
+	}
+
+	/** read from {@code position} of segment until {@code buf} is full or the end of segment **/
+	private void readFully(ByteBuffer buf, long position) throws IOException {
+		int start = buf.position();
+		while(buf.hasRemaining()) {
+			if(channel.read(buf, position + buf.position() - start) < 0) { return; }
+		}
+	}
+
+	private void verifyHeader(ByteBuffer buf) {
+		if(buf.remaining() < HEADER_LEN) { throw new StoreException("incorrect segment header size: "+file); }
+		byte[] magic = new byte[MAGIC.length];
+		buf.get(magic);
+		if(!Arrays.equals(magic, MAGIC)) { throw new StoreException("wrong magic number of segment: "+file); }
+		int blockSize = buf.getInt();
+		if(blockSize != secretBlockSize) {
+			throw new StoreException(String.format("secret block size %d of segment mismatch with %d: %s",
+					blockSize, secretBlockSize, file));
+		}
+	}
+
+	/** append the whole {@code buf} with {@code count} records to the end of segment **/
+	public void append(ByteBuffer buf, int count) throws IOException {
+		while(buf.hasRemaining()) { channel.write(buf); }
+		recordCount += count;
+	}
+
+	public void force() throws IOException { channel.force(true); }
+
+	/** discard all the bytes after {@code position} **/
+	public void truncate(long position) throws IOException {
+		channel.truncate(position);
+		channel.position(position);
+	}
+
+	/** make the temporary segment visible with its final name **/
+	public LogSegment publish() throws IOException {
+		force();
+		close();
+		File target = new File(file.getParentFile(), fileName(sequence));
+		if(!file.renameTo(target)) {
+			throw new StoreException(String.format("failed to rename segment %s to %s", file, target));
+		}
+		LogSegment segment = new LogSegment(sequence, target, secretBlockSize);
+		segment.recordCount = recordCount;
+		return segment;
+	}
+
+	public long sequence() { return sequence; }
+
+	public File file() { return file; }
+
+	public long recordCount() { return recordCount; }
+
+	public long size() throws IOException { return channel == null ? file.length() : channel.size(); }
+
+	public void close() throws IOException {
+		if(channel != null) { channel.close(); channel = null; }
+		if(storeFile != null) { storeFile.close(); storeFile = null; }
+	}
+
+	public void delete() throws IOException {
+		close();
+		if(file.exists() && !file.delete()) {
+			throw new StoreException("failed to delete segment: "+file);
+		}
+	}
+}
@@ -1,6 +1,8 @@
 package com.lee.password.util;
 
 import java.io.File;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
 
 public interface Converter<T> {
 
@@ -33,6 +35,21 @@ public interface Converter<T> {
 		}
 	};
 	
+	/** convert a time formatted as 'yyyy-MM-dd HH:mm:ss' or in milliseconds to milliseconds **/
+	public static final Converter<Long> TIME_CONVERTER = new Converter<Long>() {
+		@Override
+		public Long convert(String value) {
+			Long millis = LONG_CONVERTER.convert(value);
+			if(millis != null) { return millis; }
+			try {
+				// date format isn't thread-safe
+				return new SimpleDateFormat("yyyy-MM-dd HH:mm:ss").parse(value).getTime();
+			}catch(ParseException e) {
+				return null;
+			}
+		}
+	};
+	
 	public static final Converter<File> DIR_CONVERTER = new Converter<File>() {
 		@Override
 		public File convert(String value) {
@@ -44,5 +61,17 @@ public interface Converter<T> {
 			}
 		}
 	};
+	
+	public static final Converter<File> FILE_CONVERTER = new Converter<File>() {
+		@Override
+		public File convert(String value) {
+			try {
+				File file = new File(value);
+				return file.isFile() ? file : null;
+			}catch(Exception e) {
+				return null;
+			}
+		}
+	};
 
 }
@@ -0,0 +1,86 @@
+package com.lee.password.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Read the records of comma-separated values one by one, a field may be enclosed in double quotes,
+ * which contains commas, line breaks or double quotes escaped by doubling them. blank lines are skipped.
+ */
+public class CsvReader {
+
+	private static final int EOF = -1;
+
+	private final Reader reader;
+	private int peeked;
+	private boolean hasPeeked;
+	private int lineNumber;
+	private int currentLine = 1;
+
+	public CsvReader(Reader reader) { this.reader = reader; }
+
+	/** the line number where the last read record starts from, 1-based **/
+	public int lineNumber() { return lineNumber; }
+
+	/** read the fields of next record, return null if there is no more **/
+	public List<String> next() throws IOException {
+		int c = read();
+		while(c == '\r' || c == '\n') { c = read(); }
+		if(c == EOF) { return null; }
+		lineNumber = currentLine;
+		List<String> fields = new ArrayList<String>();
+		StringBuilder field = new StringBuilder();
+		while(true) {
+			if(c == '"' && field.length() == 0) {
+				readQuoted(field);
+				c = read();
+				if(c != ',' && c != '\r' && c != '\n' && c != EOF) {
+					throw new IllegalArgumentException("unexpected character after quoted field at line "+currentLine);
+				}
+				continue;
+			}
+			if(c == ',') {
+				fields.add(field.toString());
+				field.setLength(0);
+			}else if(c == '\r' || c == '\n' || c == EOF) {
+				fields.add(field.toString());
+				return fields;
+			}else {
+				field.append((char) c);
+			}
+			c = read();
+		}
+	}
+
+	private void readQuoted(StringBuilder field) throws IOException {
+		int startLine = currentLine;
+		while(true) {
+			int c = read();
+			if(c == EOF) { throw new IllegalArgumentException("unclosed quoted field from line "+startLine); }
+			if(c == '"') {
+				if(peek() != '"') { return; }
+				c = read();
+			}
+			field.append((char) c);
+		}
+	}
+
+	private int read() throws IOException {
+		int c = hasPeeked ? peeked : reader.read();
+		hasPeeked = false;
+		if(c == '\n') { currentLine++; }
+		return c;
+	}
+
+	private int peek() throws IOException {
+		if(!hasPeeked) {
+			peeked = reader.read();
+			hasPeeked = true;
+		}
+		return peeked;
+	}
+
+	public void close() throws IOException { reader.close(); }
+}
@@ -0,0 +1,155 @@
+package com.lee.password.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Read the flat objects of a JSON array one by one without loading the whole document,
+ * or of a sequence of top-level objects such as JSON lines. the values must be strings,
+ * numbers, booleans or null, which are taken as their text, while null as it is.
+ */
+public class JsonReader {
+
+	private static final int EOF = -1;
+
+	private final Reader reader;
+	private int peeked;
+	private boolean hasPeeked;
+	private int lineNumber = 1;
+	private boolean isStarted;
+	private boolean isArray;
+	private boolean isEnded;
+
+	public JsonReader(Reader reader) { this.reader = reader; }
+
+	/** the line number where the reader is, 1-based **/
+	public int lineNumber() { return lineNumber; }
+
+	/** read the fields of next object in order, return null if there is no more **/
+	public Map<String, String> next() throws IOException {
+		if(isEnded) { return null; }
+		int c = nextToken();
+		if(!isStarted) {
+			isStarted = true;
+			if(c == '[') {
+				isArray = true;
+				c = nextToken();
+				if(c == ']') { return end(); }
+			}
+		}else if(isArray) {
+			if(c == ']') { return end(); }
+			if(c == EOF) { throw error("unclosed array"); }
+			if(c != ',') { throw error("expected ',' or ']'"); }
+			c = nextToken();
+		}
+		if(c == EOF) {
+			if(isArray) { throw error("unclosed array"); }
+			isEnded = true;
+			return null;
+		}
+		if(c != '{') { throw error("expected '{'"); }
+		return readObject();
+	}
+
+	private Map<String, String> end() throws IOException {
+		if(nextToken() != EOF) { throw error("unexpected content after array"); }
+		isEnded = true;
+		return null;
+	}
+
+	private Map<String, String> readObject() throws IOException {
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		int c = nextToken();
+		if(c == '}') { return fields; }
+		while(true) {
+			if(c != '"') { throw error("expected field name"); }
+			String name = readString();
+			if(nextToken() != ':') { throw error("expected ':' after field name"); }
+			fields.put(name, readValue());
+			c = nextToken();
+			if(c == '}') { return fields; }
+			if(c != ',') { throw error("expected ',' or '}'"); }
+			c = nextToken();
+		}
+	}
+
+	private String readValue() throws IOException {
+		int c = nextToken();
+		if(c == '"') { return readString(); }
+		if(c == '{' || c == '[') { throw error("nested value is not supported"); }
+		if(c == EOF || isDelimiter(c)) { throw error("expected value"); }
+		StringBuilder literal = new StringBuilder().append((char) c);
+		while(peek() != EOF && !isDelimiter(peek())) { literal.append((char) read()); }
+		String value = literal.toString();
+		if("null".equals(value)) { return null; }
+		if(!"true".equals(value) && !"false".equals(value) && !value.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?")) {
+			throw error("incorrect value '" + value + "'");
+		}
+		return value;
+	}
+
+	private static boolean isDelimiter(int c) { return c == ',' || c == '}' || c == ']' || Character.isWhitespace(c); }
+
+	private String readString() throws IOException {
+		StringBuilder value = new StringBuilder();
+		while(true) {
+			int c = read();
+			if(c == EOF) { throw error("unclosed string"); }
+			if(c == '"') { return value.toString(); }
+			if(c != '\\') {
+				value.append((char) c);
+				continue;
+			}
+			c = read();
+			switch(c) {
+			case '"': case '\\': case '/': value.append((char) c); break;
+			case 'b': value.append('\b'); break;
+			case 'f': value.append('\f'); break;
+			case 'n': value.append('\n'); break;
+			case 'r': value.append('\r'); break;
+			case 't': value.append('\t'); break;
+			case 'u':
+				int code = 0;
+				for(int i=0; i<4; i++) {
+					int digit = Character.digit(read(), 16);
+					if(digit < 0) { throw error("incorrect unicode escape"); }
+					code = (code << 4) | digit;
+				}
+				value.append((char) code);
+				break;
+			default:
+				throw error("incorrect escape character");
+			}
+		}
+	}
+
+	/** read the next character except whitespaces **/
+	private int nextToken() throws IOException {
+		int c = read();
+		while(c != EOF && Character.isWhitespace(c)) { c = read(); }
+		return c;
+	}
+
+	private int read() throws IOException {
+		int c = hasPeeked ? peeked : reader.read();
+		hasPeeked = false;
+		if(c == '\n') { lineNumber++; }
+		return c;
+	}
+
+	private int peek() throws IOException {
+		if(!hasPeeked) {
+			peeked = reader.read();
+			hasPeeked = true;
+		}
+		return peeked;
+	}
+
+	private IllegalArgumentException error(String msg) {
+		return new IllegalArgumentException(msg + " at line " + lineNumber);
+	}
+
+	public void close() throws IOException { reader.close(); }
+}
@@ -0,0 +1,101 @@
+package com.lee.password.keeper.impl.crypto;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.Password.Header;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.keeper.impl.store.BinaryStoreDriver;
+
+public class HybridCryptoTest {
+
+	private static final String TEST_DIR = "/password-keeper/tmp";
+
+	private File keyDir;
+	private File dataDir;
+	private CryptoDriver cryptoDriver;
+	private CryptoKey publicKey;
+	private CryptoKey privateKey;
+
+	@Before
+	public void initKey() {
+		keyDir = new File(TEST_DIR, "hybrid-key");
+		dataDir = new File(TEST_DIR, "hybrid");
+		deleteDir(keyDir);
+		deleteDir(dataDir);
+		cryptoDriver = new HybridCryptoDriver();
+		Result<CryptoKey[]> keyPair = cryptoDriver.generateKeyPair(keyDir.getAbsolutePath(), 1024);
+		Assert.assertTrue(keyPair.isSuccess());
+		publicKey = keyPair.result[0];
+		privateKey = keyPair.result[1];
+	}
+
+	@Test
+	public void testCryptor() {
+		byte[] data = new byte[publicKey.maxBlockSize()];
+		Arrays.fill(data, (byte) 'x');
+		Result<byte[]> secret = cryptoDriver.encrypt(data, publicKey);
+		Assert.assertTrue(secret.isSuccess());
+		Assert.assertTrue(secret.result.length <= privateKey.maxBlockSize());
+		Assert.assertFalse(cryptoDriver.encrypt(new byte[data.length + 1], publicKey).isSuccess());
+
+		// decrypted by another driver instance with the loaded key
+		CryptoDriver another = new HybridCryptoDriver();
+		CryptoKey loadedKey = another.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		Assert.assertEquals(privateKey.maxBlockSize(), loadedKey.maxBlockSize());
+		Result<byte[]> decrypted = another.decrypt(secret.result, loadedKey);
+		Assert.assertTrue(decrypted.isSuccess());
+		Assert.assertArrayEquals(data, decrypted.result);
+
+		secret.result[secret.result.length - 20] ^= 1;
+		Assert.assertFalse(another.decrypt(secret.result, loadedKey).isSuccess());
+		another.close();
+	}
+
+	@Test
+	public void testStore() {
+		StringBuilder keyValuePairs = new StringBuilder();
+		for(int i=0; i<40; i++) { keyValuePairs.append("question").append(i).append("=answer;"); }
+		StoreDriver storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Website website = new Website("github", "www.github.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		Password entry = new Password(website.id(), "mail");
+		entry.password("xxxx@gmail.com");
+		entry.keyValuePairs(keyValuePairs.toString());
+		Result<Password.Header> inserted = storeDriver.insertPassword(entry, publicKey);
+		Assert.assertTrue(inserted.msg, inserted.isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+
+		cryptoDriver = new HybridCryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Result<Password> result = storeDriver.selectPassword(new Header(website.id(), "mail"), privateKey);
+		Assert.assertTrue(result.isSuccess());
+		Assert.assertEquals("xxxx@gmail.com", result.result.secret().password());
+		Assert.assertEquals(keyValuePairs.toString(), result.result.secret().keyValuePairs());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+
+	@After
+	public void cleanup() {
+		cryptoDriver.close();
+		deleteDir(keyDir);
+		deleteDir(dataDir);
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if(files == null) { return; }
+		for(File file : files) { file.delete(); }
+		dir.delete();
+	}
+}
@@ -8,11 +8,15 @@ import org.junit.Assert;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import com.lee.password.keeper.api.Result;
 import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.crypto.CryptoKey.KeyType;
 import com.lee.password.keeper.impl.crypto.rsa.RSACryptor;
+import com.lee.password.keeper.impl.crypto.rsa.RSAKeyCache;
 import com.lee.password.keeper.impl.crypto.rsa.RSAKeyGenerator;
 import com.lee.password.keeper.impl.crypto.rsa.RSAKeyReader;
 import com.lee.password.keeper.impl.crypto.rsa.RSAKeyWriter;
+import com.lee.password.keeper.impl.crypto.session.SessionConstants;
 
 public class RSACryptoTest {
 	
@@ -70,4 +74,70 @@ public class RSACryptoTest {
 		String decrypted = new String(data);
 		Assert.assertEquals(expected, decrypted);
 	}
+	
+	@Test
+	public void testKeyCache() {
+		File destDir = new File(TEST_DIR);
+		CryptoKey publicKey = RSAKeyReader.deserializePublicKey(RSAKeyReader.detectPublicKey(destDir));
+		CryptoKey privateKey = RSAKeyReader.deserializePrivateKey(RSAKeyReader.detectPrivateKey(destDir));
+		RSAKeyCache keyCache = new RSAKeyCache();
+		Assert.assertSame(keyCache.publicKey(publicKey.encoded()), keyCache.publicKey(publicKey.encoded().clone()));
+		Assert.assertSame(keyCache.privateKey(privateKey.encoded()), keyCache.privateKey(privateKey.encoded()));
+		Assert.assertSame(keyCache.cipher(), keyCache.cipher());
+		
+		String expected = "012345678901234567890123456789";
+		for(int i=0; i<3; i++) {
+			byte[] secret = RSACryptor.encrypt(expected.getBytes(), keyCache.publicKey(publicKey.encoded()), keyCache.cipher());
+			byte[] data = RSACryptor.decrypt(secret, keyCache.privateKey(privateKey.encoded()), keyCache.cipher());
+			Assert.assertEquals(expected, new String(data));
+		}
+		keyCache.clear();
+	}
+	
+	@Test
+	public void testSession() throws Exception {
+		File destDir = new File(TEST_DIR);
+		File vaultFile = new File(destDir, SessionConstants.VAULT_KEY_FILE);
+		vaultFile.delete();
+		RSACryptoDriver driver = new RSACryptoDriver();
+		try {
+			CryptoKey publicKey = driver.loadPublicKey(destDir.getAbsolutePath()).result;
+			CryptoKey privateKey = driver.loadPrivateKey(destDir.getAbsolutePath()).result;
+			byte[] expected = "012345678901234567890123456789".getBytes();
+			byte[] legacySecret = driver.encrypt(expected, publicKey).result;
+			
+			Result<CryptoKey> sessionResult = driver.openSession(privateKey, 0);
+			Assert.assertTrue(sessionResult.msg, sessionResult.isSuccess());
+			Assert.assertTrue(vaultFile.isFile());
+			CryptoKey sessionKey = sessionResult.result;
+			Assert.assertEquals(KeyType.SESSION, sessionKey.keyType());
+			Assert.assertEquals(privateKey.maxBlockSize(), sessionKey.maxBlockSize());
+			Assert.assertSame(sessionKey, driver.openSession(privateKey, 0).result);
+			
+			Result<byte[]> secret = driver.encrypt(expected, sessionKey);
+			Assert.assertTrue(secret.isSuccess());
+			Assert.assertTrue(secret.result.length <= privateKey.maxBlockSize());
+			Assert.assertArrayEquals(expected, driver.decrypt(secret.result, sessionKey).result);
+			Assert.assertArrayEquals(expected, driver.decrypt(legacySecret, sessionKey).result);
+			Result<byte[]> tooLong = driver.encrypt(new byte[sessionKey.maxBlockSize()], sessionKey);
+			Assert.assertFalse(tooLong.isSuccess());
+			Assert.assertTrue(tooLong.msg, tooLong.msg.contains("in session"));
+			
+			// the vault key file is reused by another driver
+			RSACryptoDriver another = new RSACryptoDriver();
+			CryptoKey anotherKey = another.openSession(privateKey, 0).result;
+			Assert.assertArrayEquals(expected, another.decrypt(secret.result, anotherKey).result);
+			another.close();
+			
+			driver.closeSession(sessionKey);
+			Assert.assertFalse(driver.decrypt(secret.result, sessionKey).isSuccess());
+			
+			sessionKey = driver.openSession(privateKey, 1).result;
+			Thread.sleep(20);
+			Assert.assertFalse(driver.decrypt(secret.result, sessionKey).isSuccess());
+		}finally {
+			driver.close();
+			vaultFile.delete();
+		}
+	}
 }
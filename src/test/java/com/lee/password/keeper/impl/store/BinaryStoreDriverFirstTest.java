@@ -1,6 +1,8 @@
 package com.lee.password.keeper.impl.store;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.junit.AfterClass;
@@ -13,6 +15,7 @@ import com.lee.password.keeper.api.Entity.Type;
 import com.lee.password.keeper.api.Result;
 import com.lee.password.keeper.api.crypto.CryptoDriver;
 import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Page;
 import com.lee.password.keeper.api.store.Password;
 import com.lee.password.keeper.api.store.Password.Header;
 import com.lee.password.keeper.api.store.Password.Secret;
@@ -196,6 +199,79 @@ public class BinaryStoreDriverFirstTest {
 		Assert.assertTrue(resultList.result != null && !resultList.result.isEmpty());
 	}
 	
+	@Test
+	public void testSearchWebsites() {
+		Website amazon = new Website("sAmazon", "www.amazon.com");
+		Assert.assertTrue(storeDriver.insertWebsite(amazon).isSuccess());
+		Assert.assertTrue(storeDriver.insertWebsite(new Website("sAws", "aws.amazon.com")).isSuccess());
+		Assert.assertTrue(storeDriver.insertWebsite(new Website("sApple", "www.apple.com")).isSuccess());
+		
+		Result<List<Website>> resultList = storeDriver.searchWebsites("SA", 0);
+		Assert.assertTrue(resultList.isSuccess());
+		Assert.assertEquals(3, resultList.result.size());
+		Assert.assertEquals("sAmazon", resultList.result.get(0).keyword());
+		Assert.assertEquals(1, storeDriver.searchWebsites("sa", 1).result.size());
+		Assert.assertEquals("sAws", storeDriver.searchWebsites("saw", 0).result.get(0).keyword());
+		
+		resultList = storeDriver.fuzzySearchWebsites("samazom", 1, 0);
+		Assert.assertEquals(1, resultList.result.size());
+		Assert.assertEquals(amazon.id(), resultList.result.get(0).id());
+		
+		Website website = new Website(amazon.id());
+		website.keyword("sAmzn");
+		Assert.assertTrue(storeDriver.updateWebsite(website).isSuccess());
+		Assert.assertTrue(storeDriver.fuzzySearchWebsites("samazom", 1, 0).result.isEmpty());
+		Assert.assertEquals(amazon.id(), storeDriver.searchWebsites("samz", 0).result.get(0).id());
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Assert.assertEquals(amazon.id(), storeDriver.searchWebsites("samazon", 0).result.get(0).id());
+		Assert.assertTrue(storeDriver.deleteWebsite(new Website("sAws")).isSuccess());
+		Assert.assertEquals(2, storeDriver.searchWebsites("sa", 0).result.size());
+	}
+	
+	@Test
+	public void testListPages() {
+		Website website = null;
+		for(int i=0; i<25; i++) {
+			website = new Website("page"+i, "www.page"+i+".com");
+			Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		}
+		int total = 0;
+		long lastWebsiteId = Long.MIN_VALUE;
+		String token = null;
+		do {
+			Result<Page<Website>> pageResult = storeDriver.listWebsite(token, 7);
+			Assert.assertTrue(pageResult.isSuccess());
+			Assert.assertTrue(pageResult.result.items().size() <= 7);
+			for(Website web : pageResult.result.items()) {
+				Assert.assertTrue(web.id() > lastWebsiteId);
+				lastWebsiteId = web.id();
+				total++;
+			}
+			token = pageResult.result.nextToken();
+		}while(token != null);
+		Assert.assertEquals(storeDriver.websiteCount().result.intValue(), total);
+		
+		for(int i=0; i<5; i++) {
+			Password entry = new Password(website.id(), "pager"+i);
+			entry.password("password"+i);
+			Assert.assertTrue(storeDriver.insertPassword(entry, publicKey).isSuccess());
+		}
+		Result<Page<Header>> pageResult = storeDriver.listPassword(website.id(), null, 3);
+		Assert.assertTrue(pageResult.isSuccess());
+		Assert.assertEquals(Arrays.asList("pager0", "pager1", "pager2"), usernames(pageResult.result.items()));
+		pageResult = storeDriver.listPassword(website.id(), pageResult.result.nextToken(), 3);
+		Assert.assertEquals(Arrays.asList("pager3", "pager4"), usernames(pageResult.result.items()));
+		Assert.assertFalse(pageResult.result.hasNext());
+		Assert.assertFalse(storeDriver.listWebsite("page", 3).isSuccess());
+		Assert.assertFalse(storeDriver.listWebsite(null, 0).isSuccess());
+	}
+	
+	private static List<String> usernames(List<Header> headers) {
+		List<String> usernames = new ArrayList<String>(headers.size());
+		for(Header header : headers) { usernames.add(header.username()); }
+		return usernames;
+	}
+	
 	@Test
 	public void testInsertPassword() {
 		String keyword = "douban";
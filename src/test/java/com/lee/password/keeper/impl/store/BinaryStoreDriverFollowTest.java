@@ -1,6 +1,11 @@
 package com.lee.password.keeper.impl.store;
 
 import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
 
 import org.junit.After;
 import org.junit.Assert;
@@ -12,9 +17,13 @@ import com.lee.password.keeper.api.crypto.CryptoDriver;
 import com.lee.password.keeper.api.crypto.CryptoKey;
 import com.lee.password.keeper.api.store.Password;
 import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.StoreException;
 import com.lee.password.keeper.api.store.Website;
 import com.lee.password.keeper.api.store.Password.Header;
 import com.lee.password.keeper.impl.crypto.RSACryptoDriver;
+import com.lee.password.keeper.impl.store.binary.RollbackJournal;
+import com.lee.password.keeper.impl.store.binary.StoreSnapshot;
+import com.lee.password.util.Pair;
 
 public class BinaryStoreDriverFollowTest {
 	
@@ -87,6 +96,651 @@ public class BinaryStoreDriverFollowTest {
 	
 	@Test
 	public void testFollow() {
+		follow(new Properties());
+	}
+	
+	@Test
+	public void testFollowMappedLoad() {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_MAPPED_LOAD, "true");
+		follow(options);
+	}
+	
+	@Test
+	public void testFollowGroupCommit() {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_GROUP_COMMIT, "true");
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		Website website3 = new Website("京东", "www.jd.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website3).isSuccess());
+		Password entry31 = new Password(website3.id(), username11);
+		entry31.password(password11);
+		Assert.assertTrue(storeDriver.insertPassword(entry31, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.deletePassword(new Header(storeDriver.selectWebsite(new Website(keyword2)).result.id(), username22)).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		Assert.assertFalse(new File(storeDriver.storePath().result + ".journal").exists());
+		
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.websiteCount().result);
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.passwordCount().result);
+		Result<Password> passwordResult = storeDriver.selectPassword(new Header(website3.id(), username11), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password11, passwordResult.result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testIncorrectOption() {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_HISTORY_SIZE, "1MB");
+		try {
+			new BinaryStoreDriver(dataDir.getAbsolutePath(), new RSACryptoDriver(), privateKey.maxBlockSize(), true, options);
+			Assert.fail("incorrect option is accepted");
+		}catch(StoreException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains(BinaryStoreDriver.OPT_HISTORY_SIZE));
+		}
+		// nothing is held by the failed one
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), new RSACryptoDriver(), privateKey.maxBlockSize(), true);
+		Assert.assertEquals(Integer.valueOf(2), storeDriver.websiteCount().result);
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testCoalescedCommit() {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+
+		// insert -> update
+		Website website3 = new Website("京东", "www.jd.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website3).isSuccess());
+		Website changed3 = new Website(website3.id());
+		changed3.url("jd.com");
+		Assert.assertTrue(storeDriver.updateWebsite(changed3).isSuccess());
+		Password entry31 = new Password(website3.id(), username11);
+		entry31.password(password11);
+		Assert.assertTrue(storeDriver.insertPassword(entry31, publicKey).isSuccess());
+		Password changed31 = new Password(website3.id(), username11);
+		changed31.keyValuePairs("phone=123");
+		Assert.assertTrue(storeDriver.updatePassword(changed31, publicKey).isSuccess());
+		// insert -> delete
+		Website website4 = new Website("淘宝", "www.taobao.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website4).isSuccess());
+		Assert.assertTrue(storeDriver.deleteWebsite(new Website(website4.id())).isSuccess());
+		// update -> delete
+		Password changed11 = new Password(websiteId1, username11);
+		changed11.password("changed");
+		Assert.assertTrue(storeDriver.updatePassword(changed11, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId1, username11)).isSuccess());
+		// delete -> insert
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId2, username21)).isSuccess());
+		Password entry21 = new Password(websiteId2, username21);
+		entry21.password("reinserted");
+		Assert.assertTrue(storeDriver.insertPassword(entry21, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.websiteCount().result);
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.passwordCount().result);
+		Assert.assertEquals("jd.com", storeDriver.selectWebsite(new Website(website3.id())).result.url());
+		Assert.assertFalse(storeDriver.selectWebsite(new Website(website4.id())).isSuccess());
+		Assert.assertEquals(Integer.valueOf(0), storeDriver.passwordCount(websiteId1).result);
+		Result<Password> passwordResult = storeDriver.selectPassword(new Header(website3.id(), username11), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password11, passwordResult.result.secret().password());
+		Assert.assertEquals("phone=123", passwordResult.result.secret().keyValuePairs());
+		passwordResult = storeDriver.selectPassword(new Header(websiteId2, username21), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals("reinserted", passwordResult.result.secret().password());
+		passwordResult = storeDriver.selectPassword(new Header(websiteId2, username22), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password22, passwordResult.result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+
+	@Test
+	public void testShiftTail() {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		// the password blocks are ordered by website id
+		long firstId = Math.min(websiteId1, websiteId2);
+		long lastId = Math.max(websiteId1, websiteId2);
+		int firstCount = storeDriver.passwordCount(firstId).result;
+		int lastCount = storeDriver.passwordCount(lastId).result;
+		
+		// the tail grows beyond the buffers, so the following records are displaced through memory
+		insertPasswords(lastId, 0, 300);
+		insertPasswords(firstId, 0, 600);
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		// the tail shrinks through the write-ahead log
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_WRITE_AHEAD_LOG, "true");
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		assertPasswords(lastId, 0, 300);
+		assertPasswords(firstId, 0, 600);
+		for(int i=0; i<200; i++) { Assert.assertTrue(storeDriver.deletePassword(new Header(firstId, "user" + i)).isSuccess()); }
+		insertPasswords(lastId, 300, 301);
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Assert.assertEquals(Integer.valueOf(firstCount + 400), storeDriver.passwordCount(firstId).result);
+		Assert.assertEquals(Integer.valueOf(lastCount + 301), storeDriver.passwordCount(lastId).result);
+		Assert.assertFalse(storeDriver.selectPassword(new Header(firstId, "user0"), privateKey).isSuccess());
+		assertPasswords(firstId, 200, 600);
+		assertPasswords(lastId, 0, 301);
+		Assert.assertEquals(password11, storeDriver.selectPassword(new Header(websiteId1, username11), privateKey).result.secret().password());
+		Assert.assertEquals(password21, storeDriver.selectPassword(new Header(websiteId2, username21), privateKey).result.secret().password());
+		Assert.assertEquals(password22, storeDriver.selectPassword(new Header(websiteId2, username22), privateKey).result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	/** insert and commit the passwords "user{i}" of "pwd{i}" for i in [{@code from}, {@code to}) **/
+	private void insertPasswords(long websiteId, int from, int to) {
+		for(int i=from; i<to; i++) {
+			Password entry = new Password(websiteId, "user" + i);
+			entry.password("pwd" + i);
+			Assert.assertTrue(storeDriver.insertPassword(entry, publicKey).isSuccess());
+		}
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+	}
+	
+	private void assertPasswords(long websiteId, int from, int to) {
+		for(int i=from; i<to; i++) {
+			Result<Password> passwordResult = storeDriver.selectPassword(new Header(websiteId, "user" + i), privateKey);
+			Assert.assertEquals("pwd" + i, passwordResult.result.secret().password());
+		}
+	}
+
+	@Test
+	public void testRewriteCommit() {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_REWRITE_THRESHOLD, "2");
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), true, options);
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		Website website3 = new Website("京东", "www.jd.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website3).isSuccess());
+		Password entry31 = new Password(website3.id(), username11);
+		entry31.password(password11);
+		Assert.assertTrue(storeDriver.insertPassword(entry31, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId1, username11)).isSuccess());
+		Website changed2 = new Website(websiteId2);
+		changed2.url("tmall.com");
+		Assert.assertTrue(storeDriver.updateWebsite(changed2).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertFalse(new File(storeDriver.storePath().result + ".tmp").exists());
+		// the reopened store file is still writable
+		Password changed31 = new Password(website3.id(), username11);
+		changed31.keyValuePairs("phone=123");
+		Assert.assertTrue(storeDriver.updatePassword(changed31, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.websiteCount().result);
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.passwordCount().result);
+		Assert.assertEquals(Integer.valueOf(0), storeDriver.passwordCount(websiteId1).result);
+		Assert.assertEquals("tmall.com", storeDriver.selectWebsite(new Website(websiteId2)).result.url());
+		Result<Password> passwordResult = storeDriver.selectPassword(new Header(website3.id(), username11), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password11, passwordResult.result.secret().password());
+		Assert.assertEquals("phone=123", passwordResult.result.secret().keyValuePairs());
+		passwordResult = storeDriver.selectPassword(new Header(websiteId2, username22), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password22, passwordResult.result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+
+	@Test
+	public void testSelectPasswords() {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		for(int i=0; i<8; i++) {
+			Password entry = new Password(websiteId2, "user"+i);
+			entry.password("password"+i);
+			Assert.assertTrue(storeDriver.insertPassword(entry, publicKey).isSuccess());
+		}
+
+		Result<List<Password>> passwordsResult = storeDriver.selectPasswords(websiteId2, privateKey);
+		Assert.assertTrue(passwordsResult.isSuccess());
+		Assert.assertEquals(10, passwordsResult.result.size());
+		for(Password password : passwordsResult.result) {
+			String username = password.header().username();
+			if(username.startsWith("user")) {
+				Assert.assertEquals("password"+username.substring(4), password.secret().password());
+			}else if(username.equals(username21)) {
+				Assert.assertEquals(password21, password.secret().password());
+			}else {
+				Assert.assertEquals(password22, password.secret().password());
+			}
+		}
+		passwordsResult = storeDriver.selectPasswords(username11, privateKey);
+		Assert.assertTrue(passwordsResult.isSuccess());
+		Assert.assertEquals(2, passwordsResult.result.size());
+		Assert.assertFalse(storeDriver.selectPasswords("nobody", privateKey).isSuccess());
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+
+	@Test
+	public void testLazyLoad() {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_LAZY_LOAD, "true");
+		options.setProperty(BinaryStoreDriver.OPT_SECRET_CACHE_SIZE, "1");
+		options.setProperty(BinaryStoreDriver.OPT_REWRITE_THRESHOLD, "2");
+		follow(options);
+		
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		Password changed22 = new Password(websiteId2, username22);
+		changed22.keyValuePairs("phone=123");
+		Assert.assertTrue(storeDriver.updatePassword(changed22, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Assert.assertEquals("", storeDriver.selectPassword(new Header(websiteId2, username22), privateKey).result.secret().keyValuePairs());
+		Assert.assertTrue(storeDriver.updatePassword(changed22, publicKey).isSuccess());
+		Website website3 = new Website("京东", "www.jd.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website3).isSuccess());
+		// the rewrite copies the secrets not loaded from the old store file
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Result<List<Password>> passwordsResult = storeDriver.selectPasswords(websiteId2, privateKey);
+		Assert.assertTrue(passwordsResult.isSuccess());
+		Assert.assertEquals(2, passwordsResult.result.size());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		Result<Password> passwordResult = storeDriver.selectPassword(new Header(websiteId2, username22), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password22, passwordResult.result.secret().password());
+		Assert.assertEquals("phone=123", passwordResult.result.secret().keyValuePairs());
+		passwordResult = storeDriver.selectPassword(new Header(websiteId2, username21), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password21, passwordResult.result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testPortionUpdate() {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		Header header21 = new Header(websiteId2, username21);
+		long timestamp = storeDriver.listPassword(websiteId2, username21).result.timestamp() + 1000;
+		Assert.assertTrue(storeDriver.updatePassword(new Password(websiteId2, username21, timestamp).password("changed"), publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.updatePassword(new Password(websiteId2, username21, timestamp + 1).keyValuePairs("phone=123"), publicKey).isSuccess());
+		// each record restores only the portion it changed
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Password password = storeDriver.selectPassword(header21, privateKey).result;
+		Assert.assertEquals("changed", password.secret().password());
+		Assert.assertEquals("", password.secret().keyValuePairs());
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Assert.assertEquals(password21, storeDriver.selectPassword(header21, privateKey).result.secret().password());
+		Assert.assertTrue(storeDriver.redo().isSuccess());
+		Assert.assertTrue(storeDriver.redo().isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.updatePassword(new Password(websiteId2, username21, timestamp + 2).keyValuePairs("phone=456"), publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		password = storeDriver.selectPassword(header21, privateKey).result;
+		Assert.assertEquals("changed", password.secret().password());
+		Assert.assertEquals("phone=456", password.secret().keyValuePairs());
+		// the key-value pairs only update persists its timestamp too
+		Assert.assertEquals(timestamp + 2, password.header().timestamp());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testOffHeapSecrets() {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_OFF_HEAP_SECRETS, "true");
+		follow(options);
+		
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		Password changed22 = new Password(websiteId2, username22);
+		changed22.keyValuePairs("phone=123");
+		Assert.assertTrue(storeDriver.updatePassword(changed22, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId2, username21)).isSuccess());
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId1, username11)).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Result<List<Password>> passwordsResult = storeDriver.selectPasswords(websiteId2, privateKey);
+		Assert.assertTrue(passwordsResult.isSuccess());
+		Assert.assertEquals(2, passwordsResult.result.size());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		Assert.assertEquals(Integer.valueOf(2), storeDriver.passwordCount().result);
+		Result<Password> passwordResult = storeDriver.selectPassword(new Header(websiteId2, username22), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password22, passwordResult.result.secret().password());
+		Assert.assertEquals("phone=123", passwordResult.result.secret().keyValuePairs());
+		passwordResult = storeDriver.selectPassword(new Header(websiteId2, username21), privateKey);
+		Assert.assertTrue(passwordResult.isSuccess());
+		Assert.assertEquals(password21, passwordResult.result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testSnapshot() {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		// the secrets of the snapshot are read from store file
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_LAZY_LOAD, "true");
+		BinaryStoreDriver driver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		storeDriver = driver;
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		// the changes before the first snapshot are rolled back in it
+		Password changed11 = new Password(websiteId1, username11);
+		changed11.password("changed");
+		Assert.assertTrue(storeDriver.updatePassword(changed11, publicKey).isSuccess());
+		Website website3 = new Website("京东", "www.jd.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website3).isSuccess());
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId2, username21)).isSuccess());
+		Result<StoreSnapshot> snapshotResult = driver.snapshot();
+		Assert.assertTrue(snapshotResult.isSuccess());
+		StoreSnapshot snapshot = snapshotResult.result;
+		Assert.assertSame(snapshot, driver.snapshot().result);
+		Assert.assertEquals(Integer.valueOf(2), snapshot.websiteCount().result);
+		Assert.assertEquals(Integer.valueOf(3), snapshot.passwordCount().result);
+		Assert.assertEquals(password11, snapshot.selectPassword(new Header(websiteId1, username11), privateKey).result.secret().password());
+		Assert.assertEquals(password21, snapshot.selectPassword(new Header(websiteId2, username21), privateKey).result.secret().password());
+		
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		StoreSnapshot committed = driver.snapshot().result;
+		Assert.assertEquals(snapshot.version() + 1, committed.version());
+		Assert.assertEquals(Integer.valueOf(3), committed.websiteCount().result);
+		Assert.assertEquals("changed", committed.selectPassword(new Header(websiteId1, username11), privateKey).result.secret().password());
+		Assert.assertFalse(committed.selectPassword(new Header(websiteId2, username21), privateKey).isSuccess());
+		Assert.assertEquals(1, committed.selectPasswords(websiteId2, privateKey).result.size());
+		// the old snapshot is untouched by the commit
+		Assert.assertEquals(Integer.valueOf(2), snapshot.websiteCount().result);
+		Assert.assertEquals(password11, snapshot.selectPassword(new Header(websiteId1, username11), privateKey).result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testRollbackJournal() throws Exception {
+		File storeFile = new File(new File(TEST_DIR, "follow"), "binary.store.pk");
+		File journal = new File(storeFile.getPath() + ".journal");
+		long originalLength = storeFile.length();
+		// simulate a crash in the middle of group commit
+		RandomAccessFile file = new RandomAccessFile(storeFile, "rw");
+		try {
+			RollbackJournal.write(journal, file.getChannel(), 4 + 4 + 24, 4 + 4 + 24);
+			file.getChannel().truncate(4 + 4 + 24 + 10);
+			file.getChannel().write(ByteBuffer.wrap(new byte[] { 1, 2, 3 }), 4);
+		}finally {
+			file.close();
+		}
+		Assert.assertTrue(journal.exists());
+		follow(new Properties());
+		Assert.assertFalse(journal.exists());
+		Assert.assertEquals(originalLength, storeFile.length());
+	}
+	
+	@Test
+	public void testUpgradeLegacyFormat() throws Exception {
+		File storeFile = new File(new File(TEST_DIR, "follow"), "binary.store.pk");
+		long length = storeFile.length();
+		// convert store file to version 0, which has no version field
+		RandomAccessFile file = new RandomAccessFile(storeFile, "rw");
+		try {
+			byte[] bytes = new byte[(int) length];
+			file.readFully(bytes);
+			ByteBuffer legacy = ByteBuffer.allocate(bytes.length - 4);
+			legacy.put("bpsd".getBytes("UTF-8")).put(bytes, 8, bytes.length - 8);
+			legacy.putLong(4 + 4, legacy.getLong(4 + 4) - 4);
+			legacy.putLong(4 + 16, legacy.getLong(4 + 16) - 4);
+			file.setLength(0);
+			file.write(legacy.array());
+		}finally {
+			file.close();
+		}
+		follow(new Properties());
+		Assert.assertEquals(length, storeFile.length());
+		file = new RandomAccessFile(storeFile, "r");
+		try {
+			byte[] magic = new byte[4];
+			file.readFully(magic);
+			Assert.assertEquals("bpsv", new String(magic, "UTF-8"));
+			Assert.assertEquals(1, file.readInt());
+		}finally {
+			file.close();
+		}
+		Assert.assertFalse(new File(storeFile.getPath() + ".tmp").exists());
+		follow(new Properties());
+	}
+	
+	@Test
+	public void testWriteAheadLog() throws Exception {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_WRITE_AHEAD_LOG, "true");
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		File storeFile = new File(storeDriver.storePath().result);
+		File walFile = new File(storeFile.getPath() + ".wal");
+		byte[] original = readFile(storeFile);
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		Password changed11 = new Password(websiteId1, username11);
+		changed11.password("changed");
+		Assert.assertTrue(storeDriver.updatePassword(changed11, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.insertWebsite(new Website("京东", "www.jd.com")).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		byte[] logged = readFile(walFile);
+		Assert.assertTrue(logged.length > 4);
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		Assert.assertEquals(4, walFile.length());
+		
+		// simulate a crash after the batch is logged, but before it is applied to store file
+		writeFile(storeFile, original);
+		writeFile(walFile, logged);
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Assert.assertEquals(4, walFile.length());
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.websiteCount().result);
+		Assert.assertEquals("changed", storeDriver.selectPassword(new Header(websiteId1, username11), privateKey).result.secret().password());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testRollbackToHistory() throws Exception {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_HISTORY_SIZE, String.valueOf(1024 * 1024));
+		options.setProperty(BinaryStoreDriver.OPT_LAZY_LOAD, "true");
+		// spill most of the uncommitted changes
+		options.setProperty(BinaryStoreDriver.OPT_CHANGE_QUEUE_SIZE, "256");
+		BinaryStoreDriver driver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		storeDriver = driver;
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		long websiteId2 = storeDriver.selectWebsite(new Website(keyword2)).result.id();
+		long beforeChanged = System.currentTimeMillis();
+		Thread.sleep(5);
+		Password changed11 = new Password(websiteId1, username11);
+		changed11.password("changed");
+		Assert.assertTrue(storeDriver.updatePassword(changed11, publicKey).isSuccess());
+		Website changed2 = new Website(keyword2, "www.tmall.cn");
+		Assert.assertTrue(storeDriver.updateWebsite(changed2).isSuccess());
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId2, username22)).isSuccess());
+		Website website3 = storeDriver.insertWebsite(new Website("京东", "www.jd.com")).result;
+		Password entry31 = new Password(website3.id(), username11);
+		entry31.password(password11);
+		Assert.assertTrue(storeDriver.insertPassword(entry31, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		// the history survives the restart
+		driver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		storeDriver = driver;
+		Assert.assertEquals(Integer.valueOf(0), driver.rollbackTo(System.currentTimeMillis()).result);
+		// the changes before history is enabled are not recorded
+		Assert.assertFalse(driver.rollbackTo(beforeChanged - 60 * 60 * 1000).isSuccess());
+		Result<Integer> rollbackResult = driver.rollbackTo(beforeChanged);
+		Assert.assertTrue(rollbackResult.isSuccess());
+		Assert.assertEquals(Integer.valueOf(5), rollbackResult.result);
+		Assert.assertEquals(Integer.valueOf(5), storeDriver.needCommitCount().result);
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		follow(new Properties());
+	}
+	
+	private static byte[] readFile(File file) throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			byte[] bytes = new byte[(int) raf.length()];
+			raf.readFully(bytes);
+			return bytes;
+		}finally {
+			raf.close();
+		}
+	}
+	
+	private static void writeFile(File file, byte[] bytes) throws Exception {
+		RandomAccessFile raf = new RandomAccessFile(file, "rw");
+		try {
+			raf.setLength(0);
+			raf.write(bytes);
+		}finally {
+			raf.close();
+		}
+	}
+	
+	@Test
+	public void testVerify() throws Exception {
+		keyDir = new File(TEST_DIR, "follow");
+		cryptoDriver = new RSACryptoDriver();
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		BinaryStoreDriver driver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		Assert.assertFalse(driver.verify().isSuccess());
+		Assert.assertTrue(driver.close().isSuccess());
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_BLOCK_CHECKSUMS, "true");
+		driver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		storeDriver = driver;
+		Assert.assertTrue(driver.verify().isSuccess());
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		Password changed11 = new Password(websiteId1, username11);
+		changed11.password("changed");
+		Assert.assertTrue(storeDriver.updatePassword(changed11, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.insertWebsite(new Website("京东", "www.jd.com")).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(driver.verify().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		// corrupt the timestamp of the first password behind the driver, both usernames are "mobile"
+		File storeFile = new File(storeDriver.storePath().result);
+		RandomAccessFile file = new RandomAccessFile(storeFile, "rw");
+		try {
+			file.seek(4 + 4 + 24 + 8 + 1 + 6 + 7);
+			int b = file.read();
+			file.seek(4 + 4 + 24 + 8 + 1 + 6 + 7);
+			file.write(b ^ 0xff);
+		}finally {
+			file.close();
+		}
+		driver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		storeDriver = driver;
+		Result<List<Long>> verifyResult = driver.verify();
+		Assert.assertFalse(verifyResult.isSuccess());
+		Assert.assertEquals(1, verifyResult.result.size());
+		Assert.assertEquals(Long.valueOf(4 + 4 + 24), verifyResult.result.get(0));
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+	
+	@Test
+	public void testImportEntries() throws Exception {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_HISTORY_SIZE, String.valueOf(1024 * 1024));
+		publicKey = cryptoDriver.loadPublicKey(keyDir.getAbsolutePath()).result;
+		privateKey = cryptoDriver.loadPrivateKey(keyDir.getAbsolutePath()).result;
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		long websiteId1 = storeDriver.selectWebsite(new Website(keyword1)).result.id();
+		long beforeImported = System.currentTimeMillis();
+		Thread.sleep(5);
+		
+		// an existed entry fails the whole import
+		List<Pair<Website, Password>> entries = new ArrayList<Pair<Website, Password>>();
+		entries.add(Pair.create(new Website("import-duplicate", "www.duplicate.com"), new Password(0, "user").password("pwd")));
+		entries.add(Pair.create(new Website(keyword1), new Password(0, username11).password("pwd")));
+		Assert.assertFalse(storeDriver.importEntries(entries.iterator(), publicKey).isSuccess());
+		Assert.assertEquals(Integer.valueOf(2), storeDriver.websiteCount().result);
+		Assert.assertEquals(Integer.valueOf(3), storeDriver.passwordCount().result);
+		
+		entries.clear();
+		entries.add(Pair.create(new Website(keyword1), new Password(0, "imported").password("pwd").keyValuePairs("memo=1")));
+		for(int i=0; i<300; i++) {
+			entries.add(Pair.create(new Website("import" + (i / 3), "www.import" + (i / 3) + ".com"),
+					new Password(0, "user" + (i % 3)).password("pwd" + i)));
+		}
+		Result<Integer> importResult = storeDriver.importEntries(entries.iterator(), publicKey);
+		Assert.assertTrue(importResult.msg, importResult.isSuccess());
+		Assert.assertEquals(Integer.valueOf(301), importResult.result);
+		Assert.assertEquals(Integer.valueOf(0), storeDriver.needCommitCount().result);
+		Assert.assertEquals(Integer.valueOf(0), storeDriver.canUndoTimes().result);
+		
+		// uncommitted changes must be committed before import
+		Assert.assertTrue(storeDriver.insertWebsite(new Website("pending", "www.pending.com")).isSuccess());
+		Assert.assertFalse(storeDriver.importEntries(entries.iterator(), publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
+		Assert.assertEquals(Integer.valueOf(102), storeDriver.websiteCount().result);
+		Assert.assertEquals(Integer.valueOf(304), storeDriver.passwordCount().result);
+		Result<Password> passwordResult = storeDriver.selectPassword(new Header(websiteId1, "imported"), privateKey);
+		Assert.assertEquals("pwd", passwordResult.result.secret().password());
+		Assert.assertEquals("memo=1", passwordResult.result.secret().keyValuePairs());
+		Website website = storeDriver.selectWebsite(new Website("import99")).result;
+		Assert.assertEquals("www.import99.com", website.url());
+		Assert.assertEquals("pwd298", storeDriver.selectPassword(new Header(website.id(), "user1"), privateKey).result.secret().password());
+		
+		// the imported are journaled in history as one commit
+		Result<Integer> rollbackResult = ((BinaryStoreDriver) storeDriver).rollbackTo(beforeImported);
+		Assert.assertTrue(rollbackResult.msg, rollbackResult.isSuccess());
+		Assert.assertEquals(Integer.valueOf(100 + 301), rollbackResult.result);
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		follow(new Properties());
+	}
+	
+	private void follow(Properties options) {
 		keyDir = new File(TEST_DIR, "follow");
 		cryptoDriver = new RSACryptoDriver();
 		Result<CryptoKey> loadKeyResult = cryptoDriver.loadPublicKey(keyDir.getAbsolutePath());
@@ -96,7 +750,7 @@ public class BinaryStoreDriverFollowTest {
 		Assert.assertTrue(loadKeyResult.isSuccess());
 		privateKey = loadKeyResult.result;
 		dataDir = new File(TEST_DIR, "follow");
-		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false);
+		storeDriver = new BinaryStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), false, options);
 		
 		Result<Integer> websiteCountResult = storeDriver.websiteCount();
 		Assert.assertTrue(websiteCountResult.isSuccess());
@@ -137,5 +791,8 @@ public class BinaryStoreDriverFollowTest {
 		new File(publicKey.path()).delete();
 		new File(privateKey.path()).delete();
 		new File(storeDriver.storePath().result).delete();
+		new File(storeDriver.storePath().result + ".crc").delete();
+		new File(storeDriver.storePath().result + ".wal").delete();
+		new File(storeDriver.storePath().result + ".history").delete();
 	}
 }
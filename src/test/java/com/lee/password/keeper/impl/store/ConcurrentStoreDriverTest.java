@@ -0,0 +1,108 @@
+package com.lee.password.keeper.impl.store;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.Password.Header;
+import com.lee.password.keeper.api.store.StoreDriver;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.keeper.impl.crypto.RSACryptoDriver;
+
+public class ConcurrentStoreDriverTest {
+
+	private static final String TEST_DIR = "/password-keeper/tmp";
+
+	private CryptoDriver cryptoDriver;
+	private CryptoKey publicKey;
+	private CryptoKey privateKey;
+	private File keyDir;
+	private File dataDir;
+	private StoreDriver storeDriver;
+
+	@Before
+	public void initStore() {
+		keyDir = new File(TEST_DIR, "concurrent-key");
+		dataDir = new File(TEST_DIR, "concurrent");
+		deleteDir(keyDir);
+		deleteDir(dataDir);
+		cryptoDriver = new RSACryptoDriver();
+		Result<CryptoKey[]> keyPair = cryptoDriver.generateKeyPair(keyDir.getAbsolutePath(), 1024);
+		publicKey = keyPair.result[0];
+		privateKey = keyPair.result[1];
+	}
+
+	@Test
+	public void testConcurrentReadWrite() throws Exception {
+		Properties options = new Properties();
+		options.setProperty(BinaryStoreDriver.OPT_LAZY_LOAD, "true");
+		storeDriver = new ConcurrentStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), true, options);
+		final Website website = new Website("github", "www.github.com");
+		Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		Password entry = new Password(website.id(), "mail");
+		entry.password("xxxx@gmail.com");
+		Assert.assertTrue(storeDriver.insertPassword(entry, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = new ConcurrentStoreDriver(dataDir.getAbsolutePath(), cryptoDriver, privateKey.maxBlockSize(), true, options);
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<Boolean>> readers = new ArrayList<Future<Boolean>>();
+			for(int i=0; i<4; i++) {
+				readers.add(pool.submit(new Callable<Boolean>() {
+					@Override
+					public Boolean call() {
+						for(int j=0; j<50; j++) {
+							Result<Password> result = storeDriver.selectPassword(new Header(website.id(), "mail"), privateKey);
+							if(!result.isSuccess() || !"xxxx@gmail.com".equals(result.result.secret().password())) { return false; }
+							if(storeDriver.listPassword(website.id()).result.isEmpty()) { return false; }
+						}
+						return true;
+					}
+				}));
+			}
+			for(int i=0; i<20; i++) {
+				Password another = new Password(website.id(), "user"+i);
+				another.password("password"+i);
+				Assert.assertTrue(storeDriver.insertPassword(another, publicKey).isSuccess());
+				if(i % 5 == 4) { Assert.assertTrue(storeDriver.commit().isSuccess()); }
+			}
+			for(Future<Boolean> reader : readers) { Assert.assertTrue(reader.get()); }
+		}finally {
+			pool.shutdown();
+		}
+		Assert.assertEquals(Integer.valueOf(21), storeDriver.passwordCount(website.id()).result);
+		Result<List<Password>> passwordsResult = storeDriver.selectPasswords(website.id(), privateKey);
+		Assert.assertTrue(passwordsResult.isSuccess());
+		Assert.assertEquals(21, passwordsResult.result.size());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+	}
+
+	@After
+	public void cleanup() {
+		deleteDir(keyDir);
+		deleteDir(dataDir);
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if(files == null) { return; }
+		for(File file : files) { file.delete(); }
+		dir.delete();
+	}
+}
@@ -0,0 +1,200 @@
+package com.lee.password.keeper.impl.store;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.lee.password.keeper.api.Result;
+import com.lee.password.keeper.api.crypto.CryptoDriver;
+import com.lee.password.keeper.api.crypto.CryptoKey;
+import com.lee.password.keeper.api.store.Password;
+import com.lee.password.keeper.api.store.Password.Header;
+import com.lee.password.keeper.api.store.StoreException;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.keeper.impl.crypto.RSACryptoDriver;
+import com.lee.password.keeper.impl.store.log.LogSegment;
+
+public class LogStructuredStoreDriverTest {
+
+	private static final String TEST_DIR = "/password-keeper/tmp";
+
+	private String keyword = "github";
+	private String url = "www.github.com";
+	private String username = "mail";
+	private String password = "xxxx@gmail.com";
+
+	private CryptoDriver cryptoDriver;
+	private CryptoKey publicKey;
+	private CryptoKey privateKey;
+	private File keyDir;
+	private File dataDir;
+	private LogStructuredStoreDriver storeDriver;
+
+	@Before
+	public void initStore() {
+		keyDir = new File(TEST_DIR, "log-key");
+		dataDir = new File(TEST_DIR, "log");
+		deleteDir(keyDir);
+		deleteDir(dataDir);
+		cryptoDriver = new RSACryptoDriver();
+		Result<CryptoKey[]> keyPair = cryptoDriver.generateKeyPair(keyDir.getAbsolutePath(), 1024);
+		publicKey = keyPair.result[0];
+		privateKey = keyPair.result[1];
+		storeDriver = open(10 * 1024, 16);
+	}
+
+	private LogStructuredStoreDriver open(long segmentMaxSize, long compactMinRecords) {
+		return new LogStructuredStoreDriver(dataDir.getAbsolutePath(), cryptoDriver,
+				privateKey.maxBlockSize(), true, segmentMaxSize, compactMinRecords);
+	}
+
+	private LogStructuredStoreDriver reopen() {
+		Assert.assertTrue(storeDriver.close().isSuccess());
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = open(10 * 1024, 16);
+		return storeDriver;
+	}
+
+	@Test
+	public void testReopen() {
+		Website website = new Website(keyword, url);
+		Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		long websiteId = website.id();
+		Password entry = new Password(websiteId, username);
+		entry.password(password);
+		Assert.assertTrue(storeDriver.insertPassword(entry, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+
+		Website changed = new Website(websiteId);
+		changed.url("github.com");
+		Assert.assertTrue(storeDriver.updateWebsite(changed).isSuccess());
+		Password changedEntry = new Password(websiteId, username);
+		changedEntry.keyValuePairs("phone=123");
+		Assert.assertTrue(storeDriver.updatePassword(changedEntry, publicKey).isSuccess());
+
+		reopen();
+		Result<Website> websiteResult = storeDriver.selectWebsite(new Website(websiteId));
+		Assert.assertTrue(websiteResult.isSuccess());
+		Assert.assertEquals(keyword, websiteResult.result.keyword());
+		Assert.assertEquals("github.com", websiteResult.result.url());
+		Result<Password> pwdResult = storeDriver.selectPassword(new Header(websiteId, username), privateKey);
+		Assert.assertTrue(pwdResult.isSuccess());
+		Assert.assertEquals(password, pwdResult.result.secret().password());
+		Assert.assertEquals("phone=123", pwdResult.result.secret().keyValuePairs());
+
+		Assert.assertTrue(storeDriver.deletePassword(new Header(websiteId, username)).isSuccess());
+		Assert.assertTrue(storeDriver.deleteWebsite(new Website(websiteId)).isSuccess());
+		reopen();
+		Assert.assertEquals(0, storeDriver.websiteCount().result.intValue());
+		Assert.assertEquals(0, storeDriver.passwordCount().result.intValue());
+	}
+
+	@Test
+	public void testUndoBeforeCommit() {
+		Website website = new Website(keyword, url);
+		Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		Assert.assertTrue(storeDriver.undo().isSuccess());
+		Assert.assertEquals(0, storeDriver.needCommitCount().result.intValue());
+		reopen();
+		Assert.assertFalse(storeDriver.selectWebsite(new Website(keyword, url)).isSuccess());
+	}
+
+	@Test
+	public void testTornTail() throws Exception {
+		Website website = new Website(keyword, url);
+		Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+
+		// simulate a crash in the middle of appending a batch
+		File segment = new File(dataDir, LogSegment.fileName(0));
+		long committedSize = segment.length();
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.seek(committedSize);
+			file.write(new byte[] { 1, 2, 3, 4, 5 });
+		}finally {
+			file.close();
+		}
+
+		cryptoDriver = new RSACryptoDriver();
+		storeDriver = open(10 * 1024, 16);
+		Assert.assertTrue(storeDriver.selectWebsite(new Website(keyword, url)).isSuccess());
+		Assert.assertEquals(committedSize, segment.length());
+	}
+
+	@Test
+	public void testCorruptedRecord() throws Exception {
+		Website website = new Website(keyword, url);
+		Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		Assert.assertTrue(storeDriver.insertWebsite(new Website("gitlab", "www.gitlab.com")).isSuccess());
+		Assert.assertTrue(storeDriver.close().isSuccess());
+
+		// corrupt the first record, the batch committed after it must not be dropped as a torn tail
+		File segment = new File(dataDir, LogSegment.fileName(0));
+		long size = segment.length();
+		RandomAccessFile file = new RandomAccessFile(segment, "rw");
+		try {
+			file.seek(8 + 10);
+			file.write(file.read() ^ 0xff);
+		}finally {
+			file.close();
+		}
+
+		cryptoDriver = new RSACryptoDriver();
+		try {
+			storeDriver = open(10 * 1024, 16);
+			Assert.fail("corrupted record in the middle of segment must fail the replay");
+		}catch(StoreException e) {
+			Assert.assertTrue(e.getMessage(), e.getMessage().contains("corrupted record"));
+		}
+		Assert.assertEquals(size, segment.length());
+		deleteDir(dataDir);
+		storeDriver = open(10 * 1024, 16);
+	}
+
+	@Test
+	public void testCompaction() throws Exception {
+		Website website = new Website(keyword, url);
+		Assert.assertTrue(storeDriver.insertWebsite(website).isSuccess());
+		long websiteId = website.id();
+		Password entry = new Password(websiteId, username);
+		entry.password(password);
+		Assert.assertTrue(storeDriver.insertPassword(entry, publicKey).isSuccess());
+		Assert.assertTrue(storeDriver.commit().isSuccess());
+		for(int i=0; i<200; i++) {
+			Website changed = new Website(websiteId);
+			changed.url("www.github.com/"+i);
+			Assert.assertTrue(storeDriver.updateWebsite(changed).isSuccess());
+			Assert.assertTrue(storeDriver.commit().isSuccess());
+		}
+		storeDriver.awaitCompaction();
+		Assert.assertTrue(storeDriver.segmentCount() < 5);
+
+		reopen();
+		Result<Website> websiteResult = storeDriver.selectWebsite(new Website(websiteId));
+		Assert.assertTrue(websiteResult.isSuccess());
+		Assert.assertEquals("www.github.com/199", websiteResult.result.url());
+		Result<Password> pwdResult = storeDriver.selectPassword(new Header(websiteId, username), privateKey);
+		Assert.assertTrue(pwdResult.isSuccess());
+		Assert.assertEquals(password, pwdResult.result.secret().password());
+	}
+
+	@After
+	public void cleanup() {
+		storeDriver.close();
+		deleteDir(dataDir);
+		deleteDir(keyDir);
+	}
+
+	private static void deleteDir(File dir) {
+		File[] files = dir.listFiles();
+		if(files == null) { return; }
+		for(File file : files) { file.delete(); }
+		dir.delete();
+	}
+}
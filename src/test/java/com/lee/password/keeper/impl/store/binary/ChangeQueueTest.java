@@ -0,0 +1,89 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lee.password.keeper.api.Entity.Type;
+import com.lee.password.keeper.api.store.Website;
+import com.lee.password.keeper.impl.InternalEntity;
+import com.lee.password.keeper.impl.store.binary.ChangedOperation.OP;
+
+public class ChangeQueueTest {
+
+	@Test
+	public void testSpillAndPollBack() throws Exception {
+		File spillPath = File.createTempFile("change", ".undo");
+		// a few operations in memory, the others are spilled
+		ChangeQueue queue = new ChangeQueue(spillPath, 2048);
+		List<String> expected = new ArrayList<String>();
+		for(int i=0; i<200; i++) {
+			ChangedOperation<? extends InternalEntity> operation = operation(i);
+			queue.offer(operation);
+			expected.add(describe(operation));
+		}
+		Assert.assertEquals(200, queue.size());
+		Assert.assertTrue(spillPath.length() > 0);
+
+		List<String> iterated = new ArrayList<String>();
+		for(ChangedOperation<? extends InternalEntity> operation : queue) { iterated.add(describe(operation)); }
+		Assert.assertEquals(expected, iterated);
+		Iterator<ChangedOperation<? extends InternalEntity>> descending = queue.descendingIterator();
+		for(int i=199; i>=0; i--) { Assert.assertEquals(expected.get(i), describe(descending.next())); }
+		Assert.assertFalse(descending.hasNext());
+
+		// poll across the spilled ones with offers in between
+		for(int i=199; i>=100; i--) { Assert.assertEquals(expected.get(i), describe(queue.pollLast())); }
+		ChangedOperation<? extends InternalEntity> offered = operation(500);
+		queue.offer(offered);
+		Assert.assertEquals(describe(offered), describe(queue.pollLast()));
+		for(int i=99; i>=0; i--) { Assert.assertEquals(expected.get(i), describe(queue.pollLast())); }
+		Assert.assertNull(queue.pollLast());
+		Assert.assertTrue(queue.isEmpty());
+
+		queue.offer(operation(1));
+		queue.clear();
+		Assert.assertTrue(queue.isEmpty());
+		Assert.assertFalse(spillPath.exists());
+	}
+
+	private static ChangedOperation<? extends InternalEntity> operation(int i) {
+		if(i % 2 == 0) {
+			BinaryWebsite before = BinaryWebsite.cast(new Website("keyword" + i, "www.site" + i + ".com"));
+			BinaryWebsite after = before.copy();
+			after.changeUrl("www.changed" + i + ".com");
+			return new ChangedOperation<BinaryWebsite>(before, OP.UPDATE, after);
+		}
+		BinaryPassword inserted = new BinaryPassword(i, "user" + i, i);
+		inserted.encryptedPassword(new byte[] { (byte) i, 1, 2 });
+		if(i % 3 == 0) {
+			inserted.encryptedKeyValuePairs(new byte[0]);
+			inserted.markEncryptedPasswordChanged();
+		}
+		inserted.slot(i % 5 == 0 ? i : BinaryPassword.NO_SLOT);
+		return new ChangedOperation<BinaryPassword>(null, OP.INSERT, inserted);
+	}
+
+	private static String describe(ChangedOperation<? extends InternalEntity> operation) {
+		return operation.op() + ":" + describe(operation.before()) + "->" + describe(operation.after());
+	}
+
+	private static String describe(InternalEntity image) {
+		if(image == null) { return "null"; }
+		if(image.type() == Type.WEBSITE) {
+			BinaryWebsite website = (BinaryWebsite) image;
+			return website.websiteId() + "," + website.keyword() + "," + website.url() + "," + website.timestamp()
+					+ "," + website.isKeywordChanged() + "," + website.isUrlChanged();
+		}
+		BinaryPassword password = (BinaryPassword) image;
+		return password.websiteId() + "," + password.username() + "," + password.timestamp() + "," + password.slot()
+				+ "," + Arrays.toString(password.encryptedPassword())
+				+ "," + Arrays.toString(password.encryptedKeyValuePairs())
+				+ "," + password.isEncryptedPasswordChanged() + "," + password.isEncryptedKeyValuePairsChanged();
+	}
+}
@@ -0,0 +1,43 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lee.password.keeper.api.store.Website;
+
+public class HistoryJournalTest {
+
+	@Test
+	public void testCompactAdvancesStartTime() throws Exception {
+		File journalPath = File.createTempFile("history", ".journal");
+		journalPath.delete();
+		HistoryJournal journal = new HistoryJournal(journalPath, 256, 4096, 0);
+		try {
+			Assert.assertEquals(0, journal.startTime());
+			for(int i=1; i<=100; i++) {
+				BinaryWebsite after = BinaryWebsite.cast(new Website("keyword" + i, "www.site" + i + ".com"));
+				journal.append(Collections.singletonList(new HistoryJournal.Entry(i, null, after)));
+			}
+			// the oldest entries are dropped, and all the ones after start time are kept
+			long startTime = journal.startTime();
+			Assert.assertTrue(startTime > 0);
+			List<HistoryJournal.Entry> entries = journal.since(startTime);
+			Assert.assertEquals(100 - startTime, entries.size());
+			Assert.assertEquals(startTime + 1, entries.get(0).commitTime());
+			Assert.assertEquals(entries.size(), journal.since(0).size());
+			journal.close();
+
+			// the start time survives the reopen
+			journal = new HistoryJournal(journalPath, 256, 4096, System.currentTimeMillis());
+			Assert.assertEquals(startTime, journal.startTime());
+			Assert.assertEquals(entries.size(), journal.since(startTime).size());
+		}finally {
+			journal.close();
+			journalPath.delete();
+		}
+	}
+}
@@ -0,0 +1,130 @@
+package com.lee.password.keeper.impl.store.binary;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lee.password.keeper.api.store.Website;
+
+public class IndexMapTest {
+
+	@Test
+	public void testLongObjectMap() {
+		Random random = new Random(7);
+		LongObjectMap<String> map = new LongObjectMap<String>();
+		Map<Long, String> expected = new HashMap<Long, String>();
+		for(int i=0; i<20000; i++) {
+			// narrow key range and clustered keys to exercise collisions and backward shift deletion
+			long key = (random.nextInt(500) << 24) | random.nextInt(4);
+			if(random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key), map.remove(key));
+			}else {
+				String value = "v" + i;
+				Assert.assertEquals(expected.put(key, value), map.put(key, value));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+		for(Map.Entry<Long, String> entry : expected.entrySet()) {
+			Assert.assertEquals(entry.getValue(), map.get(entry.getKey()));
+		}
+		long[] keys = map.keys();
+		Arrays.sort(keys);
+		Assert.assertEquals(expected.size(), keys.length);
+		for(long key : keys) { Assert.assertTrue(expected.containsKey(key)); }
+		Assert.assertEquals(expected.size(), map.values().size());
+		map.clear();
+		Assert.assertTrue(map.isEmpty());
+		Assert.assertNull(map.get(keys[0]));
+	}
+
+	@Test
+	public void testCompositeKeyMap() {
+		Random random = new Random(11);
+		CompositeKeyMap<String> map = new CompositeKeyMap<String>();
+		Map<String, String> expected = new HashMap<String, String>();
+		for(int i=0; i<20000; i++) {
+			long id = random.nextInt(50);
+			String name = "user" + random.nextInt(50);
+			String key = id + "/" + name;
+			if(random.nextInt(3) == 0) {
+				Assert.assertEquals(expected.remove(key), map.remove(id, name));
+			}else {
+				String value = "v" + i;
+				Assert.assertEquals(expected.put(key, value), map.put(id, name, value));
+			}
+			Assert.assertEquals(expected.size(), map.size());
+		}
+		for(long id=0; id<50; id++) {
+			for(int n=0; n<50; n++) {
+				String name = "user" + n;
+				Assert.assertEquals(expected.get(id + "/" + name), map.get(id, name));
+				Assert.assertEquals(expected.containsKey(id + "/" + name), map.containsKey(id, name));
+			}
+		}
+	}
+
+	@Test
+	public void testWebsiteIndex() {
+		BinaryWebsite[] websites = new BinaryWebsite[50];
+		for(int i=0; i<websites.length; i++) {
+			websites[i] = BinaryWebsite.cast(new Website("keyword"+i, "www.website"+i+".com"));
+			websites[i].count(i % 3);
+			websites[i].offset(i % 3 == 0 ? -1 : i);
+		}
+		Arrays.sort(websites, new Comparator<BinaryWebsite>() {
+			@Override
+			public int compare(BinaryWebsite one, BinaryWebsite another) {
+				return one.websiteId() < another.websiteId() ? -1 : (one.websiteId() == another.websiteId() ? 0 : 1);
+			}
+		});
+		WebsiteIndex index = new WebsiteIndex(0);
+		for(BinaryWebsite website : websites) { index.append(website); }
+		Assert.assertEquals(websites.length, index.size());
+		for(int i=0; i<websites.length; i++) {
+			Assert.assertEquals(i, index.indexOf(websites[i].websiteId()));
+			Assert.assertEquals(i, index.floorIndex(websites[i].websiteId()));
+			if(i+1 == websites.length || websites[i+1].websiteId() - websites[i].websiteId() > 1) {
+				Assert.assertEquals(i, index.floorIndex(websites[i].websiteId() + 1));
+			}
+			Assert.assertEquals(websites[i].count(), index.count(i));
+			Assert.assertEquals(websites[i].isValidOffset(), index.isValidOffset(i));
+		}
+		Assert.assertEquals(-1, index.indexOf(websites[0].websiteId() - 1));
+		Assert.assertEquals(-1, index.floorIndex(websites[0].websiteId() - 1));
+		try {
+			index.append(websites[0]);
+			Assert.fail("website out of order is appended");
+		}catch(IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testKeywordTrie() {
+		KeywordTrie<String> trie = new KeywordTrie<String>();
+		String[] keywords = {"github", "GitLab", "gitee", "google", "gmail", "git"};
+		for(String keyword : keywords) { trie.put(keyword, keyword); }
+		Assert.assertEquals(keywords.length, trie.size());
+		Assert.assertEquals(Arrays.asList("git", "gitee", "github", "GitLab"), trie.prefix("Git", 0));
+		Assert.assertEquals(Arrays.asList("git", "gitee"), trie.prefix("git", 2));
+		Assert.assertTrue(trie.prefix("x", 0).isEmpty());
+		Assert.assertEquals(keywords.length, trie.prefix("", 0).size());
+
+		Assert.assertEquals(Arrays.asList("github"), trie.fuzzy("githbu", 2, 1));
+		Assert.assertEquals(Arrays.asList("gitee", "git", "GitLab"), trie.fuzzy("gitea", 2, 0));
+		Assert.assertEquals(Arrays.asList("gmail"), trie.fuzzy("GMAIL", 0, 0));
+
+		Assert.assertFalse(trie.remove("github", "another"));
+		Assert.assertTrue(trie.remove("GITHUB", "github"));
+		Assert.assertFalse(trie.remove("github", "github"));
+		Assert.assertEquals(Arrays.asList("git", "gitee", "GitLab"), trie.prefix("git", 0));
+		Assert.assertTrue(trie.remove("git", "git"));
+		Assert.assertEquals(Arrays.asList("gitee", "GitLab"), trie.prefix("git", 0));
+		Assert.assertEquals(keywords.length - 2, trie.size());
+	}
+}
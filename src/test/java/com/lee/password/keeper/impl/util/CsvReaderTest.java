@@ -0,0 +1,58 @@
+package com.lee.password.keeper.impl.util;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lee.password.util.CsvReader;
+
+public class CsvReaderTest {
+
+	@Test
+	public void testQuotedFields() throws Exception {
+		CsvReader reader = new CsvReader(new StringReader(
+				"keyword,url,memo\r\n"
+				+ "\"amazon, inc\",www.amazon.com,\"say \"\"hi\"\"\"\r\n"
+				+ "\r\n"
+				+ "tmall,,\"line1\nline2\n\"\n"
+				+ "jd,www.jd.com,\n"
+				+ "\"\",last"));
+		assertRecord(reader, 1, "keyword", "url", "memo");
+		assertRecord(reader, 2, "amazon, inc", "www.amazon.com", "say \"hi\"");
+		// blank lines are skipped, and a record starts from the line of its first field
+		assertRecord(reader, 4, "tmall", "", "line1\nline2\n");
+		assertRecord(reader, 7, "jd", "www.jd.com", "");
+		assertRecord(reader, 8, "", "last");
+		Assert.assertNull(reader.next());
+		Assert.assertNull(reader.next());
+	}
+
+	@Test
+	public void testIncorrectFields() throws Exception {
+		CsvReader reader = new CsvReader(new StringReader("a,b\n\"unclosed,c\nd\n"));
+		assertRecord(reader, 1, "a", "b");
+		assertError(reader, "unclosed quoted field from line 2");
+
+		reader = new CsvReader(new StringReader("a,b\n\n\"quoted\"x,c\n"));
+		assertRecord(reader, 1, "a", "b");
+		assertError(reader, "unexpected character after quoted field at line 3");
+	}
+
+	private static void assertRecord(CsvReader reader, int lineNumber, String... fields) throws Exception {
+		List<String> record = reader.next();
+		Assert.assertEquals(Arrays.asList(fields), record);
+		Assert.assertEquals(lineNumber, reader.lineNumber());
+	}
+
+	private static void assertError(CsvReader reader, String msg) throws Exception {
+		try {
+			reader.next();
+			Assert.fail("expected error: " + msg);
+		}catch(IllegalArgumentException e) {
+			Assert.assertEquals(msg, e.getMessage());
+		}
+	}
+}
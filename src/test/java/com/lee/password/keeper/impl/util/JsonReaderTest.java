@@ -0,0 +1,75 @@
+package com.lee.password.keeper.impl.util;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.lee.password.util.JsonReader;
+
+public class JsonReaderTest {
+
+	@Test
+	public void testArray() throws Exception {
+		JsonReader reader = new JsonReader(new StringReader(
+				"[\n"
+				+ "  {\"keyword\": \"\\u4eac\\u4e1c\", \"url\": \"www.jd.com\"},\n"
+				+ "  {\"memo\": \"a\\\"b\\\\c\\/d\\ne\\tf\", \"count\": -1.5e3, \"valid\": true, \"url\": null},\n"
+				+ "  {}\n"
+				+ "]\n"));
+		Assert.assertEquals(fields("keyword", "京东", "url", "www.jd.com"), reader.next());
+		Assert.assertEquals(fields("memo", "a\"b\\c/d\ne\tf", "count", "-1.5e3", "valid", "true", "url", null), reader.next());
+		Assert.assertTrue(reader.next().isEmpty());
+		Assert.assertNull(reader.next());
+		Assert.assertNull(reader.next());
+
+		reader = new JsonReader(new StringReader(" [ ] "));
+		Assert.assertNull(reader.next());
+	}
+
+	@Test
+	public void testLines() throws Exception {
+		JsonReader reader = new JsonReader(new StringReader(
+				"{\"keyword\":\"amazon\",\"username\":\"mobile\"}\n"
+				+ "\n"
+				+ "{\"keyword\":\"tmall\",\"username\":\"mail\"}\n"));
+		Assert.assertEquals(fields("keyword", "amazon", "username", "mobile"), reader.next());
+		Assert.assertEquals(1, reader.lineNumber());
+		Assert.assertEquals(fields("keyword", "tmall", "username", "mail"), reader.next());
+		Assert.assertEquals(3, reader.lineNumber());
+		Assert.assertNull(reader.next());
+	}
+
+	@Test
+	public void testIncorrectDocuments() throws Exception {
+		assertError("[\n{\"a\":\"1\"}\n{\"b\":\"2\"}]", 1, "expected ',' or ']' at line 3");
+		assertError("[\n{\"a\":\"1\"}\n", 1, "unclosed array at line 3");
+		assertError("[\n{\"a\":\"1\"},\n", 1, "unclosed array at line 3");
+		assertError("{\"a\":\"1\"}\n{\"b\":{\"c\":\"2\"}}", 1, "nested value is not supported at line 2");
+		assertError("{\"a\":\"\\u12g4\"}", 0, "incorrect unicode escape at line 1");
+		assertError("{\"a\":\n\"1\nunclosed", 0, "unclosed string at line 3");
+		assertError("{\"a\":yes}", 0, "incorrect value 'yes' at line 1");
+		assertError("[]\n[]", 0, "unexpected content after array at line 2");
+	}
+
+	/** read {@code count} objects before the error expected **/
+	private static void assertError(String document, int count, String msg) throws Exception {
+		JsonReader reader = new JsonReader(new StringReader(document));
+		for(int i=0; i<count; i++) { Assert.assertNotNull(reader.next()); }
+		try {
+			reader.next();
+			Assert.fail("expected error: " + msg);
+		}catch(IllegalArgumentException e) {
+			Assert.assertEquals(msg, e.getMessage());
+		}
+	}
+
+	private static Map<String, String> fields(String... namesAndValues) {
+		Map<String, String> fields = new LinkedHashMap<String, String>();
+		for(int i=0; i<namesAndValues.length; i+=2) { fields.put(namesAndValues[i], namesAndValues[i + 1]); }
+		return fields;
+	}
+}